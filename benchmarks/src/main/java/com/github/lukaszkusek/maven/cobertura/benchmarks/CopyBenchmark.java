@@ -0,0 +1,58 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2013 Lukasz Kusek
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.github.lukaszkusek.maven.cobertura.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+
+import com.github.lukaszkusek.maven.cobertura.files.CopyMode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+
+public class CopyBenchmark extends AbstractProjectBenchmark {
+
+    @Param({"copy", "hardlink", "channel"})
+    public String copyMode;
+
+    private File destinationDirectory;
+
+    @Setup(Level.Iteration)
+    public void createDestinationDirectory() throws IOException {
+        destinationDirectory = project.newDirectory("copy");
+    }
+
+    @Benchmark
+    public void copyClasses() throws IOException {
+        CopyMode mode = CopyMode.getFromString(copyMode);
+        Path source = project.getClassesDirectory().toPath();
+        Path destination = destinationDirectory.toPath();
+
+        for (String classFile : project.getClassFiles()) {
+            mode.copy(source.resolve(classFile), destination.resolve(classFile));
+        }
+    }
+}
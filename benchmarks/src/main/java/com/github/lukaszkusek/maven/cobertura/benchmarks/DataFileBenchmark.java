@@ -0,0 +1,66 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2013 Lukasz Kusek
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.github.lukaszkusek.maven.cobertura.benchmarks;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.github.lukaszkusek.maven.cobertura.coverage.CoverageDataFile;
+import com.github.lukaszkusek.maven.cobertura.coverage.DataFilesMerger;
+import net.sourceforge.cobertura.coveragedata.ProjectData;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+
+public class DataFileBenchmark extends AbstractProjectBenchmark {
+
+    @Param({"8"})
+    public int forks;
+
+    private final List<File> forkDataFiles = new ArrayList<>();
+
+    @Setup(Level.Trial)
+    public void writeDataFiles() throws Throwable {
+        ProjectData projectData = project.instrument(project.newDirectory("instrumented"), 0);
+        File dataFilesDirectory = project.newDirectory("data");
+
+        for (int fork = 1; fork <= forks; fork++) {
+            File forkDataFile = new File(dataFilesDirectory, "cobertura-" + fork + ".ser");
+            CoverageDataFile.locatedAt(forkDataFile).save(projectData);
+            forkDataFiles.add(forkDataFile);
+        }
+    }
+
+    @Benchmark
+    public ProjectData loadDataFile() {
+        return CoverageDataFile.locatedAt(forkDataFiles.get(0)).load();
+    }
+
+    @Benchmark
+    public ProjectData mergeForkDataFiles() {
+        return DataFilesMerger.merge(forkDataFiles);
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2013 Lukasz Kusek
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.github.lukaszkusek.maven.cobertura.benchmarks;
+
+import java.io.IOException;
+
+import com.github.lukaszkusek.maven.cobertura.files.ClassFilter;
+import com.github.lukaszkusek.maven.cobertura.files.OutputDirectoryScanner;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.infra.Blackhole;
+
+public class DiscoveryBenchmark extends AbstractProjectBenchmark {
+
+    @Benchmark
+    public void scanOutputDirectory(final Blackhole blackhole) throws IOException {
+        new OutputDirectoryScanner(project.getClassesDirectory(), new ClassFilter(null, null))
+                .scan(new OutputDirectoryScanner.Listener() {
+                    @Override
+                    public void classToInstrument(String classFile) {
+                        blackhole.consume(classFile);
+                    }
+
+                    @Override
+                    public void excludedClass(String classFile) {
+                        blackhole.consume(classFile);
+                    }
+
+                    @Override
+                    public void resource(String file) {
+                        blackhole.consume(file);
+                    }
+                });
+    }
+}
@@ -0,0 +1,54 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2013 Lukasz Kusek
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.github.lukaszkusek.maven.cobertura.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+
+import net.sourceforge.cobertura.coveragedata.ProjectData;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+
+public class InstrumentBenchmark extends AbstractProjectBenchmark {
+
+    /**
+     * 0 means the number of available processors, as for {@code instrumentThreads}.
+     */
+    @Param({"1", "0"})
+    public int threads;
+
+    private File instrumentedClassesDirectory;
+
+    @Setup(Level.Iteration)
+    public void createInstrumentedClassesDirectory() throws IOException {
+        instrumentedClassesDirectory = project.newDirectory("instrumented");
+    }
+
+    @Benchmark
+    public ProjectData instrumentClasses() throws Throwable {
+        return project.instrument(instrumentedClassesDirectory, threads);
+    }
+}
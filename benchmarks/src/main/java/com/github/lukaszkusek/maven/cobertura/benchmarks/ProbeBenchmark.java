@@ -0,0 +1,125 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2013 Lukasz Kusek
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.github.lukaszkusek.maven.cobertura.benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import com.github.lukaszkusek.maven.cobertura.runtime.MappedCounters;
+import com.github.lukaszkusek.maven.cobertura.runtime.MappedCountersFile;
+import com.github.lukaszkusek.maven.cobertura.runtime.StripedCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Probes of a method body hit by all threads at once, counted the way the probe modes of the {@code instrument} goal
+ * count them: plain counters of Cobertura, atomic counters with {@code threadsafeRigorous},
+ * {@code probeMode=striped}, {@code probeMode=hit} and {@code probeMode=mapped}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@Threads(Threads.MAX)
+public class ProbeBenchmark {
+
+    @Param({"8"})
+    public int probes;
+
+    private int[] counters;
+    private AtomicIntegerArray atomicCounters;
+    private StripedCounters stripedCounters;
+    private MappedCountersFile mappedCountersFile;
+    private MappedCounters mappedCounters;
+
+    @Setup
+    public void createCounters() throws IOException {
+        counters = new int[probes];
+        atomicCounters = new AtomicIntegerArray(probes);
+        stripedCounters = StripedCounters.initialize(null, probes);
+        mappedCountersFile = MappedCountersFile.claim(Files.createTempDirectory("counters").toFile());
+        mappedCounters = mappedCountersFile.allocate("a.A", probes, "");
+    }
+
+    @TearDown
+    public void closeCountersFile() throws IOException {
+        mappedCountersFile.close();
+    }
+
+    /**
+     * Loses hits of threads incrementing the same counter.
+     */
+    @Benchmark
+    public void plainCounters() {
+        for (int probe = 0; probe < probes; probe++) {
+            counters[probe]++;
+        }
+    }
+
+    @Benchmark
+    public void hitCounters() {
+        for (int probe = 0; probe < probes; probe++) {
+            counters[probe] = 1;
+        }
+    }
+
+    @Benchmark
+    public void atomicCounters() {
+        for (int probe = 0; probe < probes; probe++) {
+            atomicCounters.incrementAndGet(probe);
+        }
+    }
+
+    @Benchmark
+    public void stripedCounters() {
+        for (int probe = 0; probe < probes; probe++) {
+            stripedCounters.increment(probe);
+        }
+    }
+
+    /**
+     * Loses hits of threads incrementing the same counter, the same as plain counters.
+     */
+    @Benchmark
+    public void mappedCounters() {
+        for (int probe = 0; probe < probes; probe++) {
+            mappedCounters.increment(probe);
+        }
+    }
+}
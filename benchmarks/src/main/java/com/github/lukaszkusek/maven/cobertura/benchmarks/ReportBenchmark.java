@@ -0,0 +1,71 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2013 Lukasz Kusek
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.github.lukaszkusek.maven.cobertura.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+
+import com.github.lukaszkusek.maven.cobertura.reporting.PreloadedCobertura;
+import com.github.lukaszkusek.maven.cobertura.reporting.ReportExporter;
+import net.sourceforge.cobertura.coveragedata.ProjectData;
+import net.sourceforge.cobertura.dsl.ArgumentsBuilder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+
+public class ReportBenchmark extends AbstractProjectBenchmark {
+
+    @Param({"xml", "summaryXml", "html"})
+    public String format;
+
+    private File instrumentedClassesDirectory;
+    private ProjectData projectData;
+    private File reportDirectory;
+
+    @Setup(Level.Trial)
+    public void instrumentClasses() throws Throwable {
+        instrumentedClassesDirectory = project.newDirectory("instrumented");
+        projectData = project.instrument(instrumentedClassesDirectory, 0);
+    }
+
+    @Setup(Level.Iteration)
+    public void createReportDirectory() throws IOException {
+        reportDirectory = project.newDirectory("report");
+    }
+
+    @Benchmark
+    public void exportReport() throws Throwable {
+        ArgumentsBuilder builder = new ArgumentsBuilder();
+        builder.setBaseDirectory(instrumentedClassesDirectory.getAbsolutePath());
+        builder.setDataFile(new File(reportDirectory, "cobertura.ser").getAbsolutePath());
+        builder.setDestinationDirectory(reportDirectory.getAbsolutePath());
+        builder.setEncoding("UTF-8");
+        builder.addSources(project.getSourcesDirectory().getAbsolutePath(), true);
+
+        new ReportExporter(new PreloadedCobertura(builder.build(), projectData))
+                .export(Collections.singletonList(format));
+    }
+}
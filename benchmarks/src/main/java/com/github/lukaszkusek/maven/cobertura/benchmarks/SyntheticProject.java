@@ -0,0 +1,202 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2013 Lukasz Kusek
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.github.lukaszkusek.maven.cobertura.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.github.lukaszkusek.maven.cobertura.instrumentation.InstrumentationEngine;
+import net.sourceforge.cobertura.coveragedata.ProjectData;
+import net.sourceforge.cobertura.dsl.Arguments;
+import net.sourceforge.cobertura.dsl.ArgumentsBuilder;
+import org.codehaus.plexus.util.FileUtils;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+/**
+ * Output and source directories of a generated project with given number of classes, every class with a branch and
+ * debug information, so Cobertura has lines and branches to instrument and report.
+ */
+public class SyntheticProject {
+
+    static final int CLASSES_PER_PACKAGE = 100;
+
+    private final File directory;
+    private final File classesDirectory;
+    private final File sourcesDirectory;
+    private final List<String> classFiles = new ArrayList<>();
+
+    private SyntheticProject(File directory) {
+        this.directory = directory;
+        this.classesDirectory = new File(directory, "classes");
+        this.sourcesDirectory = new File(directory, "sources");
+    }
+
+    public static SyntheticProject generate(int classes) throws IOException {
+        SyntheticProject project = new SyntheticProject(Files.createTempDirectory("synthetic-project").toFile());
+
+        for (int i = 0; i < classes; i++) {
+            project.generateClass("synthetic/p" + i / CLASSES_PER_PACKAGE, "Class" + i);
+        }
+
+        return project;
+    }
+
+    private void generateClass(String packagePath, String simpleName) throws IOException {
+        String internalName = packagePath + "/" + simpleName;
+
+        write(new File(classesDirectory, internalName + ".class").toPath(), classBytes(internalName, simpleName));
+        write(new File(sourcesDirectory, internalName + ".java").toPath(),
+                sourceText(packagePath.replace('/', '.'), simpleName).getBytes(StandardCharsets.UTF_8));
+
+        classFiles.add(internalName + ".class");
+    }
+
+    private void write(Path file, byte[] content) throws IOException {
+        Files.createDirectories(file.getParent());
+        Files.write(file, content);
+    }
+
+    private String sourceText(String packageName, String simpleName) {
+        return "package " + packageName + ";\n"
+                + "\n"
+                + "public class " + simpleName + " {\n"
+                + "\n"
+                + "    public int branch(int value) {\n"
+                + "        if (value > 0) {\n"
+                + "            return value;\n"
+                + "        }\n"
+                + "        return -value;\n"
+                + "    }\n"
+                + "}\n";
+    }
+
+    private byte[] classBytes(String internalName, String simpleName) {
+        ClassWriter writer = new ClassWriter(ClassWriter.COMPUTE_MAXS | ClassWriter.COMPUTE_FRAMES);
+        writer.visit(Opcodes.V1_7, Opcodes.ACC_PUBLIC | Opcodes.ACC_SUPER, internalName, null, "java/lang/Object", null);
+        writer.visitSource(simpleName + ".java", null);
+
+        MethodVisitor constructor = writer.visitMethod(Opcodes.ACC_PUBLIC, "<init>", "()V", null, null);
+        constructor.visitCode();
+        visitLine(constructor, 3);
+        constructor.visitVarInsn(Opcodes.ALOAD, 0);
+        constructor.visitMethodInsn(Opcodes.INVOKESPECIAL, "java/lang/Object", "<init>", "()V", false);
+        constructor.visitInsn(Opcodes.RETURN);
+        constructor.visitMaxs(0, 0);
+        constructor.visitEnd();
+
+        MethodVisitor branch = writer.visitMethod(Opcodes.ACC_PUBLIC, "branch", "(I)I", null, null);
+        branch.visitCode();
+        Label negative = new Label();
+        visitLine(branch, 6);
+        branch.visitVarInsn(Opcodes.ILOAD, 1);
+        branch.visitJumpInsn(Opcodes.IFLE, negative);
+        visitLine(branch, 7);
+        branch.visitVarInsn(Opcodes.ILOAD, 1);
+        branch.visitInsn(Opcodes.IRETURN);
+        branch.visitLabel(negative);
+        branch.visitLineNumber(9, negative);
+        branch.visitVarInsn(Opcodes.ILOAD, 1);
+        branch.visitInsn(Opcodes.INEG);
+        branch.visitInsn(Opcodes.IRETURN);
+        branch.visitMaxs(0, 0);
+        branch.visitEnd();
+
+        writer.visitEnd();
+
+        return writer.toByteArray();
+    }
+
+    private void visitLine(MethodVisitor method, int line) {
+        Label label = new Label();
+        method.visitLabel(label);
+        method.visitLineNumber(line, label);
+    }
+
+    /**
+     * Instruments all classes the same way the {@code instrument} goal does.
+     *
+     * @return project data of instrumented classes
+     */
+    public ProjectData instrument(File instrumentedClassesDirectory, int threads) throws Throwable {
+        File coberturaDirectory = new File(directory, "cobertura");
+        Files.createDirectories(coberturaDirectory.toPath());
+
+        try (InstrumentationEngine engine = new InstrumentationEngine(threads, coberturaDirectory,
+                (shardClassFiles, shardDataFile) -> createArguments(shardClassFiles, shardDataFile, instrumentedClassesDirectory))) {
+
+            for (String classFile : classFiles) {
+                engine.submit(classFile);
+            }
+
+            return engine.finish();
+        }
+    }
+
+    private Arguments createArguments(List<String> classFiles, File dataFile, File instrumentedClassesDirectory) {
+        ArgumentsBuilder builder = new ArgumentsBuilder();
+
+        builder.setBaseDirectory(classesDirectory.getAbsolutePath());
+        builder.setDataFile(dataFile.getAbsolutePath());
+        builder.setDestinationDirectory(instrumentedClassesDirectory.getAbsolutePath());
+
+        for (String classFile : classFiles) {
+            builder.addFileToInstrument(classFile);
+        }
+
+        return builder.build();
+    }
+
+    public File newDirectory(String name) throws IOException {
+        File newDirectory = new File(directory, name);
+        FileUtils.deleteDirectory(newDirectory);
+        Files.createDirectories(newDirectory.toPath());
+
+        return newDirectory;
+    }
+
+    public File getClassesDirectory() {
+        return classesDirectory;
+    }
+
+    public File getSourcesDirectory() {
+        return sourcesDirectory;
+    }
+
+    public List<String> getClassFiles() {
+        return Collections.unmodifiableList(classFiles);
+    }
+
+    public void delete() throws IOException {
+        FileUtils.deleteDirectory(directory);
+    }
+}
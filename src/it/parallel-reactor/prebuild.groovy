@@ -0,0 +1,111 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2013 Lukasz Kusek
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+// generates a reactor of 100 modules, each with its own package, so coverage of one module leaking into another
+// module's data file or report is detected by verify.groovy
+int modules = 100
+
+def modulesDirectory = new File(basedir, "modules")
+modulesDirectory.deleteDir()
+
+def moduleNames = (0..<modules).collect { String.format("module-%03d", it) }
+
+new File(modulesDirectory, "pom.xml").with { pom ->
+    pom.parentFile.mkdirs()
+    pom.text = """<?xml version="1.0" encoding="UTF-8"?>
+<project xmlns="http://maven.apache.org/POM/4.0.0">
+    <modelVersion>4.0.0</modelVersion>
+    <groupId>com.github.lukasz-kusek.maven-cobertura.it</groupId>
+    <artifactId>parallel-reactor-modules</artifactId>
+    <version>1.0.0-SNAPSHOT</version>
+    <packaging>pom</packaging>
+    <modules>
+${moduleNames.collect { "        <module>${it}</module>" }.join("\n")}
+    </modules>
+</project>
+"""
+}
+
+moduleNames.each { moduleName ->
+    def packageName = moduleName.replace("-", "")
+    def moduleDirectory = new File(modulesDirectory, moduleName)
+
+    new File(moduleDirectory, "pom.xml").with { pom ->
+        pom.parentFile.mkdirs()
+        pom.text = """<?xml version="1.0" encoding="UTF-8"?>
+<project xmlns="http://maven.apache.org/POM/4.0.0">
+    <modelVersion>4.0.0</modelVersion>
+    <parent>
+        <groupId>com.github.lukasz-kusek.maven-cobertura.it</groupId>
+        <artifactId>parallel-reactor</artifactId>
+        <version>1.0.0-SNAPSHOT</version>
+        <relativePath>../../pom.xml</relativePath>
+    </parent>
+    <artifactId>${moduleName}</artifactId>
+    <build>
+        <plugins>
+            <plugin>
+                <groupId>com.github.lukasz-kusek</groupId>
+                <artifactId>cobertura-maven-plugin</artifactId>
+            </plugin>
+        </plugins>
+    </build>
+</project>
+"""
+    }
+
+    new File(moduleDirectory, "src/main/java/${packageName}/Covered.java").with { source ->
+        source.parentFile.mkdirs()
+        source.text = """package ${packageName};
+
+public class Covered {
+
+    public int run(int i) {
+        if (i == 0) {
+            i++;
+        }
+
+        return i;
+    }
+}
+"""
+    }
+
+    new File(moduleDirectory, "src/test/java/${packageName}/CoveredTest.java").with { test ->
+        test.parentFile.mkdirs()
+        test.text = """package ${packageName};
+
+import org.junit.Test;
+
+public class CoveredTest {
+
+    @Test
+    public void shouldRun() {
+        new Covered().run(1);
+    }
+}
+"""
+    }
+}
+
+true
@@ -0,0 +1,47 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2013 Lukasz Kusek
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+XmlParser parser = new XmlParser()
+
+def modules = new File(basedir, "modules").listFiles().findAll { it.isDirectory() }.sort()
+assert modules.size() == 100
+
+modules.each { module ->
+    def packageName = module.name.replace("-", "")
+    def coberturaDirectory = new File(module, "target/cobertura")
+
+    def coverage = parser.parse(new File(coberturaDirectory, "coverage.xml"))
+    def classes = coverage.packages.package.classes.'class'
+    assert classes*.@name == [packageName + ".Covered"]: "${module.name} reports ${classes*.@name}"
+    assert classes[0].@"line-rate" == "0.75": "${module.name} line rate ${classes[0].@'line-rate'}"
+    assert classes[0].@"branch-rate" == "0.5": "${module.name} branch rate ${classes[0].@'branch-rate'}"
+
+    def properties = new Properties()
+    new File(coberturaDirectory, "instrumented/cobertura.properties").withInputStream { properties.load(it) }
+    assert new File(properties.getProperty("net.sourceforge.cobertura.datafile")) ==
+            new File(coberturaDirectory, "cobertura.ser").absoluteFile
+}
+
+// modules were built by the multi-threaded builder, not one after another
+assert new File(basedir, "build.log").text.contains("Using the MultiThreadedBuilder implementation")
+
+true
@@ -0,0 +1,10 @@
+public class ToCover1 {
+
+    public int run(int i) {
+        if (i == 0) {
+            i++;
+        }
+
+        return i;
+    }
+}
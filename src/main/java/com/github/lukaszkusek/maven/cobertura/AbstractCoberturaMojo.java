@@ -23,10 +23,16 @@
 
 package com.github.lukaszkusek.maven.cobertura;
 
+import com.github.lukaszkusek.maven.cobertura.coverage.CoverageDataFile;
+import com.github.lukaszkusek.maven.cobertura.files.Fingerprint;
 import com.github.lukaszkusek.maven.cobertura.files.WorkingDirectory;
+import com.github.lukaszkusek.maven.cobertura.metrics.ExecutionMetrics;
+import com.github.lukaszkusek.maven.cobertura.project.CoberturaRuntimeCache;
 import com.github.lukaszkusek.maven.cobertura.project.ProjectHandler;
 import org.apache.maven.artifact.Artifact;
+import org.apache.maven.execution.MavenSession;
 import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecution;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
 import org.apache.maven.plugins.annotations.Component;
@@ -34,21 +40,53 @@ import org.apache.maven.plugins.annotations.Parameter;
 import org.apache.maven.project.MavenProject;
 import org.apache.maven.repository.RepositorySystem;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
 import java.util.List;
 
+/**
+ * Base of all goals, which are thread safe: Maven creates a mojo instance for every execution, so fields only hold
+ * state of one module, and changes of the build model are limited to the module's own project. State shared by
+ * modules built in parallel lives only in the thread safe {@code InstrumentationService} and
+ * {@code CoberturaRuntimeCache} and the common fork/join pool.
+ */
 public abstract class AbstractCoberturaMojo extends AbstractMojo {
 
     @Component
     private RepositorySystem repositorySystem;
 
+    @Component
+    private CoberturaRuntimeCache coberturaRuntimeCache;
+
+    @Parameter(defaultValue = "${session}", required = true, readonly = true)
+    private MavenSession session;
+
     @Parameter(defaultValue = "${project}", required = true, readonly = true)
     private MavenProject project;
 
     @Parameter(defaultValue = "${plugin.artifacts}", required = true, readonly = true)
     private List<Artifact> pluginArtifacts;
 
+    @Parameter(defaultValue = "${mojoExecution}", required = true, readonly = true)
+    private MojoExecution mojoExecution;
+
+    @Parameter(defaultValue = "${plugin.version}", required = true, readonly = true)
+    private String pluginVersion;
+
+    @Parameter(defaultValue = "true")
+    private boolean skipWhenUpToDate;
+
+    /**
+     * Keeps a compact snapshot next to the data file, loaded instead of deserializing the data file for as long as
+     * the data file has not changed. The data file itself is still written for the Cobertura runtime and other tools.
+     */
+    @Parameter(defaultValue = "false")
+    private boolean snapshot;
+
     protected WorkingDirectory workingDirectory;
     protected ProjectHandler projectHandler;
+    protected ExecutionMetrics metrics;
 
     @Override
     public void execute() throws MojoExecutionException, MojoFailureException {
@@ -56,10 +94,18 @@ public abstract class AbstractCoberturaMojo extends AbstractMojo {
 
         if (canRun()) {
             try {
-                createWorkingDirectory();
+                createMetrics();
+
+                try (ExecutionMetrics.Phase ignored = metrics.start("directories")) {
+                    createWorkingDirectory();
+                }
                 createProjectHandler();
 
-                doExecute();
+                executeUnlessUpToDate();
+                reportMetrics();
+            } catch (MojoFailureException e) {
+                // an expected failure, e.g. of a coverage check, is reported as is
+                throw e;
             } catch (Throwable throwable) {
                 throw new MojoExecutionException(
                         String.format("Failed while running cobertura: %s", throwable.getMessage()),
@@ -72,14 +118,102 @@ public abstract class AbstractCoberturaMojo extends AbstractMojo {
         this.workingDirectory = new WorkingDirectory(project);
     }
 
+    private void createMetrics() {
+        this.metrics = new ExecutionMetrics(
+                project.getGroupId() + ":" + project.getArtifactId(),
+                mojoExecution.getGoal() + "@" + mojoExecution.getExecutionId());
+    }
+
+    private void reportMetrics() throws IOException {
+        metrics.logSummary(getLog());
+        metrics.writeTo(getExecutionFile(ExecutionMetrics.FILE_EXTENSION));
+    }
+
     private void createWorkingDirectory() {
         this.workingDirectory.createDirectories();
     }
 
     private void createProjectHandler() {
-        this.projectHandler = new ProjectHandler(project, pluginArtifacts, repositorySystem);
+        this.projectHandler = createProjectHandler(project);
+    }
+
+    protected ProjectHandler createProjectHandler(MavenProject project) {
+        return new ProjectHandler(
+                project,
+                coberturaRuntimeCache.get(session, pluginVersion, pluginArtifacts, repositorySystem),
+                repositorySystem);
+    }
+
+    protected MavenSession getSession() {
+        return session;
+    }
+
+    protected CoverageDataFile getCoverageDataFile() {
+        CoverageDataFile dataFile = CoverageDataFile.locatedAt(workingDirectory.getDataFile());
+
+        return snapshot ? dataFile.withSnapshot() : dataFile;
+    }
+
+    private void executeUnlessUpToDate() throws Throwable {
+        boolean upToDate;
+        try (ExecutionMetrics.Phase ignored = metrics.start("up-to-date")) {
+            upToDate = skipWhenUpToDate && createFingerprint().isStoredIn(getFingerprintFile());
+        }
+
+        if (upToDate) {
+            getLog().info("Inputs have not changed since the previous execution, skipping.");
+            doExecuteWhenUpToDate();
+        } else {
+            doExecute();
+
+            try (ExecutionMetrics.Phase ignored = metrics.start("fingerprint")) {
+                storeFingerprint();
+            }
+        }
+    }
+
+    private void storeFingerprint() throws Throwable {
+        File fingerprintFile = getFingerprintFile();
+
+        if (skipWhenUpToDate) {
+            createFingerprint().storeIn(fingerprintFile);
+        } else {
+            Files.deleteIfExists(fingerprintFile.toPath());
+        }
+    }
+
+    private Fingerprint createFingerprint() throws Throwable {
+        Fingerprint fingerprint = new Fingerprint()
+                .with("plugin", pluginVersion)
+                .with("cobertura", projectHandler.getCoberturaVersion())
+                .with("coberturaDependencies", projectHandler.getCoberturaDependencies());
+        addFingerprintInputs(fingerprint);
+
+        return fingerprint;
+    }
+
+    private File getFingerprintFile() {
+        return getExecutionFile(Fingerprint.FILE_EXTENSION);
+    }
+
+    private File getExecutionFile(String extension) {
+        return new File(
+                workingDirectory.getCoberturaDirectory(),
+                mojoExecution.getGoal() + "-" + mojoExecution.getExecutionId() + extension);
     }
 
     protected abstract void doExecute() throws Throwable;
     protected abstract boolean canRun();
+
+    /**
+     * Adds everything the outcome of {@link #doExecute()} depends on. Called before and again after
+     * {@link #doExecute()}, so large directories should be fingerprinted by timestamps rather than by contents.
+     */
+    protected abstract void addFingerprintInputs(Fingerprint fingerprint) throws IOException;
+
+    /**
+     * Runs instead of {@link #doExecute()} when the outcome of the previous execution is still valid, so only changes
+     * of the in-memory build model have to be repeated.
+     */
+    protected abstract void doExecuteWhenUpToDate() throws Throwable;
 }
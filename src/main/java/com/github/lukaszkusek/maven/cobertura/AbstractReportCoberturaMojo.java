@@ -0,0 +1,227 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2013 Lukasz Kusek
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.github.lukaszkusek.maven.cobertura;
+
+import com.github.lukaszkusek.maven.cobertura.files.Fingerprint;
+import com.github.lukaszkusek.maven.cobertura.files.SourceIndex;
+import com.github.lukaszkusek.maven.cobertura.metrics.ExecutionMetrics;
+import com.github.lukaszkusek.maven.cobertura.reporting.CoverageXmlWriter;
+import com.github.lukaszkusek.maven.cobertura.reporting.IncrementalXmlReport;
+import com.github.lukaszkusek.maven.cobertura.reporting.PreloadedCobertura;
+import com.github.lukaszkusek.maven.cobertura.reporting.ReportExporter;
+import com.google.common.collect.ImmutableMap;
+import net.sourceforge.cobertura.coveragedata.ClassData;
+import net.sourceforge.cobertura.coveragedata.ProjectData;
+import net.sourceforge.cobertura.dsl.Arguments;
+import net.sourceforge.cobertura.dsl.ArgumentsBuilder;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugins.annotations.Parameter;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+public abstract class AbstractReportCoberturaMojo extends AbstractCoberturaMojo {
+
+    public static final String XML_FORMAT = "xml";
+    public static final String STREAMING_XML_FORMAT = "streaming-xml";
+
+    /**
+     * Main file written by every format, by lower case name of the format.
+     */
+    private static final Map<String, String> REPORT_FILE_NAMES = ImmutableMap.of(
+            XML_FORMAT, CoverageXmlWriter.FILE_NAME,
+            STREAMING_XML_FORMAT, CoverageXmlWriter.FILE_NAME,
+            "html", "index.html",
+            "summaryxml", "coverage-summary.xml");
+
+    /**
+     * One of Cobertura's report formats or {@code streaming-xml}, which writes {@code coverage.xml} package by package
+     * without parsing sources, so complexity is always 0.
+     */
+    @Parameter(defaultValue = "xml")
+    private String format;
+
+    /**
+     * Formats exported concurrently from a single load of the coverage data, {@code format} is used when empty.
+     * {@code xml} and {@code streaming-xml} both write {@code coverage.xml}, so only one of them may be given.
+     */
+    @Parameter
+    private List<String> formats;
+
+    @Parameter(defaultValue = "UTF-8")
+    private String encoding;
+
+    /**
+     * Writes the {@code xml} format parsing only sources which changed since the previous report. Other formats are
+     * always exported completely.
+     */
+    @Parameter(defaultValue = "false")
+    private boolean incrementalReport;
+
+    private SourceIndex sourceIndex;
+
+    protected void addReportFingerprintInputs(Fingerprint fingerprint, Collection<String> sourceDirectories)
+            throws IOException {
+
+        fingerprint
+                .with("formats", getFormats())
+                .with("encoding", encoding)
+                .with("incrementalReport", incrementalReport);
+
+        for (String sourceDirectory : sourceDirectories) {
+            fingerprint.withDirectoryTimestamps(new File(sourceDirectory));
+        }
+
+        // a report deleted since the previous execution is exported again, even with all inputs unchanged
+        for (String format : getFormats()) {
+            String reportFileName = REPORT_FILE_NAMES.get(format.trim().toLowerCase(Locale.ROOT));
+            File reportFile = new File(workingDirectory.getCoberturaDirectory(), String.valueOf(reportFileName));
+
+            fingerprint.with("report:" + format, reportFileName != null && reportFile.isFile());
+        }
+    }
+
+    /**
+     * Called before anything is loaded, so a report which cannot be exported fails fast.
+     */
+    protected void validateFormats() throws MojoExecutionException {
+        List<String> formats = new ArrayList<>(getFormats());
+
+        if (removeFormat(formats, XML_FORMAT) && removeFormat(formats, STREAMING_XML_FORMAT)) {
+            throw new MojoExecutionException(
+                    "Unable to export both " + XML_FORMAT + " and " + STREAMING_XML_FORMAT
+                            + " formats, as both write " + CoverageXmlWriter.FILE_NAME + ".");
+        }
+    }
+
+    /**
+     * Indexes source files of given roots and leaves only roots containing sources of reported classes, so the report
+     * never searches roots, e.g. of generated sources, which cannot contain any of them.
+     */
+    protected List<String> resolveSourceDirectories(ProjectData projectData, Collection<String> sourceDirectories)
+            throws IOException {
+
+        try (ExecutionMetrics.Phase phase = metrics.start("sources")) {
+            sourceIndex = SourceIndex.build(sourceDirectories, workingDirectory.getCoberturaDirectory());
+
+            Set<String> sourceFileNames = new HashSet<>();
+            for (ClassData classData : projectData.getClasses()) {
+                sourceFileNames.add(classData.getSourceFileName());
+            }
+            List<String> usedSourceDirectories = sourceIndex.getRootsContaining(sourceFileNames);
+
+            phase.count("directories", sourceDirectories.size())
+                    .count("usedDirectories", usedSourceDirectories.size())
+                    .count("sourceFiles", sourceIndex.getSourceFiles())
+                    .count("listedDirectories", sourceIndex.getListedDirectories());
+
+            return usedSourceDirectories;
+        }
+    }
+
+    protected void exportReport(ProjectData projectData, String baseDirectory, Collection<String> sourceDirectories)
+            throws Throwable {
+
+        List<String> formats = new ArrayList<>(getFormats());
+
+        if (removeFormat(formats, STREAMING_XML_FORMAT)) {
+            try (ExecutionMetrics.Phase ignored = metrics.start("streaming-xml")) {
+                new CoverageXmlWriter(projectHandler.getCoberturaVersion(), sourceDirectories).write(
+                        projectData,
+                        classData -> 0,
+                        new File(workingDirectory.getCoberturaDirectory(), CoverageXmlWriter.FILE_NAME),
+                        encoding);
+            }
+        }
+
+        if (incrementalReport && removeFormat(formats, XML_FORMAT)) {
+            try (ExecutionMetrics.Phase phase = metrics.start("incremental-xml")) {
+                IncrementalXmlReport report = new IncrementalXmlReport(
+                        workingDirectory.getCoberturaDirectory(),
+                        sourceDirectories,
+                        sourceIndex,
+                        encoding,
+                        projectHandler.getCoberturaVersion());
+                report.export(projectData);
+                phase.count("recalculatedClasses", report.getRecalculatedClasses());
+            }
+        }
+
+        if (!formats.isEmpty()) {
+            try (ExecutionMetrics.Phase phase = metrics.start("export")) {
+                new ReportExporter(new PreloadedCobertura(createArguments(baseDirectory, sourceDirectories), projectData))
+                        .export(formats);
+                phase.count("formats", formats.size());
+            }
+        }
+    }
+
+    private boolean removeFormat(List<String> formats, String format) {
+        boolean removed = false;
+
+        for (int i = formats.size() - 1; i >= 0; i--) {
+            if (format.equalsIgnoreCase(formats.get(i).trim())) {
+                formats.remove(i);
+                removed = true;
+            }
+        }
+
+        return removed;
+    }
+
+    protected void countCoverage(ExecutionMetrics.Phase phase, ProjectData projectData) {
+        phase.count("classes", projectData.getNumberOfClasses())
+                .count("lines", projectData.getNumberOfValidLines())
+                .count("coveredLines", projectData.getNumberOfCoveredLines())
+                .count("branches", projectData.getNumberOfValidBranches())
+                .count("coveredBranches", projectData.getNumberOfCoveredBranches());
+    }
+
+    private List<String> getFormats() {
+        return formats == null || formats.isEmpty() ? Collections.singletonList(format) : formats;
+    }
+
+    private Arguments createArguments(String baseDirectory, Collection<String> sourceDirectories) {
+        ArgumentsBuilder builder = new ArgumentsBuilder();
+
+        builder.setBaseDirectory(baseDirectory);
+        builder.setDataFile(workingDirectory.getDataFilePath());
+        builder.setDestinationDirectory(workingDirectory.getCoberturaDirectoryPath());
+        builder.setEncoding(encoding);
+
+        for (String sourceDirectory : sourceDirectories) {
+            builder.addSources(sourceDirectory, true);
+        }
+
+        return builder.build();
+    }
+}
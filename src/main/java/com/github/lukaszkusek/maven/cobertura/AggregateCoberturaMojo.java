@@ -0,0 +1,145 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2013 Lukasz Kusek
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.github.lukaszkusek.maven.cobertura;
+
+import com.github.lukaszkusek.maven.cobertura.coverage.DataFilesMerger;
+import com.github.lukaszkusek.maven.cobertura.coverage.ForkDataFiles;
+import com.github.lukaszkusek.maven.cobertura.coverage.MappedCounterFiles;
+import com.github.lukaszkusek.maven.cobertura.files.Fingerprint;
+import com.github.lukaszkusek.maven.cobertura.files.WorkingDirectory;
+import com.github.lukaszkusek.maven.cobertura.metrics.ExecutionMetrics;
+import net.sourceforge.cobertura.coveragedata.ProjectData;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.project.MavenProject;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Writes a single report for all modules of the reactor. Runs once, at the project it was invoked on, so it has to
+ * run after the tests of all modules, e.g. {@code mvn verify cobertura:aggregate}.
+ */
+@Mojo(name = "aggregate", aggregator = true, threadSafe = true)
+public class AggregateCoberturaMojo extends AbstractReportCoberturaMojo {
+
+    @Parameter(defaultValue = "${reactorProjects}", required = true, readonly = true)
+    private List<MavenProject> reactorProjects;
+
+    @Override
+    protected boolean canRun() {
+        return !getModuleDataFiles().isEmpty() || !getModuleMappedCounterFiles().isEmpty();
+    }
+
+    @Override
+    protected void doExecute() throws Throwable {
+        validateFormats();
+
+        List<File> dataFiles = getModuleDataFiles();
+        getLog().info(String.format("Aggregating %d data files.", dataFiles.size()));
+
+        ProjectData projectData;
+        try (ExecutionMetrics.Phase phase = metrics.start("data-load")) {
+            projectData = DataFilesMerger.merge(dataFiles);
+            for (MappedCounterFiles mappedCounterFiles : getModuleMappedCounterFiles()) {
+                mappedCounterFiles.mergeInto(projectData);
+            }
+            phase.count("dataFiles", dataFiles.size());
+            countCoverage(phase, projectData);
+        }
+
+        exportReport(
+                projectData,
+                workingDirectory.getCoberturaDirectoryPath(),
+                resolveSourceDirectories(projectData, getModuleSourcesDirectories()));
+    }
+
+    @Override
+    protected void doExecuteWhenUpToDate() {
+    }
+
+    @Override
+    protected void addFingerprintInputs(Fingerprint fingerprint) throws IOException {
+        addReportFingerprintInputs(fingerprint, getModuleSourcesDirectories());
+
+        for (File dataFile : getModuleDataFiles()) {
+            fingerprint.withFileContents(dataFile);
+        }
+        for (MappedCounterFiles mappedCounterFiles : getModuleMappedCounterFiles()) {
+            for (File file : mappedCounterFiles.list()) {
+                fingerprint.withFileContents(file);
+            }
+        }
+    }
+
+    /**
+     * @return data file of every module together with data files of forks not merged by the {@code report} goal
+     */
+    private List<File> getModuleDataFiles() {
+        List<File> dataFiles = new ArrayList<>();
+
+        for (MavenProject module : reactorProjects) {
+            WorkingDirectory moduleWorkingDirectory = new WorkingDirectory(module);
+
+            if (moduleWorkingDirectory.getDataFile().isFile()) {
+                dataFiles.add(moduleWorkingDirectory.getDataFile());
+            }
+            dataFiles.addAll(ForkDataFiles.locatedIn(moduleWorkingDirectory.getForkDataFilesDirectory()).list());
+        }
+
+        return dataFiles;
+    }
+
+    /**
+     * @return counters files of modules testing with {@code probeMode=mapped} not merged by the {@code report} goal
+     */
+    private List<MappedCounterFiles> getModuleMappedCounterFiles() {
+        List<MappedCounterFiles> moduleMappedCounterFiles = new ArrayList<>();
+
+        for (MavenProject module : reactorProjects) {
+            MappedCounterFiles mappedCounterFiles =
+                    MappedCounterFiles.locatedIn(new WorkingDirectory(module).getMappedCountersDirectory());
+
+            if (!mappedCounterFiles.list().isEmpty()) {
+                moduleMappedCounterFiles.add(mappedCounterFiles);
+            }
+        }
+
+        return moduleMappedCounterFiles;
+    }
+
+    private Set<String> getModuleSourcesDirectories() {
+        Set<String> sourcesDirectories = new LinkedHashSet<>();
+
+        for (MavenProject module : reactorProjects) {
+            sourcesDirectories.addAll(createProjectHandler(module).getSourcesDirectories());
+        }
+
+        return sourcesDirectories;
+    }
+}
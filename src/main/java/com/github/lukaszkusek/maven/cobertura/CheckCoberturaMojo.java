@@ -0,0 +1,176 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2013 Lukasz Kusek
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.github.lukaszkusek.maven.cobertura;
+
+import com.github.lukaszkusek.maven.cobertura.coverage.CoverageCheck;
+import com.github.lukaszkusek.maven.cobertura.coverage.DataFilesMerger;
+import com.github.lukaszkusek.maven.cobertura.coverage.ForkDataFiles;
+import com.github.lukaszkusek.maven.cobertura.coverage.MappedCounterFiles;
+import com.github.lukaszkusek.maven.cobertura.files.Fingerprint;
+import com.github.lukaszkusek.maven.cobertura.metrics.ExecutionMetrics;
+import com.github.lukaszkusek.maven.cobertura.properties.PropertiesFile;
+import net.sourceforge.cobertura.coveragedata.ProjectData;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.LifecyclePhase;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Fails the build when coverage is below thresholds, given in percent. Reads the data file named in
+ * {@code cobertura.properties}, together with data files of forks and counters files of {@code probeMode=mapped} not
+ * merged yet, without rendering any report. Files are left for the {@code report} goal to merge.
+ */
+@Mojo(name = "check", defaultPhase = LifecyclePhase.VERIFY, threadSafe = true)
+public class CheckCoberturaMojo extends AbstractCoberturaMojo {
+
+    @Parameter(defaultValue = "0")
+    private int lineRate;
+
+    @Parameter(defaultValue = "0")
+    private int branchRate;
+
+    @Parameter(defaultValue = "0")
+    private int packageLineRate;
+
+    @Parameter(defaultValue = "0")
+    private int packageBranchRate;
+
+    @Parameter(defaultValue = "0")
+    private int totalLineRate;
+
+    @Parameter(defaultValue = "0")
+    private int totalBranchRate;
+
+    @Parameter(defaultValue = "true")
+    private boolean haltOnFailure;
+
+    @Override
+    protected boolean canRun() {
+        return getPropertiesFile().isFile();
+    }
+
+    @Override
+    protected void doExecute() throws Throwable {
+        ProjectData projectData;
+        try (ExecutionMetrics.Phase phase = metrics.start("data-load")) {
+            List<File> dataFiles = getDataFiles();
+            projectData = DataFilesMerger.merge(dataFiles);
+            phase.count("dataFiles", dataFiles.size());
+
+            MappedCounterFiles mappedCounterFiles = getMappedCounterFiles();
+            mappedCounterFiles.mergeInto(projectData);
+            phase.count("mappedCounterFiles", mappedCounterFiles.list().size());
+        }
+
+        CoverageCheck.Result result;
+        try (ExecutionMetrics.Phase phase = metrics.start("check")) {
+            result = new CoverageCheck()
+                    .withClassRates(lineRate, branchRate)
+                    .withPackageRates(packageLineRate, packageBranchRate)
+                    .withTotalRates(totalLineRate, totalBranchRate)
+                    .verify(projectData);
+            phase.count("classes", result.getClasses())
+                    .count("packages", result.getPackages())
+                    .count("violations", result.getViolations().size());
+        }
+
+        getLog().info(String.format(Locale.ENGLISH, "Coverage of %d classes: lines %.2f%%, branches %.2f%%.",
+                result.getClasses(), 100 * result.getLineRate(), 100 * result.getBranchRate()));
+
+        if (!result.isPassed()) {
+            failOrWarn(result.getViolations());
+        }
+    }
+
+    @Override
+    protected void doExecuteWhenUpToDate() {
+    }
+
+    @Override
+    protected void addFingerprintInputs(Fingerprint fingerprint) throws IOException {
+        fingerprint
+                .with("lineRate", lineRate)
+                .with("branchRate", branchRate)
+                .with("packageLineRate", packageLineRate)
+                .with("packageBranchRate", packageBranchRate)
+                .with("totalLineRate", totalLineRate)
+                .with("totalBranchRate", totalBranchRate)
+                .with("haltOnFailure", haltOnFailure)
+                .withFileContents(getPropertiesFile());
+
+        for (File dataFile : getDataFiles()) {
+            fingerprint.withFileContents(dataFile);
+        }
+        fingerprint.withDirectoryContents(workingDirectory.getMappedCountersDirectory());
+    }
+
+    private void failOrWarn(List<String> violations) throws MojoFailureException {
+        for (String violation : violations) {
+            if (haltOnFailure) {
+                getLog().error(violation);
+            } else {
+                getLog().warn(violation);
+            }
+        }
+
+        if (haltOnFailure) {
+            throw new MojoFailureException(
+                    String.format("Coverage check failed with %d violations, see messages above.", violations.size()));
+        }
+    }
+
+    private File getPropertiesFile() {
+        return new File(workingDirectory.getInstrumentedClassesDirectory(), PropertiesFile.NAME);
+    }
+
+    private MappedCounterFiles getMappedCounterFiles() {
+        return MappedCounterFiles.locatedIn(workingDirectory.getMappedCountersDirectory());
+    }
+
+    private List<File> getDataFiles() throws IOException {
+        File dataFile;
+        try {
+            dataFile = new File(PropertiesFile.locatedIn(workingDirectory.getInstrumentedClassesDirectory())
+                    .load()
+                    .getDataFilePath());
+        } catch (MojoExecutionException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+
+        List<File> dataFiles = new ArrayList<>();
+        if (dataFile.isFile()) {
+            dataFiles.add(dataFile);
+        }
+        dataFiles.addAll(ForkDataFiles.locatedIn(workingDirectory.getForkDataFilesDirectory()).list());
+
+        return dataFiles;
+    }
+}
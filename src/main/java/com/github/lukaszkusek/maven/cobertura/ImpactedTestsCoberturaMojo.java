@@ -0,0 +1,187 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2013 Lukasz Kusek
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.github.lukaszkusek.maven.cobertura;
+
+import com.github.lukaszkusek.maven.cobertura.coverage.TestImpactIndex;
+import com.github.lukaszkusek.maven.cobertura.files.Fingerprint;
+import com.github.lukaszkusek.maven.cobertura.metrics.ExecutionMetrics;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+/**
+ * Writes test classes which hit any of the changed classes or lines, according to the index written by the
+ * {@code report} goal with {@code perTestCoverage} enabled, one per line, e.g. for
+ * {@code mvn cobertura:impacted-tests -Dcobertura.changesFile=changes.txt}. Changed test classes are always written.
+ */
+@Mojo(name = "impacted-tests", threadSafe = true)
+public class ImpactedTestsCoberturaMojo extends AbstractCoberturaMojo {
+
+    private static final String UNMAPPED_CHANGES_IGNORE = "ignore";
+    private static final String UNMAPPED_CHANGES_FAIL = "fail";
+    private static final String UNMAPPED_CHANGES_ALL = "all";
+
+    /**
+     * Changed classes, see {@link TestImpactIndex#getTestsCovering(String)} for accepted forms.
+     */
+    @Parameter(property = "cobertura.changes")
+    private List<String> changes;
+
+    /**
+     * File with a change on every line, e.g. the output of {@code git diff --name-only}.
+     */
+    @Parameter(property = "cobertura.changesFile")
+    private File changesFile;
+
+    @Parameter(defaultValue = "${project.build.directory}/cobertura/impacted-tests.txt")
+    private File impactedTestsFile;
+
+    /**
+     * What to do about changes of production classes unknown to the index, e.g. new classes or classes no test hit
+     * when the index was written, so the impacted tests can not be told: {@code ignore} to only warn, {@code fail} to
+     * fail the build, {@code all} to write all tests of the index.
+     */
+    @Parameter(property = "cobertura.unmappedChanges", defaultValue = UNMAPPED_CHANGES_IGNORE)
+    private String unmappedChanges;
+
+    @Override
+    protected boolean canRun() {
+        return TestImpactIndex.locatedIn(workingDirectory.getCoberturaDirectory()).exists();
+    }
+
+    @Override
+    protected void doExecute() throws Throwable {
+        validateUnmappedChanges();
+
+        TestImpactIndex index;
+        try (ExecutionMetrics.Phase phase = metrics.start("index-load")) {
+            index = TestImpactIndex.locatedIn(workingDirectory.getCoberturaDirectory()).load();
+            phase.count("tests", index.getTests()).count("classes", index.getClasses());
+        }
+
+        SortedSet<String> impactedTests = new TreeSet<>();
+        List<String> unmapped = new ArrayList<>();
+        try (ExecutionMetrics.Phase phase = metrics.start("impact")) {
+            List<String> allChanges = getChanges();
+            List<String> testSourcesDirectories = projectHandler.getTestSourcesDirectories();
+
+            for (String change : allChanges) {
+                String changedTest = index.findChangedTest(change, testSourcesDirectories);
+
+                if (changedTest != null) {
+                    impactedTests.add(changedTest);
+                } else if (TestImpactIndex.isJavaChange(change) && !index.isMapped(change)) {
+                    unmapped.add(change);
+                } else {
+                    SortedSet<String> coveringTests = index.getTestsCovering(change);
+
+                    if (coveringTests.isEmpty()) {
+                        getLog().info("No test hits " + change);
+                    }
+                    impactedTests.addAll(coveringTests);
+                }
+            }
+            phase.count("changes", allChanges.size()).count("unmappedChanges", unmapped.size())
+                    .count("impactedTests", impactedTests.size());
+        }
+
+        if (!unmapped.isEmpty()) {
+            handleUnmappedChanges(unmapped, index, impactedTests);
+        }
+
+        Files.createDirectories(impactedTestsFile.getAbsoluteFile().getParentFile().toPath());
+        Files.write(impactedTestsFile.toPath(), impactedTests, StandardCharsets.UTF_8);
+
+        getLog().info(String.format("%d of %d tests hit the changes: %s",
+                impactedTests.size(), index.getTests(), String.join(",", impactedTests)));
+    }
+
+    private void validateUnmappedChanges() throws MojoExecutionException {
+        if (!UNMAPPED_CHANGES_IGNORE.equals(unmappedChanges)
+                && !UNMAPPED_CHANGES_FAIL.equals(unmappedChanges)
+                && !UNMAPPED_CHANGES_ALL.equals(unmappedChanges)) {
+            throw new MojoExecutionException("Unable to handle unmappedChanges " + unmappedChanges
+                    + ", expected one of " + String.join(", ", UNMAPPED_CHANGES_IGNORE, UNMAPPED_CHANGES_FAIL, UNMAPPED_CHANGES_ALL) + ".");
+        }
+    }
+
+    private void handleUnmappedChanges(List<String> unmapped, TestImpactIndex index, SortedSet<String> impactedTests)
+            throws MojoFailureException {
+        String message = "Changes unknown to the test impact index: " + String.join(",", unmapped);
+
+        if (UNMAPPED_CHANGES_FAIL.equals(unmappedChanges)) {
+            throw new MojoFailureException(message + ".");
+        }
+
+        if (UNMAPPED_CHANGES_ALL.equals(unmappedChanges)) {
+            getLog().warn(message + ", all tests are impacted.");
+            impactedTests.addAll(index.getTestClasses());
+        } else {
+            getLog().warn(message + ", no tests are known to hit them.");
+        }
+    }
+
+    @Override
+    protected void doExecuteWhenUpToDate() {
+    }
+
+    @Override
+    protected void addFingerprintInputs(Fingerprint fingerprint) throws IOException {
+        fingerprint
+                .with("changes", changes)
+                .with("unmappedChanges", unmappedChanges)
+                .with("testSourcesDirectories", projectHandler.getTestSourcesDirectories())
+                .with("impactedTestsFile", impactedTestsFile.getAbsolutePath() + "@" + impactedTestsFile.isFile())
+                .withFileContents(TestImpactIndex.locatedIn(workingDirectory.getCoberturaDirectory()).getFile());
+
+        if (changesFile != null) {
+            fingerprint.withFileContents(changesFile);
+        }
+    }
+
+    private List<String> getChanges() throws IOException {
+        List<String> allChanges = new ArrayList<>();
+
+        if (changes != null) {
+            allChanges.addAll(changes);
+        }
+
+        if (changesFile != null) {
+            allChanges.addAll(Files.readAllLines(changesFile.toPath(), StandardCharsets.UTF_8));
+        }
+        allChanges.removeIf(change -> change.trim().isEmpty());
+
+        return allChanges;
+    }
+}
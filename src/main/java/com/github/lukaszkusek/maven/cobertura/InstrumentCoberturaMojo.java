@@ -23,22 +23,75 @@
 
 package com.github.lukaszkusek.maven.cobertura;
 
+import com.github.lukaszkusek.maven.cobertura.coverage.ForkDataFiles;
+import com.github.lukaszkusek.maven.cobertura.files.ClassFilter;
+import com.github.lukaszkusek.maven.cobertura.files.CopyMode;
+import com.github.lukaszkusek.maven.cobertura.files.Fingerprint;
+import com.github.lukaszkusek.maven.cobertura.files.OutputDirectoryScanner;
+import com.github.lukaszkusek.maven.cobertura.instrumentation.AgentJar;
+import com.github.lukaszkusek.maven.cobertura.instrumentation.ClassDataCollector;
+import com.github.lukaszkusek.maven.cobertura.instrumentation.InstrumentationChanges;
+import com.github.lukaszkusek.maven.cobertura.instrumentation.InstrumentationEngine;
+import com.github.lukaszkusek.maven.cobertura.instrumentation.InstrumentationManifest;
+import com.github.lukaszkusek.maven.cobertura.instrumentation.InstrumentationService;
+import com.github.lukaszkusek.maven.cobertura.instrumentation.InstrumentedJars;
+import com.github.lukaszkusek.maven.cobertura.instrumentation.JarInstrumenter;
+import com.github.lukaszkusek.maven.cobertura.metrics.ExecutionMetrics;
+import com.github.lukaszkusek.maven.cobertura.properties.LoadedPropertiesFile;
+import com.github.lukaszkusek.maven.cobertura.properties.NewPropertiesFileBuilder;
 import com.github.lukaszkusek.maven.cobertura.properties.PropertiesFile;
+import com.github.lukaszkusek.maven.cobertura.runtime.ProbeRewriter;
+import com.github.lukaszkusek.maven.cobertura.runtime.TestCoverageListener;
+import com.google.common.base.Joiner;
+import com.google.common.hash.Hashing;
+import net.sourceforge.cobertura.coveragedata.ClassData;
+import net.sourceforge.cobertura.coveragedata.CoverageDataFileHandler;
+import net.sourceforge.cobertura.coveragedata.ProjectData;
 import net.sourceforge.cobertura.dsl.Arguments;
 import net.sourceforge.cobertura.dsl.ArgumentsBuilder;
-import net.sourceforge.cobertura.dsl.Cobertura;
+import net.sourceforge.cobertura.instrument.CoberturaInstrumenter;
+import org.apache.maven.artifact.Artifact;
 import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugins.annotations.Component;
 import org.apache.maven.plugins.annotations.LifecyclePhase;
 import org.apache.maven.plugins.annotations.Mojo;
 import org.apache.maven.plugins.annotations.Parameter;
-import org.codehaus.plexus.util.DirectoryScanner;
+import org.apache.maven.project.ProjectDependenciesResolver;
 import org.codehaus.plexus.util.FileUtils;
 
+import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
 
-@Mojo(name = "instrument", defaultPhase = LifecyclePhase.PROCESS_CLASSES)
+@Mojo(
+        name = "instrument",
+        defaultPhase = LifecyclePhase.PROCESS_CLASSES,
+        threadSafe = true)
 public class InstrumentCoberturaMojo extends AbstractCoberturaMojo {
 
+    private static final String OFFLINE_MODE = "offline";
+    private static final String AGENT_MODE = "agent";
+    private static final String RUNTIME_CLASSES_PATH =
+            TestCoverageListener.class.getPackage().getName().replace('.', '/') + '/';
+
+    @Component
+    private InstrumentationService instrumentationService;
+
+    @Component
+    private ProjectDependenciesResolver dependenciesResolver;
+
     @Parameter
     private String ignoreRegex;
 
@@ -60,6 +113,76 @@ public class InstrumentCoberturaMojo extends AbstractCoberturaMojo {
     @Parameter(defaultValue = "false")
     private boolean threadsafeRigorous;
 
+    /**
+     * {@code count} keeps the counters of Cobertura, {@code striped} makes every thread count hits in its own array,
+     * summed when hits are saved, so hits are neither lost nor counted with atomic updates. {@code hit} only records
+     * whether a line or branch was hit, reported as 0 or 1 hits, with a single store per probe. {@code mapped} counts
+     * hits in files mapped into memory of the test JVMs, so hits are kept without saving them when the JVMs exit, even
+     * when they are killed, and are merged into the data file by the {@code report} goal. Other modes than
+     * {@code count} replace {@code threadsafeRigorous}.
+     */
+    @Parameter(defaultValue = ProbeRewriter.COUNT_MODE)
+    private String probeMode;
+
+    /**
+     * Threads of a pool used only by this module, 0 to instrument on the pool shared by all modules of the reactor.
+     */
+    @Parameter(defaultValue = "0")
+    private int instrumentThreads;
+
+    @Parameter(defaultValue = "copy")
+    private String copyMode;
+
+    /**
+     * Makes every forked test JVM write its own data file, merged by the {@code report} goal, instead of all forks
+     * locking and rewriting the single data file on exit. Works through the {@code argLine} property.
+     */
+    @Parameter(defaultValue = "false")
+    private boolean perForkDataFiles;
+
+    /**
+     * Records lines hit by every test class, indexed by the {@code report} goal for the {@code impacted-tests} goal.
+     * Needs {@link TestCoverageListener} registered as a JUnit listener of surefire or failsafe. Files of the previous
+     * test run are removed, so deleted or renamed tests do not stay in the index. Not supported with
+     * {@code dumpInterval} or {@code dumpOnDemand}, as dumps take hits away from the running test class.
+     */
+    @Parameter(defaultValue = "false")
+    private boolean perTestCoverage;
+
+    /**
+     * Dependencies, given as {@code groupId:artifactId} with {@code *} wildcards, whose JARs are instrumented and
+     * replace the original JARs on the test classpath, e.g. JARs of other modules of a reactor. Dependencies are then
+     * resolved by the goal itself, and the JARs are replaced through the {@code maven.test.additionalClasspath} and
+     * {@code maven.test.dependency.excludes} properties, so they are ignored by surefire and failsafe configured with
+     * {@code additionalClasspathElements} or {@code classpathDependencyExcludes}.
+     */
+    @Parameter
+    private List<String> instrumentDependencies;
+
+    /**
+     * {@code offline} instruments copies of all classes before tests run, {@code agent} makes test JVMs instrument
+     * classes of the output directory when they are loaded, through a {@code -javaagent} added to {@code argLine}.
+     */
+    @Parameter(defaultValue = OFFLINE_MODE)
+    private String instrumentMode;
+
+    /**
+     * Seconds between saves of hits by a background thread of every test JVM, 0 to save them only when the JVM exits.
+     * Keeps hits of long-running test JVMs which are killed instead of exiting. Adds a {@code -javaagent} to
+     * {@code argLine}, with offline instrumentation too.
+     */
+    @Parameter(defaultValue = "0")
+    private int dumpInterval;
+
+    /**
+     * Registers a {@code dump} operation saving hits of the test JVM when invoked through its local JMX connector, e.g.
+     * with jconsole. Adds a {@code -javaagent} to {@code argLine}, with offline instrumentation too.
+     */
+    @Parameter(defaultValue = "false")
+    private boolean dumpOnDemand;
+
+    private List<Artifact> dependenciesToInstrument;
+
     @Override
     protected boolean canRun() {
         return workingDirectory.getOutputDirectory().exists();
@@ -67,31 +190,422 @@ public class InstrumentCoberturaMojo extends AbstractCoberturaMojo {
 
     @Override
     protected void doExecute() throws Throwable {
-        copyAllClassesFromOutputDirectoryToInstrumentedClassesDirectory();
-        instrumentCode();
-        addCoberturaArtifactToTestClasspath();
-        createCoberturaPropertiesFile();
-        replaceOutputDirectoryWithInstrumentedDirectory();
+        validateInstrumentMode();
+        validateProbeMode();
+        validateDumpInterval();
+
+        InstrumentationManifest manifest = loadInstrumentationManifest();
+        InstrumentationChanges changes = manifest.compareWith(
+                getConfiguration(), isAgentMode() ? null : workingDirectory.getInstrumentedClassesDirectory());
+        Set<String> outdatedClassNames = new HashSet<>();
+
+        try (InstrumentationEngine engine = createInstrumentationEngine()) {
+            ClassDataCollector classDataCollector = new ClassDataCollector(
+                    engine, workingDirectory.getOutputDirectory(), this::createInstrumenter);
+
+            try (ExecutionMetrics.Phase phase = metrics.start("scan")) {
+                scanOutputDirectory(
+                        isAgentMode()
+                                ? new ChangedClassesTracker(changes, classDataCollector, phase)
+                                : new InstrumentedClassesDirectoryUpdater(changes, engine, phase));
+                removeDeletedClassesFromInstrumentedClassesDirectory(changes.finish());
+                outdatedClassNames.addAll(changes.getOutdatedClassNames());
+                phase.count("deletedClasses", changes.getDeletedClasses().size());
+            }
+
+            DependencyJars dependencyJars = new DependencyJars(engine);
+            try (ExecutionMetrics.Phase phase = metrics.start("dependencies")) {
+                dependencyJars.submit(phase);
+            }
+
+            ProjectData instrumentedClasses;
+            try (ExecutionMetrics.Phase phase = metrics.start("instrument")) {
+                instrumentedClasses = engine.finish();
+                phase.count("classes", changes.getChangedClasses().size())
+                        .count("shards", engine.getSubmittedShards());
+
+                // classes never loaded by tests are in the data file with no hits, the same as in offline mode
+                instrumentedClasses.merge(classDataCollector.finish());
+
+                instrumentedClasses.merge(dependencyJars.finish(outdatedClassNames));
+            }
+
+            try (ExecutionMetrics.Phase phase = metrics.start("data-file")) {
+                updateDataFile(outdatedClassNames, instrumentedClasses);
+                phase.count("classes", instrumentedClasses.getNumberOfClasses())
+                        .count("lines", instrumentedClasses.getNumberOfValidLines())
+                        .count("branches", instrumentedClasses.getNumberOfValidBranches());
+            }
+        }
+
+        if (!isAgentMode()) {
+            try (ExecutionMetrics.Phase phase = metrics.start("copy")) {
+                copyChangedClassesNotWrittenByCobertura(changes, phase);
+            }
+        }
+
+        try (ExecutionMetrics.Phase ignored = metrics.start("manifest")) {
+            manifest.update(changes.getClassHashes(), getConfiguration()).saveToDisk();
+        }
+
+        getLog().info(String.format(
+                isAgentMode()
+                        ? "Found %d changed classes to instrument when loaded by tests, %d classes were up to date."
+                        : "Instrumented %d changed classes, %d classes were up to date.",
+                changes.getChangedClasses().size(), changes.getUnchangedClasses().size()));
+
+        prepareTestRun();
+    }
+
+    @Override
+    protected void doExecuteWhenUpToDate() throws MojoExecutionException {
+        validateInstrumentMode();
+        validateProbeMode();
+        validateDumpInterval();
+        prepareTestRun();
+    }
+
+    /**
+     * Directories are fingerprinted by sizes and modification times, as the fingerprint is computed both before and
+     * after the execution. Changed classes are still detected by content by the instrumentation manifest.
+     */
+    @Override
+    protected void addFingerprintInputs(Fingerprint fingerprint) throws IOException {
+        fingerprint
+                .with("configuration", getConfiguration())
+                .with("copyMode", copyMode)
+                .with("agentJar", usesAgentJar() && getAgentJar().getFile().isFile())
+                .with("dataFile", workingDirectory.getDataFile().isFile())
+                .withDirectoryTimestamps(workingDirectory.getOutputDirectory())
+                .withDirectoryTimestamps(
+                        workingDirectory.getInstrumentedClassesDirectory(),
+                        InstrumentCoberturaMojo::isWrittenForEveryTestRun);
+
+        if (instrumentsDependencies()) {
+            fingerprint
+                    .with("instrumentDependencies", instrumentDependencies)
+                    .with("instrumentedJars", getInstrumentedJars().getIndexFile().isFile());
+
+            try {
+                for (Artifact artifact : getDependenciesToInstrument()) {
+                    File jar = artifact.getFile();
+                    fingerprint.with(artifact.getId(), jar.length() + "@" + jar.lastModified());
+                }
+            } catch (MojoExecutionException e) {
+                throw new IOException(e.getMessage(), e);
+            }
+        }
+    }
+
+    private void prepareTestRun() throws MojoExecutionException {
+        try (ExecutionMetrics.Phase ignored = metrics.start("classpath")) {
+            addCoberturaArtifactToTestClasspath();
+
+            if (!isAgentMode()) {
+                replaceOutputDirectoryWithInstrumentedDirectory();
+            }
+
+            if (instrumentsDependencies()) {
+                replaceDependenciesWithInstrumentedJars();
+            }
+
+            if (perForkDataFiles) {
+                useForkDataFiles();
+            }
+
+            if (perTestCoverage) {
+                clearTestCoverageDirectory();
+            }
+
+            if (perTestCoverage && !isAgentMode()) {
+                copyRuntimeClassToInstrumentedClassesDirectory(TestCoverageListener.class);
+            }
+
+            if (!isAgentMode()) {
+                for (Class<?> runtimeClass : getProbeRewriter().getRuntimeClasses()) {
+                    copyRuntimeClassToInstrumentedClassesDirectory(runtimeClass);
+                }
+            }
+        }
+
+        LoadedPropertiesFile propertiesFile;
+        try (ExecutionMetrics.Phase ignored = metrics.start("properties")) {
+            propertiesFile = createCoberturaPropertiesFile();
+        }
+
+        if (usesAgentJar()) {
+            try (ExecutionMetrics.Phase ignored = metrics.start("agent")) {
+                useAgent(propertiesFile);
+            }
+        }
+    }
+
+    /**
+     * Files written to the instrumented classes directory by {@link #prepareTestRun()}, also when classes are up to
+     * date.
+     */
+    private static boolean isWrittenForEveryTestRun(String file) {
+        return file.equals(PropertiesFile.NAME) || file.startsWith(RUNTIME_CLASSES_PATH);
+    }
+
+    private void validateInstrumentMode() throws MojoExecutionException {
+        if (!OFFLINE_MODE.equals(instrumentMode) && !AGENT_MODE.equals(instrumentMode)) {
+            throw new MojoExecutionException("Unknown instrumentMode: " + instrumentMode);
+        }
     }
 
-    private void copyAllClassesFromOutputDirectoryToInstrumentedClassesDirectory() throws MojoExecutionException {
+    void validateProbeMode() throws MojoExecutionException {
+        if (!ProbeRewriter.isValid(probeMode)) {
+            throw new MojoExecutionException("Unknown probeMode: " + probeMode);
+        }
+
+        if (threadsafeRigorous && getProbeRewriter().rewritesProbes()) {
+            getLog().warn("Ignoring threadsafeRigorous, as it is replaced by probeMode " + probeMode + ".");
+        }
+
+        if (getProbeRewriter().usesMappedCounters()) {
+            // per test coverage collects hits from the Cobertura runtime, which mapped counters bypass
+            if (perTestCoverage) {
+                throw new MojoExecutionException("perTestCoverage is not supported with probeMode " + probeMode + ".");
+            }
+
+            if (dumpInterval > 0 || dumpOnDemand) {
+                getLog().warn("Ignoring dumpInterval and dumpOnDemand, as probeMode " + probeMode
+                        + " keeps hits in files mapped into memory.");
+            }
+        }
+
+        // a dump collects hits of the test class running at the time, which its test coverage file would then miss
+        if (perTestCoverage && (dumpInterval > 0 || dumpOnDemand)) {
+            throw new MojoExecutionException("perTestCoverage is not supported with dumpInterval or dumpOnDemand.");
+        }
+    }
+
+    private void validateDumpInterval() throws MojoExecutionException {
+        if (dumpInterval < 0) {
+            throw new MojoExecutionException("Invalid dumpInterval: " + dumpInterval);
+        }
+    }
+
+    private ProbeRewriter getProbeRewriter() {
+        return new ProbeRewriter(probeMode);
+    }
+
+    /**
+     * Rewritten probes replace the plain counters of Cobertura, so Cobertura never uses atomic counters then.
+     */
+    private boolean usesThreadsafeRigorousCounters() {
+        return threadsafeRigorous && !getProbeRewriter().rewritesProbes();
+    }
+
+    private boolean isAgentMode() {
+        return AGENT_MODE.equals(instrumentMode);
+    }
+
+    private boolean dumpsCoverage() {
+        return (dumpInterval > 0 || dumpOnDemand) && !getProbeRewriter().usesMappedCounters();
+    }
+
+    /**
+     * The agent JAR starts the coverage dumper, so it is used by offline instrumentation dumping coverage too.
+     */
+    private boolean usesAgentJar() {
+        return isAgentMode() || dumpsCoverage();
+    }
+
+    private AgentJar getAgentJar() {
+        return AgentJar.locatedIn(workingDirectory.getCoberturaDirectory());
+    }
+
+    private void clearTestCoverageDirectory() throws MojoExecutionException {
         try {
-            FileUtils.copyDirectoryStructure(
-                    workingDirectory.getOutputDirectory(), workingDirectory.getInstrumentedClassesDirectory());
+            FileUtils.deleteDirectory(workingDirectory.getTestCoverageDirectory());
+        } catch (IOException e) {
+            throw new MojoExecutionException("Unable to clear test coverage directory.", e);
+        }
+    }
+
+    /**
+     * Cached classes are kept in a directory of the current configuration, directories of other configurations are
+     * removed.
+     */
+    private File prepareAgentCacheDirectory() throws MojoExecutionException {
+        File agentCacheDirectory = workingDirectory.getAgentCacheDirectory();
+        String configurationHash = Hashing.sha1().hashString(getConfiguration(), StandardCharsets.UTF_8).toString();
+        File configurationCacheDirectory = new File(agentCacheDirectory, configurationHash.substring(0, 16));
+
+        try {
+            File[] cacheDirectories = agentCacheDirectory.listFiles();
+            for (File cacheDirectory : cacheDirectories != null ? cacheDirectories : new File[0]) {
+                if (!cacheDirectory.equals(configurationCacheDirectory)) {
+                    FileUtils.forceDelete(cacheDirectory);
+                }
+            }
+            FileUtils.forceMkdir(configurationCacheDirectory);
+        } catch (IOException e) {
+            throw new MojoExecutionException("Unable to prepare agent cache directory.", e);
+        }
+
+        return configurationCacheDirectory;
+    }
+
+    private void useAgent(LoadedPropertiesFile propertiesFile) throws MojoExecutionException {
+        AgentJar agentJar = getAgentJar();
+
+        // offline instrumentation copies the listener next to the instrumented classes
+        if (perTestCoverage && isAgentMode()) {
+            agentJar.write(propertiesFile.getFile(), projectHandler.getCoberturaJars(), TestCoverageListener.class);
+        } else {
+            agentJar.write(propertiesFile.getFile(), projectHandler.getCoberturaJars());
+        }
+
+        String agentArgument = "-javaagent:" + agentJar.getFile().getAbsolutePath();
+        projectHandler.addToArgLine(agentArgument.contains(" ") ? '"' + agentArgument + '"' : agentArgument);
+    }
+
+    private InstrumentationManifest loadInstrumentationManifest() throws MojoExecutionException {
+        InstrumentationManifest manifest = InstrumentationManifest.locatedIn(workingDirectory.getCoberturaDirectory());
+
+        if (getCoverageDataFile().exists()) {
+            manifest.load();
+        }
+
+        return manifest;
+    }
+
+    private String getConfiguration() {
+        return Joiner.on('|').useForNull("").join(
+                ignoreRegex, ignoreMethodAnnotation, ignoreTrivial,
+                includeClassesRegex, excludeClassesRegex, failOnError, threadsafeRigorous, instrumentMode, probeMode);
+    }
+
+    private InstrumentationEngine createInstrumentationEngine() throws IOException {
+        InstrumentationEngine engine = instrumentationService.createEngine(
+                instrumentThreads, workingDirectory.getCoberturaDirectory(), this::createArgumentsFromParameters);
+
+        return engine.rewritingProbes(getProbeRewriter(), workingDirectory.getInstrumentedClassesDirectory());
+    }
+
+    private void scanOutputDirectory(OutputDirectoryScanner.Listener listener) throws MojoExecutionException {
+
+        ClassFilter classFilter = instrumentationService.getClassFilter(includeClassesRegex, excludeClassesRegex);
+        for (String invalidRegex : classFilter.getInvalidRegexes()) {
+            getLog().debug("Ignoring invalid class regex: " + invalidRegex);
+        }
+
+        try {
+            new OutputDirectoryScanner(workingDirectory.getOutputDirectory(), classFilter)
+                    .scan(listener);
         } catch (IOException e) {
             throw new MojoExecutionException("Unable to prepare instrumentation directory.", e);
         }
     }
 
-    private void instrumentCode() throws Throwable {
-        new Cobertura(createArgumentsFromParameters()).instrumentCode();
+    private void copyChangedClassesNotWrittenByCobertura(InstrumentationChanges changes, ExecutionMetrics.Phase phase)
+            throws MojoExecutionException {
+
+        CopyMode copyMode = getCopyMode();
+
+        try {
+            for (String file : changes.getChangedClasses()) {
+                Path destination = getInstrumentedClassesDirectoryFile(file);
+
+                if (!Files.exists(destination)) {
+                    copy(copyMode, getOutputDirectoryFile(file), destination, phase);
+                }
+            }
+        } catch (IOException e) {
+            throw new MojoExecutionException("Unable to copy classes which were not instrumented.", e);
+        }
+    }
+
+    private void copy(CopyMode copyMode, Path source, Path destination, ExecutionMetrics.Phase phase)
+            throws IOException {
+
+        copyMode.copy(source, destination);
+        phase.count("copiedFiles", 1).count("copiedBytes", Files.size(source));
+    }
+
+    private Path getOutputDirectoryFile(String file) {
+        return workingDirectory.getOutputDirectory().toPath().resolve(file);
+    }
+
+    private Path getInstrumentedClassesDirectoryFile(String file) {
+        return workingDirectory.getInstrumentedClassesDirectory().toPath().resolve(file);
+    }
+
+    private void removeDeletedClassesFromInstrumentedClassesDirectory(InstrumentationChanges changes) {
+        for (String file : changes.getDeletedClasses()) {
+            FileUtils.fileDelete(new File(workingDirectory.getInstrumentedClassesDirectory(), file).getAbsolutePath());
+        }
+    }
+
+    private void updateDataFile(Collection<String> outdatedClassNames, ProjectData instrumentedClasses) {
+        getCoverageDataFile().replaceClasses(outdatedClassNames, instrumentedClasses);
+    }
+
+    private boolean instrumentsDependencies() {
+        return instrumentDependencies != null && !instrumentDependencies.isEmpty();
+    }
+
+    private InstrumentedJars getInstrumentedJars() {
+        return InstrumentedJars.locatedIn(workingDirectory.getCoberturaDirectory());
+    }
+
+    /**
+     * Resolved on first use, as the goal does not require dependency resolution, which most builds would not need.
+     * Dependencies resolved to classes directories, e.g. of modules not packaged by the current build, are skipped.
+     */
+    private List<Artifact> getDependenciesToInstrument() throws MojoExecutionException {
+        if (dependenciesToInstrument == null) {
+            List<Artifact> artifacts = projectHandler.findArtifacts(
+                    projectHandler.resolveDependencies(dependenciesResolver, getSession().getRepositorySession()),
+                    instrumentDependencies);
+            artifacts.removeIf(artifact -> artifact.getFile() == null || !artifact.getFile().isFile());
+
+            dependenciesToInstrument = artifacts;
+        }
+
+        return dependenciesToInstrument;
     }
 
-    private Arguments createArgumentsFromParameters() {
+    private void replaceDependenciesWithInstrumentedJars() throws MojoExecutionException {
+        InstrumentedJars instrumentedJars = getInstrumentedJars().load();
+
+        for (Artifact artifact : getDependenciesToInstrument()) {
+            File instrumentedJar = instrumentedJars.findInstrumentedJar(artifact.getFile());
+
+            if (instrumentedJar != null && instrumentedJar.isFile()) {
+                projectHandler.replaceOnTestClasspath(artifact, instrumentedJar);
+            }
+        }
+    }
+
+    private CoberturaInstrumenter createInstrumenter() {
+        CoberturaInstrumenter instrumenter = new CoberturaInstrumenter();
+
+        if (ignoreRegex != null) {
+            instrumenter.setIgnoreRegexes(Collections.singletonList(Pattern.compile(ignoreRegex)));
+        }
+        if (ignoreMethodAnnotation != null) {
+            instrumenter.setIgnoreMethodAnnotations(Collections.singleton(ignoreMethodAnnotation));
+        }
+        instrumenter.setIgnoreTrivial(ignoreTrivial);
+        instrumenter.setFailOnError(failOnError);
+        instrumenter.setThreadsafeRigorous(usesThreadsafeRigorousCounters());
+
+        return instrumenter;
+    }
+
+    private CopyMode getCopyMode() {
+        return CopyMode.getFromString(copyMode);
+    }
+
+    private Arguments createArgumentsFromParameters(List<String> classesToInstrument, File dataFile) {
         ArgumentsBuilder builder = new ArgumentsBuilder();
 
         builder.setBaseDirectory(workingDirectory.getOutputDirectoryPath());
-        builder.setDataFile(workingDirectory.getDataFilePath());
+        builder.setDataFile(dataFile.getAbsolutePath());
         builder.setDestinationDirectory(workingDirectory.getInstrumentedClassesDirectoryPath());
 
         if (ignoreRegex != null) {
@@ -108,37 +622,278 @@ public class InstrumentCoberturaMojo extends AbstractCoberturaMojo {
             builder.addExcludeClassesRegex(excludeClassesRegex);
         }
         builder.failOnError(failOnError);
-        builder.threadsafeRigorous(threadsafeRigorous);
+        builder.threadsafeRigorous(usesThreadsafeRigorousCounters());
 
-        for (String file : getFilesToInstrument()) {
+        for (String file : classesToInstrument) {
             builder.addFileToInstrument(file);
         }
 
         return builder.build();
     }
 
-    private String[] getFilesToInstrument() {
-        DirectoryScanner scanner = new DirectoryScanner();
-
-        scanner.setBasedir(workingDirectory.getOutputDirectory());
-        scanner.scan();
-
-        return scanner.getIncludedFiles();
-    }
-
     private void addCoberturaArtifactToTestClasspath() throws MojoExecutionException {
         projectHandler.addCoberturaArtifactToTestClasspath();
     }
 
-    private void createCoberturaPropertiesFile() throws MojoExecutionException {
-        PropertiesFile.locatedIn(workingDirectory.getInstrumentedClassesDirectory())
+    private LoadedPropertiesFile createCoberturaPropertiesFile() throws MojoExecutionException {
+        NewPropertiesFileBuilder propertiesFile = PropertiesFile
+                .locatedIn(workingDirectory.getInstrumentedClassesDirectory())
                 .create()
                 .withDataFilePath(workingDirectory.getDataFilePath())
                 .withOriginalOutputDirectoryPath(workingDirectory.getOutputDirectoryPath())
-                .saveToDisk();
+                .withProbeMode(probeMode);
+
+        if (getProbeRewriter().usesMappedCounters()) {
+            propertiesFile.withMappedCountersDirectoryPath(
+                    workingDirectory.getMappedCountersDirectory().getAbsolutePath());
+        }
+
+        if (perTestCoverage) {
+            propertiesFile.withTestCoverageDirectoryPath(workingDirectory.getTestCoverageDirectory().getAbsolutePath());
+        }
+
+        if (isAgentMode()) {
+            propertiesFile
+                    .withAgentClassesDirectoryPath(workingDirectory.getOutputDirectoryPath())
+                    .withAgentCacheDirectoryPath(prepareAgentCacheDirectory().getAbsolutePath())
+                    .withAgentInstrumentationOptions(
+                            includeClassesRegex, excludeClassesRegex, ignoreRegex, ignoreMethodAnnotation,
+                            ignoreTrivial, usesThreadsafeRigorousCounters());
+        }
+
+        if (dumpsCoverage()) {
+            propertiesFile.withCoverageDump(dumpInterval, dumpOnDemand);
+        }
+
+        return propertiesFile.saveToDisk();
+    }
+
+    /**
+     * Classes such as the test coverage listener run in the test JVM, where the plugin is not on the classpath, so they
+     * are shipped as class files next to the instrumented classes.
+     */
+    private void copyRuntimeClassToInstrumentedClassesDirectory(Class<?> runtimeClass) throws MojoExecutionException {
+        String classFile = runtimeClass.getName().replace('.', '/') + ".class";
+
+        try (InputStream classContent = runtimeClass.getClassLoader().getResourceAsStream(classFile)) {
+            Path destination = getInstrumentedClassesDirectoryFile(classFile);
+            Files.createDirectories(destination.getParent());
+            Files.copy(classContent, destination, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            throw new MojoExecutionException("Unable to copy " + runtimeClass.getSimpleName() + " class.", e);
+        }
     }
 
     public void replaceOutputDirectoryWithInstrumentedDirectory() {
         projectHandler.setOutputDirectory(workingDirectory.getInstrumentedClassesDirectoryPath());
     }
+
+    private void useForkDataFiles() throws MojoExecutionException {
+        File forkDataFilesDirectory = workingDirectory.getForkDataFilesDirectory();
+
+        if (!forkDataFilesDirectory.isDirectory() && !forkDataFilesDirectory.mkdirs()) {
+            throw new MojoExecutionException(
+                    "Unable to create directory: " + forkDataFilesDirectory.getAbsolutePath());
+        }
+
+        // system property takes precedence over the data file path from cobertura.properties
+        String dataFileArgument = "-D" + PropertiesFile.COBERTURA_DATA_FILE_KEY + "="
+                + ForkDataFiles.locatedIn(forkDataFilesDirectory).getDataFilePathPattern();
+
+        projectHandler.addToArgLine(dataFileArgument.contains(" ") ? '"' + dataFileArgument + '"' : dataFileArgument);
+    }
+
+    /**
+     * Instruments JARs of selected dependencies on the workers instrumenting classes of the module, reusing JARs
+     * instrumented by earlier builds while neither the JAR nor the configuration changed.
+     */
+    private class DependencyJars {
+
+        private final InstrumentationEngine engine;
+        private final InstrumentedJars previousJars;
+        private final InstrumentedJars currentJars;
+        private final Map<File, JarInstrumenter.PendingJar> pendingJars = new LinkedHashMap<>();
+        private final Map<File, File> originalJars = new LinkedHashMap<>();
+
+        DependencyJars(InstrumentationEngine engine) throws MojoExecutionException {
+            this.engine = engine;
+            this.previousJars = getInstrumentedJars().load();
+            this.currentJars = getInstrumentedJars();
+        }
+
+        void submit(ExecutionMetrics.Phase phase) throws IOException, MojoExecutionException {
+            if (!instrumentsDependencies()) {
+                return;
+            }
+            currentJars.prepareDirectory();
+
+            JarInstrumenter jarInstrumenter = new JarInstrumenter(
+                    engine,
+                    instrumentationService.getClassFilter(includeClassesRegex, excludeClassesRegex),
+                    InstrumentCoberturaMojo.this::createInstrumenter)
+                    .rewritingProbes(getProbeRewriter());
+
+            for (Artifact artifact : getDependenciesToInstrument()) {
+                File jar = artifact.getFile();
+                File instrumentedJar = currentJars.getInstrumentedJar(jar, getConfiguration());
+                currentJars.put(jar, instrumentedJar);
+                originalJars.put(instrumentedJar, jar);
+                phase.count("jars", 1);
+
+                if (!currentJars.isInstrumented(instrumentedJar)) {
+                    JarInstrumenter.PendingJar pendingJar = jarInstrumenter.submit(jar);
+                    pendingJars.put(instrumentedJar, pendingJar);
+                    phase.count("instrumentedJars", 1).count("jarClasses", pendingJar.getClasses());
+                }
+            }
+        }
+
+        /**
+         * @param outdatedClassNames receives classes of JARs instrumented again, to be replaced in the data file
+         * @return project data of classes of JARs which have to be added to the data file
+         */
+        ProjectData finish(Set<String> outdatedClassNames) throws Throwable {
+            ProjectData projectData = new ProjectData();
+
+            if (!instrumentsDependencies()) {
+                return projectData;
+            }
+
+            for (Map.Entry<File, File> jars : originalJars.entrySet()) {
+                File instrumentedJar = jars.getKey();
+                JarInstrumenter.PendingJar pendingJar = pendingJars.get(instrumentedJar);
+
+                if (pendingJar != null) {
+                    ProjectData jarClasses = pendingJar.writeTo(instrumentedJar);
+                    CoverageDataFileHandler.saveCoverageData(jarClasses, currentJars.getDataFile(instrumentedJar));
+
+                    // classes of the previous version of the JAR, some may be gone from the new one
+                    File previousJar = previousJars.findInstrumentedJar(jars.getValue());
+                    if (previousJar != null && previousJars.isInstrumented(previousJar)) {
+                        addClassNames(loadJarClasses(previousJar), outdatedClassNames);
+                    }
+                    addClassNames(jarClasses, outdatedClassNames);
+                    projectData.merge(jarClasses);
+                } else if (!getCoverageDataFile().exists()) {
+                    // the same as classes of the module, all of them are added to a new data file
+                    projectData.merge(loadJarClasses(instrumentedJar));
+                }
+            }
+            currentJars.saveToDisk();
+
+            return projectData;
+        }
+
+        private void addClassNames(ProjectData jarClasses, Set<String> classNames) {
+            for (ClassData classData : jarClasses.getClasses()) {
+                classNames.add(classData.getName());
+            }
+        }
+
+        private ProjectData loadJarClasses(File instrumentedJar) {
+            ProjectData jarClasses =
+                    CoverageDataFileHandler.loadCoverageData(currentJars.getDataFile(instrumentedJar));
+
+            return jarClasses != null ? jarClasses : new ProjectData();
+        }
+    }
+
+    /**
+     * Only records hashes of classes in agent mode, so hits of changed classes are still removed from the data file.
+     */
+    private class ChangedClassesTracker implements OutputDirectoryScanner.Listener {
+
+        private final InstrumentationChanges changes;
+        private final ClassDataCollector classDataCollector;
+        private final ExecutionMetrics.Phase phase;
+
+        ChangedClassesTracker(
+                InstrumentationChanges changes, ClassDataCollector classDataCollector, ExecutionMetrics.Phase phase) {
+            this.changes = changes;
+            this.classDataCollector = classDataCollector;
+            this.phase = phase;
+        }
+
+        @Override
+        public void classToInstrument(String classFile) throws IOException {
+            phase.count("classes", 1);
+
+            if (track(classFile)) {
+                classDataCollector.submit(classFile);
+            }
+        }
+
+        @Override
+        public void excludedClass(String classFile) throws IOException {
+            phase.count("excludedClasses", 1);
+            track(classFile);
+        }
+
+        @Override
+        public void resource(String file) {
+            phase.count("resources", 1);
+        }
+
+        private boolean track(String classFile) throws IOException {
+            return changes.track(classFile, InstrumentationManifest.hash(getOutputDirectoryFile(classFile).toFile()));
+        }
+    }
+
+    private class InstrumentedClassesDirectoryUpdater implements OutputDirectoryScanner.Listener {
+
+        private final InstrumentationChanges changes;
+        private final InstrumentationEngine engine;
+        private final ExecutionMetrics.Phase phase;
+        private final CopyMode copyMode;
+
+        InstrumentedClassesDirectoryUpdater(
+                InstrumentationChanges changes, InstrumentationEngine engine, ExecutionMetrics.Phase phase) {
+
+            this.changes = changes;
+            this.engine = engine;
+            this.phase = phase;
+            this.copyMode = getCopyMode();
+        }
+
+        @Override
+        public void classToInstrument(String classFile) throws IOException {
+            phase.count("classes", 1);
+
+            if (track(classFile)) {
+                if (copyMode.copiesClassesToInstrument()) {
+                    copyToInstrumentedClassesDirectory(classFile);
+                } else {
+                    Files.deleteIfExists(getInstrumentedClassesDirectoryFile(classFile));
+                }
+
+                engine.submit(classFile);
+            }
+        }
+
+        @Override
+        public void excludedClass(String classFile) throws IOException {
+            phase.count("excludedClasses", 1);
+
+            if (track(classFile)) {
+                copyToInstrumentedClassesDirectory(classFile);
+            }
+        }
+
+        @Override
+        public void resource(String file) throws IOException {
+            phase.count("resources", 1);
+
+            if (copyMode.copyIfModified(getOutputDirectoryFile(file), getInstrumentedClassesDirectoryFile(file))) {
+                phase.count("copiedFiles", 1).count("copiedBytes", Files.size(getOutputDirectoryFile(file)));
+            }
+        }
+
+        private void copyToInstrumentedClassesDirectory(String file) throws IOException {
+            copy(copyMode, getOutputDirectoryFile(file), getInstrumentedClassesDirectoryFile(file), phase);
+        }
+
+        private boolean track(String classFile) throws IOException {
+            return changes.track(classFile, InstrumentationManifest.hash(getOutputDirectoryFile(classFile).toFile()));
+        }
+    }
 }
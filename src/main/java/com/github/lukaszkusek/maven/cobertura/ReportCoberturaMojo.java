@@ -23,24 +23,27 @@
 
 package com.github.lukaszkusek.maven.cobertura;
 
+import com.github.lukaszkusek.maven.cobertura.coverage.CoverageDataFile;
+import com.github.lukaszkusek.maven.cobertura.coverage.ForkDataFiles;
+import com.github.lukaszkusek.maven.cobertura.coverage.HitCoverage;
+import com.github.lukaszkusek.maven.cobertura.coverage.MappedCounterFiles;
+import com.github.lukaszkusek.maven.cobertura.coverage.TestImpactIndex;
+import com.github.lukaszkusek.maven.cobertura.files.Fingerprint;
+import com.github.lukaszkusek.maven.cobertura.metrics.ExecutionMetrics;
 import com.github.lukaszkusek.maven.cobertura.properties.PropertiesFile;
-import net.sourceforge.cobertura.dsl.Arguments;
-import net.sourceforge.cobertura.dsl.ArgumentsBuilder;
-import net.sourceforge.cobertura.dsl.Cobertura;
-import net.sourceforge.cobertura.dsl.ReportFormat;
+import com.github.lukaszkusek.maven.cobertura.runtime.ProbeRewriter;
+import net.sourceforge.cobertura.coveragedata.ProjectData;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugins.annotations.LifecyclePhase;
 import org.apache.maven.plugins.annotations.Mojo;
-import org.apache.maven.plugins.annotations.Parameter;
 
-@Mojo(name = "report", defaultPhase = LifecyclePhase.TEST)
-public class ReportCoberturaMojo extends AbstractCoberturaMojo {
+import java.io.File;
+import java.io.IOException;
 
-    @Parameter(defaultValue = "xml")
-    private String format;
+@Mojo(name = "report", defaultPhase = LifecyclePhase.TEST, threadSafe = true)
+public class ReportCoberturaMojo extends AbstractReportCoberturaMojo {
 
-    @Parameter(defaultValue = "UTF-8")
-    private String encoding;
+    private CoverageDataFile dataFile;
 
     @Override
     protected boolean canRun() {
@@ -48,34 +51,95 @@ public class ReportCoberturaMojo extends AbstractCoberturaMojo {
     }
 
     @Override
-    protected void doExecute() throws MojoExecutionException {
-        exportReport();
+    protected void doExecute() throws Throwable {
+        validateFormats();
+
+        ProjectData projectData;
+        try (ExecutionMetrics.Phase phase = metrics.start("data-load")) {
+            projectData = loadProjectData(phase);
+            countCoverage(phase, projectData);
+        }
+
+        if (workingDirectory.getTestCoverageDirectory().isDirectory()) {
+            try (ExecutionMetrics.Phase phase = metrics.start("test-impact")) {
+                TestImpactIndex index = TestImpactIndex.locatedIn(workingDirectory.getCoberturaDirectory())
+                        .update(workingDirectory.getTestCoverageDirectory(), projectData);
+                index.saveToDisk();
+                phase.count("tests", index.getTests()).count("classes", index.getClasses());
+            }
+        }
+
+        exportReport(
+                projectData,
+                workingDirectory.getInstrumentedClassesDirectoryPath(),
+                resolveSourceDirectories(projectData, projectHandler.getSourcesDirectories()));
         restoreOriginalOutputDirectory();
+        projectHandler.restoreTestClasspath();
     }
 
-    private void exportReport() {
-        new Cobertura(createArgumentsFromParameters())
-                .report()
-                .export(ReportFormat.getFromString(format));
+    @Override
+    protected void doExecuteWhenUpToDate() throws MojoExecutionException {
+        restoreOriginalOutputDirectory();
+        projectHandler.restoreTestClasspath();
     }
 
-    private Arguments createArgumentsFromParameters() {
-        ArgumentsBuilder builder = new ArgumentsBuilder();
+    @Override
+    protected void addFingerprintInputs(Fingerprint fingerprint) throws IOException {
+        addReportFingerprintInputs(fingerprint, projectHandler.getSourcesDirectories());
 
-        builder.setBaseDirectory(workingDirectory.getInstrumentedClassesDirectoryPath());
-        builder.setDataFile(workingDirectory.getDataFilePath());
-        builder.setDestinationDirectory(workingDirectory.getCoberturaDirectoryPath());
-        builder.setEncoding(encoding);
+        fingerprint
+                .with("dataFile", getDataFile().exists() ? getDataFile().getChecksum() : null)
+                .withDirectoryContents(workingDirectory.getForkDataFilesDirectory())
+                .withDirectoryContents(workingDirectory.getMappedCountersDirectory())
+                .withDirectoryContents(workingDirectory.getTestCoverageDirectory());
+    }
 
-        addAllCompileSourceRootsAsSources(builder);
+    private ProjectData loadProjectData(ExecutionMetrics.Phase phase) throws IOException, MojoExecutionException {
+        CoverageDataFile dataFile = getDataFile();
+        ForkDataFiles forkDataFiles = ForkDataFiles.locatedIn(workingDirectory.getForkDataFilesDirectory());
+        MappedCounterFiles mappedCounterFiles =
+                MappedCounterFiles.locatedIn(workingDirectory.getMappedCountersDirectory());
+        boolean hasForkDataFiles = !forkDataFiles.list().isEmpty();
+        boolean hasMappedCounterFiles = !mappedCounterFiles.list().isEmpty();
 
-        return builder.build();
+        phase.count("forkDataFiles", forkDataFiles.list().size());
+        phase.count("mappedCounterFiles", mappedCounterFiles.list().size());
+        ProjectData loadedData = hasForkDataFiles ? forkDataFiles.mergeInto(dataFile.load()) : dataFile.load();
+        if (hasMappedCounterFiles) {
+            mappedCounterFiles.mergeInto(loadedData);
+        }
+        ProjectData projectData = usesHitProbes() ? HitCoverage.of(loadedData) : loadedData;
+
+        if (hasForkDataFiles || hasMappedCounterFiles || projectData != loadedData) {
+            dataFile.save(projectData);
+        }
+        if (hasForkDataFiles) {
+            forkDataFiles.delete();
+        }
+        if (hasMappedCounterFiles) {
+            mappedCounterFiles.delete();
+        }
+
+        return projectData;
     }
 
-    private void addAllCompileSourceRootsAsSources(ArgumentsBuilder builder) {
-        for (String sourceDirectory : projectHandler.getSourcesDirectories()) {
-            builder.addSources(sourceDirectory, true);
+    /**
+     * The same for the fingerprint and the execution, so the data file is read for its checksum only once.
+     */
+    private CoverageDataFile getDataFile() {
+        if (dataFile == null) {
+            dataFile = getCoverageDataFile();
         }
+
+        return dataFile;
+    }
+
+    private boolean usesHitProbes() throws MojoExecutionException {
+        File instrumentedClassesDirectory = workingDirectory.getInstrumentedClassesDirectory();
+
+        return new File(instrumentedClassesDirectory, PropertiesFile.NAME).isFile()
+                && ProbeRewriter.HIT_MODE.equals(
+                        PropertiesFile.locatedIn(instrumentedClassesDirectory).load().getProbeMode());
     }
 
     private void restoreOriginalOutputDirectory() throws MojoExecutionException {
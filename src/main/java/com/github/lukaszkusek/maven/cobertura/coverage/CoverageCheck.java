@@ -0,0 +1,188 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2013 Lukasz Kusek
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.github.lukaszkusek.maven.cobertura.coverage;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+import net.sourceforge.cobertura.coveragedata.ClassData;
+import net.sourceforge.cobertura.coveragedata.ProjectData;
+
+/**
+ * Compares line and branch coverage rates of every class, every package and the whole project with thresholds given
+ * in percent. Counts of packages and the project are summed up while visiting classes, so the coverage data is walked
+ * only once.
+ */
+public class CoverageCheck {
+
+    private int classLineRate;
+    private int classBranchRate;
+    private int packageLineRate;
+    private int packageBranchRate;
+    private int totalLineRate;
+    private int totalBranchRate;
+
+    public CoverageCheck withClassRates(int lineRate, int branchRate) {
+        this.classLineRate = lineRate;
+        this.classBranchRate = branchRate;
+
+        return this;
+    }
+
+    public CoverageCheck withPackageRates(int lineRate, int branchRate) {
+        this.packageLineRate = lineRate;
+        this.packageBranchRate = branchRate;
+
+        return this;
+    }
+
+    public CoverageCheck withTotalRates(int lineRate, int branchRate) {
+        this.totalLineRate = lineRate;
+        this.totalBranchRate = branchRate;
+
+        return this;
+    }
+
+    public Result verify(ProjectData projectData) {
+        Result result = new Result();
+        Map<String, Counts> packages = new TreeMap<>();
+
+        for (ClassData classData : projectData.getClasses()) {
+            Counts counts = new Counts(classData);
+            result.classes++;
+
+            counts.verify("Class " + classData.getName(), classLineRate, classBranchRate, result.violations);
+
+            String packageName = classData.getPackageName();
+            Counts packageCounts = packages.get(packageName);
+            if (packageCounts == null) {
+                packages.put(packageName, counts.copy());
+            } else {
+                packageCounts.add(counts);
+            }
+            result.total.add(counts);
+        }
+
+        for (Map.Entry<String, Counts> packageCounts : packages.entrySet()) {
+            String packageName = packageCounts.getKey().isEmpty() ? "<default>" : packageCounts.getKey();
+            packageCounts.getValue().verify(
+                    "Package " + packageName, packageLineRate, packageBranchRate, result.violations);
+        }
+        result.packages = packages.size();
+
+        result.total.verify("Project", totalLineRate, totalBranchRate, result.violations);
+
+        return result;
+    }
+
+    public static class Result {
+
+        private final List<String> violations = new ArrayList<>();
+        private final Counts total = new Counts();
+        private int classes;
+        private int packages;
+
+        public List<String> getViolations() {
+            return violations;
+        }
+
+        public boolean isPassed() {
+            return violations.isEmpty();
+        }
+
+        public int getClasses() {
+            return classes;
+        }
+
+        public int getPackages() {
+            return packages;
+        }
+
+        public double getLineRate() {
+            return rate(total.coveredLines, total.validLines);
+        }
+
+        public double getBranchRate() {
+            return rate(total.coveredBranches, total.validBranches);
+        }
+    }
+
+    private static class Counts {
+
+        private long coveredLines;
+        private long validLines;
+        private long coveredBranches;
+        private long validBranches;
+
+        Counts() {
+        }
+
+        Counts(ClassData classData) {
+            this.coveredLines = classData.getNumberOfCoveredLines();
+            this.validLines = classData.getNumberOfValidLines();
+            this.coveredBranches = classData.getNumberOfCoveredBranches();
+            this.validBranches = classData.getNumberOfValidBranches();
+        }
+
+        Counts copy() {
+            Counts copy = new Counts();
+            copy.add(this);
+
+            return copy;
+        }
+
+        void add(Counts counts) {
+            coveredLines += counts.coveredLines;
+            validLines += counts.validLines;
+            coveredBranches += counts.coveredBranches;
+            validBranches += counts.validBranches;
+        }
+
+        void verify(String scope, int lineRate, int branchRate, List<String> violations) {
+            // compared on counts, so a rate is never rounded up to the threshold
+            if (coveredLines * 100 < lineRate * validLines) {
+                violations.add(describe(scope, "line", coveredLines, validLines, lineRate));
+            }
+
+            if (coveredBranches * 100 < branchRate * validBranches) {
+                violations.add(describe(scope, "branch", coveredBranches, validBranches, branchRate));
+            }
+        }
+
+        private static String describe(String scope, String coverage, long covered, long valid, int threshold) {
+            return String.format(Locale.ENGLISH, "%s %s coverage rate of %.2f%% (%d/%d) is below %d%%.",
+                    scope, coverage, 100 * rate(covered, valid), covered, valid, threshold);
+        }
+    }
+
+    /**
+     * Same as Cobertura, nothing to cover means everything is covered.
+     */
+    private static double rate(long covered, long valid) {
+        return valid == 0 ? 1 : (double) covered / valid;
+    }
+}
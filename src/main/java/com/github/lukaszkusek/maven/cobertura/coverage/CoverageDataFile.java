@@ -0,0 +1,146 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2013 Lukasz Kusek
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.github.lukaszkusek.maven.cobertura.coverage;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Collection;
+
+import net.sourceforge.cobertura.coveragedata.ClassData;
+import net.sourceforge.cobertura.coveragedata.CoverageDataFileHandler;
+import net.sourceforge.cobertura.coveragedata.ProjectData;
+
+/**
+ * Cobertura data file with an optional {@link CoverageSnapshot} next to it. A snapshot taken from the current content
+ * of the data file is always loaded instead of the data file. New snapshots are only written when enabled with
+ * {@link #withSnapshot()}, since the data file stays the one read by the Cobertura runtime and other tools.
+ */
+public class CoverageDataFile {
+
+    private final File dataFile;
+    private final CoverageSnapshot snapshot;
+    private final boolean writeSnapshot;
+
+    private Long checksum;
+
+    private CoverageDataFile(File dataFile, boolean writeSnapshot) {
+        this.dataFile = dataFile;
+        this.snapshot = CoverageSnapshot.of(dataFile);
+        this.writeSnapshot = writeSnapshot;
+    }
+
+    public static CoverageDataFile locatedAt(File dataFile) {
+        return new CoverageDataFile(dataFile, false);
+    }
+
+    public CoverageDataFile withSnapshot() {
+        return new CoverageDataFile(dataFile, true);
+    }
+
+    public boolean exists() {
+        return dataFile.isFile();
+    }
+
+    /**
+     * Computed once until the data file is saved again, so a fingerprint of the data file and the check whether the
+     * snapshot was taken from it read the data file only once. Nothing else writes the data file while a goal runs.
+     */
+    public long getChecksum() throws IOException {
+        if (checksum == null) {
+            checksum = CoverageSnapshot.checksum(dataFile);
+        }
+
+        return checksum;
+    }
+
+    public ProjectData load() {
+        ProjectData projectData = exists() ? loadSnapshot() : null;
+
+        if (projectData == null && exists()) {
+            projectData = CoverageDataFileHandler.loadCoverageData(dataFile);
+
+            if (projectData != null) {
+                saveSnapshot(projectData);
+            }
+        }
+
+        return projectData != null ? projectData : new ProjectData();
+    }
+
+    public void save(ProjectData projectData) {
+        CoverageDataFileHandler.saveCoverageData(projectData, dataFile);
+        checksum = null;
+        saveSnapshot(projectData);
+    }
+
+    private ProjectData loadSnapshot() {
+        try {
+            return snapshot.exists() && snapshot.isTakenFrom(dataFile, getChecksum()) ? snapshot.read() : null;
+        } catch (IOException e) {
+            // an unreadable snapshot is only a missed shortcut, the data file is still there
+            return null;
+        }
+    }
+
+    private void saveSnapshot(ProjectData projectData) {
+        if (!writeSnapshot) {
+            return;
+        }
+
+        try {
+            snapshot.write(projectData, dataFile, getChecksum());
+        } catch (IOException e) {
+            deleteSnapshot();
+        }
+    }
+
+    private void deleteSnapshot() {
+        try {
+            Files.deleteIfExists(snapshot.getFile().toPath());
+        } catch (IOException e) {
+            // a stale snapshot is never loaded, as it was not taken from the current data file
+        }
+    }
+
+    /**
+     * Replaces project data of outdated classes with project data of freshly instrumented classes.
+     */
+    public void replaceClasses(Collection<String> outdatedClassNames, ProjectData instrumentedClasses) {
+        if (outdatedClassNames.isEmpty() && instrumentedClasses.getNumberOfClasses() == 0) {
+            return;
+        }
+
+        ProjectData projectData = new ProjectData();
+
+        for (ClassData classData : load().getClasses()) {
+            if (!outdatedClassNames.contains(classData.getName())) {
+                projectData.addClassData(classData);
+            }
+        }
+        projectData.merge(instrumentedClasses);
+
+        save(projectData);
+    }
+}
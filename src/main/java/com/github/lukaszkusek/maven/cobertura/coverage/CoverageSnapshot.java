@@ -0,0 +1,407 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2013 Lukasz Kusek
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.github.lukaszkusek.maven.cobertura.coverage;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+import net.sourceforge.cobertura.coveragedata.ClassData;
+import net.sourceforge.cobertura.coveragedata.CoverageData;
+import net.sourceforge.cobertura.coveragedata.JumpData;
+import net.sourceforge.cobertura.coveragedata.LineData;
+import net.sourceforge.cobertura.coveragedata.ProjectData;
+import net.sourceforge.cobertura.coveragedata.SwitchData;
+
+/**
+ * Compact copy of a data file: interned strings followed by one primitive column per class, line and condition
+ * attribute, read through a memory mapped buffer instead of deserializing an object graph of boxed counters.
+ * <p>
+ * A snapshot remembers the length and checksum of the data file it was taken from, so it is only used while the data
+ * file has not been rewritten since, e.g. by the Cobertura runtime at the end of a test run. Modification times are
+ * not enough, as a rewritten data file often has the same length and coarse file systems can keep the same time.
+ */
+public class CoverageSnapshot {
+
+    public static final String FILE_EXTENSION = ".snapshot";
+
+    private static final int MAGIC = 0x43435331;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 2 * 4 + 2 * 8 + 5 * 4;
+
+    private static final byte JUMP = 0;
+    private static final byte SWITCH = 1;
+    private static final int NO_STRING = -1;
+
+    private final File snapshotFile;
+
+    private CoverageSnapshot(File snapshotFile) {
+        this.snapshotFile = snapshotFile;
+    }
+
+    public static CoverageSnapshot locatedAt(File snapshotFile) {
+        return new CoverageSnapshot(snapshotFile);
+    }
+
+    /**
+     * Snapshot kept next to the data file, e.g. {@code cobertura.snapshot} for {@code cobertura.ser}.
+     */
+    public static CoverageSnapshot of(File dataFile) {
+        String name = dataFile.getName();
+        int extension = name.lastIndexOf('.');
+
+        return locatedAt(new File(
+                dataFile.getParentFile(), (extension > 0 ? name.substring(0, extension) : name) + FILE_EXTENSION));
+    }
+
+    public File getFile() {
+        return snapshotFile;
+    }
+
+    public boolean exists() {
+        return snapshotFile.isFile();
+    }
+
+    /**
+     * Whether the snapshot was taken from the current content of the data file.
+     */
+    public boolean isTakenFrom(File dataFile) throws IOException {
+        return dataFile.isFile() && isTakenFrom(dataFile, checksum(dataFile));
+    }
+
+    /**
+     * @param dataFileChecksum {@link #checksum(File)} of the data file, when the caller has already computed it
+     */
+    public boolean isTakenFrom(File dataFile, long dataFileChecksum) throws IOException {
+        if (!exists() || !dataFile.isFile()) {
+            return false;
+        }
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        try (FileChannel channel = FileChannel.open(snapshotFile.toPath(), StandardOpenOption.READ)) {
+            while (header.hasRemaining() && channel.read(header) >= 0) {
+                // read the whole header
+            }
+        }
+        header.flip();
+
+        return header.remaining() == HEADER_SIZE
+                && header.getInt() == MAGIC
+                && header.getInt() == VERSION
+                && header.getLong() == dataFile.length()
+                && header.getLong() == dataFileChecksum;
+    }
+
+    public void write(ProjectData projectData, File dataFile) throws IOException {
+        write(projectData, dataFile, checksum(dataFile));
+    }
+
+    public void write(ProjectData projectData, File dataFile, long dataFileChecksum) throws IOException {
+        Columns columns = new Columns();
+        for (ClassData classData : projectData.getClasses()) {
+            columns.add(classData);
+        }
+
+        Path temporaryFile = Files.createTempFile(
+                snapshotFile.getAbsoluteFile().getParentFile().toPath(), snapshotFile.getName(), ".tmp");
+        try (DataOutputStream output = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(temporaryFile)))) {
+
+            output.writeInt(MAGIC);
+            output.writeInt(VERSION);
+            output.writeLong(dataFile.length());
+            output.writeLong(dataFileChecksum);
+            columns.writeTo(output);
+        } catch (IOException e) {
+            Files.deleteIfExists(temporaryFile);
+            throw e;
+        }
+
+        Files.move(temporaryFile, snapshotFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    public ProjectData read() throws IOException {
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(snapshotFile.toPath(), StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+
+        if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+            throw new IOException("Not a coverage snapshot: " + snapshotFile.getAbsolutePath());
+        }
+        buffer.getLong();
+        buffer.getLong();
+
+        int stringCount = buffer.getInt();
+        int classCount = buffer.getInt();
+        int lineCount = buffer.getInt();
+        int conditionCount = buffer.getInt();
+        int branchCount = buffer.getInt();
+
+        String[] strings = new String[stringCount];
+        for (int i = 0; i < stringCount; i++) {
+            byte[] bytes = new byte[buffer.getInt()];
+            buffer.get(bytes);
+            strings[i] = new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        ByteBuffer classNames = column(buffer, 0);
+        ByteBuffer sourceFileNames = column(classNames, 4 * classCount);
+        ByteBuffer instrumentationFlags = column(sourceFileNames, 4 * classCount);
+        ByteBuffer linesPerClass = column(instrumentationFlags, classCount);
+        ByteBuffer lineNumbers = column(linesPerClass, 4 * classCount);
+        ByteBuffer methodNames = column(lineNumbers, 4 * lineCount);
+        ByteBuffer methodDescriptors = column(methodNames, 4 * lineCount);
+        ByteBuffer lineHits = column(methodDescriptors, 4 * lineCount);
+        ByteBuffer conditionsPerLine = column(lineHits, 8 * lineCount);
+        ByteBuffer conditionKinds = column(conditionsPerLine, 4 * lineCount);
+        ByteBuffer conditionNumbers = column(conditionKinds, conditionCount);
+        ByteBuffer branchesPerCondition = column(conditionNumbers, 4 * conditionCount);
+        ByteBuffer branchHits = column(branchesPerCondition, 4 * conditionCount);
+
+        if (branchHits.remaining() != 8 * branchCount) {
+            throw new IOException("Truncated coverage snapshot: " + snapshotFile.getAbsolutePath());
+        }
+
+        ProjectData projectData = new ProjectData();
+        for (int classIndex = 0; classIndex < classCount; classIndex++) {
+            ClassData classData = new ClassData(strings[classNames.getInt()]);
+            classData.setSourceFileName(string(strings, sourceFileNames.getInt()));
+            if (instrumentationFlags.get() != 0) {
+                classData.setContainsInstrumentationInfo();
+            }
+
+            for (int lines = linesPerClass.getInt(); lines > 0; lines--) {
+                int lineNumber = lineNumbers.getInt();
+                classData.addLine(
+                        lineNumber, string(strings, methodNames.getInt()), string(strings, methodDescriptors.getInt()));
+                touch(lineHits.getLong(), hits -> classData.touch(lineNumber, hits));
+
+                for (int conditions = conditionsPerLine.getInt(); conditions > 0; conditions--) {
+                    int number = conditionNumbers.getInt();
+                    int branches = branchesPerCondition.getInt();
+
+                    if (conditionKinds.get() == JUMP) {
+                        classData.addLineJump(lineNumber, number);
+                        touch(branchHits.getLong(), hits -> classData.touchJump(lineNumber, number, true, hits));
+                        touch(branchHits.getLong(), hits -> classData.touchJump(lineNumber, number, false, hits));
+                    } else {
+                        // the last branch is the default one, Cobertura counts it as branch -1
+                        classData.addLineSwitch(lineNumber, number, 0, branches - 2, branches);
+                        for (int branch = 0; branch < branches; branch++) {
+                            int switchBranch = branch < branches - 1 ? branch : -1;
+                            touch(branchHits.getLong(),
+                                    hits -> classData.touchSwitch(lineNumber, number, switchBranch, hits));
+                        }
+                    }
+                }
+            }
+
+            projectData.addClassData(classData);
+        }
+
+        return projectData;
+    }
+
+    public static long checksum(File file) throws IOException {
+        CRC32 checksum = new CRC32();
+        byte[] buffer = new byte[64 * 1024];
+
+        try (InputStream input = Files.newInputStream(file.toPath())) {
+            for (int read = input.read(buffer); read >= 0; read = input.read(buffer)) {
+                checksum.update(buffer, 0, read);
+            }
+        }
+
+        return checksum.getValue();
+    }
+
+    private static ByteBuffer column(ByteBuffer previousColumn, int previousColumnSize) {
+        ByteBuffer column = previousColumn.duplicate();
+        column.position(previousColumn.position() + previousColumnSize);
+
+        return column;
+    }
+
+    private static String string(String[] strings, int index) {
+        return index == NO_STRING ? null : strings[index];
+    }
+
+    /**
+     * Cobertura only accepts hits as {@code int}, so counters above {@link Integer#MAX_VALUE} are added in parts.
+     */
+    private static void touch(long hits, Touch touch) {
+        for (long remaining = hits; remaining > 0; remaining -= Integer.MAX_VALUE) {
+            touch.hits((int) Math.min(remaining, Integer.MAX_VALUE));
+        }
+    }
+
+    private interface Touch {
+
+        void hits(int hits);
+    }
+
+    private static class Columns {
+
+        private final Map<String, Integer> stringIndexes = new HashMap<>();
+        private final Column strings = new Column();
+
+        private final Column classNames = new Column();
+        private final Column sourceFileNames = new Column();
+        private final Column instrumentationFlags = new Column();
+        private final Column linesPerClass = new Column();
+
+        private final Column lineNumbers = new Column();
+        private final Column methodNames = new Column();
+        private final Column methodDescriptors = new Column();
+        private final Column lineHits = new Column();
+        private final Column conditionsPerLine = new Column();
+
+        private final Column conditionKinds = new Column();
+        private final Column conditionNumbers = new Column();
+        private final Column branchesPerCondition = new Column();
+        private final Column branchHits = new Column();
+
+        private int classCount;
+        private int lineCount;
+        private int conditionCount;
+        private int branchCount;
+
+        void add(ClassData classData) throws IOException {
+            classNames.data.writeInt(intern(classData.getName()));
+            sourceFileNames.data.writeInt(intern(classData.getSourceFileName()));
+            instrumentationFlags.data.writeBoolean(classData.containsInstrumentationInfo());
+            linesPerClass.data.writeInt(classData.getLines().size());
+            classCount++;
+
+            for (CoverageData coverageData : classData.getLines()) {
+                add((LineData) coverageData);
+            }
+        }
+
+        private void add(LineData lineData) throws IOException {
+            lineNumbers.data.writeInt(lineData.getLineNumber());
+            methodNames.data.writeInt(intern(lineData.getMethodName()));
+            methodDescriptors.data.writeInt(intern(lineData.getMethodDescriptor()));
+            lineHits.data.writeLong(lineData.getHits());
+            conditionsPerLine.data.writeInt(lineData.getConditionSize());
+            lineCount++;
+
+            for (int i = 0; i < lineData.getConditionSize(); i++) {
+                Object condition = lineData.getConditionData(i);
+
+                if (condition instanceof JumpData) {
+                    add((JumpData) condition);
+                } else {
+                    add((SwitchData) condition);
+                }
+                conditionCount++;
+            }
+        }
+
+        private void add(JumpData jumpData) throws IOException {
+            conditionKinds.data.writeByte(JUMP);
+            conditionNumbers.data.writeInt(jumpData.getConditionNumber());
+            branchesPerCondition.data.writeInt(2);
+            addBranchHits(jumpData.getTrueHits());
+            addBranchHits(jumpData.getFalseHits());
+        }
+
+        private void add(SwitchData switchData) throws IOException {
+            int branches = switchData.getNumberOfValidBranches();
+
+            conditionKinds.data.writeByte(SWITCH);
+            conditionNumbers.data.writeInt(switchData.getSwitchNumber());
+            branchesPerCondition.data.writeInt(branches);
+            for (int branch = 0; branch < branches - 1; branch++) {
+                // branches without a counter are reported as -1
+                addBranchHits(Math.max(switchData.getHits(branch), 0));
+            }
+            addBranchHits(switchData.getDefaultHits());
+        }
+
+        private void addBranchHits(long hits) throws IOException {
+            branchHits.data.writeLong(hits);
+            branchCount++;
+        }
+
+        private int intern(String string) throws IOException {
+            if (string == null) {
+                return NO_STRING;
+            }
+
+            Integer index = stringIndexes.get(string);
+            if (index == null) {
+                index = stringIndexes.size();
+                stringIndexes.put(string, index);
+
+                byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+                strings.data.writeInt(bytes.length);
+                strings.data.write(bytes);
+            }
+
+            return index;
+        }
+
+        void writeTo(DataOutputStream output) throws IOException {
+            output.writeInt(stringIndexes.size());
+            output.writeInt(classCount);
+            output.writeInt(lineCount);
+            output.writeInt(conditionCount);
+            output.writeInt(branchCount);
+
+            for (Column column : new Column[] {
+                    strings, classNames, sourceFileNames, instrumentationFlags, linesPerClass,
+                    lineNumbers, methodNames, methodDescriptors, lineHits, conditionsPerLine,
+                    conditionKinds, conditionNumbers, branchesPerCondition, branchHits}) {
+
+                column.writeTo(output);
+            }
+        }
+    }
+
+    private static class Column {
+
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private final DataOutputStream data = new DataOutputStream(bytes);
+
+        void writeTo(OutputStream output) throws IOException {
+            bytes.writeTo(output);
+        }
+    }
+}
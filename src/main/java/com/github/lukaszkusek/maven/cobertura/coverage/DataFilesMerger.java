@@ -0,0 +1,70 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2013 Lukasz Kusek
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.github.lukaszkusek.maven.cobertura.coverage;
+
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import net.sourceforge.cobertura.coveragedata.ProjectData;
+
+/**
+ * Loads and merges data files with a fork/join reduce, so loading the files and merging the halves uses all cores.
+ */
+public class DataFilesMerger {
+
+    private DataFilesMerger() {
+    }
+
+    public static ProjectData merge(List<File> dataFiles) {
+        return dataFiles.isEmpty() ? new ProjectData() : ForkJoinPool.commonPool().invoke(new MergeTask(dataFiles));
+    }
+
+    private static class MergeTask extends RecursiveTask<ProjectData> {
+
+        private final List<File> dataFiles;
+
+        MergeTask(List<File> dataFiles) {
+            this.dataFiles = dataFiles;
+        }
+
+        @Override
+        protected ProjectData compute() {
+            if (dataFiles.size() == 1) {
+                return CoverageDataFile.locatedAt(dataFiles.get(0)).load();
+            }
+
+            int middle = dataFiles.size() / 2;
+            MergeTask left = new MergeTask(dataFiles.subList(0, middle));
+            left.fork();
+            ProjectData right = new MergeTask(dataFiles.subList(middle, dataFiles.size())).compute();
+
+            ProjectData merged = left.join();
+            merged.merge(right);
+
+            return merged;
+        }
+    }
+}
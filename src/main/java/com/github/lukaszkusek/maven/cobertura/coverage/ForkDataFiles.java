@@ -0,0 +1,93 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2013 Lukasz Kusek
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.github.lukaszkusek.maven.cobertura.coverage;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import net.sourceforge.cobertura.coveragedata.ProjectData;
+
+/**
+ * Data files written by forked test JVMs, one per surefire fork number, so forks running at the same time never
+ * contend for the lock of a single data file.
+ */
+public class ForkDataFiles {
+
+    public static final String FILE_PREFIX = "cobertura-";
+    public static final String FILE_SUFFIX = ".ser";
+    public static final String FORK_NUMBER_PLACEHOLDER = "${surefire.forkNumber}";
+
+    private final File directory;
+
+    private ForkDataFiles(File directory) {
+        this.directory = directory;
+    }
+
+    public static ForkDataFiles locatedIn(File directory) {
+        return new ForkDataFiles(directory);
+    }
+
+    /**
+     * @return data file path resolved by surefire separately for every fork
+     */
+    public String getDataFilePathPattern() {
+        return new File(directory, FILE_PREFIX + FORK_NUMBER_PLACEHOLDER + FILE_SUFFIX).getAbsolutePath();
+    }
+
+    public List<File> list() {
+        File[] files = directory.listFiles(
+                (dir, name) -> name.startsWith(FILE_PREFIX) && name.endsWith(FILE_SUFFIX));
+
+        if (files == null) {
+            return Collections.emptyList();
+        }
+
+        Arrays.sort(files);
+
+        return Arrays.asList(files);
+    }
+
+    /**
+     * Merges all fork data files into given project data, loading and merging the files in parallel.
+     */
+    public ProjectData mergeInto(ProjectData projectData) {
+        List<File> files = list();
+
+        if (!files.isEmpty()) {
+            projectData.merge(DataFilesMerger.merge(files));
+        }
+
+        return projectData;
+    }
+
+    public void delete() throws IOException {
+        for (File file : list()) {
+            Files.deleteIfExists(file.toPath());
+        }
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2013 Lukasz Kusek
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.github.lukaszkusek.maven.cobertura.coverage;
+
+import net.sourceforge.cobertura.coveragedata.ClassData;
+import net.sourceforge.cobertura.coveragedata.CoverageData;
+import net.sourceforge.cobertura.coveragedata.JumpData;
+import net.sourceforge.cobertura.coveragedata.LineData;
+import net.sourceforge.cobertura.coveragedata.ProjectData;
+import net.sourceforge.cobertura.coveragedata.SwitchData;
+
+/**
+ * Coverage of classes instrumented with {@code probeMode=hit}, where counters only tell whether a line or branch was
+ * hit. Hits collected more than once, e.g. by several forks or test classes, still add up in project data, so they are
+ * capped at 1 before the data file is saved and reports are exported.
+ */
+public class HitCoverage {
+
+    private HitCoverage() {
+    }
+
+    /**
+     * @return the given project data if no line or branch was hit more than once, a copy with hits capped at 1
+     * otherwise
+     */
+    public static ProjectData of(ProjectData projectData) {
+        if (!hasCountedHits(projectData)) {
+            return projectData;
+        }
+
+        ProjectData hitCoverage = new ProjectData();
+        for (ClassData classData : projectData.getClasses()) {
+            hitCoverage.addClassData(copy(classData));
+        }
+
+        return hitCoverage;
+    }
+
+    private static boolean hasCountedHits(ProjectData projectData) {
+        for (ClassData classData : projectData.getClasses()) {
+            for (CoverageData coverageData : classData.getLines()) {
+                LineData lineData = (LineData) coverageData;
+
+                if (lineData.getHits() > 1) {
+                    return true;
+                }
+
+                for (int i = 0; i < lineData.getConditionSize(); i++) {
+                    if (hasCountedHits(lineData.getConditionData(i))) {
+                        return true;
+                    }
+                }
+            }
+        }
+
+        return false;
+    }
+
+    private static boolean hasCountedHits(Object condition) {
+        if (condition instanceof JumpData) {
+            JumpData jumpData = (JumpData) condition;
+
+            return jumpData.getTrueHits() > 1 || jumpData.getFalseHits() > 1;
+        }
+
+        SwitchData switchData = (SwitchData) condition;
+        for (int branch = 0; branch < switchData.getNumberOfValidBranches() - 1; branch++) {
+            if (switchData.getHits(branch) > 1) {
+                return true;
+            }
+        }
+
+        return switchData.getDefaultHits() > 1;
+    }
+
+    private static ClassData copy(ClassData classData) {
+        ClassData copy = new ClassData(classData.getName());
+        copy.setSourceFileName(classData.getSourceFileName());
+        if (classData.containsInstrumentationInfo()) {
+            copy.setContainsInstrumentationInfo();
+        }
+
+        for (CoverageData coverageData : classData.getLines()) {
+            LineData lineData = (LineData) coverageData;
+            int lineNumber = lineData.getLineNumber();
+
+            copy.addLine(lineNumber, lineData.getMethodName(), lineData.getMethodDescriptor());
+            if (lineData.getHits() > 0) {
+                copy.touch(lineNumber, 1);
+            }
+
+            for (int i = 0; i < lineData.getConditionSize(); i++) {
+                Object condition = lineData.getConditionData(i);
+
+                if (condition instanceof JumpData) {
+                    copy(copy, lineNumber, (JumpData) condition);
+                } else {
+                    copy(copy, lineNumber, (SwitchData) condition);
+                }
+            }
+        }
+
+        return copy;
+    }
+
+    private static void copy(ClassData copy, int lineNumber, JumpData jumpData) {
+        int number = jumpData.getConditionNumber();
+
+        copy.addLineJump(lineNumber, number);
+        if (jumpData.getTrueHits() > 0) {
+            copy.touchJump(lineNumber, number, true, 1);
+        }
+        if (jumpData.getFalseHits() > 0) {
+            copy.touchJump(lineNumber, number, false, 1);
+        }
+    }
+
+    /**
+     * The same as in {@link CoverageSnapshot}, the last valid branch is the default one, which Cobertura counts as
+     * branch -1.
+     */
+    private static void copy(ClassData copy, int lineNumber, SwitchData switchData) {
+        int number = switchData.getSwitchNumber();
+        int branches = switchData.getNumberOfValidBranches();
+
+        copy.addLineSwitch(lineNumber, number, 0, branches - 2, branches);
+        for (int branch = 0; branch < branches - 1; branch++) {
+            if (switchData.getHits(branch) > 0) {
+                copy.touchSwitch(lineNumber, number, branch, 1);
+            }
+        }
+        if (switchData.getDefaultHits() > 0) {
+            copy.touchSwitch(lineNumber, number, -1, 1);
+        }
+    }
+}
@@ -0,0 +1,175 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2013 Lukasz Kusek
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.github.lukaszkusek.maven.cobertura.coverage;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import com.github.lukaszkusek.maven.cobertura.runtime.MappedCountersFile;
+import com.github.lukaszkusek.maven.cobertura.runtime.TouchPoints;
+import net.sourceforge.cobertura.coveragedata.ClassData;
+import net.sourceforge.cobertura.coveragedata.ProjectData;
+
+/**
+ * Counters files written by test JVMs with {@code probeMode=mapped}, turned into project data the same way the
+ * Cobertura runtime turns its counters into project data when it saves them, from the touch points kept with the
+ * counters of every class.
+ */
+public class MappedCounterFiles {
+
+    private final File directory;
+
+    private MappedCounterFiles(File directory) {
+        this.directory = directory;
+    }
+
+    public static MappedCounterFiles locatedIn(File directory) {
+        return new MappedCounterFiles(directory);
+    }
+
+    public List<File> list() {
+        File[] files = directory.listFiles((dir, name) ->
+                name.startsWith(MappedCountersFile.FILE_PREFIX) && name.endsWith(MappedCountersFile.FILE_SUFFIX));
+
+        if (files == null) {
+            return Collections.emptyList();
+        }
+
+        Arrays.sort(files);
+
+        return Arrays.asList(files);
+    }
+
+    /**
+     * Merges hits of all counters files into given project data.
+     */
+    public ProjectData mergeInto(ProjectData projectData) throws IOException {
+        for (File file : list()) {
+            MappedCountersFile.read(file, (className, touchPoints, hits) ->
+                    projectData.merge(toProjectData(className, touchPoints, hits)));
+        }
+
+        return projectData;
+    }
+
+    private static ProjectData toProjectData(String className, String touchPoints, int[] hits) {
+        ClassData classData = new ClassData(className);
+        TouchPoints.replay(touchPoints, new HitsApplier(classData, hits));
+
+        ProjectData projectData = new ProjectData();
+        projectData.addClassData(classData);
+
+        return projectData;
+    }
+
+    public void delete() throws IOException {
+        for (File file : list()) {
+            Files.deleteIfExists(file.toPath());
+        }
+    }
+
+    /**
+     * Numbers jumps and switches of a line in the order of their touch points and adds hits of their counters, the
+     * same as the Cobertura runtime.
+     */
+    private static class HitsApplier implements TouchPoints.Listener {
+
+        private final ClassData classData;
+        private final int[] hits;
+
+        private int currentLine = -1;
+        private int jumpsInLine;
+        private int switchesInLine;
+
+        HitsApplier(ClassData classData, int[] hits) {
+            this.classData = classData;
+            this.hits = hits;
+        }
+
+        @Override
+        public void setSource(String source) {
+            classData.setSourceFileName(source);
+        }
+
+        @Override
+        public void putLineTouchPoint(int line, int counter, String methodName, String methodDescriptor) {
+            updateLine(line);
+            classData.addLine(line, methodName, methodDescriptor);
+
+            if (hits[counter] > 0) {
+                classData.touch(line, hits[counter]);
+            }
+        }
+
+        @Override
+        public void putJumpTouchPoint(int line, int trueCounter, int falseCounter) {
+            updateLine(line);
+            addLineIfMissing(line);
+            int jump = jumpsInLine++;
+            classData.addLineJump(line, jump);
+
+            if (hits[trueCounter] > 0) {
+                classData.touchJump(line, jump, true, hits[trueCounter]);
+            }
+            if (hits[falseCounter] > 0) {
+                classData.touchJump(line, jump, false, hits[falseCounter]);
+            }
+        }
+
+        /**
+         * The first counter is the one of the default branch, which Cobertura counts as branch -1.
+         */
+        @Override
+        public void putSwitchTouchPoint(int line, int maxBranches, int[] counters) {
+            updateLine(line);
+            addLineIfMissing(line);
+            int switchNumber = switchesInLine++;
+            classData.addLineSwitch(line, switchNumber, 0, counters.length - 2, maxBranches);
+
+            for (int i = 0; i < counters.length; i++) {
+                if (hits[counters[i]] > 0) {
+                    classData.touchSwitch(line, switchNumber, i - 1, hits[counters[i]]);
+                }
+            }
+        }
+
+        private void updateLine(int line) {
+            if (line != currentLine) {
+                currentLine = line;
+                jumpsInLine = 0;
+                switchesInLine = 0;
+            }
+        }
+
+        private void addLineIfMissing(int line) {
+            if (classData.getLineData(line) == null) {
+                classData.addLine(line, null, null);
+            }
+        }
+    }
+}
@@ -0,0 +1,289 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2013 Lukasz Kusek
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.github.lukaszkusek.maven.cobertura.coverage;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import net.sourceforge.cobertura.coveragedata.ClassData;
+import net.sourceforge.cobertura.coveragedata.ProjectData;
+
+/**
+ * Maps every line of production code to test classes which hit it, inverted from the lines hit by each test class.
+ * Stored as {@code class name<TAB>source file name<TAB>line<TAB>test,test,...} lines, so it can be read without the
+ * data file.
+ */
+public class TestImpactIndex {
+
+    public static final String FILE_NAME = "test-impact.txt";
+
+    private static final String TEST_COVERAGE_FILE_EXTENSION = ".txt";
+    private static final String JAVA_FILE_EXTENSION = ".java";
+    private static final Pattern LINE_RANGE = Pattern.compile("(.+):(\\d+)(?:-(\\d+))?");
+
+    private final File indexFile;
+    private final Map<String, String> sourceFileNames = new TreeMap<>();
+    private final Map<String, TreeMap<Integer, SortedSet<String>>> classes = new TreeMap<>();
+    private final SortedSet<String> tests = new TreeSet<>();
+
+    private TestImpactIndex(File indexDirectory) {
+        this.indexFile = new File(indexDirectory, FILE_NAME);
+    }
+
+    public static TestImpactIndex locatedIn(File indexDirectory) {
+        return new TestImpactIndex(indexDirectory);
+    }
+
+    public boolean exists() {
+        return indexFile.isFile();
+    }
+
+    public File getFile() {
+        return indexFile;
+    }
+
+    public TestImpactIndex load() throws IOException {
+        clear();
+
+        for (String line : Files.readAllLines(indexFile.toPath(), StandardCharsets.UTF_8)) {
+            String[] columns = line.split("\t", -1);
+
+            if (columns.length == 4) {
+                sourceFileNames.put(columns[0], columns[1]);
+                for (String test : columns[3].split(",")) {
+                    add(columns[0], Integer.parseInt(columns[2]), test);
+                }
+            }
+        }
+
+        return this;
+    }
+
+    /**
+     * Rebuilds the index from files written by the test coverage listener, one per test class.
+     */
+    public TestImpactIndex update(File testCoverageDirectory, ProjectData projectData) throws IOException {
+        clear();
+
+        File[] testCoverageFiles = testCoverageDirectory.listFiles(
+                (directory, name) -> name.endsWith(TEST_COVERAGE_FILE_EXTENSION));
+
+        for (File testCoverageFile : testCoverageFiles != null ? testCoverageFiles : new File[0]) {
+            String name = testCoverageFile.getName();
+            String test = name.substring(0, name.length() - TEST_COVERAGE_FILE_EXTENSION.length());
+
+            for (String line : Files.readAllLines(testCoverageFile.toPath(), StandardCharsets.UTF_8)) {
+                String[] columns = line.split("\t");
+
+                if (columns.length == 2) {
+                    for (String lineNumber : columns[1].split(",")) {
+                        add(columns[0], Integer.parseInt(lineNumber), test);
+                    }
+                }
+            }
+        }
+
+        for (String className : classes.keySet()) {
+            ClassData classData = projectData.getClassData(className);
+            String sourceFileName = classData != null ? classData.getSourceFileName() : null;
+
+            sourceFileNames.put(className, sourceFileName != null ? sourceFileName : "");
+        }
+
+        return this;
+    }
+
+    public void saveToDisk() throws IOException {
+        try (Writer writer = Files.newBufferedWriter(indexFile.toPath(), StandardCharsets.UTF_8)) {
+            for (Map.Entry<String, TreeMap<Integer, SortedSet<String>>> classLines : classes.entrySet()) {
+                String className = classLines.getKey();
+
+                for (Map.Entry<Integer, SortedSet<String>> line : classLines.getValue().entrySet()) {
+                    writer.write(className + '\t' + sourceFileNames.get(className) + '\t' + line.getKey() + '\t'
+                            + String.join(",", line.getValue()) + '\n');
+                }
+            }
+        }
+    }
+
+    private void clear() {
+        sourceFileNames.clear();
+        classes.clear();
+        tests.clear();
+    }
+
+    private void add(String className, int lineNumber, String test) {
+        classes.computeIfAbsent(className, name -> new TreeMap<>())
+                .computeIfAbsent(lineNumber, line -> new TreeSet<>())
+                .add(test);
+        tests.add(test);
+    }
+
+    public int getClasses() {
+        return classes.size();
+    }
+
+    public int getTests() {
+        return tests.size();
+    }
+
+    public SortedSet<String> getTestClasses() {
+        return Collections.unmodifiableSortedSet(tests);
+    }
+
+    /**
+     * @param change class name, e.g. {@code com.example.Foo}, or path of its source file as listed by
+     *               {@code git diff --name-only}, e.g. {@code src/main/java/com/example/Foo.java}, optionally followed
+     *               by {@code :line} or {@code :first-last} to narrow it down to changed lines
+     * @return test classes hitting the changed lines, nested classes of a changed class included
+     */
+    public SortedSet<String> getTestsCovering(String change) {
+        String target = normalize(change);
+        int firstLine = Integer.MIN_VALUE;
+        int lastLine = Integer.MAX_VALUE;
+
+        Matcher lineRange = LINE_RANGE.matcher(target);
+        if (lineRange.matches()) {
+            target = lineRange.group(1);
+            firstLine = Integer.parseInt(lineRange.group(2));
+            lastLine = lineRange.group(3) != null ? Integer.parseInt(lineRange.group(3)) : firstLine;
+        }
+
+        SortedSet<String> coveringTests = new TreeSet<>();
+        for (Map.Entry<String, TreeMap<Integer, SortedSet<String>>> classLines : classes.entrySet()) {
+            if (isChanged(classLines.getKey(), target)) {
+                for (SortedSet<String> lineTests : classLines.getValue().subMap(firstLine, true, lastLine, true).values()) {
+                    coveringTests.addAll(lineTests);
+                }
+            }
+        }
+
+        return coveringTests;
+    }
+
+    /**
+     * @return whether the given change, in any of the forms accepted by {@link #getTestsCovering(String)}, is a class
+     * of the index, even if no test hits the changed lines, so a change which is not mapped, e.g. of a new class, is
+     * not mistaken for a change no test hits
+     */
+    public boolean isMapped(String change) {
+        String target = getTarget(change);
+
+        for (String className : classes.keySet()) {
+            if (isChanged(className, target)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * @return whether the given change is of a Java source file or a class, as other files, e.g. {@code pom.xml}, are
+     * never in the index, told from class names by the simple name starting with an upper case letter
+     */
+    public static boolean isJavaChange(String change) {
+        String target = getTarget(change);
+
+        if (target.endsWith(JAVA_FILE_EXTENSION)) {
+            return true;
+        }
+
+        String simpleName = target.substring(target.lastIndexOf('.') + 1);
+
+        return target.indexOf('/') < 0 && !simpleName.isEmpty() && Character.isUpperCase(simpleName.charAt(0));
+    }
+
+    /**
+     * @param change test class name or path of its source file
+     * @param testSourceDirectories test source roots, recognising changed tests not in the index, e.g. new ones
+     * @return changed test class, {@code null} if the change is not a test
+     */
+    public String findChangedTest(String change, Collection<String> testSourceDirectories) {
+        String target = getTarget(change);
+
+        if (!target.endsWith(JAVA_FILE_EXTENSION)) {
+            return tests.contains(target) ? target : null;
+        }
+
+        for (String test : tests) {
+            String sourceFileName = test.replace('.', '/') + JAVA_FILE_EXTENSION;
+
+            if (target.equals(sourceFileName) || target.endsWith("/" + sourceFileName)) {
+                return test;
+            }
+        }
+
+        for (String testSourceDirectory : testSourceDirectories) {
+            String root = testSourceDirectory.replace('\\', '/');
+
+            // the change is relative to any parent of the root, e.g. the root of the repository
+            for (int separator = target.indexOf('/'); separator >= 0; separator = target.indexOf('/', separator + 1)) {
+                String parent = target.substring(0, separator);
+
+                if (root.equals(parent) || root.endsWith("/" + parent)) {
+                    String sourceFileName = target.substring(separator + 1);
+
+                    return sourceFileName.substring(0, sourceFileName.length() - JAVA_FILE_EXTENSION.length())
+                            .replace('/', '.');
+                }
+            }
+        }
+
+        return null;
+    }
+
+    private static String normalize(String change) {
+        return change.trim().replace('\\', '/');
+    }
+
+    private static String getTarget(String change) {
+        String target = normalize(change);
+        Matcher lineRange = LINE_RANGE.matcher(target);
+
+        return lineRange.matches() ? lineRange.group(1) : target;
+    }
+
+    private boolean isChanged(String className, String target) {
+        if (target.endsWith(JAVA_FILE_EXTENSION)) {
+            String sourceFileName = sourceFileNames.get(className);
+
+            return !sourceFileName.isEmpty()
+                    && (target.equals(sourceFileName) || target.endsWith("/" + sourceFileName));
+        }
+
+        return className.equals(target) || className.startsWith(target + "$");
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2013 Lukasz Kusek
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.github.lukaszkusek.maven.cobertura.files;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+import com.github.lukaszkusek.maven.cobertura.instrumentation.InstrumentationChanges;
+
+/**
+ * Matches class files against include and exclude class name regexes the same way Cobertura does: no valid include
+ * regex means every class is included, and invalid regexes are ignored.
+ */
+public class ClassFilter {
+
+    private final List<Pattern> includes = new ArrayList<>();
+    private final List<Pattern> excludes = new ArrayList<>();
+    private final List<String> invalidRegexes = new ArrayList<>();
+
+    public ClassFilter(String includeClassesRegex, String excludeClassesRegex) {
+        compile(includeClassesRegex, includes);
+        compile(excludeClassesRegex, excludes);
+    }
+
+    private void compile(String regex, List<Pattern> patterns) {
+        if (regex == null || regex.isEmpty()) {
+            return;
+        }
+
+        try {
+            patterns.add(Pattern.compile(regex));
+        } catch (PatternSyntaxException e) {
+            invalidRegexes.add(regex);
+        }
+    }
+
+    public boolean matches(String classFile) {
+        String className = InstrumentationChanges.toClassName(classFile);
+
+        return (includes.isEmpty() || matchesAny(includes, className)) && !matchesAny(excludes, className);
+    }
+
+    private boolean matchesAny(List<Pattern> patterns, String className) {
+        for (Pattern pattern : patterns) {
+            if (pattern.matcher(className).matches()) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    public List<String> getInvalidRegexes() {
+        return invalidRegexes;
+    }
+}
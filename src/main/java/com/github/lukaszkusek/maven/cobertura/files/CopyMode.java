@@ -0,0 +1,153 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2013 Lukasz Kusek
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.github.lukaszkusek.maven.cobertura.files;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Defines how files from the output directory end up in the instrumented classes directory.
+ */
+public enum CopyMode {
+
+    COPY("copy") {
+        @Override
+        void transfer(Path source, Path destination) throws IOException {
+            Files.copy(source, destination, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.COPY_ATTRIBUTES);
+        }
+    },
+
+    HARDLINK("hardlink") {
+        @Override
+        void transfer(Path source, Path destination) throws IOException {
+            Files.deleteIfExists(destination);
+            try {
+                Files.createLink(destination, source);
+            } catch (IOException | UnsupportedOperationException e) {
+                COPY.transfer(source, destination);
+            }
+        }
+
+        /**
+         * Files copied because linking failed are up to date the same as in {@link #COPY}.
+         */
+        @Override
+        boolean isUpToDate(Path source, Path destination) throws IOException {
+            return Files.exists(destination)
+                    && (Files.isSameFile(source, destination) || super.isUpToDate(source, destination));
+        }
+    },
+
+    /**
+     * Copies through {@link FileChannel#transferTo}, so the kernel copies the bytes without passing them through the
+     * heap. It is still a full copy, the files do not share disk blocks.
+     */
+    CHANNEL("channel") {
+        @Override
+        void transfer(Path source, Path destination) throws IOException {
+            Files.deleteIfExists(destination);
+            try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ);
+                 FileChannel out =
+                         FileChannel.open(destination, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+
+                long size = in.size();
+                long position = 0;
+                while (position < size) {
+                    position += in.transferTo(position, size - position, out);
+                }
+            }
+            Files.setLastModifiedTime(destination, Files.getLastModifiedTime(source));
+        }
+    },
+
+    SKIP_INSTRUMENTED("skip-instrumented") {
+        @Override
+        void transfer(Path source, Path destination) throws IOException {
+            COPY.transfer(source, destination);
+        }
+    };
+
+    private final String name;
+
+    CopyMode(String name) {
+        this.name = name;
+    }
+
+    public static CopyMode getFromString(String name) {
+        for (CopyMode copyMode : values()) {
+            if (copyMode.name.equalsIgnoreCase(name)) {
+                return copyMode;
+            }
+        }
+
+        throw new IllegalArgumentException(
+                "Unknown copy mode: " + name + ", expected one of: copy, hardlink, channel, skip-instrumented.");
+    }
+
+    /**
+     * Classes which are going to be instrumented are overwritten by Cobertura anyway, only {@link #COPY} copies them
+     * upfront. In the remaining modes they must never be links, as Cobertura would write through them into the output
+     * directory.
+     */
+    public boolean copiesClassesToInstrument() {
+        return this == COPY;
+    }
+
+    /**
+     * @return true if the file was copied
+     */
+    public boolean copyIfModified(Path source, Path destination) throws IOException {
+        if (isUpToDate(source, destination)) {
+            return false;
+        }
+
+        copy(source, destination);
+
+        return true;
+    }
+
+    public void copy(Path source, Path destination) throws IOException {
+        Files.createDirectories(destination.getParent());
+        transfer(source, destination);
+    }
+
+    abstract void transfer(Path source, Path destination) throws IOException;
+
+    /**
+     * Copied modification times may lose precision below milliseconds, so times are compared in milliseconds.
+     */
+    boolean isUpToDate(Path source, Path destination) throws IOException {
+        return Files.exists(destination)
+                && Files.getLastModifiedTime(destination).toMillis() >= Files.getLastModifiedTime(source).toMillis();
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2013 Lukasz Kusek
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.github.lukaszkusek.maven.cobertura.files;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import com.google.common.hash.Funnels;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+
+/**
+ * Hash of everything a goal depends on, stored after a successful execution to skip the next one if nothing changed.
+ */
+public class Fingerprint {
+
+    public static final String FILE_EXTENSION = ".fingerprint";
+
+    private final Hasher hasher = Hashing.sha1().newHasher();
+    private String value;
+
+    public Fingerprint with(String name, Object value) {
+        hasher.putString(name + '=' + value + '\n', StandardCharsets.UTF_8);
+
+        return this;
+    }
+
+    public Fingerprint withFileContents(File file) throws IOException {
+        with(file.getAbsolutePath(), file.isFile());
+
+        if (file.isFile()) {
+            Files.copy(file.toPath(), Funnels.asOutputStream(hasher));
+        }
+
+        return this;
+    }
+
+    public Fingerprint withDirectoryContents(File directory) throws IOException {
+        for (Path file : listFiles(directory)) {
+            with(directory.toPath().relativize(file).toString(), Files.size(file));
+            Files.copy(file, Funnels.asOutputStream(hasher));
+        }
+
+        return this;
+    }
+
+    public Fingerprint withDirectoryTimestamps(File directory) throws IOException {
+        return withDirectoryTimestamps(directory, file -> false);
+    }
+
+    /**
+     * Only reads the size and modification time of every file, so it is cheap enough to be computed both before and
+     * after an execution on large directories.
+     *
+     * @param ignoredFiles tests paths relative to the directory, separated by {@code /}
+     */
+    public Fingerprint withDirectoryTimestamps(File directory, Predicate<String> ignoredFiles) throws IOException {
+        for (Path file : listFiles(directory)) {
+            String relativePath = directory.toPath().relativize(file).toString().replace(File.separatorChar, '/');
+
+            if (!ignoredFiles.test(relativePath)) {
+                with(relativePath, Files.size(file) + "@" + Files.getLastModifiedTime(file));
+            }
+        }
+
+        return this;
+    }
+
+    private List<Path> listFiles(File directory) throws IOException {
+        with(directory.getAbsolutePath(), directory.isDirectory());
+
+        if (!directory.isDirectory()) {
+            return Collections.emptyList();
+        }
+
+        try (Stream<Path> files = Files.walk(directory.toPath())) {
+            return files.filter(Files::isRegularFile).sorted().collect(Collectors.toList());
+        }
+    }
+
+    public String getValue() {
+        if (value == null) {
+            value = hasher.hash().toString();
+        }
+
+        return value;
+    }
+
+    public boolean isStoredIn(File fingerprintFile) throws IOException {
+        return fingerprintFile.isFile()
+                && getValue().equals(new String(Files.readAllBytes(fingerprintFile.toPath()), StandardCharsets.UTF_8));
+    }
+
+    public void storeIn(File fingerprintFile) throws IOException {
+        Files.write(fingerprintFile.toPath(), getValue().getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2013 Lukasz Kusek
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.github.lukaszkusek.maven.cobertura.files;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+
+import com.github.lukaszkusek.maven.cobertura.instrumentation.InstrumentationChanges;
+
+/**
+ * Walks the output directory and hands every file to a {@link Listener} as soon as it is found, so the listener can
+ * start working on it while the rest of the directory is still being walked.
+ */
+public class OutputDirectoryScanner {
+
+    private final Path outputDirectory;
+    private final ClassFilter classFilter;
+
+    public OutputDirectoryScanner(File outputDirectory, ClassFilter classFilter) {
+        this.outputDirectory = outputDirectory.toPath();
+        this.classFilter = classFilter;
+    }
+
+    public void scan(final Listener listener) throws IOException {
+        Files.walkFileTree(outputDirectory, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) throws IOException {
+                if (attributes.isRegularFile()) {
+                    visit(outputDirectory.relativize(file).toString(), listener);
+                }
+
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    private void visit(String file, Listener listener) throws IOException {
+        if (!InstrumentationChanges.isClassFile(file)) {
+            listener.resource(file);
+        } else if (classFilter.matches(file)) {
+            listener.classToInstrument(file);
+        } else {
+            listener.excludedClass(file);
+        }
+    }
+
+    public interface Listener {
+
+        void classToInstrument(String classFile) throws IOException;
+
+        void excludedClass(String classFile) throws IOException;
+
+        void resource(String file) throws IOException;
+    }
+}
@@ -0,0 +1,257 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2013 Lukasz Kusek
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.github.lukaszkusek.maven.cobertura.files;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import com.google.common.base.Joiner;
+import com.google.common.base.Splitter;
+
+/**
+ * Maps source file names, as Cobertura stores them for classes (e.g. {@code com/example/Foo.java}), to the source
+ * root containing them. Directories are walked in parallel and their listings are cached on disk; a cached listing
+ * is reused as long as the modification time of the directory did not change, so only directories whose entries
+ * changed are listed again.
+ */
+public class SourceIndex {
+
+    public static final String CACHE_FILE_NAME = "source-index.txt";
+
+    private static final char SEPARATOR = '\t';
+    private static final char NAME_SEPARATOR = '/';
+
+    private final Map<String, String> rootsBySourceFileName = new ConcurrentHashMap<>();
+    private final Map<String, DirectoryListing> listings = new ConcurrentHashMap<>();
+    private final Map<String, DirectoryListing> cachedListings;
+    private final List<String> roots;
+    private int listedDirectories;
+
+    private SourceIndex(Collection<String> roots, Map<String, DirectoryListing> cachedListings) {
+        this.roots = new ArrayList<>(roots);
+        this.cachedListings = cachedListings;
+    }
+
+    public static SourceIndex build(Collection<String> roots, File coberturaDirectory) throws IOException {
+        File cacheFile = new File(coberturaDirectory, CACHE_FILE_NAME);
+        SourceIndex sourceIndex = new SourceIndex(roots, loadCache(cacheFile));
+
+        List<IndexDirectory> tasks = new ArrayList<>();
+        for (String root : roots) {
+            if (new File(root).isDirectory()) {
+                tasks.add(sourceIndex.new IndexDirectory(root, new File(root).toPath(), ""));
+            }
+        }
+        ForkJoinPool.commonPool().invoke(new RecursiveAction() {
+            @Override
+            protected void compute() {
+                invokeAll(tasks);
+            }
+        });
+
+        sourceIndex.saveCache(cacheFile);
+
+        return sourceIndex;
+    }
+
+    public File getSourceFile(String sourceFileName) {
+        String root = sourceFileName != null ? rootsBySourceFileName.get(sourceFileName) : null;
+
+        return root != null ? new File(root, sourceFileName) : null;
+    }
+
+    /**
+     * @return roots containing at least one of given source files, in the order the roots were given
+     */
+    public List<String> getRootsContaining(Collection<String> sourceFileNames) {
+        Set<String> usedRoots = new LinkedHashSet<>();
+        for (String sourceFileName : sourceFileNames) {
+            String root = sourceFileName != null ? rootsBySourceFileName.get(sourceFileName) : null;
+            if (root != null) {
+                usedRoots.add(root);
+            }
+        }
+
+        List<String> rootsContaining = new ArrayList<>();
+        for (String root : roots) {
+            if (usedRoots.contains(root)) {
+                rootsContaining.add(root);
+            }
+        }
+
+        return rootsContaining;
+    }
+
+    public int getSourceFiles() {
+        return rootsBySourceFileName.size();
+    }
+
+    /**
+     * @return number of directories listed because their cached listing was missing or outdated
+     */
+    public synchronized int getListedDirectories() {
+        return listedDirectories;
+    }
+
+    private synchronized void directoryListed() {
+        listedDirectories++;
+    }
+
+    /**
+     * Source file present in more than one root is taken from the first one, like Cobertura does.
+     */
+    private String firstRoot(String root, String otherRoot) {
+        return roots.indexOf(root) <= roots.indexOf(otherRoot) ? root : otherRoot;
+    }
+
+    private static Map<String, DirectoryListing> loadCache(File cacheFile) throws IOException {
+        Map<String, DirectoryListing> cachedListings = new ConcurrentHashMap<>();
+
+        if (cacheFile.isFile()) {
+            try (BufferedReader reader = Files.newBufferedReader(cacheFile.toPath(), StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    List<String> fields = Splitter.on(SEPARATOR).splitToList(line);
+                    if (fields.size() == 4) {
+                        cachedListings.put(fields.get(0), new DirectoryListing(
+                                Long.parseLong(fields.get(1)), split(fields.get(2)), split(fields.get(3))));
+                    }
+                }
+            }
+        }
+
+        return cachedListings;
+    }
+
+    private static List<String> split(String names) {
+        return names.isEmpty()
+                ? Collections.<String>emptyList()
+                : Splitter.on(NAME_SEPARATOR).splitToList(names);
+    }
+
+    private void saveCache(File cacheFile) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(cacheFile.toPath(), StandardCharsets.UTF_8)) {
+            for (Map.Entry<String, DirectoryListing> listing : listings.entrySet()) {
+                writer.write(Joiner.on(SEPARATOR).join(
+                        listing.getKey(),
+                        listing.getValue().modified,
+                        Joiner.on(NAME_SEPARATOR).join(listing.getValue().sourceFiles),
+                        Joiner.on(NAME_SEPARATOR).join(listing.getValue().subdirectories)));
+                writer.newLine();
+            }
+        }
+    }
+
+    private static class DirectoryListing {
+
+        private final long modified;
+        private final List<String> sourceFiles;
+        private final List<String> subdirectories;
+
+        DirectoryListing(long modified, List<String> sourceFiles, List<String> subdirectories) {
+            this.modified = modified;
+            this.sourceFiles = sourceFiles;
+            this.subdirectories = subdirectories;
+        }
+    }
+
+    private class IndexDirectory extends RecursiveAction {
+
+        private final String root;
+        private final Path directory;
+        private final String relativePath;
+
+        IndexDirectory(String root, Path directory, String relativePath) {
+            this.root = root;
+            this.directory = directory;
+            this.relativePath = relativePath;
+        }
+
+        @Override
+        protected void compute() {
+            DirectoryListing listing;
+            try {
+                listing = getListing();
+            } catch (IOException e) {
+                return;
+            }
+            listings.put(directory.toString(), listing);
+
+            for (String sourceFile : listing.sourceFiles) {
+                rootsBySourceFileName.merge(relativePath + sourceFile, root, SourceIndex.this::firstRoot);
+            }
+
+            List<IndexDirectory> subdirectories = new ArrayList<>();
+            for (String subdirectory : listing.subdirectories) {
+                subdirectories.add(new IndexDirectory(
+                        root, directory.resolve(subdirectory), relativePath + subdirectory + NAME_SEPARATOR));
+            }
+            invokeAll(subdirectories);
+        }
+
+        private DirectoryListing getListing() throws IOException {
+            long modified = Files.getLastModifiedTime(directory).toMillis();
+            DirectoryListing cachedListing = cachedListings.get(directory.toString());
+
+            if (cachedListing != null && cachedListing.modified == modified) {
+                return cachedListing;
+            }
+
+            List<String> sourceFiles = new ArrayList<>();
+            List<String> subdirectories = new ArrayList<>();
+            try (DirectoryStream<Path> entries = Files.newDirectoryStream(directory)) {
+                for (Path entry : entries) {
+                    BasicFileAttributes attributes = Files.readAttributes(entry, BasicFileAttributes.class);
+                    String name = entry.getFileName().toString();
+
+                    if (attributes.isDirectory()) {
+                        subdirectories.add(name);
+                    } else if (name.endsWith(".java")) {
+                        sourceFiles.add(name);
+                    }
+                }
+            }
+            directoryListed();
+
+            return new DirectoryListing(modified, sourceFiles, subdirectories);
+        }
+    }
+}
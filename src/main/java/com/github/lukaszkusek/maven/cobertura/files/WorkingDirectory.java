@@ -32,17 +32,29 @@ public class WorkingDirectory {
     public static final String COBERTURA_DIRECTORY_NAME = "cobertura";
     public static final String INSTRUMENTED_CLASSES_DIRECTORY_NAME = "instrumented";
     public static final String DATA_FILE_NAME = "cobertura.ser";
+    public static final String FORK_DATA_FILES_DIRECTORY_NAME = "forks";
+    public static final String TEST_COVERAGE_DIRECTORY_NAME = "tests";
+    public static final String AGENT_CACHE_DIRECTORY_NAME = "agent-cache";
+    public static final String MAPPED_COUNTERS_DIRECTORY_NAME = "counters";
 
     private final File outputDirectory;
     private final File coberturaDirectory;
     private final File instrumentedClassesDirectory;
     private final File dataFile;
+    private final File forkDataFilesDirectory;
+    private final File testCoverageDirectory;
+    private final File agentCacheDirectory;
+    private final File mappedCountersDirectory;
 
     public WorkingDirectory(MavenProject project) {
         this.outputDirectory = new File(project.getBuild().getOutputDirectory());
         this.coberturaDirectory = new File(project.getBuild().getDirectory(), COBERTURA_DIRECTORY_NAME);
         this.instrumentedClassesDirectory = new File(coberturaDirectory, INSTRUMENTED_CLASSES_DIRECTORY_NAME);
         this.dataFile = new File(coberturaDirectory, DATA_FILE_NAME);
+        this.forkDataFilesDirectory = new File(coberturaDirectory, FORK_DATA_FILES_DIRECTORY_NAME);
+        this.testCoverageDirectory = new File(coberturaDirectory, TEST_COVERAGE_DIRECTORY_NAME);
+        this.agentCacheDirectory = new File(coberturaDirectory, AGENT_CACHE_DIRECTORY_NAME);
+        this.mappedCountersDirectory = new File(coberturaDirectory, MAPPED_COUNTERS_DIRECTORY_NAME);
     }
 
     public void createDirectories() {
@@ -88,4 +100,20 @@ public class WorkingDirectory {
     public String getDataFilePath() {
         return dataFile.getAbsolutePath();
     }
+
+    public File getForkDataFilesDirectory() {
+        return forkDataFilesDirectory;
+    }
+
+    public File getTestCoverageDirectory() {
+        return testCoverageDirectory;
+    }
+
+    public File getAgentCacheDirectory() {
+        return agentCacheDirectory;
+    }
+
+    public File getMappedCountersDirectory() {
+        return mappedCountersDirectory;
+    }
 }
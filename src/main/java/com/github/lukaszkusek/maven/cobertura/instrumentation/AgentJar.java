@@ -0,0 +1,140 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2013 Lukasz Kusek
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.github.lukaszkusek.maven.cobertura.instrumentation;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+
+import com.github.lukaszkusek.maven.cobertura.properties.PropertiesFile;
+import com.github.lukaszkusek.maven.cobertura.runtime.ClassmapReader;
+import com.github.lukaszkusek.maven.cobertura.runtime.CoverageAgent;
+import com.github.lukaszkusek.maven.cobertura.runtime.CoverageDumper;
+import com.github.lukaszkusek.maven.cobertura.runtime.CoverageDumperMBean;
+import com.github.lukaszkusek.maven.cobertura.runtime.MappedCounters;
+import com.github.lukaszkusek.maven.cobertura.runtime.MappedCountersFile;
+import com.github.lukaszkusek.maven.cobertura.runtime.ProbeRewriter;
+import com.github.lukaszkusek.maven.cobertura.runtime.StripedCounters;
+import com.github.lukaszkusek.maven.cobertura.runtime.TouchPoints;
+import org.apache.maven.plugin.MojoExecutionException;
+
+/**
+ * JAR given to test JVMs with {@code -javaagent}, holding {@link CoverageAgent} with classes it uses, other classes of
+ * the plugin used in the test JVM and {@code cobertura.properties}. An agent JAR is on the system classpath, so all of
+ * them are found there without changing the output directory of the project. Its {@code Class-Path} lists the JARs of
+ * the Cobertura runtime, which the agent instruments classes with, as tests may not run on the system classpath, e.g.
+ * with {@code useSystemClassLoader} of surefire disabled.
+ */
+public class AgentJar {
+
+    public static final String NAME = "cobertura-agent.jar";
+
+    private final File file;
+
+    private AgentJar(File coberturaDirectory) {
+        this.file = new File(coberturaDirectory, NAME);
+    }
+
+    public static AgentJar locatedIn(File coberturaDirectory) {
+        return new AgentJar(coberturaDirectory);
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public void write(File propertiesFile, List<File> coberturaJars, Class<?>... runtimeClasses)
+            throws MojoExecutionException {
+
+        Manifest manifest = new Manifest();
+        manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+        manifest.getMainAttributes().putValue("Premain-Class", CoverageAgent.class.getName());
+        manifest.getMainAttributes().put(Attributes.Name.CLASS_PATH, toClassPath(coberturaJars));
+
+        try (JarOutputStream jar = new JarOutputStream(new FileOutputStream(file), manifest)) {
+            addClass(jar, CoverageAgent.class);
+            addClass(jar, CoverageDumper.class);
+            addClass(jar, CoverageDumperMBean.class);
+            addClass(jar, ProbeRewriter.class);
+            addClass(jar, ClassmapReader.class);
+            addClass(jar, TouchPoints.class);
+            addClass(jar, StripedCounters.class);
+            addClass(jar, MappedCounters.class);
+            addClass(jar, MappedCountersFile.class);
+            for (Class<?> runtimeClass : runtimeClasses) {
+                addClass(jar, runtimeClass);
+            }
+
+            jar.putNextEntry(new JarEntry(PropertiesFile.NAME));
+            Files.copy(propertiesFile.toPath(), jar);
+            jar.closeEntry();
+        } catch (IOException e) {
+            throw new MojoExecutionException("Unable to write " + NAME + " file.", e);
+        }
+    }
+
+    /**
+     * Absolute URLs, with spaces escaped, as entries of a {@code Class-Path} are separated by spaces.
+     */
+    private String toClassPath(List<File> jars) {
+        List<String> urls = new ArrayList<>();
+        for (File jar : jars) {
+            urls.add(jar.getAbsoluteFile().toURI().toString());
+        }
+
+        return String.join(" ", urls);
+    }
+
+    /**
+     * Adds the given class together with its nested classes.
+     */
+    private void addClass(JarOutputStream jar, Class<?> runtimeClass) throws IOException {
+        String classFile = runtimeClass.getName().replace('.', '/') + ".class";
+
+        try (InputStream classContent = runtimeClass.getClassLoader().getResourceAsStream(classFile)) {
+            jar.putNextEntry(new JarEntry(classFile));
+            copy(classContent, jar);
+            jar.closeEntry();
+        }
+
+        for (Class<?> nestedClass : runtimeClass.getDeclaredClasses()) {
+            addClass(jar, nestedClass);
+        }
+    }
+
+    private void copy(InputStream input, JarOutputStream jar) throws IOException {
+        byte[] buffer = new byte[8192];
+        for (int read = input.read(buffer); read >= 0; read = input.read(buffer)) {
+            jar.write(buffer, 0, read);
+        }
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2013 Lukasz Kusek
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.github.lukaszkusek.maven.cobertura.instrumentation;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+import net.sourceforge.cobertura.coveragedata.ProjectData;
+import net.sourceforge.cobertura.instrument.CoberturaInstrumenter;
+
+/**
+ * Collects project data of classes instrumented by the coverage agent only once tests load them, by instrumenting
+ * them without writing the result. Added to the data file, it reports classes never loaded by tests with no hits, the
+ * same as offline instrumentation does. Classes are instrumented in shards on the workers of an
+ * {@link InstrumentationEngine}.
+ */
+public class ClassDataCollector {
+
+    private final InstrumentationEngine engine;
+    private final File classesDirectory;
+    private final Supplier<CoberturaInstrumenter> instrumenters;
+
+    private final List<Future<ProjectData>> shards = new ArrayList<>();
+    private List<String> pendingClassFiles = new ArrayList<>();
+
+    /**
+     * @param instrumenters creates a configured instrumenter for every shard, as instrumenters are not thread safe
+     */
+    public ClassDataCollector(
+            InstrumentationEngine engine, File classesDirectory, Supplier<CoberturaInstrumenter> instrumenters) {
+
+        this.engine = engine;
+        this.classesDirectory = classesDirectory;
+        this.instrumenters = instrumenters;
+    }
+
+    public void submit(String classFile) {
+        pendingClassFiles.add(classFile);
+
+        if (pendingClassFiles.size() >= InstrumentationEngine.SHARD_SIZE) {
+            submitPendingClassFiles();
+        }
+    }
+
+    private void submitPendingClassFiles() {
+        if (!pendingClassFiles.isEmpty()) {
+            List<String> shard = pendingClassFiles;
+            shards.add(engine.execute(() -> collect(shard)));
+            pendingClassFiles = new ArrayList<>();
+        }
+    }
+
+    private ProjectData collect(List<String> classFiles) throws IOException {
+        ProjectData projectData = new ProjectData();
+        CoberturaInstrumenter instrumenter = instrumenters.get();
+        instrumenter.setProjectData(projectData);
+
+        for (String classFile : classFiles) {
+            try (InputStream input = new FileInputStream(new File(classesDirectory, classFile))) {
+                instrumenter.instrumentClass(input);
+            }
+        }
+
+        return projectData;
+    }
+
+    /**
+     * Waits for all submitted classes to be instrumented.
+     *
+     * @return project data of all submitted classes, without hits
+     */
+    public ProjectData finish() throws Throwable {
+        submitPendingClassFiles();
+
+        ProjectData projectData = new ProjectData();
+        for (Future<ProjectData> shard : shards) {
+            try {
+                projectData.merge(shard.get());
+            } catch (ExecutionException e) {
+                throw e.getCause();
+            }
+        }
+
+        return projectData;
+    }
+}
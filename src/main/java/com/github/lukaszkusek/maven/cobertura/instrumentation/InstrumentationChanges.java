@@ -0,0 +1,131 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2013 Lukasz Kusek
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.github.lukaszkusek.maven.cobertura.instrumentation;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+
+/**
+ * Comparison of classes found in the output directory with the {@link InstrumentationManifest}, built while the
+ * output directory is scanned.
+ */
+public class InstrumentationChanges {
+
+    private static final String CLASS_FILE_EXTENSION = ".class";
+
+    private final Properties previousClassHashes;
+    private final boolean sameConfiguration;
+    private final File instrumentedClassesDirectory;
+
+    private final Map<String, String> classHashes = new LinkedHashMap<>();
+    private final Set<String> changedClasses = new LinkedHashSet<>();
+    private final List<String> unchangedClasses = new ArrayList<>();
+    private final List<String> deletedClasses = new ArrayList<>();
+
+    InstrumentationChanges(
+            Properties previousClassHashes, boolean sameConfiguration, File instrumentedClassesDirectory) {
+
+        this.previousClassHashes = previousClassHashes;
+        this.sameConfiguration = sameConfiguration;
+        this.instrumentedClassesDirectory = instrumentedClassesDirectory;
+    }
+
+    /**
+     * @return {@code true} if the class is new or changed since the previous build, or its instrumented copy is gone
+     */
+    public boolean track(String classFile, String hash) {
+        classHashes.put(classFile, hash);
+
+        if (sameConfiguration
+                && hash.equals(previousClassHashes.getProperty(classFile))
+                && hasInstrumentedCopy(classFile)) {
+            unchangedClasses.add(classFile);
+            return false;
+        }
+
+        changedClasses.add(classFile);
+        return true;
+    }
+
+    private boolean hasInstrumentedCopy(String classFile) {
+        return instrumentedClassesDirectory == null || new File(instrumentedClassesDirectory, classFile).isFile();
+    }
+
+    public InstrumentationChanges finish() {
+        for (String previousClass : previousClassHashes.stringPropertyNames()) {
+            if (!InstrumentationManifest.CONFIGURATION_KEY.equals(previousClass) && !classHashes.containsKey(previousClass)) {
+                deletedClasses.add(previousClass);
+            }
+        }
+
+        return this;
+    }
+
+    public Map<String, String> getClassHashes() {
+        return classHashes;
+    }
+
+    public Set<String> getChangedClasses() {
+        return changedClasses;
+    }
+
+    public List<String> getUnchangedClasses() {
+        return unchangedClasses;
+    }
+
+    public List<String> getDeletedClasses() {
+        return deletedClasses;
+    }
+
+    public Set<String> getOutdatedClassNames() {
+        Set<String> outdatedClassNames = new HashSet<>();
+
+        for (String classFile : changedClasses) {
+            outdatedClassNames.add(toClassName(classFile));
+        }
+        for (String classFile : deletedClasses) {
+            outdatedClassNames.add(toClassName(classFile));
+        }
+
+        return outdatedClassNames;
+    }
+
+    public static boolean isClassFile(String file) {
+        return file.endsWith(CLASS_FILE_EXTENSION);
+    }
+
+    public static String toClassName(String classFile) {
+        return classFile
+                .substring(0, classFile.length() - CLASS_FILE_EXTENSION.length())
+                .replace(File.separatorChar, '.')
+                .replace('/', '.');
+    }
+}
@@ -0,0 +1,214 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2013 Lukasz Kusek
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.github.lukaszkusek.maven.cobertura.instrumentation;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import com.github.lukaszkusek.maven.cobertura.runtime.ProbeRewriter;
+import net.sourceforge.cobertura.coveragedata.ProjectData;
+import net.sourceforge.cobertura.dsl.Arguments;
+import net.sourceforge.cobertura.dsl.Cobertura;
+import org.codehaus.plexus.util.FileUtils;
+
+/**
+ * Instruments submitted classes in shards, every shard with its own {@link Cobertura} instance on a worker pool.
+ * Shards are started as soon as enough classes were submitted, so instrumentation overlaps with finding the classes.
+ */
+public class InstrumentationEngine implements AutoCloseable {
+
+    public static final String SHARDS_DIRECTORY_NAME = "shards";
+
+    static final int SHARD_SIZE = 64;
+
+    private final File shardsDirectory;
+    private final ShardArguments shardArguments;
+    private final ExecutorService executor;
+    private final boolean ownsExecutor;
+
+    private final List<Future<ProjectData>> shards = new ArrayList<>();
+    private final List<Future<?>> tasks = new ArrayList<>();
+    private List<String> pendingClassFiles = new ArrayList<>();
+
+    private ProbeRewriter probeRewriter;
+    private File instrumentedClassesDirectory;
+
+    public InstrumentationEngine(int threads, File coberturaDirectory, ShardArguments shardArguments)
+            throws IOException {
+
+        this(
+                Executors.newFixedThreadPool(threads > 0 ? threads : Runtime.getRuntime().availableProcessors()),
+                true,
+                coberturaDirectory,
+                shardArguments);
+    }
+
+    /**
+     * Instruments on a pool shared with other engines, which is left running when the engine is closed.
+     */
+    public InstrumentationEngine(ExecutorService executor, File coberturaDirectory, ShardArguments shardArguments)
+            throws IOException {
+
+        this(executor, false, coberturaDirectory, shardArguments);
+    }
+
+    private InstrumentationEngine(
+            ExecutorService executor, boolean ownsExecutor, File coberturaDirectory, ShardArguments shardArguments)
+            throws IOException {
+
+        this.shardsDirectory = new File(coberturaDirectory, SHARDS_DIRECTORY_NAME);
+        this.shardArguments = shardArguments;
+        this.executor = executor;
+        this.ownsExecutor = ownsExecutor;
+
+        FileUtils.deleteDirectory(shardsDirectory);
+        FileUtils.forceMkdir(shardsDirectory);
+    }
+
+    /**
+     * Rewrites probes of the classes of every shard once Cobertura wrote them to the given directory. Has to be called
+     * before any class is submitted.
+     */
+    public InstrumentationEngine rewritingProbes(ProbeRewriter probeRewriter, File instrumentedClassesDirectory) {
+        this.probeRewriter = probeRewriter;
+        this.instrumentedClassesDirectory = instrumentedClassesDirectory;
+
+        return this;
+    }
+
+    public void submit(String classFile) {
+        pendingClassFiles.add(classFile);
+
+        if (pendingClassFiles.size() >= SHARD_SIZE) {
+            submitPendingClassFiles();
+        }
+    }
+
+    private void submitPendingClassFiles() {
+        if (!pendingClassFiles.isEmpty()) {
+            shards.add(executor.submit(instrumentShard(shards.size(), pendingClassFiles)));
+            pendingClassFiles = new ArrayList<>();
+        }
+    }
+
+    private Callable<ProjectData> instrumentShard(int shard, List<String> classFiles) {
+        File shardDataFile = new File(shardsDirectory, "shard-" + shard + ".ser");
+
+        return () -> {
+            try {
+                ProjectData projectData = new Cobertura(shardArguments.create(classFiles, shardDataFile))
+                        .instrumentCode()
+                        .getProjectDataInstance();
+                rewriteProbes(classFiles);
+
+                return projectData;
+            } catch (Exception | Error e) {
+                throw e;
+            } catch (Throwable throwable) {
+                throw new Exception(throwable);
+            }
+        };
+    }
+
+    /**
+     * Classes not written by Cobertura, e.g. excluded ones, are copied later or have no probes, so they are never
+     * written through a link into the output directory.
+     */
+    private void rewriteProbes(List<String> classFiles) throws IOException {
+        if (probeRewriter == null || !probeRewriter.rewritesProbes()) {
+            return;
+        }
+
+        for (String classFile : classFiles) {
+            File instrumentedClass = new File(instrumentedClassesDirectory, classFile);
+
+            if (instrumentedClass.isFile()) {
+                probeRewriter.rewrite(instrumentedClass);
+            }
+        }
+    }
+
+    /**
+     * Runs other instrumentation work, e.g. of dependency JARs, on the same workers, cancelled as well when the engine
+     * is closed.
+     */
+    public <T> Future<T> execute(Callable<T> task) {
+        Future<T> future = executor.submit(task);
+        tasks.add(future);
+
+        return future;
+    }
+
+    public int getSubmittedShards() {
+        return shards.size();
+    }
+
+    /**
+     * Waits for all submitted classes to be instrumented.
+     *
+     * @return project data of all instrumented classes
+     */
+    public ProjectData finish() throws Throwable {
+        submitPendingClassFiles();
+
+        ProjectData projectData = new ProjectData();
+        for (Future<ProjectData> shard : shards) {
+            try {
+                projectData.merge(shard.get());
+            } catch (ExecutionException e) {
+                throw e.getCause();
+            }
+        }
+
+        return projectData;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (ownsExecutor) {
+            executor.shutdownNow();
+        } else {
+            // shards left after a failure must not keep workers of other modules busy
+            for (Future<ProjectData> shard : shards) {
+                shard.cancel(true);
+            }
+            for (Future<?> task : tasks) {
+                task.cancel(true);
+            }
+        }
+        FileUtils.deleteDirectory(shardsDirectory);
+    }
+
+    public interface ShardArguments {
+
+        Arguments create(List<String> classFiles, File shardDataFile);
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2013 Lukasz Kusek
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.github.lukaszkusek.maven.cobertura.instrumentation;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Map;
+import java.util.Properties;
+
+import com.google.common.hash.Hashing;
+import com.google.common.io.Files;
+import org.apache.maven.plugin.MojoExecutionException;
+
+/**
+ * Content hashes of the classes instrumented by the previous build, used to instrument only classes which changed.
+ */
+public class InstrumentationManifest {
+
+    public static final String NAME = "instrumentation.manifest";
+    public static final String CONFIGURATION_KEY = "configuration";
+
+    private final File manifestFile;
+    private final Properties entries;
+
+    private InstrumentationManifest(File manifestFileDirectory) {
+        this.manifestFile = new File(manifestFileDirectory, NAME);
+        this.entries = new Properties();
+    }
+
+    public static InstrumentationManifest locatedIn(File manifestFileDirectory) {
+        return new InstrumentationManifest(manifestFileDirectory);
+    }
+
+    public static String hash(File file) throws IOException {
+        return Files.asByteSource(file).hash(Hashing.sha1()).toString();
+    }
+
+    public InstrumentationManifest load() throws MojoExecutionException {
+        if (manifestFile.exists()) {
+            try (FileInputStream fis = new FileInputStream(manifestFile)) {
+                entries.load(fis);
+            } catch (IOException e) {
+                throw new MojoExecutionException("Unable to read " + NAME + " file.", e);
+            }
+        }
+
+        return this;
+    }
+
+    public InstrumentationChanges compareWith(String configuration) {
+        return compareWith(configuration, null);
+    }
+
+    /**
+     * @param instrumentedClassesDirectory where instrumented copies of classes are kept, so classes whose copy is
+     *                                     gone, e.g. with the directory deleted, are instrumented again even if
+     *                                     unchanged; {@code null} if there are no copies, e.g. with the agent
+     */
+    public InstrumentationChanges compareWith(String configuration, File instrumentedClassesDirectory) {
+        return new InstrumentationChanges(
+                entries, configuration.equals(entries.getProperty(CONFIGURATION_KEY)), instrumentedClassesDirectory);
+    }
+
+    public InstrumentationManifest update(Map<String, String> classHashes, String configuration) {
+        entries.clear();
+        entries.putAll(classHashes);
+        entries.setProperty(CONFIGURATION_KEY, configuration);
+
+        return this;
+    }
+
+    public void saveToDisk() throws MojoExecutionException {
+        try (FileOutputStream fos = new FileOutputStream(manifestFile)) {
+            entries.store(fos, "Generated by " + InstrumentationManifest.class.getName());
+        } catch (IOException e) {
+            throw new MojoExecutionException("Unable to write " + NAME + " file.", e);
+        }
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2013 Lukasz Kusek
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.github.lukaszkusek.maven.cobertura.instrumentation;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import com.github.lukaszkusek.maven.cobertura.files.ClassFilter;
+
+/**
+ * Lives as long as the plugin realm, so it is shared by all modules of a reactor, also when they are built in
+ * parallel. Modules instrument their shards on one worker pool sized to the available processors, instead of every
+ * module starting a pool of that size, and reuse class filters compiled for the same regexes.
+ */
+@Named
+@Singleton
+public class InstrumentationService {
+
+    private final ConcurrentMap<String, ClassFilter> classFilters = new ConcurrentHashMap<>();
+    private final AtomicInteger workers = new AtomicInteger();
+    private volatile ExecutorService sharedExecutor;
+
+    public ClassFilter getClassFilter(String includeClassesRegex, String excludeClassesRegex) {
+        return classFilters.computeIfAbsent(
+                includeClassesRegex + '\u0000' + excludeClassesRegex,
+                key -> new ClassFilter(includeClassesRegex, excludeClassesRegex));
+    }
+
+    /**
+     * @param threads number of threads of a pool used only by the returned engine, 0 to use the shared pool
+     */
+    public InstrumentationEngine createEngine(
+            int threads, File coberturaDirectory, InstrumentationEngine.ShardArguments shardArguments)
+            throws IOException {
+
+        return threads > 0
+                ? new InstrumentationEngine(threads, coberturaDirectory, shardArguments)
+                : new InstrumentationEngine(getSharedExecutor(), coberturaDirectory, shardArguments);
+    }
+
+    private ExecutorService getSharedExecutor() {
+        if (sharedExecutor == null) {
+            synchronized (this) {
+                if (sharedExecutor == null) {
+                    sharedExecutor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), task -> {
+                        Thread worker = new Thread(task, "cobertura-instrumentation-" + workers.incrementAndGet());
+                        // the service is never closed, workers must not keep the JVM running
+                        worker.setDaemon(true);
+
+                        return worker;
+                    });
+                }
+            }
+        }
+
+        return sharedExecutor;
+    }
+}
@@ -0,0 +1,169 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2013 Lukasz Kusek
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.github.lukaszkusek.maven.cobertura.instrumentation;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.Properties;
+import java.util.Set;
+
+import com.google.common.hash.Hashing;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.codehaus.plexus.util.FileUtils;
+
+/**
+ * Instrumented dependency JARs with project data of their classes, named after a checksum of the original JAR and
+ * the instrumentation configuration, so a JAR is instrumented again only when either of them changes. An index maps
+ * original JARs to the instrumented ones used by the current build.
+ */
+public class InstrumentedJars {
+
+    public static final String DIRECTORY_NAME = "jars";
+    public static final String INDEX_FILE_NAME = "jars.index";
+
+    private static final String JAR_EXTENSION = ".jar";
+    private static final String DATA_FILE_EXTENSION = ".ser";
+
+    private final File directory;
+    private final File indexFile;
+    private final Properties index = new Properties();
+
+    private InstrumentedJars(File coberturaDirectory) {
+        this.directory = new File(coberturaDirectory, DIRECTORY_NAME);
+        this.indexFile = new File(directory, INDEX_FILE_NAME);
+    }
+
+    public static InstrumentedJars locatedIn(File coberturaDirectory) {
+        return new InstrumentedJars(coberturaDirectory);
+    }
+
+    public File getIndexFile() {
+        return indexFile;
+    }
+
+    public InstrumentedJars load() throws MojoExecutionException {
+        if (indexFile.exists()) {
+            try (FileInputStream fis = new FileInputStream(indexFile)) {
+                index.load(fis);
+            } catch (IOException e) {
+                throw new MojoExecutionException("Unable to read " + INDEX_FILE_NAME + " file.", e);
+            }
+        }
+
+        return this;
+    }
+
+    /**
+     * @return file of the JAR instrumented with the given configuration, which may not exist yet
+     */
+    public File getInstrumentedJar(File jar, String configuration) throws IOException {
+        String checksum = Hashing.sha1().newHasher()
+                .putString(InstrumentationManifest.hash(jar), StandardCharsets.UTF_8)
+                .putString(configuration, StandardCharsets.UTF_8)
+                .hash().toString();
+        String name = jar.getName().endsWith(JAR_EXTENSION)
+                ? jar.getName().substring(0, jar.getName().length() - JAR_EXTENSION.length())
+                : jar.getName();
+
+        return new File(directory, name + "-" + checksum.substring(0, 16) + JAR_EXTENSION);
+    }
+
+    public File getDataFile(File instrumentedJar) {
+        String name = instrumentedJar.getName();
+
+        return new File(directory, name.substring(0, name.length() - JAR_EXTENSION.length()) + DATA_FILE_EXTENSION);
+    }
+
+    public boolean isInstrumented(File instrumentedJar) {
+        return instrumentedJar.isFile() && getDataFile(instrumentedJar).isFile();
+    }
+
+    public void prepareDirectory() throws IOException {
+        FileUtils.forceMkdir(directory);
+    }
+
+    /**
+     * @return the instrumented JAR used for the original JAR, {@code null} if there is none
+     */
+    public File findInstrumentedJar(File jar) {
+        String instrumentedJarName = index.getProperty(jar.getAbsolutePath());
+
+        return instrumentedJarName != null ? new File(directory, instrumentedJarName) : null;
+    }
+
+    /**
+     * @return the original JAR of an instrumented one, {@code null} if the file is not an instrumented JAR
+     */
+    public File findOriginalJar(File instrumentedJar) {
+        if (!directory.equals(instrumentedJar.getParentFile())) {
+            return null;
+        }
+
+        for (String jar : index.stringPropertyNames()) {
+            if (instrumentedJar.getName().equals(index.getProperty(jar))) {
+                return new File(jar);
+            }
+        }
+
+        return null;
+    }
+
+    public void put(File jar, File instrumentedJar) {
+        index.setProperty(jar.getAbsolutePath(), instrumentedJar.getName());
+    }
+
+    /**
+     * Writes the index and deletes instrumented JARs no longer in it, e.g. of previous versions of a dependency.
+     */
+    public void saveToDisk() throws MojoExecutionException {
+        Set<String> usedFiles = new HashSet<>();
+        usedFiles.add(INDEX_FILE_NAME);
+        for (String jar : index.stringPropertyNames()) {
+            File instrumentedJar = new File(directory, index.getProperty(jar));
+            usedFiles.add(instrumentedJar.getName());
+            usedFiles.add(getDataFile(instrumentedJar).getName());
+        }
+
+        try {
+            FileUtils.forceMkdir(directory);
+
+            try (FileOutputStream fos = new FileOutputStream(indexFile)) {
+                index.store(fos, "Generated by " + InstrumentedJars.class.getName());
+            }
+
+            File[] files = directory.listFiles();
+            for (File file : files != null ? files : new File[0]) {
+                if (!usedFiles.contains(file.getName())) {
+                    FileUtils.forceDelete(file);
+                }
+            }
+        } catch (IOException e) {
+            throw new MojoExecutionException("Unable to write " + INDEX_FILE_NAME + " file.", e);
+        }
+    }
+}
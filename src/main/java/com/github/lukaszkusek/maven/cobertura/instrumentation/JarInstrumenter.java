@@ -0,0 +1,226 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2013 Lukasz Kusek
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.github.lukaszkusek.maven.cobertura.instrumentation;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+import com.github.lukaszkusek.maven.cobertura.files.ClassFilter;
+import com.github.lukaszkusek.maven.cobertura.runtime.ProbeRewriter;
+import com.google.common.io.ByteStreams;
+import net.sourceforge.cobertura.coveragedata.ProjectData;
+import net.sourceforge.cobertura.instrument.CoberturaInstrumenter;
+
+/**
+ * Instruments classes of a JAR without unpacking it: classes to instrument are read into memory and instrumented in
+ * shards on the workers of an {@link InstrumentationEngine} while the JAR is still being read, and all entries are
+ * written in their original order into a new JAR, other entries streamed from the original JAR. Signature files are
+ * left out, as they no longer match.
+ */
+public class JarInstrumenter {
+
+    private static final Pattern SIGNATURE_FILE = Pattern.compile("META-INF/[^/]+\\.(SF|RSA|DSA|EC)");
+
+    private final InstrumentationEngine engine;
+    private final ClassFilter classFilter;
+    private final Supplier<CoberturaInstrumenter> instrumenters;
+    private ProbeRewriter probeRewriter;
+
+    /**
+     * @param instrumenters creates a configured instrumenter for every shard, as instrumenters are not thread safe
+     */
+    public JarInstrumenter(
+            InstrumentationEngine engine, ClassFilter classFilter, Supplier<CoberturaInstrumenter> instrumenters) {
+
+        this.engine = engine;
+        this.classFilter = classFilter;
+        this.instrumenters = instrumenters;
+    }
+
+    /**
+     * Rewrites probes of classes instrumented by Cobertura before they are written to the JAR.
+     */
+    public JarInstrumenter rewritingProbes(ProbeRewriter probeRewriter) {
+        this.probeRewriter = probeRewriter;
+
+        return this;
+    }
+
+    public PendingJar submit(File jar) throws IOException {
+        PendingJar pendingJar = new PendingJar(jar);
+        List<Entry> shard = new ArrayList<>();
+
+        try (ZipInputStream input = new ZipInputStream(new FileInputStream(jar))) {
+            for (ZipEntry zipEntry = input.getNextEntry(); zipEntry != null; zipEntry = input.getNextEntry()) {
+                if (SIGNATURE_FILE.matcher(zipEntry.getName()).matches()) {
+                    continue;
+                }
+
+                if (isClassToInstrument(zipEntry)) {
+                    Entry entry = new Entry(zipEntry, ByteStreams.toByteArray(input));
+                    pendingJar.entries.add(entry);
+                    shard.add(entry);
+                } else {
+                    pendingJar.entries.add(new Entry(zipEntry, null));
+                }
+
+                if (shard.size() >= InstrumentationEngine.SHARD_SIZE) {
+                    pendingJar.submit(shard);
+                    shard = new ArrayList<>();
+                }
+            }
+        }
+        pendingJar.submit(shard);
+
+        return pendingJar;
+    }
+
+    private boolean isClassToInstrument(ZipEntry zipEntry) {
+        String name = zipEntry.getName();
+
+        // module descriptors and classes of other Java versions are not classes of the JAR's packages
+        return !zipEntry.isDirectory()
+                && !name.startsWith("META-INF/")
+                && InstrumentationChanges.isClassFile(name)
+                && !name.endsWith("module-info.class")
+                && classFilter.matches(name);
+    }
+
+    public class PendingJar {
+
+        private final File jar;
+        private final List<Entry> entries = new ArrayList<>();
+        private final List<Future<ProjectData>> shards = new ArrayList<>();
+
+        private PendingJar(File jar) {
+            this.jar = jar;
+        }
+
+        private void submit(List<Entry> shard) {
+            if (!shard.isEmpty()) {
+                shards.add(engine.execute(() -> instrument(shard)));
+            }
+        }
+
+        private ProjectData instrument(List<Entry> shard) throws IOException {
+            ProjectData projectData = new ProjectData();
+            CoberturaInstrumenter instrumenter = instrumenters.get();
+            instrumenter.setProjectData(projectData);
+
+            for (Entry entry : shard) {
+                CoberturaInstrumenter.InstrumentationResult result =
+                        instrumenter.instrumentClass(new ByteArrayInputStream(entry.content));
+
+                // no result means the class was ignored, e.g. an interface
+                if (result != null) {
+                    entry.content = probeRewriter != null
+                            ? probeRewriter.rewrite(result.getContent())
+                            : result.getContent();
+                }
+            }
+
+            return projectData;
+        }
+
+        /**
+         * Waits for the shards of the JAR and writes it, replacing an existing file only once it is complete.
+         *
+         * @return project data of all instrumented classes of the JAR
+         */
+        public ProjectData writeTo(File instrumentedJar) throws Throwable {
+            ProjectData projectData = new ProjectData();
+            for (Future<ProjectData> shard : shards) {
+                try {
+                    projectData.merge(shard.get());
+                } catch (ExecutionException e) {
+                    throw e.getCause();
+                }
+            }
+
+            File temporaryFile = new File(instrumentedJar.getPath() + ".tmp");
+            try (ZipFile source = new ZipFile(jar);
+                 ZipOutputStream output = new ZipOutputStream(new FileOutputStream(temporaryFile))) {
+                for (Entry entry : entries) {
+                    ZipEntry zipEntry = new ZipEntry(entry.name);
+                    zipEntry.setTime(entry.time);
+                    output.putNextEntry(zipEntry);
+
+                    if (entry.content != null) {
+                        output.write(entry.content);
+                    } else {
+                        try (InputStream input = source.getInputStream(source.getEntry(entry.name))) {
+                            ByteStreams.copy(input, output);
+                        }
+                    }
+                    output.closeEntry();
+                }
+            }
+            Files.move(temporaryFile.toPath(), instrumentedJar.toPath(), StandardCopyOption.REPLACE_EXISTING);
+
+            return projectData;
+        }
+
+        public int getClasses() {
+            int classes = 0;
+            for (Entry entry : entries) {
+                if (InstrumentationChanges.isClassFile(entry.name)) {
+                    classes++;
+                }
+            }
+
+            return classes;
+        }
+    }
+
+    private static class Entry {
+
+        private final String name;
+        private final long time;
+
+        // null for entries which are not instrumented, streamed from the original JAR when it is written
+        private byte[] content;
+
+        Entry(ZipEntry zipEntry, byte[] content) {
+            this.name = zipEntry.getName();
+            this.time = zipEntry.getTime();
+            this.content = content;
+        }
+    }
+}
@@ -0,0 +1,167 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2013 Lukasz Kusek
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.github.lukaszkusek.maven.cobertura.metrics;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.maven.plugin.logging.Log;
+
+/**
+ * Durations and counts of the phases of a single goal execution.
+ */
+public class ExecutionMetrics {
+
+    public static final String FILE_EXTENSION = ".metrics.json";
+
+    private final String module;
+    private final String execution;
+    private final long started = System.nanoTime();
+    private final List<Phase> phases = new ArrayList<>();
+
+    public ExecutionMetrics(String module, String execution) {
+        this.module = module;
+        this.execution = execution;
+    }
+
+    /**
+     * Starts timing a phase, which stops when the returned phase is closed.
+     */
+    public synchronized Phase start(String name) {
+        Phase phase = new Phase(name);
+        phases.add(phase);
+
+        return phase;
+    }
+
+    public synchronized List<Phase> getPhases() {
+        return new ArrayList<>(phases);
+    }
+
+    public void logSummary(Log log) {
+        StringBuilder summary = new StringBuilder(
+                String.format("Execution %s of %s took %d ms:", execution, module, getTotalMillis()));
+
+        for (Phase phase : getPhases()) {
+            summary.append(String.format("%n  %-12s %6d ms", phase.getName(), phase.getMillis()));
+            for (Map.Entry<String, Long> count : phase.getCounts().entrySet()) {
+                summary.append(String.format(", %s: %d", count.getKey(), count.getValue()));
+            }
+        }
+
+        log.info(summary);
+    }
+
+    public void writeTo(File metricsFile) throws IOException {
+        StringBuilder json = new StringBuilder("{\n");
+        json.append("  \"module\": ").append(quote(module)).append(",\n");
+        json.append("  \"execution\": ").append(quote(execution)).append(",\n");
+        json.append("  \"totalMillis\": ").append(getTotalMillis()).append(",\n");
+        json.append("  \"phases\": [");
+
+        List<Phase> phases = getPhases();
+        for (int i = 0; i < phases.size(); i++) {
+            Phase phase = phases.get(i);
+            json.append(i == 0 ? "\n" : ",\n");
+            json.append("    {\"name\": ").append(quote(phase.getName()));
+            json.append(", \"millis\": ").append(phase.getMillis());
+            json.append(", \"counts\": {");
+
+            String separator = "";
+            for (Map.Entry<String, Long> count : phase.getCounts().entrySet()) {
+                json.append(separator).append(quote(count.getKey())).append(": ").append(count.getValue());
+                separator = ", ";
+            }
+            json.append("}}");
+        }
+        json.append(phases.isEmpty() ? "]\n" : "\n  ]\n").append("}\n");
+
+        Files.write(metricsFile.toPath(), json.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private long getTotalMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+    }
+
+    private static String quote(String value) {
+        StringBuilder quoted = new StringBuilder("\"");
+
+        for (char character : value.toCharArray()) {
+            if (character == '"' || character == '\\') {
+                quoted.append('\\').append(character);
+            } else if (character < ' ') {
+                quoted.append(String.format("\\u%04x", (int) character));
+            } else {
+                quoted.append(character);
+            }
+        }
+
+        return quoted.append('"').toString();
+    }
+
+    public static class Phase implements AutoCloseable {
+
+        private final String name;
+        private final long started = System.nanoTime();
+        private final Map<String, Long> counts = new LinkedHashMap<>();
+        private long nanos = -1;
+
+        Phase(String name) {
+            this.name = name;
+        }
+
+        public synchronized Phase count(String counter, long value) {
+            Long previous = counts.get(counter);
+            counts.put(counter, previous == null ? value : previous + value);
+
+            return this;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public synchronized long getMillis() {
+            return TimeUnit.NANOSECONDS.toMillis(nanos >= 0 ? nanos : System.nanoTime() - started);
+        }
+
+        public synchronized Map<String, Long> getCounts() {
+            return new LinkedHashMap<>(counts);
+        }
+
+        @Override
+        public synchronized void close() {
+            if (nanos < 0) {
+                nanos = System.nanoTime() - started;
+            }
+        }
+    }
+}
@@ -0,0 +1,165 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2013 Lukasz Kusek
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.github.lukaszkusek.maven.cobertura.project;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.artifact.ArtifactUtils;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.repository.RepositorySystem;
+
+/**
+ * The {@code cobertura-runtime} artifact among plugin dependencies, found and turned into a provided dependency of
+ * tested projects only once, however many modules use it, each getting its own copy. Thread safe, so one instance can
+ * serve all modules.
+ */
+public class CoberturaRuntime {
+
+    public static final String ARTIFACT_ID = "net.sourceforge.cobertura:cobertura-runtime";
+
+    private final List<Artifact> pluginArtifacts;
+    private final RepositorySystem repositorySystem;
+
+    private Artifact artifact;
+    private Artifact providedArtifact;
+    private List<String> dependencies;
+
+    public CoberturaRuntime(List<Artifact> pluginArtifacts, RepositorySystem repositorySystem) {
+        this.pluginArtifacts = pluginArtifacts;
+        this.repositorySystem = repositorySystem;
+    }
+
+    public synchronized Artifact getArtifact() throws MojoExecutionException {
+        if (artifact == null) {
+            for (Artifact pluginArtifact : pluginArtifacts) {
+                if (ARTIFACT_ID.equals(ArtifactUtils.versionlessKey(pluginArtifact))) {
+                    artifact = pluginArtifact;
+                }
+            }
+
+            if (artifact == null) {
+                throw new MojoExecutionException("Couldn't find '" + ARTIFACT_ID + "' artifact in plugin dependencies.");
+            }
+        }
+
+        return artifact;
+    }
+
+    public String getVersion() throws MojoExecutionException {
+        return getArtifact().getVersion();
+    }
+
+    /**
+     * @return a copy of the runtime artifact in provided scope, so it is on the test classpath but never packaged,
+     * owned by the calling project, as artifacts are mutated by the build of the project they belong to
+     */
+    public Artifact getProvidedArtifact() throws MojoExecutionException {
+        return ArtifactUtils.copyArtifact(getProvidedArtifactTemplate());
+    }
+
+    /**
+     * Coordinates and file, resolved once, of the artifact returned by {@link #getProvidedArtifact()}, never given
+     * away itself.
+     */
+    private synchronized Artifact getProvidedArtifactTemplate() throws MojoExecutionException {
+        if (providedArtifact == null) {
+            Artifact runtimeArtifact = getArtifact();
+
+            Artifact template = repositorySystem.createArtifact(
+                    runtimeArtifact.getGroupId(),
+                    runtimeArtifact.getArtifactId(),
+                    runtimeArtifact.getVersion(),
+                    Artifact.SCOPE_PROVIDED,
+                    runtimeArtifact.getType());
+            template.setFile(runtimeArtifact.getFile());
+            template.setResolved(runtimeArtifact.isResolved());
+            providedArtifact = template;
+        }
+
+        return providedArtifact;
+    }
+
+    /**
+     * @return ids of plugin dependencies pulled in by the runtime artifact, which also end up on the test classpath
+     */
+    public synchronized List<String> getDependencies() {
+        if (dependencies == null) {
+            List<String> runtimeDependencies = new ArrayList<>();
+
+            for (Artifact pluginArtifact : pluginArtifacts) {
+                if (isRuntimeDependency(pluginArtifact)) {
+                    runtimeDependencies.add(pluginArtifact.getId());
+                }
+            }
+            dependencies = Collections.unmodifiableList(runtimeDependencies);
+        }
+
+        return dependencies;
+    }
+
+    /**
+     * @return JARs of the runtime artifact and of its dependencies, for class paths not built by Maven
+     */
+    public List<File> getJars() throws MojoExecutionException {
+        List<File> jars = new ArrayList<>();
+
+        addJar(jars, getArtifact());
+        for (Artifact pluginArtifact : pluginArtifacts) {
+            if (isRuntimeDependency(pluginArtifact)) {
+                addJar(jars, pluginArtifact);
+            }
+        }
+
+        return jars;
+    }
+
+    private static void addJar(List<File> jars, Artifact artifact) {
+        File file = artifact.getFile();
+
+        // the runtime artifact itself may be only a POM
+        if (file != null && file.isFile() && file.getName().endsWith(".jar")) {
+            jars.add(file);
+        }
+    }
+
+    private boolean isRuntimeDependency(Artifact pluginArtifact) {
+        List<String> dependencyTrail = pluginArtifact.getDependencyTrail();
+
+        if (dependencyTrail == null) {
+            return false;
+        }
+
+        for (String id : dependencyTrail.subList(0, Math.max(dependencyTrail.size() - 1, 0))) {
+            if (id.startsWith(ARTIFACT_ID + ":")) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+}
@@ -0,0 +1,56 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2013 Lukasz Kusek
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.github.lukaszkusek.maven.cobertura.project;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.repository.RepositorySystem;
+
+/**
+ * Keeps one {@link CoberturaRuntime} per build and plugin version, shared by all modules and goals of the build.
+ * Runtimes of earlier builds, e.g. in a long running Maven daemon, are dropped when a new build starts.
+ */
+@Named
+@Singleton
+public class CoberturaRuntimeCache {
+
+    private final ConcurrentMap<String, CoberturaRuntime> runtimes = new ConcurrentHashMap<>();
+
+    public CoberturaRuntime get(
+            MavenSession session, String pluginVersion, List<Artifact> pluginArtifacts,
+            RepositorySystem repositorySystem) {
+
+        String build = "@" + session.getRequest().getStartTime().getTime();
+        runtimes.keySet().removeIf(key -> !key.endsWith(build));
+
+        return runtimes.computeIfAbsent(
+                pluginVersion + build, key -> new CoberturaRuntime(pluginArtifacts, repositorySystem));
+    }
+}
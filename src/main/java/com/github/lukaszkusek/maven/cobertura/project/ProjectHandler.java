@@ -23,67 +23,257 @@
 
 package com.github.lukaszkusek.maven.cobertura.project;
 
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.regex.Pattern;
 
+import com.google.common.base.Joiner;
+import com.google.common.base.Splitter;
 import com.google.common.collect.ImmutableSet;
+import org.apache.maven.RepositoryUtils;
 import org.apache.maven.artifact.Artifact;
 import org.apache.maven.artifact.ArtifactUtils;
+import org.apache.maven.model.Dependency;
 import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.project.DefaultDependencyResolutionRequest;
+import org.apache.maven.project.DependencyResolutionException;
 import org.apache.maven.project.MavenProject;
+import org.apache.maven.project.ProjectDependenciesResolver;
 import org.apache.maven.repository.RepositorySystem;
+import org.eclipse.aether.RepositorySystemSession;
 
 public class ProjectHandler {
 
-    public static final String COBERTURA_ARTIFACT_ID = "net.sourceforge.cobertura:cobertura-runtime";
+    public static final String COBERTURA_ARTIFACT_ID = CoberturaRuntime.ARTIFACT_ID;
+    public static final String ARG_LINE_PROPERTY = "argLine";
+    public static final String ADDITIONAL_CLASSPATH_PROPERTY = "maven.test.additionalClasspath";
+    public static final String DEPENDENCY_EXCLUDES_PROPERTY = "maven.test.dependency.excludes";
+
+    private static final String REPLACED_DEPENDENCIES_KEY = ProjectHandler.class.getName() + ".replacedDependencies";
+
     private final MavenProject project;
-    private final List<Artifact> pluginArtifacts;
+    private final CoberturaRuntime coberturaRuntime;
     private final RepositorySystem repositorySystem;
 
-    public ProjectHandler(MavenProject project, List<Artifact> pluginArtifacts, RepositorySystem repositorySystem) {
+    public ProjectHandler(MavenProject project, CoberturaRuntime coberturaRuntime, RepositorySystem repositorySystem) {
         this.project = project;
-        this.pluginArtifacts = pluginArtifacts;
+        this.coberturaRuntime = coberturaRuntime;
         this.repositorySystem = repositorySystem;
     }
 
     public void addCoberturaArtifactToTestClasspath() throws MojoExecutionException {
-        Artifact coberturaArtifact = getCoberturaArtifact();
+        Set<Artifact> dependencyArtifacts = project.getDependencyArtifacts();
 
-        addArtifactToTestClasspath(coberturaArtifact);
+        if (dependencyArtifacts == null) {
+            Set<Artifact> artifacts = createDeclaredDependencyArtifacts();
+            artifacts.add(coberturaRuntime.getProvidedArtifact());
+            project.setDependencyArtifacts(artifacts);
+        } else if (!containsCoberturaArtifact(dependencyArtifacts)) {
+            addToDependencyArtifacts(dependencyArtifacts, coberturaRuntime.getProvidedArtifact());
+        }
     }
 
-    private Artifact getCoberturaArtifact() throws MojoExecutionException {
-        Map<String, Artifact> pluginArtifacts = ArtifactUtils.artifactMapByVersionlessId(this.pluginArtifacts);
-        Artifact coberturaArtifact = pluginArtifacts.get(COBERTURA_ARTIFACT_ID);
+    /**
+     * Dependency artifacts not created yet are resolved from declared dependencies, so the set holds them all, not
+     * only the cobertura artifact.
+     */
+    private Set<Artifact> createDeclaredDependencyArtifacts() throws MojoExecutionException {
+        Set<Artifact> artifacts = new LinkedHashSet<>();
+
+        for (Dependency dependency : project.getDependencies()) {
+            Artifact artifact = repositorySystem.createDependencyArtifact(dependency);
 
-        if (coberturaArtifact == null) {
-            throw new MojoExecutionException(
-                    "Couldn't find '" + COBERTURA_ARTIFACT_ID + "' artifact in plugin dependencies.");
+            if (artifact == null) {
+                throw new MojoExecutionException(
+                        "Unable to add cobertura to the test classpath, invalid dependency " + dependency + ".");
+            }
+            artifacts.add(artifact);
         }
-        return coberturaArtifact;
+
+        return artifacts;
+    }
+
+    public String getCoberturaVersion() throws MojoExecutionException {
+        return coberturaRuntime.getVersion();
     }
 
-    private void addArtifactToTestClasspath(Artifact coberturaArtifact) {
-        project.setDependencyArtifacts(
-                ImmutableSet.<Artifact>builder()
-                        .addAll(project.getDependencyArtifacts())
-                        .add(withProvidedScope(coberturaArtifact)).build());
+    public List<String> getCoberturaDependencies() {
+        return coberturaRuntime.getDependencies();
     }
 
-    private Artifact withProvidedScope(Artifact artifact) {
-        return repositorySystem.createArtifact(
-                artifact.getGroupId(),
-                artifact.getArtifactId(),
-                artifact.getVersion(),
-                Artifact.SCOPE_PROVIDED,
-                artifact.getType());
+    public List<File> getCoberturaJars() throws MojoExecutionException {
+        return coberturaRuntime.getJars();
+    }
+
+    /**
+     * Added by an earlier execution for the same project, e.g. of instrument goal bound twice.
+     */
+    private boolean containsCoberturaArtifact(Set<Artifact> artifacts) {
+        for (Artifact artifact : artifacts) {
+            if (COBERTURA_ARTIFACT_ID.equals(ArtifactUtils.versionlessKey(artifact))) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private void addToDependencyArtifacts(Set<Artifact> dependencyArtifacts, Artifact artifact) {
+        try {
+            dependencyArtifacts.add(artifact);
+        } catch (UnsupportedOperationException e) {
+            project.setDependencyArtifacts(
+                    ImmutableSet.<Artifact>builder()
+                            .addAll(dependencyArtifacts)
+                            .add(artifact).build());
+        }
     }
 
     public void setOutputDirectory(String outputDirectory) {
         project.getBuild().setOutputDirectory(outputDirectory);
     }
 
+    /**
+     * Appends an argument to the {@code argLine} property surefire and failsafe pass to forked test JVMs.
+     */
+    public void addToArgLine(String argument) {
+        Properties properties = project.getProperties();
+        String argLine = properties.getProperty(ARG_LINE_PROPERTY, "").trim();
+
+        if (!argLine.contains(argument)) {
+            properties.setProperty(ARG_LINE_PROPERTY, argLine.isEmpty() ? argument : argLine + " " + argument);
+        }
+    }
+
+    /**
+     * Resolves dependencies of the project in all scopes, for goals which need them only in some configurations and
+     * so do not make Maven resolve them for every build.
+     */
+    public List<Artifact> resolveDependencies(
+            ProjectDependenciesResolver dependenciesResolver, RepositorySystemSession repositorySession)
+            throws MojoExecutionException {
+
+        List<org.eclipse.aether.graph.Dependency> dependencies;
+        try {
+            dependencies = dependenciesResolver
+                    .resolve(new DefaultDependencyResolutionRequest(project, repositorySession))
+                    .getDependencies();
+        } catch (DependencyResolutionException e) {
+            throw new MojoExecutionException("Unable to resolve dependencies of " + project.getId() + ".", e);
+        }
+
+        List<Artifact> artifacts = new ArrayList<>();
+        for (org.eclipse.aether.graph.Dependency dependency : dependencies) {
+            artifacts.add(RepositoryUtils.toArtifact(dependency.getArtifact()));
+        }
+
+        return artifacts;
+    }
+
+    /**
+     * @param patterns {@code groupId:artifactId} of artifacts, where {@code *} matches any part of an id
+     * @return the artifacts matching any of the patterns
+     */
+    public List<Artifact> findArtifacts(Collection<Artifact> artifacts, Collection<String> patterns) {
+        List<Pattern> keyPatterns = new ArrayList<>();
+        for (String pattern : patterns) {
+            keyPatterns.add(Pattern.compile(Pattern.quote(pattern.trim()).replace("*", "\\E.*\\Q")));
+        }
+
+        List<Artifact> foundArtifacts = new ArrayList<>();
+        for (Artifact artifact : artifacts) {
+            String key = ArtifactUtils.versionlessKey(artifact);
+
+            for (Pattern keyPattern : keyPatterns) {
+                if (keyPattern.matcher(key).matches()) {
+                    foundArtifacts.add(artifact);
+                    break;
+                }
+            }
+        }
+
+        return foundArtifacts;
+    }
+
+    /**
+     * Puts a JAR in place of a dependency on the test classpath through the properties surefire and failsafe read
+     * additional classpath elements and excluded dependencies from, so artifacts of the project, which other plugins
+     * package, stay untouched.
+     */
+    public void replaceOnTestClasspath(Artifact artifact, File jar) {
+        String key = ArtifactUtils.versionlessKey(artifact);
+
+        addToListProperty(DEPENDENCY_EXCLUDES_PROPERTY, key);
+        addToListProperty(ADDITIONAL_CLASSPATH_PROPERTY, jar.getAbsolutePath());
+        getReplacedDependencies().put(key, jar.getAbsolutePath());
+    }
+
+    /**
+     * Takes back all replacements of dependencies made by {@link #replaceOnTestClasspath(Artifact, File)} for the
+     * project, also by executions of other goals.
+     */
+    public void restoreTestClasspath() {
+        Map<String, String> replacedDependencies = getReplacedDependencies();
+
+        for (Map.Entry<String, String> replacedDependency : replacedDependencies.entrySet()) {
+            removeFromListProperty(DEPENDENCY_EXCLUDES_PROPERTY, replacedDependency.getKey());
+            removeFromListProperty(ADDITIONAL_CLASSPATH_PROPERTY, replacedDependency.getValue());
+        }
+        replacedDependencies.clear();
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, String> getReplacedDependencies() {
+        Map<String, String> replacedDependencies =
+                (Map<String, String>) project.getContextValue(REPLACED_DEPENDENCIES_KEY);
+
+        if (replacedDependencies == null) {
+            replacedDependencies = new LinkedHashMap<>();
+            project.setContextValue(REPLACED_DEPENDENCIES_KEY, replacedDependencies);
+        }
+
+        return replacedDependencies;
+    }
+
+    private void addToListProperty(String name, String element) {
+        List<String> elements = getListProperty(name);
+
+        if (!elements.contains(element)) {
+            elements.add(element);
+            project.getProperties().setProperty(name, Joiner.on(',').join(elements));
+        }
+    }
+
+    private void removeFromListProperty(String name, String element) {
+        List<String> elements = getListProperty(name);
+
+        if (elements.remove(element)) {
+            if (elements.isEmpty()) {
+                project.getProperties().remove(name);
+            } else {
+                project.getProperties().setProperty(name, Joiner.on(',').join(elements));
+            }
+        }
+    }
+
+    private List<String> getListProperty(String name) {
+        return new ArrayList<>(
+                Splitter.on(',').trimResults().omitEmptyStrings()
+                        .splitToList(project.getProperties().getProperty(name, "")));
+    }
+
     public List<String> getSourcesDirectories() {
         return project.getCompileSourceRoots();
     }
+
+    public List<String> getTestSourcesDirectories() {
+        return project.getTestCompileSourceRoots();
+    }
 }
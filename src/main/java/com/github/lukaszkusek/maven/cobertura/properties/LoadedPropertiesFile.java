@@ -23,9 +23,27 @@
 
 package com.github.lukaszkusek.maven.cobertura.properties;
 
+import java.io.File;
+
 public interface LoadedPropertiesFile {
 
     String getDataFilePath();
 
     String getOriginalOutputDirectoryPath();
+
+    String getTestCoverageDirectoryPath();
+
+    String getAgentClassesDirectoryPath();
+
+    String getAgentCacheDirectoryPath();
+
+    String getProbeMode();
+
+    String getMappedCountersDirectoryPath();
+
+    int getDumpInterval();
+
+    boolean isDumpOnDemand();
+
+    File getFile();
 }
@@ -31,5 +31,21 @@ public interface NewPropertiesFileBuilder {
 
     NewPropertiesFileBuilder withOriginalOutputDirectoryPath(String originalOutputDirectoryPath);
 
+    NewPropertiesFileBuilder withTestCoverageDirectoryPath(String testCoverageDirectoryPath);
+
+    NewPropertiesFileBuilder withAgentClassesDirectoryPath(String classesDirectoryPath);
+
+    NewPropertiesFileBuilder withAgentCacheDirectoryPath(String cacheDirectoryPath);
+
+    NewPropertiesFileBuilder withAgentInstrumentationOptions(
+            String includeClassesRegex, String excludeClassesRegex, String ignoreRegex, String ignoreMethodAnnotation,
+            boolean ignoreTrivial, boolean threadsafeRigorous);
+
+    NewPropertiesFileBuilder withProbeMode(String probeMode);
+
+    NewPropertiesFileBuilder withMappedCountersDirectoryPath(String mappedCountersDirectoryPath);
+
+    NewPropertiesFileBuilder withCoverageDump(int dumpInterval, boolean dumpOnDemand);
+
     LoadedPropertiesFile saveToDisk() throws MojoExecutionException;
 }
@@ -27,8 +27,14 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.nio.file.Files;
 import java.util.Properties;
 
+import com.github.lukaszkusek.maven.cobertura.runtime.CoverageAgent;
+import com.github.lukaszkusek.maven.cobertura.runtime.CoverageDumper;
+import com.github.lukaszkusek.maven.cobertura.runtime.MappedCounters;
+import com.github.lukaszkusek.maven.cobertura.runtime.ProbeRewriter;
+import com.github.lukaszkusek.maven.cobertura.runtime.TestCoverageListener;
 import org.apache.maven.plugin.MojoExecutionException;
 
 public class PropertiesFile implements PropertiesFileBuilder, NewPropertiesFileBuilder, LoadedPropertiesFile {
@@ -36,6 +42,13 @@ public class PropertiesFile implements PropertiesFileBuilder, NewPropertiesFileB
     public static final String NAME = "cobertura.properties";
     public static final String ORIGINAL_OUTPUT_DIRECTORY_KEY = "com.github.lukaszkusek.maven.cobertura.originalOutputDirectory";
     public static final String COBERTURA_DATA_FILE_KEY = "net.sourceforge.cobertura.datafile";
+    public static final String TEST_COVERAGE_DIRECTORY_KEY = TestCoverageListener.TEST_COVERAGE_DIRECTORY_KEY;
+    public static final String AGENT_CLASSES_DIRECTORY_KEY = CoverageAgent.CLASSES_DIRECTORY_KEY;
+    public static final String AGENT_CACHE_DIRECTORY_KEY = CoverageAgent.CACHE_DIRECTORY_KEY;
+    public static final String PROBE_MODE_KEY = ProbeRewriter.PROBE_MODE_KEY;
+    public static final String MAPPED_COUNTERS_DIRECTORY_KEY = MappedCounters.DIRECTORY_KEY;
+    public static final String DUMP_INTERVAL_KEY = CoverageDumper.DUMP_INTERVAL_KEY;
+    public static final String DUMP_ON_DEMAND_KEY = CoverageDumper.DUMP_ON_DEMAND_KEY;
 
     private Properties properties;
     private File coberturaPropertiesFile;
@@ -59,6 +72,41 @@ public class PropertiesFile implements PropertiesFileBuilder, NewPropertiesFileB
         return properties.getProperty(ORIGINAL_OUTPUT_DIRECTORY_KEY);
     }
 
+    @Override
+    public String getTestCoverageDirectoryPath() {
+        return properties.getProperty(TEST_COVERAGE_DIRECTORY_KEY);
+    }
+
+    @Override
+    public String getAgentClassesDirectoryPath() {
+        return properties.getProperty(AGENT_CLASSES_DIRECTORY_KEY);
+    }
+
+    @Override
+    public String getAgentCacheDirectoryPath() {
+        return properties.getProperty(AGENT_CACHE_DIRECTORY_KEY);
+    }
+
+    @Override
+    public String getProbeMode() {
+        return properties.getProperty(PROBE_MODE_KEY, ProbeRewriter.COUNT_MODE);
+    }
+
+    @Override
+    public String getMappedCountersDirectoryPath() {
+        return properties.getProperty(MAPPED_COUNTERS_DIRECTORY_KEY);
+    }
+
+    @Override
+    public int getDumpInterval() {
+        return Integer.parseInt(properties.getProperty(DUMP_INTERVAL_KEY, "0"));
+    }
+
+    @Override
+    public boolean isDumpOnDemand() {
+        return Boolean.parseBoolean(properties.getProperty(DUMP_ON_DEMAND_KEY));
+    }
+
     @Override
     public NewPropertiesFileBuilder withDataFilePath(String dataFilePath) {
         properties.setProperty(COBERTURA_DATA_FILE_KEY, dataFilePath);
@@ -73,6 +121,75 @@ public class PropertiesFile implements PropertiesFileBuilder, NewPropertiesFileB
         return this;
     }
 
+    @Override
+    public NewPropertiesFileBuilder withTestCoverageDirectoryPath(String testCoverageDirectoryPath) {
+        properties.setProperty(TEST_COVERAGE_DIRECTORY_KEY, testCoverageDirectoryPath);
+
+        return this;
+    }
+
+    @Override
+    public NewPropertiesFileBuilder withAgentClassesDirectoryPath(String classesDirectoryPath) {
+        properties.setProperty(AGENT_CLASSES_DIRECTORY_KEY, classesDirectoryPath);
+
+        return this;
+    }
+
+    @Override
+    public NewPropertiesFileBuilder withAgentCacheDirectoryPath(String cacheDirectoryPath) {
+        properties.setProperty(AGENT_CACHE_DIRECTORY_KEY, cacheDirectoryPath);
+
+        return this;
+    }
+
+    @Override
+    public NewPropertiesFileBuilder withProbeMode(String probeMode) {
+        properties.setProperty(PROBE_MODE_KEY, probeMode);
+
+        return this;
+    }
+
+    @Override
+    public NewPropertiesFileBuilder withMappedCountersDirectoryPath(String mappedCountersDirectoryPath) {
+        properties.setProperty(MAPPED_COUNTERS_DIRECTORY_KEY, mappedCountersDirectoryPath);
+
+        return this;
+    }
+
+    @Override
+    public NewPropertiesFileBuilder withCoverageDump(int dumpInterval, boolean dumpOnDemand) {
+        properties.setProperty(DUMP_INTERVAL_KEY, String.valueOf(dumpInterval));
+        properties.setProperty(DUMP_ON_DEMAND_KEY, String.valueOf(dumpOnDemand));
+
+        return this;
+    }
+
+    @Override
+    public NewPropertiesFileBuilder withAgentInstrumentationOptions(
+            String includeClassesRegex, String excludeClassesRegex, String ignoreRegex, String ignoreMethodAnnotation,
+            boolean ignoreTrivial, boolean threadsafeRigorous) {
+
+        setPropertyIfNotNull(CoverageAgent.INCLUDE_CLASSES_REGEX_KEY, includeClassesRegex);
+        setPropertyIfNotNull(CoverageAgent.EXCLUDE_CLASSES_REGEX_KEY, excludeClassesRegex);
+        setPropertyIfNotNull(CoverageAgent.IGNORE_REGEX_KEY, ignoreRegex);
+        setPropertyIfNotNull(CoverageAgent.IGNORE_METHOD_ANNOTATION_KEY, ignoreMethodAnnotation);
+        properties.setProperty(CoverageAgent.IGNORE_TRIVIAL_KEY, String.valueOf(ignoreTrivial));
+        properties.setProperty(CoverageAgent.THREADSAFE_RIGOROUS_KEY, String.valueOf(threadsafeRigorous));
+
+        return this;
+    }
+
+    private void setPropertyIfNotNull(String key, String value) {
+        if (value != null) {
+            properties.setProperty(key, value);
+        }
+    }
+
+    @Override
+    public File getFile() {
+        return coberturaPropertiesFile;
+    }
+
     @Override
     public LoadedPropertiesFile saveToDisk() throws MojoExecutionException {
         createCoberturaPropertiesFile();
@@ -81,6 +198,8 @@ public class PropertiesFile implements PropertiesFileBuilder, NewPropertiesFileB
     }
 
     private void createCoberturaPropertiesFile() throws MojoExecutionException {
+        deleteExistingCoberturaPropertiesFile();
+
         try (FileOutputStream fos = new FileOutputStream(coberturaPropertiesFile)) {
             properties.store(fos, "Genereted by " + PropertiesFile.class.getName());
         } catch (IOException e) {
@@ -88,6 +207,15 @@ public class PropertiesFile implements PropertiesFileBuilder, NewPropertiesFileB
         }
     }
 
+    private void deleteExistingCoberturaPropertiesFile() throws MojoExecutionException {
+        // may be a hard link into the output directory, writing through it would modify the original
+        try {
+            Files.deleteIfExists(coberturaPropertiesFile.toPath());
+        } catch (IOException e) {
+            throw new MojoExecutionException("Unable to replace " + NAME + " file.", e);
+        }
+    }
+
     @Override
     public NewPropertiesFileBuilder create() {
         return this;
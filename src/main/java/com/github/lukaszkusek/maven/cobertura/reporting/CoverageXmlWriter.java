@@ -0,0 +1,250 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2013 Lukasz Kusek
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.github.lukaszkusek.maven.cobertura.reporting;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.TreeSet;
+
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+import net.sourceforge.cobertura.coveragedata.ClassData;
+import net.sourceforge.cobertura.coveragedata.CoverageData;
+import net.sourceforge.cobertura.coveragedata.JumpData;
+import net.sourceforge.cobertura.coveragedata.LineData;
+import net.sourceforge.cobertura.coveragedata.PackageData;
+import net.sourceforge.cobertura.coveragedata.ProjectData;
+import net.sourceforge.cobertura.coveragedata.SwitchData;
+
+/**
+ * Writes project data as {@code coverage.xml} in the schema of Cobertura's XML report, package by package with StAX,
+ * taking complexity of classes and methods from given {@link ClassComplexity} instead of parsing sources itself.
+ */
+public class CoverageXmlWriter {
+
+    public static final String FILE_NAME = "coverage.xml";
+    public static final String DOCTYPE =
+            "<!DOCTYPE coverage SYSTEM \"http://cobertura.sourceforge.net/xml/coverage-04.dtd\">";
+
+    private final String version;
+    private final Collection<String> sourceDirectories;
+
+    public CoverageXmlWriter(String version, Collection<String> sourceDirectories) {
+        this.version = version;
+        this.sourceDirectories = sourceDirectories;
+    }
+
+    public void write(ProjectData projectData, ClassComplexity complexity, File xmlFile, String encoding)
+            throws IOException {
+
+        try (OutputStream out = Files.newOutputStream(xmlFile.toPath())) {
+            XMLStreamWriter xml = XMLOutputFactory.newInstance().createXMLStreamWriter(out, encoding);
+
+            xml.writeStartDocument(encoding, "1.0");
+            xml.writeCharacters("\n");
+            xml.writeDTD(DOCTYPE);
+            xml.writeCharacters("\n");
+            writeCoverage(xml, projectData, complexity);
+            xml.writeEndDocument();
+            xml.close();
+        } catch (XMLStreamException e) {
+            throw new IOException("Unable to write " + xmlFile.getAbsolutePath(), e);
+        }
+    }
+
+    private void writeCoverage(XMLStreamWriter xml, ProjectData projectData, ClassComplexity complexity)
+            throws XMLStreamException {
+
+        xml.writeStartElement("coverage");
+        writeRates(xml, projectData);
+        xml.writeAttribute("lines-covered", String.valueOf(projectData.getNumberOfCoveredLines()));
+        xml.writeAttribute("lines-valid", String.valueOf(projectData.getNumberOfValidLines()));
+        xml.writeAttribute("branches-covered", String.valueOf(projectData.getNumberOfCoveredBranches()));
+        xml.writeAttribute("branches-valid", String.valueOf(projectData.getNumberOfValidBranches()));
+        xml.writeAttribute("complexity", String.valueOf(averageComplexity(projectData.getClasses(), complexity)));
+        xml.writeAttribute("version", version);
+        xml.writeAttribute("timestamp", String.valueOf(System.currentTimeMillis()));
+
+        xml.writeStartElement("sources");
+        for (String sourceDirectory : sourceDirectories) {
+            xml.writeStartElement("source");
+            xml.writeCharacters(sourceDirectory);
+            xml.writeEndElement();
+        }
+        xml.writeEndElement();
+
+        xml.writeStartElement("packages");
+        for (CoverageData packageData : projectData.getPackages()) {
+            writePackage(xml, (PackageData) packageData, complexity);
+        }
+        xml.writeEndElement();
+
+        xml.writeEndElement();
+    }
+
+    /**
+     * Only classes of a single package are iterated at a time, so nothing beyond the project data itself is kept in
+     * memory for the whole project.
+     */
+    private void writePackage(XMLStreamWriter xml, PackageData packageData, ClassComplexity complexity)
+            throws XMLStreamException {
+
+        Collection<ClassData> classes = getClasses(packageData);
+
+        xml.writeStartElement("package");
+        xml.writeAttribute("name", packageData.getName());
+        writeRates(xml, packageData);
+        xml.writeAttribute("complexity", String.valueOf(averageComplexity(classes, complexity)));
+
+        xml.writeStartElement("classes");
+        for (ClassData classData : classes) {
+            xml.writeStartElement("class");
+            xml.writeAttribute("name", classData.getName());
+            xml.writeAttribute("filename", String.valueOf(classData.getSourceFileName()));
+            writeRates(xml, classData);
+            xml.writeAttribute("complexity", String.valueOf(complexity.of(classData)));
+            writeClassContent(xml, classData, complexity);
+            xml.writeEndElement();
+        }
+        xml.writeEndElement();
+
+        xml.writeEndElement();
+    }
+
+    private static Collection<ClassData> getClasses(PackageData packageData) {
+        Collection<ClassData> classes = new ArrayList<>();
+        for (CoverageData classData : packageData.getClasses()) {
+            classes.add((ClassData) classData);
+        }
+
+        return classes;
+    }
+
+    private static void writeRates(XMLStreamWriter xml, CoverageData coverageData) throws XMLStreamException {
+        xml.writeAttribute("line-rate", String.valueOf(coverageData.getLineCoverageRate()));
+        xml.writeAttribute("branch-rate", String.valueOf(coverageData.getBranchCoverageRate()));
+    }
+
+    /**
+     * Writes methods and lines of a class, everything of the class element which does not depend on sources.
+     */
+    private static void writeClassContent(XMLStreamWriter xml, ClassData classData, ClassComplexity complexity)
+            throws XMLStreamException {
+
+        xml.writeStartElement("methods");
+        for (String nameAndDescriptor : new TreeSet<>(classData.getMethodNamesAndDescriptors())) {
+            int descriptorStart = nameAndDescriptor.indexOf('(');
+
+            xml.writeStartElement("method");
+            xml.writeAttribute("name", nameAndDescriptor.substring(0, descriptorStart));
+            xml.writeAttribute("signature", nameAndDescriptor.substring(descriptorStart));
+            xml.writeAttribute("line-rate", String.valueOf(classData.getLineCoverageRate(nameAndDescriptor)));
+            xml.writeAttribute("branch-rate", String.valueOf(classData.getBranchCoverageRate(nameAndDescriptor)));
+            xml.writeAttribute("complexity", String.valueOf(complexity.ofMethod(classData, nameAndDescriptor)));
+            writeLines(xml, classData.getLines(nameAndDescriptor));
+            xml.writeEndElement();
+        }
+        xml.writeEndElement();
+
+        writeLines(xml, classData.getLines());
+    }
+
+    private static void writeLines(XMLStreamWriter xml, Collection<CoverageData> lines) throws XMLStreamException {
+        xml.writeStartElement("lines");
+        for (CoverageData line : lines) {
+            writeLine(xml, (LineData) line);
+        }
+        xml.writeEndElement();
+    }
+
+    private static void writeLine(XMLStreamWriter xml, LineData line) throws XMLStreamException {
+        if (!line.hasBranch()) {
+            xml.writeEmptyElement("line");
+            writeLineAttributes(xml, line);
+            return;
+        }
+
+        xml.writeStartElement("line");
+        writeLineAttributes(xml, line);
+        xml.writeAttribute("condition-coverage", line.getConditionCoverage());
+
+        xml.writeStartElement("conditions");
+        for (int i = 0; i < line.getConditionSize(); i++) {
+            Object condition = line.getConditionData(i);
+
+            xml.writeEmptyElement("condition");
+            if (condition instanceof JumpData) {
+                xml.writeAttribute("number", String.valueOf(((JumpData) condition).getConditionNumber()));
+                xml.writeAttribute("type", "jump");
+            } else {
+                xml.writeAttribute("number", String.valueOf(((SwitchData) condition).getSwitchNumber()));
+                xml.writeAttribute("type", "switch");
+            }
+            xml.writeAttribute("coverage", line.getConditionCoverage(i));
+        }
+        xml.writeEndElement();
+
+        xml.writeEndElement();
+    }
+
+    private static void writeLineAttributes(XMLStreamWriter xml, LineData line) throws XMLStreamException {
+        xml.writeAttribute("number", String.valueOf(line.getLineNumber()));
+        xml.writeAttribute("hits", String.valueOf(line.getHits()));
+        xml.writeAttribute("branch", String.valueOf(line.hasBranch()));
+    }
+
+    /**
+     * Average of class complexities weighted by number of methods, as complexity is an average over methods.
+     */
+    private static double averageComplexity(Collection<ClassData> classes, ClassComplexity complexity) {
+        double sum = 0;
+        int methods = 0;
+
+        for (ClassData classData : classes) {
+            int classMethods = classData.getMethodNamesAndDescriptors().size();
+            sum += complexity.of(classData) * classMethods;
+            methods += classMethods;
+        }
+
+        return methods == 0 ? 0 : sum / methods;
+    }
+
+    public interface ClassComplexity {
+
+        double of(ClassData classData);
+
+        /**
+         * @param nameAndDescriptor method name followed by its descriptor, e.g. {@code method()V}
+         */
+        default int ofMethod(ClassData classData, String nameAndDescriptor) {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,232 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2013 Lukasz Kusek
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.github.lukaszkusek.maven.cobertura.reporting;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+
+import com.github.lukaszkusek.maven.cobertura.files.SourceIndex;
+import com.google.common.base.Splitter;
+import net.sourceforge.cobertura.coveragedata.ClassData;
+import net.sourceforge.cobertura.coveragedata.ProjectData;
+import net.sourceforge.cobertura.reporting.ComplexityCalculator;
+import net.sourceforge.cobertura.util.FileFinder;
+
+/**
+ * Writes {@code coverage.xml} parsing sources only for classes whose source file changed since the previous report.
+ * Complexity of a class and of its methods depends only on its source, so it is cached on disk together with the
+ * path, size and modification time of the source file, and coverage changes never recalculate it.
+ */
+public class IncrementalXmlReport {
+
+    public static final String CACHE_FILE_NAME = "report-cache.properties";
+
+    private static final char SEPARATOR = '\t';
+
+    private final File coberturaDirectory;
+    private final Collection<String> sourceDirectories;
+    private final SourceIndex sourceIndex;
+    private final String encoding;
+    private final String version;
+
+    private ComplexityCalculator complexityCalculator;
+    private int recalculatedClasses;
+
+    public IncrementalXmlReport(
+            File coberturaDirectory, Collection<String> sourceDirectories, SourceIndex sourceIndex, String encoding,
+            String version) {
+
+        this.coberturaDirectory = coberturaDirectory;
+        this.sourceDirectories = sourceDirectories;
+        this.sourceIndex = sourceIndex;
+        this.encoding = encoding;
+        this.version = version;
+    }
+
+    public void export(ProjectData projectData) throws IOException {
+        Properties previousCache = loadCache();
+        Properties cache = new Properties();
+        Complexities complexities = new Complexities();
+        recalculatedClasses = 0;
+
+        for (ClassData classData : projectData.getClasses()) {
+            String stamp = getSourceFileStamp(classData.getSourceFileName());
+            String cached = previousCache.getProperty(classData.getName());
+
+            if (!complexities.addCached(classData, cached, stamp)) {
+                complexities.add(classData, getComplexityCalculator());
+                recalculatedClasses++;
+            }
+
+            cache.setProperty(classData.getName(), stamp + SEPARATOR + complexities.format(classData));
+        }
+
+        new CoverageXmlWriter(version, sourceDirectories).write(
+                projectData,
+                complexities,
+                new File(coberturaDirectory, CoverageXmlWriter.FILE_NAME),
+                encoding);
+
+        saveCache(cache);
+    }
+
+    /**
+     * @return source file name of a class followed by the path, size and modification time of the source file, if it
+     * was found
+     */
+    private String getSourceFileStamp(String sourceFileName) {
+        File sourceFile = sourceIndex.getSourceFile(sourceFileName);
+
+        if (sourceFile == null) {
+            return sourceFileName + SEPARATOR;
+        }
+
+        return sourceFileName + SEPARATOR
+                + sourceFile.getAbsolutePath() + SEPARATOR + sourceFile.length() + '@' + sourceFile.lastModified();
+    }
+
+    private ComplexityCalculator getComplexityCalculator() {
+        if (complexityCalculator == null) {
+            FileFinder fileFinder = new FileFinder();
+            for (String sourceDirectory : sourceDirectories) {
+                fileFinder.addSourceDirectory(sourceDirectory);
+            }
+
+            complexityCalculator = new ComplexityCalculator(fileFinder);
+            complexityCalculator.setEncoding(encoding);
+            complexityCalculator.setCalculateMethodComplexity(true);
+        }
+
+        return complexityCalculator;
+    }
+
+    /**
+     * @return number of classes whose complexity was not cached during the last export
+     */
+    public int getRecalculatedClasses() {
+        return recalculatedClasses;
+    }
+
+    private Properties loadCache() throws IOException {
+        Properties cache = new Properties();
+        File cacheFile = getCacheFile();
+
+        if (cacheFile.isFile()) {
+            try (FileInputStream fis = new FileInputStream(cacheFile)) {
+                cache.load(fis);
+            }
+        }
+
+        return cache;
+    }
+
+    private void saveCache(Properties cache) throws IOException {
+        try (FileOutputStream fos = new FileOutputStream(getCacheFile())) {
+            cache.store(fos, null);
+        }
+    }
+
+    private File getCacheFile() {
+        return new File(coberturaDirectory, CACHE_FILE_NAME);
+    }
+
+    /**
+     * Complexity of classes and their methods, cached as the complexity of a class followed by every method with
+     * its complexity, all separated by tabs.
+     */
+    private static class Complexities implements CoverageXmlWriter.ClassComplexity {
+
+        private final Map<String, Double> classComplexities = new HashMap<>();
+        private final Map<String, Map<String, Integer>> methodComplexities = new HashMap<>();
+
+        /**
+         * @return {@code false} if complexity of the class or any of its methods was not cached for the same source
+         */
+        boolean addCached(ClassData classData, String cached, String stamp) {
+            if (cached == null || !cached.startsWith(stamp + SEPARATOR)) {
+                return false;
+            }
+
+            List<String> values = Splitter.on(SEPARATOR).splitToList(cached.substring(stamp.length() + 1));
+            Map<String, Integer> methods = new HashMap<>();
+            for (int i = 1; i + 1 < values.size(); i += 2) {
+                methods.put(values.get(i), Integer.valueOf(values.get(i + 1)));
+            }
+
+            if (!methods.keySet().containsAll(classData.getMethodNamesAndDescriptors())) {
+                return false;
+            }
+
+            classComplexities.put(classData.getName(), Double.valueOf(values.get(0)));
+            methodComplexities.put(classData.getName(), methods);
+            return true;
+        }
+
+        void add(ClassData classData, ComplexityCalculator complexityCalculator) {
+            Map<String, Integer> methods = new HashMap<>();
+            for (String nameAndDescriptor : classData.getMethodNamesAndDescriptors()) {
+                int descriptorStart = nameAndDescriptor.indexOf('(');
+
+                methods.put(nameAndDescriptor, complexityCalculator.getCCNForMethod(
+                        classData,
+                        nameAndDescriptor.substring(0, descriptorStart),
+                        nameAndDescriptor.substring(descriptorStart)));
+            }
+
+            classComplexities.put(classData.getName(), complexityCalculator.getCCNForClass(classData));
+            methodComplexities.put(classData.getName(), methods);
+        }
+
+        String format(ClassData classData) {
+            StringBuilder formatted = new StringBuilder().append(of(classData));
+
+            Map<String, Integer> methods = new TreeMap<>(methodComplexities.get(classData.getName()));
+            for (Map.Entry<String, Integer> method : methods.entrySet()) {
+                formatted.append(SEPARATOR).append(method.getKey()).append(SEPARATOR).append(method.getValue());
+            }
+
+            return formatted.toString();
+        }
+
+        @Override
+        public double of(ClassData classData) {
+            return classComplexities.get(classData.getName());
+        }
+
+        @Override
+        public int ofMethod(ClassData classData, String nameAndDescriptor) {
+            Integer complexity = methodComplexities.get(classData.getName()).get(nameAndDescriptor);
+
+            return complexity != null ? complexity : 0;
+        }
+    }
+}
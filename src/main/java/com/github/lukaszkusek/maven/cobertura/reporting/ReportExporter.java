@@ -0,0 +1,104 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2013 Lukasz Kusek
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.github.lukaszkusek.maven.cobertura.reporting;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import net.sourceforge.cobertura.dsl.Cobertura;
+import net.sourceforge.cobertura.dsl.ReportFormat;
+import net.sourceforge.cobertura.reporting.Report;
+
+/**
+ * Exports reports in several formats from a single load of the coverage data. Every format is rendered on its own
+ * thread by its own {@link Report}, as the complexity calculator behind a report caches results without
+ * synchronization and must not be shared between threads.
+ */
+public class ReportExporter {
+
+    private final Cobertura cobertura;
+
+    public ReportExporter(Cobertura cobertura) {
+        this.cobertura = cobertura;
+    }
+
+    public void export(Collection<String> formats) throws Throwable {
+        Set<ReportFormat> reportFormats = toReportFormats(formats);
+
+        cobertura.getProjectDataInstance();
+
+        if (reportFormats.size() == 1) {
+            cobertura.report().export(reportFormats.iterator().next());
+        } else {
+            exportConcurrently(reportFormats);
+        }
+    }
+
+    private Set<ReportFormat> toReportFormats(Collection<String> formats) {
+        Set<ReportFormat> reportFormats = new LinkedHashSet<>();
+        for (String format : formats) {
+            ReportFormat reportFormat = ReportFormat.getFromString(format.trim());
+            if (reportFormat == null) {
+                throw new IllegalArgumentException("Unknown report format: " + format);
+            }
+
+            reportFormats.add(reportFormat);
+        }
+
+        if (reportFormats.isEmpty()) {
+            throw new IllegalArgumentException("At least one report format is required.");
+        }
+
+        return reportFormats;
+    }
+
+    private void exportConcurrently(Set<ReportFormat> reportFormats) throws Throwable {
+        ExecutorService executor = Executors.newFixedThreadPool(reportFormats.size());
+
+        try {
+            List<Future<?>> exports = new ArrayList<>();
+            for (ReportFormat reportFormat : reportFormats) {
+                Report report = cobertura.report();
+                exports.add(executor.submit(() -> report.export(reportFormat)));
+            }
+
+            for (Future<?> export : exports) {
+                try {
+                    export.get();
+                } catch (ExecutionException e) {
+                    throw e.getCause();
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,215 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2013 Lukasz Kusek
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.github.lukaszkusek.maven.cobertura.runtime;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.IntInsnNode;
+import org.objectweb.asm.tree.LdcInsnNode;
+import org.objectweb.asm.tree.MethodInsnNode;
+import org.objectweb.asm.tree.MethodNode;
+import org.objectweb.asm.tree.VarInsnNode;
+
+/**
+ * Reads {@link TouchPoints} of a class instrumented by Cobertura from its {@code __cobertura_classmap} methods, which
+ * only call the listener given to them with constants, so their instructions are interpreted without loading the
+ * class. Switches on enums pass the number of enum constants, known only at runtime, so they are read with
+ * {@link Integer#MAX_VALUE} branches, the same as Cobertura adds them to the data file when instrumenting.
+ */
+public class ClassmapReader {
+
+    private static final String CLASSMAP_METHOD_NAME = "__cobertura_classmap";
+    private static final String LISTENER = "net/sourceforge/cobertura/coveragedata/LightClassmapListener";
+    private static final String CLASSMAP_METHOD_DESCRIPTOR = "(L" + LISTENER + ";)V";
+
+    private static final Object LISTENER_VALUE = new Object();
+    private static final Object CLASS_VALUE = new Object();
+    private static final Object ENUM_VALUES = new Object();
+
+    private final ClassNode classNode;
+    private final TouchPoints touchPoints = new TouchPoints();
+
+    private ClassmapReader(ClassNode classNode) {
+        this.classNode = classNode;
+    }
+
+    /**
+     * @return touch points of the class, {@code null} if it has no classmap method or the method does anything else
+     * than passing constants to the listener
+     */
+    static TouchPoints read(ClassNode classNode) {
+        ClassmapReader reader = new ClassmapReader(classNode);
+        MethodNode classmapMethod = reader.findClassmapMethod(CLASSMAP_METHOD_NAME);
+
+        try {
+            return classmapMethod != null && reader.interpret(classmapMethod) ? reader.touchPoints : null;
+        } catch (RuntimeException e) {
+            // e.g. a value of an unexpected type or a missing value on the stack
+            return null;
+        }
+    }
+
+    private MethodNode findClassmapMethod(String name) {
+        for (MethodNode method : classNode.methods) {
+            if (name.equals(method.name) && CLASSMAP_METHOD_DESCRIPTOR.equals(method.desc)) {
+                return method;
+            }
+        }
+
+        return null;
+    }
+
+    private boolean interpret(MethodNode method) {
+        Deque<Object> stack = new ArrayDeque<>();
+
+        for (AbstractInsnNode instruction = method.instructions.getFirst();
+             instruction != null;
+             instruction = instruction.getNext()) {
+
+            int opcode = instruction.getOpcode();
+            if (opcode == Opcodes.RETURN) {
+                return true;
+            }
+            // labels, line numbers and frames
+            if (opcode >= 0 && !execute(instruction, stack)) {
+                return false;
+            }
+        }
+
+        return false;
+    }
+
+    private boolean execute(AbstractInsnNode instruction, Deque<Object> stack) {
+        int opcode = instruction.getOpcode();
+
+        if (opcode >= Opcodes.ICONST_M1 && opcode <= Opcodes.ICONST_5) {
+            stack.push(opcode - Opcodes.ICONST_0);
+            return true;
+        }
+
+        switch (opcode) {
+            case Opcodes.ALOAD:
+                stack.push(LISTENER_VALUE);
+                return ((VarInsnNode) instruction).var == 0;
+            case Opcodes.DUP:
+                stack.push(stack.element());
+                return true;
+            case Opcodes.POP:
+                stack.pop();
+                return true;
+            case Opcodes.BIPUSH:
+            case Opcodes.SIPUSH:
+                stack.push(((IntInsnNode) instruction).operand);
+                return true;
+            case Opcodes.LDC:
+                return pushConstant(((LdcInsnNode) instruction).cst, stack);
+            case Opcodes.NEWARRAY:
+                stack.push(new int[(Integer) stack.pop()]);
+                return ((IntInsnNode) instruction).operand == Opcodes.T_INT;
+            case Opcodes.IASTORE:
+                int value = (Integer) stack.pop();
+                int index = (Integer) stack.pop();
+                ((int[]) stack.pop())[index] = value;
+                return true;
+            case Opcodes.ARRAYLENGTH:
+                Object array = stack.pop();
+                stack.push(array == ENUM_VALUES ? Integer.MAX_VALUE : ((int[]) array).length);
+                return true;
+            case Opcodes.INVOKESTATIC:
+                return invokeStatic((MethodInsnNode) instruction, stack);
+            case Opcodes.INVOKEINTERFACE:
+                return invokeListener((MethodInsnNode) instruction, stack);
+            default:
+                return false;
+        }
+    }
+
+    private boolean pushConstant(Object constant, Deque<Object> stack) {
+        if (constant instanceof Integer || constant instanceof String) {
+            stack.push(constant);
+        } else if (constant instanceof Type) {
+            stack.push(CLASS_VALUE);
+        } else {
+            return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Large classes split their touch points into further classmap methods, switches on enums call
+     * {@code values()} of the enum.
+     */
+    private boolean invokeStatic(MethodInsnNode method, Deque<Object> stack) {
+        if (classNode.name.equals(method.owner) && method.name.startsWith(CLASSMAP_METHOD_NAME + "_")) {
+            MethodNode classmapMethod = findClassmapMethod(method.name);
+
+            return stack.pop() == LISTENER_VALUE && classmapMethod != null && interpret(classmapMethod);
+        }
+
+        if ("values".equals(method.name) && method.desc.startsWith("()[")) {
+            stack.push(ENUM_VALUES);
+            return true;
+        }
+
+        return false;
+    }
+
+    private boolean invokeListener(MethodInsnNode method, Deque<Object> stack) {
+        Object[] arguments = new Object[Type.getArgumentTypes(method.desc).length];
+        for (int i = arguments.length - 1; i >= 0; i--) {
+            arguments[i] = stack.pop();
+        }
+
+        if (!LISTENER.equals(method.owner) || stack.pop() != LISTENER_VALUE) {
+            return false;
+        }
+
+        switch (method.name + method.desc) {
+            case "setClazz(Ljava/lang/String;)V":
+            case "setClazz(Ljava/lang/Class;)V":
+                return true;
+            case "setSource(Ljava/lang/String;)V":
+                touchPoints.setSource((String) arguments[0]);
+                return true;
+            case "putLineTouchPoint(IILjava/lang/String;Ljava/lang/String;)V":
+                touchPoints.putLineTouchPoint(
+                        (Integer) arguments[0], (Integer) arguments[1], (String) arguments[2], (String) arguments[3]);
+                return true;
+            case "putJumpTouchPoint(III)V":
+                touchPoints.putJumpTouchPoint((Integer) arguments[0], (Integer) arguments[1], (Integer) arguments[2]);
+                return true;
+            case "putSwitchTouchPoint(II[I)V":
+                touchPoints.putSwitchTouchPoint((Integer) arguments[0], (Integer) arguments[1], (int[]) arguments[2]);
+                return true;
+            default:
+                return false;
+        }
+    }
+}
@@ -0,0 +1,258 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2013 Lukasz Kusek
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.github.lukaszkusek.maven.cobertura.runtime;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.instrument.ClassFileTransformer;
+import java.lang.instrument.Instrumentation;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.ProtectionDomain;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+import net.sourceforge.cobertura.coveragedata.ProjectData;
+import net.sourceforge.cobertura.instrument.CoberturaInstrumenter;
+
+/**
+ * Java agent instrumenting classes of the project's classes directory when tests load them, caching instrumented
+ * classes by content hash. Also starts {@link CoverageDumper} when configured, with offline instrumentation too.
+ */
+public class CoverageAgent implements ClassFileTransformer {
+
+    public static final String CLASSES_DIRECTORY_KEY = "com.github.lukaszkusek.maven.cobertura.agent.classesDirectory";
+    public static final String CACHE_DIRECTORY_KEY = "com.github.lukaszkusek.maven.cobertura.agent.cacheDirectory";
+    public static final String INCLUDE_CLASSES_REGEX_KEY =
+            "com.github.lukaszkusek.maven.cobertura.agent.includeClassesRegex";
+    public static final String EXCLUDE_CLASSES_REGEX_KEY =
+            "com.github.lukaszkusek.maven.cobertura.agent.excludeClassesRegex";
+    public static final String IGNORE_REGEX_KEY = "com.github.lukaszkusek.maven.cobertura.agent.ignoreRegex";
+    public static final String IGNORE_METHOD_ANNOTATION_KEY =
+            "com.github.lukaszkusek.maven.cobertura.agent.ignoreMethodAnnotation";
+    public static final String IGNORE_TRIVIAL_KEY = "com.github.lukaszkusek.maven.cobertura.agent.ignoreTrivial";
+    public static final String THREADSAFE_RIGOROUS_KEY =
+            "com.github.lukaszkusek.maven.cobertura.agent.threadsafeRigorous";
+
+    private static final String COBERTURA_PROPERTIES = "cobertura.properties";
+    private static final String INSTRUMENTER_CLASS_NAME = "net.sourceforge.cobertura.instrument.CoberturaInstrumenter";
+
+    private final Path classesDirectory;
+    private final File cacheDirectory;
+    private final Pattern includeClasses;
+    private final Pattern excludeClasses;
+    private final Properties properties;
+    private final ProbeRewriter probeRewriter;
+
+    // classes loaded by the instrumenter itself must not be instrumented
+    private final ThreadLocal<Boolean> instrumenting = ThreadLocal.withInitial(() -> Boolean.FALSE);
+
+    CoverageAgent(Properties properties) {
+        this.classesDirectory = Paths.get(properties.getProperty(CLASSES_DIRECTORY_KEY)).toAbsolutePath();
+        this.cacheDirectory = new File(properties.getProperty(CACHE_DIRECTORY_KEY));
+        this.includeClasses = compile(properties.getProperty(INCLUDE_CLASSES_REGEX_KEY));
+        this.excludeClasses = compile(properties.getProperty(EXCLUDE_CLASSES_REGEX_KEY));
+        this.properties = properties;
+        this.probeRewriter =
+                new ProbeRewriter(properties.getProperty(ProbeRewriter.PROBE_MODE_KEY, ProbeRewriter.COUNT_MODE));
+    }
+
+    public static void premain(String arguments, Instrumentation instrumentation) {
+        Properties properties = loadProperties();
+        boolean dumpsCoverage = CoverageDumper.startIfConfigured(properties);
+
+        if (properties.getProperty(CLASSES_DIRECTORY_KEY) == null
+                || properties.getProperty(CACHE_DIRECTORY_KEY) == null) {
+
+            // offline instrumentation uses the agent only to dump coverage
+            if (!dumpsCoverage) {
+                System.err.println("Coverage agent is not configured in " + COBERTURA_PROPERTIES + ".");
+            }
+            return;
+        }
+
+        checkInstrumenterIsAvailable();
+        instrumentation.addTransformer(new CoverageAgent(properties));
+    }
+
+    /**
+     * Fails the test JVM up front rather than every class failing to load once tests run.
+     */
+    private static void checkInstrumenterIsAvailable() {
+        try {
+            Class.forName(INSTRUMENTER_CLASS_NAME, false, CoverageAgent.class.getClassLoader());
+        } catch (ClassNotFoundException | LinkageError e) {
+            throw new IllegalStateException(
+                    "Coverage agent is unable to load " + INSTRUMENTER_CLASS_NAME + " from the Cobertura JARs listed in"
+                            + " the Class-Path of the agent JAR, run the instrument goal again.",
+                    e);
+        }
+    }
+
+    private static Properties loadProperties() {
+        Properties properties = new Properties();
+
+        try (InputStream input = CoverageAgent.class.getClassLoader().getResourceAsStream(COBERTURA_PROPERTIES)) {
+            if (input != null) {
+                properties.load(input);
+            }
+        } catch (IOException e) {
+            System.err.println("Unable to read " + COBERTURA_PROPERTIES + ": " + e.getMessage());
+        }
+
+        return properties;
+    }
+
+    /**
+     * Invalid regexes are ignored, the same as by Cobertura.
+     */
+    private static Pattern compile(String regex) {
+        try {
+            return regex != null && !regex.isEmpty() ? Pattern.compile(regex) : null;
+        } catch (PatternSyntaxException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public byte[] transform(
+            ClassLoader loader, String internalClassName, Class<?> classBeingRedefined,
+            ProtectionDomain protectionDomain, byte[] classfileBuffer) {
+
+        if (internalClassName == null || classBeingRedefined != null || instrumenting.get()
+                || !isLoadedFromClassesDirectory(protectionDomain)) {
+            return null;
+        }
+
+        String className = internalClassName.replace('/', '.');
+        if (!isIncluded(className)) {
+            return null;
+        }
+
+        instrumenting.set(Boolean.TRUE);
+        try {
+            return instrument(className, classfileBuffer);
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Unable to instrument " + className + ": " + e);
+            return null;
+        } finally {
+            instrumenting.set(Boolean.FALSE);
+        }
+    }
+
+    private boolean isLoadedFromClassesDirectory(ProtectionDomain protectionDomain) {
+        URL location = protectionDomain != null && protectionDomain.getCodeSource() != null
+                ? protectionDomain.getCodeSource().getLocation()
+                : null;
+
+        try {
+            return location != null
+                    && "file".equals(location.getProtocol())
+                    && classesDirectory.equals(Paths.get(location.toURI()).toAbsolutePath());
+        } catch (URISyntaxException | IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    boolean isIncluded(String className) {
+        return (includeClasses == null || includeClasses.matcher(className).matches())
+                && (excludeClasses == null || !excludeClasses.matcher(className).matches());
+    }
+
+    private byte[] instrument(String className, byte[] classfileBuffer) throws IOException {
+        File cachedClass = new File(cacheDirectory, className + "-" + sha1(classfileBuffer) + ".class");
+
+        if (cachedClass.isFile()) {
+            return Files.readAllBytes(cachedClass.toPath());
+        }
+
+        // created here, as Cobertura must not appear in method signatures checked before the agent starts
+        CoberturaInstrumenter instrumenter = new CoberturaInstrumenter();
+        instrumenter.setProjectData(new ProjectData());
+
+        Pattern ignoreRegex = compile(properties.getProperty(IGNORE_REGEX_KEY));
+        if (ignoreRegex != null) {
+            List<Pattern> ignoreRegexes = new ArrayList<>();
+            ignoreRegexes.add(ignoreRegex);
+            instrumenter.setIgnoreRegexes(ignoreRegexes);
+        }
+
+        String ignoreMethodAnnotation = properties.getProperty(IGNORE_METHOD_ANNOTATION_KEY);
+        if (ignoreMethodAnnotation != null) {
+            instrumenter.setIgnoreMethodAnnotations(Collections.singleton(ignoreMethodAnnotation));
+        }
+        instrumenter.setIgnoreTrivial(Boolean.parseBoolean(properties.getProperty(IGNORE_TRIVIAL_KEY)));
+        instrumenter.setThreadsafeRigorous(Boolean.parseBoolean(properties.getProperty(THREADSAFE_RIGOROUS_KEY)));
+
+        CoberturaInstrumenter.InstrumentationResult result =
+                instrumenter.instrumentClass(new ByteArrayInputStream(classfileBuffer));
+
+        // classes ignored by the instrumenter, e.g. interfaces, are cached as they are
+        byte[] instrumentedClass = result != null ? probeRewriter.rewrite(result.getContent()) : classfileBuffer;
+        cache(cachedClass, instrumentedClass);
+
+        return instrumentedClass;
+    }
+
+    /**
+     * Forks may cache the same class at the same time, so a class is written to a temporary file first.
+     */
+    private void cache(File cachedClass, byte[] instrumentedClass) {
+        try {
+            Files.createDirectories(cacheDirectory.toPath());
+
+            Path temporaryFile = Files.createTempFile(cacheDirectory.toPath(), cachedClass.getName(), ".tmp");
+            Files.write(temporaryFile, instrumentedClass);
+            Files.move(temporaryFile, cachedClass.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            // the class is still instrumented, only a later run has to instrument it again
+            System.err.println("Unable to cache " + cachedClass.getName() + ": " + e.getMessage());
+        }
+    }
+
+    private static String sha1(byte[] bytes) {
+        try {
+            StringBuilder hash = new StringBuilder();
+            for (byte b : MessageDigest.getInstance("SHA-1").digest(bytes)) {
+                hash.append(String.format("%02x", b));
+            }
+
+            return hash.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
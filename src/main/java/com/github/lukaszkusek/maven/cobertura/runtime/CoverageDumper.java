@@ -0,0 +1,137 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2013 Lukasz Kusek
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.github.lukaszkusek.maven.cobertura.runtime;
+
+import java.lang.management.ManagementFactory;
+import java.util.Properties;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+import net.sourceforge.cobertura.coveragedata.ProjectData;
+
+/**
+ * Merges hits counted since the previous dump into the data file while the test JVM runs, periodically or through
+ * the {@code dump} operation of the {@value #OBJECT_NAME} MBean, so long-running or killed JVMs keep their hits.
+ */
+public class CoverageDumper implements CoverageDumperMBean {
+
+    public static final String DUMP_INTERVAL_KEY = "com.github.lukaszkusek.maven.cobertura.dumpInterval";
+    public static final String DUMP_ON_DEMAND_KEY = "com.github.lukaszkusek.maven.cobertura.dumpOnDemand";
+    public static final String OBJECT_NAME = "com.github.lukaszkusek.maven.cobertura:type=CoverageDumper";
+
+    private final Runnable save;
+    private ScheduledExecutorService scheduler;
+    private ObjectName objectName;
+    private int dumps;
+
+    CoverageDumper(Runnable save) {
+        this.save = save;
+    }
+
+    /**
+     * @return whether dumps are configured in the given properties
+     */
+    public static boolean startIfConfigured(Properties properties) {
+        long dumpInterval = parseDumpInterval(properties.getProperty(DUMP_INTERVAL_KEY));
+        boolean dumpOnDemand = Boolean.parseBoolean(properties.getProperty(DUMP_ON_DEMAND_KEY));
+
+        if (dumpInterval <= 0 && !dumpOnDemand) {
+            return false;
+        }
+
+        new CoverageDumper(ProjectData::saveGlobalProjectData).start(dumpInterval, TimeUnit.SECONDS, dumpOnDemand);
+
+        return true;
+    }
+
+    private static long parseDumpInterval(String dumpInterval) {
+        try {
+            return dumpInterval != null ? Long.parseLong(dumpInterval) : 0;
+        } catch (NumberFormatException e) {
+            System.err.println("Ignoring invalid coverage dump interval: " + dumpInterval);
+            return 0;
+        }
+    }
+
+    void start(long dumpInterval, TimeUnit unit, boolean dumpOnDemand) {
+        if (dumpInterval > 0) {
+            scheduler = Executors.newSingleThreadScheduledExecutor(task -> {
+                Thread thread = new Thread(task, "cobertura-coverage-dumper");
+                thread.setDaemon(true);
+
+                return thread;
+            });
+            scheduler.scheduleWithFixedDelay(this::dumpPeriodically, dumpInterval, dumpInterval, unit);
+        }
+
+        if (dumpOnDemand) {
+            register();
+        }
+    }
+
+    private void register() {
+        try {
+            objectName = new ObjectName(OBJECT_NAME);
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+        } catch (JMException e) {
+            objectName = null;
+            System.err.println("Unable to register " + OBJECT_NAME + ": " + e);
+        }
+    }
+
+    void stop() throws JMException {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+
+        if (objectName != null) {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+        }
+    }
+
+    /**
+     * A failed dump must not cancel later dumps, hits not saved by it are saved by the next one or at shutdown.
+     */
+    private void dumpPeriodically() {
+        try {
+            dump();
+        } catch (RuntimeException e) {
+            System.err.println("Unable to dump coverage: " + e);
+        }
+    }
+
+    @Override
+    public synchronized void dump() {
+        save.run();
+        dumps++;
+    }
+
+    @Override
+    public synchronized int getDumps() {
+        return dumps;
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2013 Lukasz Kusek
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.github.lukaszkusek.maven.cobertura.runtime;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Properties;
+
+/**
+ * Hit counters of {@code probeMode=mapped}, kept in a {@link MappedCountersFile} instead of registered with the
+ * Cobertura runtime, so hits are in the file as soon as probes count them.
+ */
+public class MappedCounters {
+
+    public static final String DIRECTORY_KEY = "com.github.lukaszkusek.maven.cobertura.mappedCountersDirectory";
+
+    private static final String COBERTURA_PROPERTIES = "cobertura.properties";
+
+    private static MappedCountersFile file;
+    private static boolean claimed;
+
+    private final ByteBuffer buffer;
+    private final int offset;
+
+    MappedCounters(ByteBuffer buffer, int offset) {
+        this.buffer = buffer;
+        this.offset = offset;
+    }
+
+    /**
+     * Called by the rewritten {@code __cobertura_init} method of an instrumented class instead of registering the
+     * class with the Cobertura runtime. Counters are kept in memory only if no counters file can be used, so the test
+     * run still succeeds, without coverage of the class.
+     *
+     * @return counters of the given class
+     */
+    public static synchronized MappedCounters register(String className, int size, String touchPoints) {
+        if (!claimed) {
+            claimed = true;
+            file = claim(loadDirectory());
+        }
+
+        if (file != null) {
+            try {
+                return file.allocate(className, size, touchPoints);
+            } catch (IOException | RuntimeException e) {
+                System.err.println("Unable to map counters of " + className + ": " + e);
+            }
+        }
+
+        return new MappedCounters(ByteBuffer.allocate(4 * size), 0);
+    }
+
+    private static File loadDirectory() {
+        Properties properties = new Properties();
+
+        try (InputStream input = MappedCounters.class.getClassLoader().getResourceAsStream(COBERTURA_PROPERTIES)) {
+            if (input != null) {
+                properties.load(input);
+            }
+        } catch (IOException e) {
+            System.err.println("Unable to read " + COBERTURA_PROPERTIES + ": " + e.getMessage());
+        }
+
+        String directory = properties.getProperty(DIRECTORY_KEY);
+        if (directory == null) {
+            System.err.println("Mapped counters directory is not configured in " + COBERTURA_PROPERTIES + ".");
+        }
+
+        return directory != null ? new File(directory) : null;
+    }
+
+    private static MappedCountersFile claim(File directory) {
+        if (directory == null) {
+            return null;
+        }
+
+        try {
+            return MappedCountersFile.claim(directory);
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Unable to claim a counters file in " + directory + ": " + e);
+            return null;
+        }
+    }
+
+    /**
+     * Makes later registrations use counters of the given directory, for tests.
+     */
+    static synchronized void use(File directory) throws IOException {
+        if (file != null) {
+            file.close();
+        }
+
+        claimed = true;
+        file = directory != null ? MappedCountersFile.claim(directory) : null;
+    }
+
+    public void increment(int counter) {
+        int position = offset + 4 * counter;
+        buffer.putInt(position, buffer.getInt(position) + 1);
+    }
+
+    int get(int counter) {
+        return buffer.getInt(offset + 4 * counter);
+    }
+}
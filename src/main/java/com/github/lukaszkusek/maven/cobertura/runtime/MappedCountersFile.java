@@ -0,0 +1,261 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2013 Lukasz Kusek
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.github.lukaszkusek.maven.cobertura.runtime;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * File of hit counters mapped into the memory of a test JVM with {@code probeMode=mapped}, so probes increment the
+ * counters of the file in place and nothing has to be saved when the JVM exits, or is killed. Every JVM locks the
+ * first unlocked {@code counters-<n>.map} file of the directory, so JVMs running at the same time never share a file,
+ * while JVMs running later add their hits to the counters of a file which is not locked any more.
+ * <p>
+ * The file holds a header followed by an entry of every class: the length of its description, the description, i.e.
+ * the class name and its {@link TouchPoints}, the number of counters and the counters, all little endian. The length
+ * is written last, so an entry of a JVM killed while writing it is skipped. The file grows by chunks, the unused rest
+ * of a chunk is zero.
+ */
+public class MappedCountersFile implements Closeable {
+
+    public static final String FILE_PREFIX = "counters-";
+    public static final String FILE_SUFFIX = ".map";
+
+    static final int CHUNK_SIZE = 1 << 20;
+
+    private static final int MAGIC = 0x43424d43;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 16;
+    private static final int MAX_FILES = 1024;
+
+    /**
+     * Closing a channel may release locks the JVM holds on the file through other channels, so channels of files
+     * locked by other class loaders of the same JVM are kept open.
+     */
+    private static final List<FileChannel> CHANNELS_OF_LOCKED_FILES = new ArrayList<>();
+
+    private final FileChannel channel;
+    private final FileLock lock;
+    private final Map<String, MappedCounters> counters = new HashMap<>();
+
+    private ByteBuffer region;
+    private long regionStart;
+    private int position;
+
+    private MappedCountersFile(FileChannel channel, FileLock lock) throws IOException {
+        this.channel = channel;
+        this.lock = lock;
+
+        long size = channel.size();
+        if (size == 0) {
+            mapRegion(0, CHUNK_SIZE);
+            region.putInt(0, MAGIC).putInt(4, VERSION).putInt(8, CHUNK_SIZE);
+            position = HEADER_SIZE;
+        } else if (size <= Integer.MAX_VALUE) {
+            mapRegion(0, size);
+            position = scan(region, (description, countersPosition, counterCount) -> counters.put(
+                    description, new MappedCounters(region, countersPosition)));
+        } else {
+            throw new IOException("Counters file is too large: " + size);
+        }
+    }
+
+    /**
+     * Locks and maps the first counters file of the given directory which is not locked by another JVM.
+     */
+    public static MappedCountersFile claim(File directory) throws IOException {
+        Files.createDirectories(directory.toPath());
+
+        for (int number = 0; number < MAX_FILES; number++) {
+            File file = new File(directory, FILE_PREFIX + number + FILE_SUFFIX);
+            FileChannel channel = FileChannel.open(
+                    file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+            FileLock lock;
+            try {
+                lock = channel.tryLock();
+            } catch (OverlappingFileLockException e) {
+                synchronized (CHANNELS_OF_LOCKED_FILES) {
+                    CHANNELS_OF_LOCKED_FILES.add(channel);
+                }
+                continue;
+            }
+
+            if (lock == null) {
+                channel.close();
+                continue;
+            }
+
+            try {
+                return new MappedCountersFile(channel, lock);
+            } catch (IOException | RuntimeException e) {
+                channel.close();
+                throw e;
+            }
+        }
+
+        throw new IOException("All " + MAX_FILES + " counters files are locked in " + directory.getAbsolutePath());
+    }
+
+    private void mapRegion(long start, long size) throws IOException {
+        // mapping beyond the end of the file extends the file with zeros
+        region = channel.map(FileChannel.MapMode.READ_WRITE, start, size).order(ByteOrder.LITTLE_ENDIAN);
+        regionStart = start;
+        position = 0;
+    }
+
+    /**
+     * @return counters of the given class, counters of an earlier JVM if the file already has counters of the class
+     * with the same touch points
+     */
+    public synchronized MappedCounters allocate(String className, int size, String touchPoints) throws IOException {
+        String description = className + '\n' + touchPoints;
+        MappedCounters allocated = counters.get(description);
+        if (allocated != null) {
+            return allocated;
+        }
+
+        byte[] descriptionBytes = description.getBytes(StandardCharsets.UTF_8);
+        int countersOffset = align(4 + descriptionBytes.length);
+        int entrySize = countersOffset + 4 + 4 * size;
+
+        if (position + entrySize > region.capacity()) {
+            long fileSize = regionStart + region.capacity();
+            mapRegion(fileSize, ((long) entrySize + CHUNK_SIZE - 1) / CHUNK_SIZE * CHUNK_SIZE);
+        }
+
+        int entry = position;
+        region.putInt(entry + countersOffset, size);
+        for (int i = 0; i < descriptionBytes.length; i++) {
+            region.put(entry + 4 + i, descriptionBytes[i]);
+        }
+        region.putInt(entry, descriptionBytes.length);
+        position = entry + entrySize;
+
+        allocated = new MappedCounters(region, entry + countersOffset + 4);
+        counters.put(description, allocated);
+
+        return allocated;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        lock.release();
+        channel.close();
+    }
+
+    /**
+     * Passes all entries of the given counters file to the given reader.
+     */
+    public static void read(File file, EntryReader reader) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Counters file is too large: " + file.getAbsolutePath());
+            }
+
+            ByteBuffer content = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size())
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            scan(content, (description, countersPosition, counterCount) -> {
+                int[] hits = new int[counterCount];
+                for (int counter = 0; counter < counterCount; counter++) {
+                    hits[counter] = content.getInt(countersPosition + 4 * counter);
+                }
+
+                int separator = description.indexOf('\n');
+                reader.read(description.substring(0, separator), description.substring(separator + 1), hits);
+            });
+        }
+    }
+
+    /**
+     * @return position after the last entry
+     */
+    private static int scan(ByteBuffer content, EntryScanner scanner) throws IOException {
+        if (content.capacity() < HEADER_SIZE || content.getInt(0) != MAGIC || content.getInt(4) != VERSION) {
+            throw new IOException("Not a counters file.");
+        }
+
+        int chunkSize = content.getInt(8);
+        int position = HEADER_SIZE;
+        int end = HEADER_SIZE;
+
+        while (position + 4 <= content.capacity()) {
+            int descriptionLength = content.getInt(position);
+
+            if (descriptionLength == 0) {
+                position = (position / chunkSize + 1) * chunkSize;
+                continue;
+            }
+
+            int countersOffset = align(4 + descriptionLength);
+            if (descriptionLength < 0 || position + countersOffset + 4 > content.capacity()) {
+                throw new IOException("Corrupted counters file.");
+            }
+
+            int counterCount = content.getInt(position + countersOffset);
+            int countersPosition = position + countersOffset + 4;
+            if (counterCount < 0 || countersPosition + 4L * counterCount > content.capacity()) {
+                throw new IOException("Corrupted counters file.");
+            }
+
+            byte[] description = new byte[descriptionLength];
+            for (int i = 0; i < descriptionLength; i++) {
+                description[i] = content.get(position + 4 + i);
+            }
+            scanner.scan(new String(description, StandardCharsets.UTF_8), countersPosition, counterCount);
+
+            position = countersPosition + 4 * counterCount;
+            end = position;
+        }
+
+        return end;
+    }
+
+    private static int align(int offset) {
+        return (offset + 3) & ~3;
+    }
+
+    public interface EntryReader {
+
+        void read(String className, String touchPoints, int[] hits);
+    }
+
+    interface EntryScanner {
+
+        void scan(String description, int countersPosition, int counterCount) throws IOException;
+    }
+}
@@ -0,0 +1,453 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2013 Lukasz Kusek
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.github.lukaszkusek.maven.cobertura.runtime;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.FieldInsnNode;
+import org.objectweb.asm.tree.FieldNode;
+import org.objectweb.asm.tree.InsnList;
+import org.objectweb.asm.tree.InsnNode;
+import org.objectweb.asm.tree.IntInsnNode;
+import org.objectweb.asm.tree.LdcInsnNode;
+import org.objectweb.asm.tree.MethodInsnNode;
+import org.objectweb.asm.tree.MethodNode;
+
+/**
+ * Rewrites probes of classes instrumented by Cobertura without {@code threadsafeRigorous}, where every probe
+ * increments {@code __cobertura_counters[probe]}. With {@link #STRIPED_MODE} probes increment {@link StripedCounters}
+ * kept in a field added to the class instead, and the methods initializing and collecting the counters are rewritten
+ * to use them. With {@link #HIT_MODE} probes only store {@code 1}, so a probe executed in a loop costs a single store
+ * which never depends on the previous value. With {@link #MAPPED_MODE} probes increment {@link MappedCounters} kept in
+ * a counters file mapped into memory, and the class registers them, together with its touch points, instead of
+ * registering itself with the Cobertura runtime, so nothing is saved when the test JVM exits.
+ * <p>
+ * Classes with probes which are not recognised are left as Cobertura instrumented them. Used by the {@code instrument}
+ * goal and by {@link CoverageAgent}.
+ */
+public class ProbeRewriter {
+
+    public static final String COUNT_MODE = "count";
+    public static final String STRIPED_MODE = "striped";
+    public static final String HIT_MODE = "hit";
+    public static final String MAPPED_MODE = "mapped";
+
+    public static final String PROBE_MODE_KEY = "com.github.lukaszkusek.maven.cobertura.probeMode";
+
+    static final String STRIPED_COUNTERS_FIELD_NAME = "__cobertura_striped_counters";
+    static final String MAPPED_COUNTERS_FIELD_NAME = "__cobertura_mapped_counters";
+
+    private static final List<String> MODES = Arrays.asList(COUNT_MODE, STRIPED_MODE, HIT_MODE, MAPPED_MODE);
+
+    private static final String COUNTERS_FIELD_NAME = "__cobertura_counters";
+    private static final String COUNTERS_FIELD_DESCRIPTOR = "[I";
+    private static final String INIT_METHOD_NAME = "__cobertura_init";
+    private static final String GET_AND_RESET_COUNTERS_METHOD_NAME = "__cobertura_get_and_reset_counters";
+
+    private static final String STRIPED_COUNTERS = Type.getInternalName(StripedCounters.class);
+    private static final String STRIPED_COUNTERS_DESCRIPTOR = Type.getDescriptor(StripedCounters.class);
+    private static final String MAPPED_COUNTERS = Type.getInternalName(MappedCounters.class);
+    private static final String MAPPED_COUNTERS_DESCRIPTOR = Type.getDescriptor(MappedCounters.class);
+
+    private static final String TOUCH_COLLECTOR = "net/sourceforge/cobertura/coveragedata/TouchCollector";
+    private static final String REGISTER_CLASS_METHOD_DESCRIPTOR = "(Ljava/lang/String;)V";
+
+    private static final int MAX_CONSTANT_LENGTH = 65535;
+
+    private final String probeMode;
+
+    public ProbeRewriter(String probeMode) {
+        if (!isValid(probeMode)) {
+            throw new IllegalArgumentException("Unknown probe mode: " + probeMode + ", expected one of: " + MODES);
+        }
+
+        this.probeMode = probeMode;
+    }
+
+    public static boolean isValid(String probeMode) {
+        return MODES.contains(probeMode);
+    }
+
+    /**
+     * @return whether classes are rewritten at all, Cobertura's probes are kept with {@link #COUNT_MODE}
+     */
+    public boolean rewritesProbes() {
+        return !COUNT_MODE.equals(probeMode);
+    }
+
+    /**
+     * @return whether hits are counted in counters files instead of the data file
+     */
+    public boolean usesMappedCounters() {
+        return MAPPED_MODE.equals(probeMode);
+    }
+
+    /**
+     * @return classes of the plugin rewritten classes need at runtime
+     */
+    public List<Class<?>> getRuntimeClasses() {
+        if (STRIPED_MODE.equals(probeMode)) {
+            return Collections.singletonList(StripedCounters.class);
+        }
+        if (MAPPED_MODE.equals(probeMode)) {
+            return Arrays.asList(MappedCounters.class, MappedCountersFile.class, MappedCountersFile.EntryReader.class,
+                    MappedCountersFile.EntryScanner.class);
+        }
+
+        return Collections.emptyList();
+    }
+
+    public void rewrite(File classFile) throws IOException {
+        byte[] instrumentedClass = Files.readAllBytes(classFile.toPath());
+        byte[] rewrittenClass = rewrite(instrumentedClass);
+
+        if (rewrittenClass != instrumentedClass) {
+            Files.write(classFile.toPath(), rewrittenClass);
+        }
+    }
+
+    /**
+     * @return the rewritten class, the given array if the class was not rewritten
+     */
+    public byte[] rewrite(byte[] instrumentedClass) {
+        if (!rewritesProbes()) {
+            return instrumentedClass;
+        }
+
+        ClassNode classNode = new ClassNode();
+        new ClassReader(instrumentedClass).accept(classNode, 0);
+
+        if (!rewrite(classNode)) {
+            return instrumentedClass;
+        }
+
+        // frames are kept as they are, so classes of the project never have to be loaded to compute them
+        ClassWriter classWriter = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+        classNode.accept(classWriter);
+
+        return classWriter.toByteArray();
+    }
+
+    private boolean rewrite(ClassNode classNode) {
+        if ((classNode.access & Opcodes.ACC_INTERFACE) != 0 || !hasCountersField(classNode)) {
+            return false;
+        }
+
+        MethodNode initMethod = null;
+        MethodNode getAndResetCountersMethod = null;
+        for (MethodNode method : classNode.methods) {
+            if (INIT_METHOD_NAME.equals(method.name)) {
+                initMethod = method;
+            } else if (GET_AND_RESET_COUNTERS_METHOD_NAME.equals(method.name)) {
+                getAndResetCountersMethod = method;
+            } else if (!rewriteProbes(classNode.name, method)) {
+                return false;
+            }
+        }
+
+        if (initMethod == null || getAndResetCountersMethod == null) {
+            return false;
+        }
+
+        // classes whose registration is not rewritten keep the counters of Cobertura and save hits in the data file
+        if (MAPPED_MODE.equals(probeMode)) {
+            return rewriteRegistration(classNode, initMethod);
+        }
+
+        // counters of Cobertura are kept, probes only store into them
+        if (HIT_MODE.equals(probeMode)) {
+            return true;
+        }
+
+        rewriteInitMethod(classNode.name, initMethod);
+        rewriteGetAndResetCountersMethod(classNode.name, getAndResetCountersMethod);
+        classNode.fields.add(new FieldNode(
+                Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC | Opcodes.ACC_TRANSIENT | Opcodes.ACC_SYNTHETIC,
+                STRIPED_COUNTERS_FIELD_NAME, STRIPED_COUNTERS_DESCRIPTOR, null, null));
+
+        return true;
+    }
+
+    private boolean hasCountersField(ClassNode classNode) {
+        for (FieldNode field : classNode.fields) {
+            if (COUNTERS_FIELD_NAME.equals(field.name) && COUNTERS_FIELD_DESCRIPTOR.equals(field.desc)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Replaces {@code GETSTATIC counters, <probe>, DUP2, IALOAD, ICONST_1, IADD, IASTORE} emitted by Cobertura for
+     * every probe, where the probe is a constant or a local variable, with an increment of the striped counters or with
+     * {@code GETSTATIC counters, <probe>, ICONST_1, IASTORE}.
+     *
+     * @return {@code false} if the method accesses the counters in any other way
+     */
+    private boolean rewriteProbes(String className, MethodNode method) {
+        InsnList instructions = method.instructions;
+
+        for (AbstractInsnNode instruction = instructions.getFirst(); instruction != null; ) {
+            if (!isCountersField(instruction)) {
+                instruction = instruction.getNext();
+                continue;
+            }
+
+            AbstractInsnNode probe = instruction.getNext();
+            if (instruction.getOpcode() != Opcodes.GETSTATIC || !isProbe(probe)) {
+                return false;
+            }
+
+            AbstractInsnNode[] increment = next(probe, 5);
+            if (!isIncrement(increment)) {
+                return false;
+            }
+
+            if (HIT_MODE.equals(probeMode)) {
+                rewriteToStore(instructions, increment);
+            } else if (MAPPED_MODE.equals(probeMode)) {
+                rewriteToIncrement(className, instructions, instruction, increment,
+                        MAPPED_COUNTERS_FIELD_NAME, MAPPED_COUNTERS, MAPPED_COUNTERS_DESCRIPTOR);
+            } else {
+                rewriteToIncrement(className, instructions, instruction, increment,
+                        STRIPED_COUNTERS_FIELD_NAME, STRIPED_COUNTERS, STRIPED_COUNTERS_DESCRIPTOR);
+            }
+
+            instruction = probe.getNext().getNext();
+        }
+
+        return true;
+    }
+
+    private void rewriteToStore(InsnList instructions, AbstractInsnNode[] increment) {
+        for (int i = 1; i < increment.length - 1; i++) {
+            instructions.remove(increment[i]);
+        }
+        instructions.set(increment[0], new InsnNode(Opcodes.ICONST_1));
+    }
+
+    private void rewriteToIncrement(
+            String className, InsnList instructions, AbstractInsnNode counters, AbstractInsnNode[] increment,
+            String fieldName, String countersClass, String countersDescriptor) {
+
+        instructions.set(counters, new FieldInsnNode(Opcodes.GETSTATIC, className, fieldName, countersDescriptor));
+        for (int i = 1; i < increment.length; i++) {
+            instructions.remove(increment[i]);
+        }
+        instructions.set(increment[0], new MethodInsnNode(
+                Opcodes.INVOKEVIRTUAL, countersClass, "increment", "(I)V", false));
+    }
+
+    private boolean isCountersField(AbstractInsnNode instruction) {
+        if (instruction.getOpcode() != Opcodes.GETSTATIC && instruction.getOpcode() != Opcodes.PUTSTATIC) {
+            return false;
+        }
+
+        FieldInsnNode field = (FieldInsnNode) instruction;
+
+        return COUNTERS_FIELD_NAME.equals(field.name) && COUNTERS_FIELD_DESCRIPTOR.equals(field.desc);
+    }
+
+    private AbstractInsnNode[] next(AbstractInsnNode instruction, int count) {
+        AbstractInsnNode[] instructions = new AbstractInsnNode[count];
+
+        AbstractInsnNode next = instruction;
+        for (int i = 0; i < count && next != null; i++) {
+            next = next.getNext();
+            instructions[i] = next;
+        }
+
+        return instructions;
+    }
+
+    private boolean isProbe(AbstractInsnNode instruction) {
+        if (instruction == null) {
+            return false;
+        }
+
+        int opcode = instruction.getOpcode();
+
+        return opcode == Opcodes.ILOAD
+                || opcode == Opcodes.BIPUSH
+                || opcode == Opcodes.SIPUSH
+                || opcode >= Opcodes.ICONST_M1 && opcode <= Opcodes.ICONST_5
+                || opcode == Opcodes.LDC && ((LdcInsnNode) instruction).cst instanceof Integer;
+    }
+
+    private boolean isIncrement(AbstractInsnNode[] instructions) {
+        return instructions[4] != null
+                && instructions[0].getOpcode() == Opcodes.DUP2
+                && instructions[1].getOpcode() == Opcodes.IALOAD
+                && isOne(instructions[2])
+                && instructions[3].getOpcode() == Opcodes.IADD
+                && instructions[4].getOpcode() == Opcodes.IASTORE;
+    }
+
+    private boolean isOne(AbstractInsnNode instruction) {
+        return instruction.getOpcode() == Opcodes.ICONST_1
+                || instruction.getOpcode() == Opcodes.LDC && Integer.valueOf(1).equals(((LdcInsnNode) instruction).cst);
+    }
+
+    /**
+     * Creates the striped counters before every return, after Cobertura created its counters, whose size they take.
+     */
+    private void rewriteInitMethod(String className, MethodNode method) {
+        for (AbstractInsnNode instruction : method.instructions.toArray()) {
+            if (instruction.getOpcode() != Opcodes.RETURN) {
+                continue;
+            }
+
+            InsnList initialization = new InsnList();
+            initialization.add(new FieldInsnNode(
+                    Opcodes.GETSTATIC, className, STRIPED_COUNTERS_FIELD_NAME, STRIPED_COUNTERS_DESCRIPTOR));
+            initialization.add(new FieldInsnNode(
+                    Opcodes.GETSTATIC, className, COUNTERS_FIELD_NAME, COUNTERS_FIELD_DESCRIPTOR));
+            initialization.add(new InsnNode(Opcodes.ARRAYLENGTH));
+            initialization.add(new MethodInsnNode(
+                    Opcodes.INVOKESTATIC, STRIPED_COUNTERS, "initialize",
+                    "(" + STRIPED_COUNTERS_DESCRIPTOR + "I)" + STRIPED_COUNTERS_DESCRIPTOR, false));
+            initialization.add(new FieldInsnNode(
+                    Opcodes.PUTSTATIC, className, STRIPED_COUNTERS_FIELD_NAME, STRIPED_COUNTERS_DESCRIPTOR));
+
+            method.instructions.insertBefore(instruction, initialization);
+        }
+    }
+
+    /**
+     * Replaces {@code TouchCollector.registerClass(<class name>)}, called once Cobertura created its counters, with
+     * {@code MappedCounters.register(<class name>, <counters size>, <touch points>)} storing the mapped counters. The
+     * counters of Cobertura are kept, so {@code __cobertura_get_and_reset_counters} still works, without hits.
+     *
+     * @return {@code false} if the registration, the size of the counters or the touch points are not recognised
+     */
+    private boolean rewriteRegistration(ClassNode classNode, MethodNode initMethod) {
+        MethodInsnNode registration = null;
+        Integer size = null;
+
+        for (AbstractInsnNode instruction : initMethod.instructions.toArray()) {
+            if (isRegistration(instruction)) {
+                if (registration != null) {
+                    return false;
+                }
+                registration = (MethodInsnNode) instruction;
+            } else if (instruction.getOpcode() == Opcodes.NEWARRAY
+                    && ((IntInsnNode) instruction).operand == Opcodes.T_INT) {
+                size = constant(instruction.getPrevious());
+            }
+        }
+
+        TouchPoints touchPoints = ClassmapReader.read(classNode);
+        if (registration == null || size == null || touchPoints == null
+                || !fitsInConstant(touchPoints.toString())) {
+            return false;
+        }
+
+        InsnList mappedRegistration = new InsnList();
+        mappedRegistration.add(new InsnNode(Opcodes.POP));
+        mappedRegistration.add(new LdcInsnNode(classNode.name.replace('/', '.')));
+        mappedRegistration.add(new LdcInsnNode(size));
+        mappedRegistration.add(new LdcInsnNode(touchPoints.toString()));
+        mappedRegistration.add(new MethodInsnNode(
+                Opcodes.INVOKESTATIC, MAPPED_COUNTERS, "register",
+                "(Ljava/lang/String;ILjava/lang/String;)" + MAPPED_COUNTERS_DESCRIPTOR, false));
+        mappedRegistration.add(new FieldInsnNode(
+                Opcodes.PUTSTATIC, classNode.name, MAPPED_COUNTERS_FIELD_NAME, MAPPED_COUNTERS_DESCRIPTOR));
+
+        initMethod.instructions.insert(registration, mappedRegistration);
+        initMethod.instructions.remove(registration);
+        classNode.fields.add(new FieldNode(
+                Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC | Opcodes.ACC_TRANSIENT | Opcodes.ACC_SYNTHETIC,
+                MAPPED_COUNTERS_FIELD_NAME, MAPPED_COUNTERS_DESCRIPTOR, null, null));
+
+        return true;
+    }
+
+    private boolean isRegistration(AbstractInsnNode instruction) {
+        if (instruction.getOpcode() != Opcodes.INVOKESTATIC) {
+            return false;
+        }
+
+        MethodInsnNode method = (MethodInsnNode) instruction;
+
+        return TOUCH_COLLECTOR.equals(method.owner)
+                && "registerClass".equals(method.name)
+                && REGISTER_CLASS_METHOD_DESCRIPTOR.equals(method.desc);
+    }
+
+    /**
+     * @return whether the given text takes at most 65535 bytes of modified UTF-8, as string constants of class files
+     */
+    private boolean fitsInConstant(String text) {
+        int length = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            length += c >= 0x01 && c <= 0x7f ? 1 : c <= 0x7ff ? 2 : 3;
+        }
+
+        return length <= MAX_CONSTANT_LENGTH;
+    }
+
+    private Integer constant(AbstractInsnNode instruction) {
+        if (instruction == null) {
+            return null;
+        }
+
+        int opcode = instruction.getOpcode();
+        if (opcode >= Opcodes.ICONST_M1 && opcode <= Opcodes.ICONST_5) {
+            return opcode - Opcodes.ICONST_0;
+        }
+        if (opcode == Opcodes.BIPUSH || opcode == Opcodes.SIPUSH) {
+            return ((IntInsnNode) instruction).operand;
+        }
+        if (opcode == Opcodes.LDC && ((LdcInsnNode) instruction).cst instanceof Integer) {
+            return (Integer) ((LdcInsnNode) instruction).cst;
+        }
+
+        return null;
+    }
+
+    private void rewriteGetAndResetCountersMethod(String className, MethodNode method) {
+        method.instructions.clear();
+        method.tryCatchBlocks.clear();
+        method.localVariables = null;
+
+        method.instructions.add(new FieldInsnNode(
+                Opcodes.GETSTATIC, className, STRIPED_COUNTERS_FIELD_NAME, STRIPED_COUNTERS_DESCRIPTOR));
+        method.instructions.add(new MethodInsnNode(
+                Opcodes.INVOKEVIRTUAL, STRIPED_COUNTERS, "getAndReset", "()[I", false));
+        method.instructions.add(new InsnNode(Opcodes.ARETURN));
+    }
+}
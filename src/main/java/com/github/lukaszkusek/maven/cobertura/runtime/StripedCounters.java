@@ -0,0 +1,121 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2013 Lukasz Kusek
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.github.lukaszkusek.maven.cobertura.runtime;
+
+import java.lang.ref.WeakReference;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Hit counters of {@code probeMode=striped}. Every thread counts hits in its own array, so probes neither contend nor
+ * lose hits, and the arrays are summed when Cobertura collects the counters.
+ */
+public class StripedCounters {
+
+    private final int size;
+
+    private final List<ThreadCounters> threadCounters = new CopyOnWriteArrayList<>();
+    private final ThreadLocal<AtomicIntegerArray> counters = ThreadLocal.withInitial(this::registerThreadCounters);
+
+    StripedCounters(int size) {
+        this.size = size;
+    }
+
+    /**
+     * Called by the rewritten {@code __cobertura_init} method of an instrumented class.
+     *
+     * @return the given counters, new counters of the given size if there are none yet
+     */
+    public static StripedCounters initialize(StripedCounters counters, int size) {
+        return counters != null ? counters : new StripedCounters(size);
+    }
+
+    private AtomicIntegerArray registerThreadCounters() {
+        ThreadCounters thread = new ThreadCounters(Thread.currentThread(), size);
+        threadCounters.add(thread);
+
+        return thread.hits;
+    }
+
+    public void increment(int counter) {
+        AtomicIntegerArray hits = counters.get();
+
+        // no other thread writes the array, so an ordered store is enough to increment and publish the hit
+        hits.lazySet(counter, hits.get(counter) + 1);
+    }
+
+    /**
+     * Called by the rewritten {@code __cobertura_get_and_reset_counters} method of an instrumented class. Hits a
+     * thread counted after the collecting thread read its array are returned by the next call.
+     *
+     * @return hits of all threads counted since the previous call
+     */
+    public synchronized int[] getAndReset() {
+        int[] hits = new int[size];
+
+        for (ThreadCounters thread : threadCounters) {
+            // checked before the hits are read, as a finished thread counts no more hits
+            boolean finished = thread.isFinished();
+
+            for (int counter = 0; counter < size; counter++) {
+                int threadHits = thread.hits.get(counter);
+                hits[counter] += threadHits - thread.collectedHits[counter];
+                thread.collectedHits[counter] = threadHits;
+            }
+
+            if (finished) {
+                threadCounters.remove(thread);
+            }
+        }
+
+        return hits;
+    }
+
+    int getThreads() {
+        return threadCounters.size();
+    }
+
+    private static final class ThreadCounters {
+
+        // weak, so counters do not keep finished threads reachable
+        private final WeakReference<Thread> thread;
+        private final AtomicIntegerArray hits;
+
+        // accessed only by the collecting thread, holding the lock of the counters
+        private final int[] collectedHits;
+
+        ThreadCounters(Thread thread, int size) {
+            this.thread = new WeakReference<>(thread);
+            this.hits = new AtomicIntegerArray(size);
+            this.collectedHits = new int[size];
+        }
+
+        boolean isFinished() {
+            Thread owner = thread.get();
+
+            return owner == null || !owner.isAlive();
+        }
+    }
+}
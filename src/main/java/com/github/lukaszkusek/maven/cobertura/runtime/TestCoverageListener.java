@@ -0,0 +1,144 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2013 Lukasz Kusek
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.github.lukaszkusek.maven.cobertura.runtime;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Properties;
+
+import net.sourceforge.cobertura.coveragedata.ClassData;
+import net.sourceforge.cobertura.coveragedata.CoverageData;
+import net.sourceforge.cobertura.coveragedata.LineData;
+import net.sourceforge.cobertura.coveragedata.ProjectData;
+import net.sourceforge.cobertura.coveragedata.TouchCollector;
+import org.junit.runner.Description;
+import org.junit.runner.Result;
+import org.junit.runner.notification.RunListener;
+
+/**
+ * JUnit listener writing lines hit by every test class to {@code <test class>.txt}. Hits are attributed to the test
+ * class which started last, so test classes must not run in parallel within a JVM.
+ */
+public class TestCoverageListener extends RunListener {
+
+    public static final String TEST_COVERAGE_DIRECTORY_KEY =
+            "com.github.lukaszkusek.maven.cobertura.testCoverageDirectory";
+
+    private static final String COBERTURA_PROPERTIES = "cobertura.properties";
+
+    private final File testCoverageDirectory;
+    private String testClass;
+
+    public TestCoverageListener() {
+        this.testCoverageDirectory = loadTestCoverageDirectory();
+    }
+
+    private static File loadTestCoverageDirectory() {
+        Properties properties = new Properties();
+
+        try (InputStream input = TestCoverageListener.class.getClassLoader().getResourceAsStream(COBERTURA_PROPERTIES)) {
+            if (input != null) {
+                properties.load(input);
+            }
+        } catch (IOException e) {
+            System.err.println("Unable to read " + COBERTURA_PROPERTIES + ": " + e.getMessage());
+        }
+
+        String testCoverageDirectoryPath = properties.getProperty(TEST_COVERAGE_DIRECTORY_KEY);
+
+        return testCoverageDirectoryPath != null ? new File(testCoverageDirectoryPath) : null;
+    }
+
+    @Override
+    public synchronized void testStarted(Description description) {
+        String startedTestClass = description.getClassName();
+
+        if (!startedTestClass.equals(testClass)) {
+            finishTestClass();
+            testClass = startedTestClass;
+        }
+    }
+
+    @Override
+    public synchronized void testRunFinished(Result result) {
+        finishTestClass();
+        testClass = null;
+    }
+
+    private void finishTestClass() {
+        ProjectData testClassData = new ProjectData();
+        TouchCollector.applyTouchesOnProjectData(testClassData);
+
+        // counters were reset while collecting, the data saved at shutdown would miss these hits otherwise
+        ProjectData.getGlobalProjectData().merge(testClassData);
+
+        if (testClass != null && testCoverageDirectory != null) {
+            try {
+                writeHitLines(testClassData);
+            } catch (IOException e) {
+                System.err.println("Unable to write coverage of " + testClass + ": " + e.getMessage());
+            }
+        }
+    }
+
+    private void writeHitLines(ProjectData testClassData) throws IOException {
+        if (!testCoverageDirectory.isDirectory() && !testCoverageDirectory.mkdirs()) {
+            throw new IOException("Cannot create directory: " + testCoverageDirectory.getAbsolutePath());
+        }
+
+        File testClassFile = new File(testCoverageDirectory, testClass + ".txt");
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(
+                Files.newOutputStream(testClassFile.toPath()), StandardCharsets.UTF_8))) {
+
+            for (ClassData classData : testClassData.getClasses()) {
+                writeHitLines(writer, classData);
+            }
+        }
+    }
+
+    /**
+     * Writes {@code class name<TAB>line,line,...} when any line of the class was hit.
+     */
+    private void writeHitLines(Writer writer, ClassData classData) throws IOException {
+        StringBuilder lines = new StringBuilder();
+
+        for (CoverageData coverageData : classData.getLines()) {
+            LineData lineData = (LineData) coverageData;
+
+            if (lineData.getHits() > 0) {
+                lines.append(lines.length() > 0 ? "," : "").append(lineData.getLineNumber());
+            }
+        }
+
+        if (lines.length() > 0) {
+            writer.write(classData.getName() + '\t' + lines + '\n');
+        }
+    }
+}
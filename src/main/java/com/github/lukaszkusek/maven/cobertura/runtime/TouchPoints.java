@@ -0,0 +1,130 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2013 Lukasz Kusek
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.github.lukaszkusek.maven.cobertura.runtime;
+
+/**
+ * Touch points of a class instrumented by Cobertura, i.e. its lines, jumps and switches together with the counters
+ * their hits are counted in, as passed by the {@code __cobertura_classmap} method of the class to a
+ * {@code LightClassmapListener}. Kept as text next to the counters of {@code probeMode=mapped}, one touch point per
+ * line, so the counters can be turned into coverage without loading the class.
+ */
+public class TouchPoints {
+
+    private static final char SOURCE = 'S';
+    private static final char LINE = 'L';
+    private static final char JUMP = 'J';
+    private static final char SWITCH = 'W';
+
+    private final StringBuilder text = new StringBuilder();
+
+    /**
+     * The part of {@code LightClassmapListener} which is needed to restore coverage, with the same methods as
+     * {@link TouchPoints} adding touch points.
+     */
+    public interface Listener {
+
+        void setSource(String source);
+
+        void putLineTouchPoint(int line, int counter, String methodName, String methodDescriptor);
+
+        void putJumpTouchPoint(int line, int trueCounter, int falseCounter);
+
+        /**
+         * @param counters counter of the default branch followed by counters of the labels
+         */
+        void putSwitchTouchPoint(int line, int maxBranches, int[] counters);
+    }
+
+    /**
+     * Passes touch points kept as text to the given listener in the order they were added.
+     */
+    public static void replay(String text, Listener listener) {
+        for (String touchPoint : text.split("\n")) {
+            if (touchPoint.isEmpty()) {
+                continue;
+            }
+
+            String[] fields = touchPoint.substring(1).split("\t", -1);
+            switch (touchPoint.charAt(0)) {
+                case SOURCE:
+                    listener.setSource(fields[0]);
+                    break;
+                case LINE:
+                    listener.putLineTouchPoint(
+                            Integer.parseInt(fields[0]), Integer.parseInt(fields[1]), fields[2], fields[3]);
+                    break;
+                case JUMP:
+                    listener.putJumpTouchPoint(
+                            Integer.parseInt(fields[0]), Integer.parseInt(fields[1]), Integer.parseInt(fields[2]));
+                    break;
+                case SWITCH:
+                    listener.putSwitchTouchPoint(
+                            Integer.parseInt(fields[0]), Integer.parseInt(fields[1]), parseCounters(fields[2]));
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown touch point: " + touchPoint);
+            }
+        }
+    }
+
+    private static int[] parseCounters(String counters) {
+        String[] values = counters.split(",");
+        int[] parsed = new int[values.length];
+        for (int i = 0; i < values.length; i++) {
+            parsed[i] = Integer.parseInt(values[i]);
+        }
+
+        return parsed;
+    }
+
+    public void setSource(String source) {
+        append(SOURCE).append(source).append('\n');
+    }
+
+    public void putLineTouchPoint(int line, int counter, String methodName, String methodDescriptor) {
+        append(LINE).append(line).append('\t').append(counter)
+                .append('\t').append(methodName).append('\t').append(methodDescriptor).append('\n');
+    }
+
+    public void putJumpTouchPoint(int line, int trueCounter, int falseCounter) {
+        append(JUMP).append(line).append('\t').append(trueCounter).append('\t').append(falseCounter).append('\n');
+    }
+
+    public void putSwitchTouchPoint(int line, int maxBranches, int[] counters) {
+        append(SWITCH).append(line).append('\t').append(maxBranches).append('\t');
+        for (int i = 0; i < counters.length; i++) {
+            text.append(i > 0 ? "," : "").append(counters[i]);
+        }
+        text.append('\n');
+    }
+
+    private StringBuilder append(char type) {
+        return text.append(type);
+    }
+
+    @Override
+    public String toString() {
+        return text.toString();
+    }
+}
@@ -0,0 +1,62 @@
+package com.github.lukaszkusek.maven.cobertura;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.github.lukaszkusek.maven.cobertura.runtime.ProbeRewriter;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.codehaus.plexus.util.ReflectionUtils;
+import org.junit.Before;
+import org.junit.Test;
+
+public class InstrumentCoberturaMojoTest {
+
+    private final InstrumentCoberturaMojo mojo = new InstrumentCoberturaMojo();
+
+    @Before
+    public void setup() throws IllegalAccessException {
+        ReflectionUtils.setVariableValueInObject(mojo, "probeMode", ProbeRewriter.COUNT_MODE);
+        ReflectionUtils.setVariableValueInObject(mojo, "perTestCoverage", true);
+    }
+
+    @Test
+    public void shouldRejectPerTestCoverageWithDumpInterval() throws IllegalAccessException {
+        // given
+        ReflectionUtils.setVariableValueInObject(mojo, "dumpInterval", 10);
+
+        // when
+        Throwable thrown = catchValidationFailure();
+
+        // then
+        assertThat(thrown).isInstanceOf(MojoExecutionException.class);
+    }
+
+    @Test
+    public void shouldRejectPerTestCoverageWithDumpOnDemand() throws IllegalAccessException {
+        // given
+        ReflectionUtils.setVariableValueInObject(mojo, "dumpOnDemand", true);
+
+        // when
+        Throwable thrown = catchValidationFailure();
+
+        // then
+        assertThat(thrown).isInstanceOf(MojoExecutionException.class);
+    }
+
+    @Test
+    public void shouldAcceptPerTestCoverageWithoutDumps() {
+        // when
+        Throwable thrown = catchValidationFailure();
+
+        // then
+        assertThat(thrown).isNull();
+    }
+
+    private Throwable catchValidationFailure() {
+        try {
+            mojo.validateProbeMode();
+            return null;
+        } catch (MojoExecutionException e) {
+            return e;
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.github.lukaszkusek.maven.cobertura.coverage;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import net.sourceforge.cobertura.coveragedata.ClassData;
+import net.sourceforge.cobertura.coveragedata.ProjectData;
+import org.junit.Test;
+
+public class CoverageCheckTest {
+
+    @Test
+    public void shouldPassWithoutThresholds() {
+        // given
+        ProjectData projectData = projectData();
+
+        // when
+        CoverageCheck.Result result = new CoverageCheck().verify(projectData);
+
+        // then
+        assertThat(result.isPassed()).isTrue();
+        assertThat(result.getClasses()).isEqualTo(3);
+        assertThat(result.getPackages()).isEqualTo(2);
+        assertThat(result.getLineRate()).isEqualTo(0.5);
+        assertThat(result.getBranchRate()).isEqualTo(0.25);
+    }
+
+    @Test
+    public void shouldReportClassesBelowThresholds() {
+        // when
+        CoverageCheck.Result result = new CoverageCheck().withClassRates(50, 0).verify(projectData());
+
+        // then
+        assertThat(result.getViolations())
+                .containsOnly("Class a.Uncovered line coverage rate of 0.00% (0/2) is below 50%.");
+    }
+
+    @Test
+    public void shouldReportPackagesBelowThresholds() {
+        // when
+        CoverageCheck.Result result = new CoverageCheck().withPackageRates(0, 50).verify(projectData());
+
+        // then
+        assertThat(result.getViolations())
+                .containsOnly("Package b branch coverage rate of 0.00% (0/2) is below 50%.");
+    }
+
+    @Test
+    public void shouldReportProjectBelowThresholds() {
+        // when
+        CoverageCheck.Result result = new CoverageCheck().withTotalRates(50, 26).verify(projectData());
+
+        // then
+        assertThat(result.getViolations())
+                .containsOnly("Project branch coverage rate of 25.00% (1/4) is below 26%.");
+    }
+
+    @Test
+    public void shouldPassWhenRateEqualsThreshold() {
+        // when
+        CoverageCheck.Result result = new CoverageCheck()
+                .withClassRates(0, 0)
+                .withPackageRates(50, 0)
+                .withTotalRates(50, 25)
+                .verify(projectData());
+
+        // then
+        assertThat(result.isPassed()).isTrue();
+    }
+
+    private ProjectData projectData() {
+        ProjectData projectData = new ProjectData();
+
+        ClassData covered = new ClassData("a.Covered");
+        covered.addLine(1, "method", "()V");
+        covered.addLine(2, "method", "()V");
+        covered.addLineJump(2, 0);
+        covered.touch(1, 1);
+        covered.touch(2, 1);
+        covered.touchJump(2, 0, true, 1);
+        projectData.addClassData(covered);
+
+        ClassData uncovered = new ClassData("a.Uncovered");
+        uncovered.addLine(1, "method", "()V");
+        uncovered.addLine(2, "method", "()V");
+        projectData.addClassData(uncovered);
+
+        ClassData other = new ClassData("b.Other");
+        other.addLine(1, "method", "()V");
+        other.addLineJump(1, 0);
+        other.addLine(2, "method", "()V");
+        other.touch(1, 1);
+        projectData.addClassData(other);
+
+        return projectData;
+    }
+}
@@ -0,0 +1,181 @@
+package com.github.lukaszkusek.maven.cobertura.coverage;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import net.sourceforge.cobertura.coveragedata.ClassData;
+import net.sourceforge.cobertura.coveragedata.LineData;
+import net.sourceforge.cobertura.coveragedata.ProjectData;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class CoverageSnapshotTest {
+
+    private static final String CLASS_NAME = "a.A";
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private File dataFile;
+
+    @Before
+    public void setup() throws IOException {
+        dataFile = new File(temporaryFolder.newFolder(), "cobertura.ser");
+    }
+
+    @Test
+    public void shouldBeLocatedNextToDataFile() {
+        // when
+        CoverageSnapshot snapshot = CoverageSnapshot.of(dataFile);
+
+        // then
+        assertThat(snapshot.getFile()).isEqualTo(new File(dataFile.getParentFile(), "cobertura.snapshot"));
+    }
+
+    @Test
+    public void shouldReadWhatWasWritten() throws IOException {
+        // given
+        CoverageDataFile.locatedAt(dataFile).save(projectData());
+        CoverageSnapshot snapshot = CoverageSnapshot.of(dataFile);
+
+        // when
+        snapshot.write(projectData(), dataFile);
+        ProjectData projectData = snapshot.read();
+
+        // then
+        ClassData classData = projectData.getClassData(CLASS_NAME);
+        assertThat(classData.getSourceFileName()).isEqualTo("a/A.java");
+        assertThat(classData.getNumberOfValidLines()).isEqualTo(3);
+        assertThat(classData.getNumberOfCoveredLines()).isEqualTo(2);
+        assertThat(classData.getNumberOfValidBranches()).isEqualTo(5);
+        assertThat(classData.getNumberOfCoveredBranches()).isEqualTo(3);
+
+        LineData lineData = classData.getLineData(1);
+        assertThat(lineData.getHits()).isEqualTo(5L);
+        assertThat(lineData.getMethodName()).isEqualTo("method");
+        assertThat(lineData.getMethodDescriptor()).isEqualTo("()V");
+        assertThat(lineData.getConditionCoverage()).isEqualTo(projectData().getClassData(CLASS_NAME)
+                .getLineData(1).getConditionCoverage());
+    }
+
+    @Test
+    public void shouldBeTakenFromDataFileItWasWrittenFor() throws IOException {
+        // given
+        CoverageDataFile.locatedAt(dataFile).save(projectData());
+        CoverageSnapshot snapshot = CoverageSnapshot.of(dataFile);
+
+        // when
+        snapshot.write(projectData(), dataFile);
+
+        // then
+        assertThat(snapshot.isTakenFrom(dataFile)).isTrue();
+    }
+
+    @Test
+    public void shouldNotBeTakenFromRewrittenDataFile() throws IOException {
+        // given
+        CoverageDataFile.locatedAt(dataFile).save(projectData());
+        CoverageSnapshot snapshot = CoverageSnapshot.of(dataFile);
+        snapshot.write(projectData(), dataFile);
+
+        // when
+        ProjectData projectData = projectData();
+        projectData.getClassData(CLASS_NAME).touch(3, 1);
+        CoverageDataFile.locatedAt(dataFile).save(projectData);
+
+        // then
+        assertThat(snapshot.isTakenFrom(dataFile)).isFalse();
+    }
+
+    @Test
+    public void shouldComputeChecksumOfDataFileAgainOnlyAfterSave() throws IOException {
+        // given
+        CoverageDataFile coverageDataFile = CoverageDataFile.locatedAt(dataFile);
+        coverageDataFile.save(projectData());
+        long savedChecksum = coverageDataFile.getChecksum();
+
+        ProjectData projectData = projectData();
+        projectData.getClassData(CLASS_NAME).touch(3, 1);
+
+        // when
+        coverageDataFile.save(projectData);
+
+        // then
+        assertThat(savedChecksum).isNotEqualTo(coverageDataFile.getChecksum());
+        assertThat(coverageDataFile.getChecksum()).isEqualTo(CoverageSnapshot.checksum(dataFile));
+    }
+
+    @Test
+    public void shouldWriteSnapshotWhenSavingDataFileWithSnapshot() {
+        // when
+        CoverageDataFile.locatedAt(dataFile).withSnapshot().save(projectData());
+
+        // then
+        assertThat(CoverageSnapshot.of(dataFile).exists()).isTrue();
+    }
+
+    @Test
+    public void shouldNotWriteSnapshotByDefault() {
+        // when
+        CoverageDataFile.locatedAt(dataFile).save(projectData());
+        CoverageDataFile.locatedAt(dataFile).load();
+
+        // then
+        assertThat(CoverageSnapshot.of(dataFile).exists()).isFalse();
+    }
+
+    @Test
+    public void shouldLoadDataFileWhenSnapshotIsStale() throws IOException {
+        // given
+        CoverageDataFile.locatedAt(dataFile).withSnapshot().save(projectData());
+
+        ProjectData projectData = projectData();
+        projectData.getClassData(CLASS_NAME).touch(3, 7);
+        CoverageDataFile.locatedAt(dataFile).save(projectData);
+
+        // when
+        ProjectData loaded = CoverageDataFile.locatedAt(dataFile).load();
+
+        // then
+        assertThat(loaded.getClassData(CLASS_NAME).getLineData(3).getHits()).isEqualTo(7L);
+    }
+
+    @Test
+    public void shouldLoadDataFileWhenSnapshotIsCorrupted() throws IOException {
+        // given
+        CoverageDataFile.locatedAt(dataFile).withSnapshot().save(projectData());
+        Files.write(CoverageSnapshot.of(dataFile).getFile().toPath(), new byte[] {1, 2, 3});
+
+        // when
+        ProjectData loaded = CoverageDataFile.locatedAt(dataFile).load();
+
+        // then
+        assertThat(loaded.getClassData(CLASS_NAME).getLineData(1).getHits()).isEqualTo(5L);
+    }
+
+    private ProjectData projectData() {
+        ClassData classData = new ClassData(CLASS_NAME);
+        classData.setSourceFileName("a/A.java");
+        classData.addLine(1, "method", "()V");
+        classData.addLineJump(1, 0);
+        classData.addLineSwitch(1, 0, 0, 1, 3);
+        classData.addLine(2, "method", "()V");
+        classData.addLine(3, "other", "(I)I");
+
+        classData.touch(1, 5);
+        classData.touchJump(1, 0, true, 5);
+        classData.touchSwitch(1, 0, 1, 2);
+        classData.touchSwitch(1, 0, -1, 3);
+        classData.touch(2, 1);
+
+        ProjectData projectData = new ProjectData();
+        projectData.addClassData(classData);
+
+        return projectData;
+    }
+}
@@ -0,0 +1,100 @@
+package com.github.lukaszkusek.maven.cobertura.coverage;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+
+import net.sourceforge.cobertura.coveragedata.ClassData;
+import net.sourceforge.cobertura.coveragedata.ProjectData;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ForkDataFilesTest {
+
+    private static final String CLASS_NAME = "a.A";
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private File directory;
+
+    @Before
+    public void setup() throws IOException {
+        directory = temporaryFolder.newFolder();
+    }
+
+    @Test
+    public void shouldReturnDataFilePathPatternResolvedBySurefire() {
+        // when
+        String pattern = ForkDataFiles.locatedIn(directory).getDataFilePathPattern();
+
+        // then
+        assertThat(pattern).isEqualTo(new File(directory, "cobertura-${surefire.forkNumber}.ser").getAbsolutePath());
+    }
+
+    @Test
+    public void shouldListOnlyForkDataFiles() throws IOException {
+        // given
+        File first = new File(directory, "cobertura-1.ser");
+        File second = new File(directory, "cobertura-2.ser");
+        first.createNewFile();
+        second.createNewFile();
+        new File(directory, "other.ser").createNewFile();
+
+        // when
+        ForkDataFiles forkDataFiles = ForkDataFiles.locatedIn(directory);
+
+        // then
+        assertThat(forkDataFiles.list()).containsOnly(first, second);
+    }
+
+    @Test
+    public void shouldReturnNoFilesWhenDirectoryDoesNotExist() {
+        // when
+        ForkDataFiles forkDataFiles = ForkDataFiles.locatedIn(new File(directory, "missing"));
+
+        // then
+        assertThat(forkDataFiles.list()).isEmpty();
+    }
+
+    @Test
+    public void shouldMergeHitsOfAllForks() {
+        // given
+        for (int fork = 1; fork <= 3; fork++) {
+            CoverageDataFile.locatedAt(new File(directory, "cobertura-" + fork + ".ser")).save(projectDataWithHits(fork));
+        }
+
+        // when
+        ProjectData projectData = ForkDataFiles.locatedIn(directory).mergeInto(projectDataWithHits(0));
+
+        // then
+        assertThat(projectData.getClassData(CLASS_NAME).getLineData(1).getHits()).isEqualTo(6L);
+    }
+
+    @Test
+    public void shouldDeleteForkDataFiles() throws IOException {
+        // given
+        new File(directory, "cobertura-1.ser").createNewFile();
+        ForkDataFiles forkDataFiles = ForkDataFiles.locatedIn(directory);
+
+        // when
+        forkDataFiles.delete();
+
+        // then
+        assertThat(forkDataFiles.list()).isEmpty();
+    }
+
+    private ProjectData projectDataWithHits(int hits) {
+        ClassData classData = new ClassData(CLASS_NAME);
+        classData.addLine(1, "method", "()V");
+        classData.touch(1, hits);
+
+        ProjectData projectData = new ProjectData();
+        projectData.addClassData(classData);
+
+        return projectData;
+    }
+}
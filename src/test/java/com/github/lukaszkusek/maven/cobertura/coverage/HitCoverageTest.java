@@ -0,0 +1,72 @@
+package com.github.lukaszkusek.maven.cobertura.coverage;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import net.sourceforge.cobertura.coveragedata.ClassData;
+import net.sourceforge.cobertura.coveragedata.JumpData;
+import net.sourceforge.cobertura.coveragedata.LineData;
+import net.sourceforge.cobertura.coveragedata.ProjectData;
+import net.sourceforge.cobertura.coveragedata.SwitchData;
+import org.junit.Test;
+
+public class HitCoverageTest {
+
+    private static final String CLASS_NAME = "a.A";
+
+    @Test
+    public void shouldCapHitsAtOne() {
+        // given
+        ProjectData projectData = projectData(5);
+
+        // when
+        ProjectData hitCoverage = HitCoverage.of(projectData);
+
+        // then
+        ClassData classData = hitCoverage.getClassData(CLASS_NAME);
+        assertThat(classData.getSourceFileName()).isEqualTo("a/A.java");
+        assertThat(classData.getNumberOfValidLines()).isEqualTo(3);
+        assertThat(classData.getNumberOfCoveredLines()).isEqualTo(2);
+        assertThat(classData.getNumberOfValidBranches()).isEqualTo(5);
+        assertThat(classData.getNumberOfCoveredBranches()).isEqualTo(3);
+
+        LineData lineData = classData.getLineData(1);
+        assertThat(lineData.getHits()).isEqualTo(1L);
+        assertThat(lineData.getMethodName()).isEqualTo("method");
+        assertThat(((JumpData) lineData.getConditionData(0)).getTrueHits()).isEqualTo(1L);
+        assertThat(((SwitchData) lineData.getConditionData(1)).getDefaultHits()).isEqualTo(1L);
+        assertThat(classData.getLineData(3).getHits()).isEqualTo(0L);
+    }
+
+    @Test
+    public void shouldKeepProjectDataWithoutCountedHits() {
+        // given
+        ProjectData projectData = projectData(1);
+
+        // when
+        ProjectData hitCoverage = HitCoverage.of(projectData);
+
+        // then
+        assertThat(hitCoverage).isSameAs(projectData);
+    }
+
+    private ProjectData projectData(int hits) {
+        ClassData classData = new ClassData(CLASS_NAME);
+        classData.setSourceFileName("a/A.java");
+        classData.addLine(1, "method", "()V");
+        classData.addLineJump(1, 0);
+        classData.addLineSwitch(1, 0, 0, 1, 3);
+        classData.addLine(2, "method", "()V");
+        classData.addLine(3, "other", "(I)I");
+
+        classData.touch(1, hits);
+        classData.touchJump(1, 0, true, hits);
+        classData.touchSwitch(1, 0, 1, 1);
+        classData.touchSwitch(1, 0, -1, hits);
+        classData.touch(2, 1);
+
+        ProjectData projectData = new ProjectData();
+        projectData.addClassData(classData);
+
+        return projectData;
+    }
+}
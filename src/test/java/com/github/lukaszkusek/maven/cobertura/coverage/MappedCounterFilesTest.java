@@ -0,0 +1,131 @@
+package com.github.lukaszkusek.maven.cobertura.coverage;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+
+import com.github.lukaszkusek.maven.cobertura.runtime.MappedCounters;
+import com.github.lukaszkusek.maven.cobertura.runtime.MappedCountersFile;
+import com.github.lukaszkusek.maven.cobertura.runtime.TouchPoints;
+import net.sourceforge.cobertura.coveragedata.ClassData;
+import net.sourceforge.cobertura.coveragedata.JumpData;
+import net.sourceforge.cobertura.coveragedata.LineData;
+import net.sourceforge.cobertura.coveragedata.ProjectData;
+import net.sourceforge.cobertura.coveragedata.SwitchData;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class MappedCounterFilesTest {
+
+    private static final String CLASS_NAME = "a.A";
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private File directory;
+
+    @Before
+    public void setup() throws IOException {
+        directory = temporaryFolder.newFolder();
+    }
+
+    @Test
+    public void shouldListOnlyCountersFiles() throws IOException {
+        // given
+        File first = new File(directory, "counters-0.map");
+        File second = new File(directory, "counters-1.map");
+        first.createNewFile();
+        second.createNewFile();
+        new File(directory, "other.map").createNewFile();
+
+        // when
+        MappedCounterFiles mappedCounterFiles = MappedCounterFiles.locatedIn(directory);
+
+        // then
+        assertThat(mappedCounterFiles.list()).containsOnly(first, second);
+    }
+
+    @Test
+    public void shouldTurnCountersIntoCoverage() throws IOException {
+        // given
+        try (MappedCountersFile file = MappedCountersFile.claim(directory)) {
+            MappedCounters counters = file.allocate(CLASS_NAME, 7, touchPoints());
+            hit(counters, 0, 3);
+            hit(counters, 1, 2);
+            hit(counters, 4, 1);
+        }
+
+        // when
+        ProjectData projectData = MappedCounterFiles.locatedIn(directory).mergeInto(new ProjectData());
+
+        // then
+        ClassData classData = projectData.getClassData(CLASS_NAME);
+        assertThat(classData.getSourceFileName()).isEqualTo("a/A.java");
+        assertThat(classData.getNumberOfValidLines()).isEqualTo(2);
+        assertThat(classData.getNumberOfCoveredLines()).isEqualTo(1);
+
+        LineData lineData = classData.getLineData(1);
+        assertThat(lineData.getHits()).isEqualTo(3L);
+        assertThat(lineData.getMethodName()).isEqualTo("method");
+        assertThat(((JumpData) lineData.getConditionData(0)).getTrueHits()).isEqualTo(2L);
+        assertThat(((JumpData) lineData.getConditionData(0)).getFalseHits()).isEqualTo(0L);
+        assertThat(((SwitchData) lineData.getConditionData(1)).getDefaultHits()).isEqualTo(0L);
+        assertThat(((SwitchData) lineData.getConditionData(1)).getHits(0)).isEqualTo(1L);
+        assertThat(classData.getLineData(2).getHits()).isEqualTo(0L);
+    }
+
+    @Test
+    public void shouldAddHitsOfAllFilesToProjectData() throws IOException {
+        // given
+        try (MappedCountersFile first = MappedCountersFile.claim(directory);
+             MappedCountersFile second = MappedCountersFile.claim(directory)) {
+            hit(first.allocate(CLASS_NAME, 7, touchPoints()), 0, 1);
+            hit(second.allocate(CLASS_NAME, 7, touchPoints()), 0, 2);
+        }
+
+        ClassData classData = new ClassData(CLASS_NAME);
+        classData.addLine(1, "method", "()V");
+        classData.touch(1, 4);
+        ProjectData projectData = new ProjectData();
+        projectData.addClassData(classData);
+
+        // when
+        MappedCounterFiles.locatedIn(directory).mergeInto(projectData);
+
+        // then
+        assertThat(projectData.getClassData(CLASS_NAME).getLineData(1).getHits()).isEqualTo(7L);
+    }
+
+    @Test
+    public void shouldDeleteCountersFiles() throws IOException {
+        // given
+        new File(directory, "counters-0.map").createNewFile();
+        MappedCounterFiles mappedCounterFiles = MappedCounterFiles.locatedIn(directory);
+
+        // when
+        mappedCounterFiles.delete();
+
+        // then
+        assertThat(mappedCounterFiles.list()).isEmpty();
+    }
+
+    private String touchPoints() {
+        TouchPoints touchPoints = new TouchPoints();
+        touchPoints.setSource("a/A.java");
+        touchPoints.putLineTouchPoint(1, 0, "method", "()V");
+        touchPoints.putJumpTouchPoint(1, 1, 2);
+        touchPoints.putSwitchTouchPoint(1, 3, new int[] {3, 4, 5});
+        touchPoints.putLineTouchPoint(2, 6, "method", "()V");
+
+        return touchPoints.toString();
+    }
+
+    private void hit(MappedCounters counters, int counter, int hits) {
+        for (int i = 0; i < hits; i++) {
+            counters.increment(counter);
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package com.github.lukaszkusek.maven.cobertura.coverage;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import net.sourceforge.cobertura.coveragedata.ClassData;
+import net.sourceforge.cobertura.coveragedata.ProjectData;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class TestImpactIndexTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private File indexDirectory;
+    private TestImpactIndex index;
+
+    @Before
+    public void setup() throws IOException {
+        indexDirectory = temporaryFolder.newFolder();
+        File testCoverageDirectory = temporaryFolder.newFolder();
+
+        writeTestCoverage(testCoverageDirectory, "t.ATest", "a.A\t1,2,3", "a.A$Inner\t10");
+        writeTestCoverage(testCoverageDirectory, "t.BTest", "a.A\t3,4", "b.B\t1");
+
+        index = TestImpactIndex.locatedIn(indexDirectory).update(testCoverageDirectory, projectData());
+    }
+
+    @Test
+    public void shouldFindTestsHittingClass() {
+        // then
+        assertThat(index.getTestsCovering("a.A")).containsExactly("t.ATest", "t.BTest");
+        assertThat(index.getTestsCovering("b.B")).containsExactly("t.BTest");
+    }
+
+    @Test
+    public void shouldFindTestsHittingChangedLines() {
+        // then
+        assertThat(index.getTestsCovering("a.A:1-2")).containsExactly("t.ATest");
+        assertThat(index.getTestsCovering("a.A:4")).containsExactly("t.BTest");
+        assertThat(index.getTestsCovering("a.A:5-9")).isEmpty();
+    }
+
+    @Test
+    public void shouldFindTestsHittingChangedSourceFile() {
+        // then
+        assertThat(index.getTestsCovering("module/src/main/java/b/B.java")).containsExactly("t.BTest");
+        assertThat(index.getTestsCovering("module\\src\\main\\java\\a\\A.java:10")).containsExactly("t.ATest");
+    }
+
+    @Test
+    public void shouldNotFindTestsForUnknownClass() {
+        // then
+        assertThat(index.getTestsCovering("c.C")).isEmpty();
+        assertThat(index.getTestsCovering("a.AB")).isEmpty();
+    }
+
+    @Test
+    public void shouldTellMappedChanges() {
+        // then
+        assertThat(index.isMapped("a.A:5-9")).isTrue();
+        assertThat(index.isMapped("module/src/main/java/b/B.java")).isTrue();
+        assertThat(index.isMapped("c.C")).isFalse();
+        assertThat(index.isMapped("module/src/main/java/c/C.java:1")).isFalse();
+    }
+
+    @Test
+    public void shouldTellJavaChanges() {
+        // then
+        assertThat(TestImpactIndex.isJavaChange("c.C")).isTrue();
+        assertThat(TestImpactIndex.isJavaChange("a.A$Inner")).isTrue();
+        assertThat(TestImpactIndex.isJavaChange("module/src/main/java/c/C.java:1")).isTrue();
+        assertThat(TestImpactIndex.isJavaChange("pom.xml")).isFalse();
+        assertThat(TestImpactIndex.isJavaChange("module/README.adoc")).isFalse();
+    }
+
+    @Test
+    public void shouldFindChangedTests() {
+        // given
+        List<String> testSourcesDirectories = Collections.singletonList("/repository/module/src/test/java");
+
+        // then
+        assertThat(index.findChangedTest("t.ATest", testSourcesDirectories)).isEqualTo("t.ATest");
+        assertThat(index.findChangedTest("other/src/test/java/t/BTest.java:3", testSourcesDirectories))
+                .isEqualTo("t.BTest");
+        assertThat(index.findChangedTest("module/src/test/java/t/NewTest.java", testSourcesDirectories))
+                .isEqualTo("t.NewTest");
+        assertThat(index.findChangedTest("/repository/module/src/test/java/t/NewTest.java", testSourcesDirectories))
+                .isEqualTo("t.NewTest");
+        assertThat(index.findChangedTest("module/src/main/java/a/A.java", testSourcesDirectories)).isNull();
+        assertThat(index.findChangedTest("a.A", testSourcesDirectories)).isNull();
+    }
+
+    @Test
+    public void shouldLoadSavedIndex() throws IOException {
+        // given
+        index.saveToDisk();
+
+        // when
+        TestImpactIndex loaded = TestImpactIndex.locatedIn(indexDirectory).load();
+
+        // then
+        assertThat(loaded.getTests()).isEqualTo(2);
+        assertThat(loaded.getClasses()).isEqualTo(3);
+        assertThat(loaded.getTestsCovering("a.A:3")).containsExactly("t.ATest", "t.BTest");
+        assertThat(loaded.getTestsCovering("src/main/java/a/A.java:10")).containsExactly("t.ATest");
+    }
+
+    private void writeTestCoverage(File testCoverageDirectory, String test, String... lines) throws IOException {
+        Files.write(new File(testCoverageDirectory, test + ".txt").toPath(), Arrays.asList(lines), StandardCharsets.UTF_8);
+    }
+
+    private ProjectData projectData() {
+        ProjectData projectData = new ProjectData();
+
+        for (String className : Arrays.asList("a.A", "a.A$Inner", "b.B")) {
+            ClassData classData = new ClassData(className);
+            classData.setSourceFileName(className.substring(0, 3).replace('.', '/') + ".java");
+            projectData.addClassData(classData);
+        }
+
+        return projectData;
+    }
+}
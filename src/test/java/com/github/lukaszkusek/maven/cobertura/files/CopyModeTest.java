@@ -0,0 +1,157 @@
+package com.github.lukaszkusek.maven.cobertura.files;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class CopyModeTest {
+
+    private static final String CONTENT = "CONTENT";
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void shouldResolveCopyModeFromString() {
+        // given
+
+        // when
+        CopyMode copyMode = CopyMode.getFromString("skip-instrumented");
+
+        // then
+        assertThat(copyMode).isEqualTo(CopyMode.SKIP_INSTRUMENTED);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldFailOnUnknownCopyMode() {
+        // given
+
+        // when
+        CopyMode.getFromString("symlink");
+
+        // then
+    }
+
+    @Test
+    public void shouldCopyClassesToInstrumentOnlyInCopyMode() {
+        // given
+
+        // when
+
+        // then
+        assertThat(CopyMode.COPY.copiesClassesToInstrument()).isTrue();
+        assertThat(CopyMode.HARDLINK.copiesClassesToInstrument()).isFalse();
+        assertThat(CopyMode.CHANNEL.copiesClassesToInstrument()).isFalse();
+        assertThat(CopyMode.SKIP_INSTRUMENTED.copiesClassesToInstrument()).isFalse();
+    }
+
+    @Test
+    public void shouldCopyFileIntoNotExistingDirectory() throws IOException {
+        // given
+        Path source = createSourceFile();
+        Path destination = new File(temporaryFolder.newFolder(), "a/b/destination").toPath();
+
+        // when
+        CopyMode.COPY.copy(source, destination);
+
+        // then
+        assertThat(readContent(destination)).isEqualTo(CONTENT);
+        assertThat(Files.isSameFile(source, destination)).isFalse();
+    }
+
+    @Test
+    public void shouldLinkFile() throws IOException {
+        // given
+        Path source = createSourceFile();
+        Path destination = new File(temporaryFolder.newFolder(), "destination").toPath();
+
+        // when
+        CopyMode.HARDLINK.copy(source, destination);
+
+        // then
+        assertThat(Files.isSameFile(source, destination)).isTrue();
+    }
+
+    @Test
+    public void shouldCopyFileThroughChannel() throws IOException {
+        // given
+        Path source = createSourceFile();
+        Path destination = new File(temporaryFolder.newFolder(), "destination").toPath();
+
+        // when
+        CopyMode.CHANNEL.copy(source, destination);
+
+        // then
+        assertThat(readContent(destination)).isEqualTo(CONTENT);
+        assertThat(Files.getLastModifiedTime(destination)).isEqualTo(Files.getLastModifiedTime(source));
+    }
+
+    @Test
+    public void shouldNotCopyFileWhichIsUpToDate() throws IOException {
+        // given
+        Path source = createSourceFile();
+        Path destination = new File(temporaryFolder.newFolder(), "destination").toPath();
+        CopyMode.COPY.copy(source, destination);
+        Files.write(destination, "MODIFIED".getBytes(StandardCharsets.UTF_8));
+        Files.setLastModifiedTime(destination, Files.getLastModifiedTime(source));
+
+        // when
+        CopyMode.COPY.copyIfModified(source, destination);
+
+        // then
+        assertThat(readContent(destination)).isEqualTo("MODIFIED");
+    }
+
+    @Test
+    public void shouldNotCopyAgainFileCopiedInsteadOfLinked() throws IOException {
+        // given
+        Path source = createSourceFile();
+        Path destination = new File(temporaryFolder.newFolder(), "destination").toPath();
+        CopyMode.COPY.copy(source, destination);
+
+        // when
+        boolean copied = CopyMode.HARDLINK.copyIfModified(source, destination);
+
+        // then
+        assertThat(copied).isFalse();
+    }
+
+    @Test
+    public void shouldLinkAgainFileReplacedInOutputDirectory() throws IOException {
+        // given
+        Path source = createSourceFile();
+        Path destination = new File(temporaryFolder.newFolder(), "destination").toPath();
+        CopyMode.HARDLINK.copy(source, destination);
+        Files.delete(source);
+        createSourceFile();
+        FileTime linkedTime = Files.getLastModifiedTime(destination);
+        Files.setLastModifiedTime(source, FileTime.fromMillis(linkedTime.toMillis() + 1000));
+
+        // when
+        boolean copied = CopyMode.HARDLINK.copyIfModified(source, destination);
+
+        // then
+        assertThat(copied).isTrue();
+        assertThat(Files.isSameFile(source, destination)).isTrue();
+    }
+
+    private Path createSourceFile() throws IOException {
+        Path source = temporaryFolder.newFile("source").toPath();
+        Files.write(source, CONTENT.getBytes(StandardCharsets.UTF_8));
+
+        return source;
+    }
+
+    private String readContent(Path file) throws IOException {
+        return new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,125 @@
+package com.github.lukaszkusek.maven.cobertura.files;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class FingerprintTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void shouldBeEqualForEqualInputs() throws IOException {
+        // given
+        File directory = createDirectoryWithFile("A.class", "CONTENT");
+
+        // when
+        String first = new Fingerprint().with("parameter", "VALUE").withDirectoryContents(directory).getValue();
+        String second = new Fingerprint().with("parameter", "VALUE").withDirectoryContents(directory).getValue();
+
+        // then
+        assertThat(first).isEqualTo(second);
+    }
+
+    @Test
+    public void shouldDifferWhenParameterChanged() {
+        // given
+
+        // when
+        String first = new Fingerprint().with("parameter", "VALUE").getValue();
+        String second = new Fingerprint().with("parameter", "OTHER VALUE").getValue();
+
+        // then
+        assertThat(first).isNotEqualTo(second);
+    }
+
+    @Test
+    public void shouldDifferWhenFileContentChanged() throws IOException {
+        // given
+        File directory = createDirectoryWithFile("A.class", "CONTENT");
+        String first = new Fingerprint().withDirectoryContents(directory).getValue();
+
+        // when
+        write(new File(directory, "A.class"), "OTHER");
+        String second = new Fingerprint().withDirectoryContents(directory).getValue();
+
+        // then
+        assertThat(first).isNotEqualTo(second);
+    }
+
+    @Test
+    public void shouldDifferWhenFileTimestampChanged() throws IOException {
+        // given
+        File directory = createDirectoryWithFile("A.class", "CONTENT");
+        String first = new Fingerprint().withDirectoryTimestamps(directory).getValue();
+
+        // when
+        File file = new File(directory, "A.class");
+        file.setLastModified(file.lastModified() + 1000);
+        String second = new Fingerprint().withDirectoryTimestamps(directory).getValue();
+
+        // then
+        assertThat(first).isNotEqualTo(second);
+    }
+
+    @Test
+    public void shouldIgnoreGivenFiles() throws IOException {
+        // given
+        File directory = createDirectoryWithFile("A.class", "CONTENT");
+        String first = new Fingerprint().withDirectoryTimestamps(directory, "b/B.properties"::equals).getValue();
+
+        // when
+        new File(directory, "b").mkdir();
+        write(new File(directory, "b/B.properties"), "OTHER");
+        String second = new Fingerprint().withDirectoryTimestamps(directory, "b/B.properties"::equals).getValue();
+
+        // then
+        assertThat(first).isEqualTo(second);
+    }
+
+    @Test
+    public void shouldBeStoredInFile() throws IOException {
+        // given
+        File fingerprintFile = new File(temporaryFolder.newFolder(), "goal" + Fingerprint.FILE_EXTENSION);
+        new Fingerprint().with("parameter", "VALUE").storeIn(fingerprintFile);
+
+        // when
+        boolean sameStored = new Fingerprint().with("parameter", "VALUE").isStoredIn(fingerprintFile);
+        boolean otherStored = new Fingerprint().with("parameter", "OTHER VALUE").isStoredIn(fingerprintFile);
+
+        // then
+        assertThat(sameStored).isTrue();
+        assertThat(otherStored).isFalse();
+    }
+
+    @Test
+    public void shouldNotBeStoredInMissingFile() throws IOException {
+        // given
+        File fingerprintFile = new File(temporaryFolder.newFolder(), "missing" + Fingerprint.FILE_EXTENSION);
+
+        // when
+        boolean stored = new Fingerprint().isStoredIn(fingerprintFile);
+
+        // then
+        assertThat(stored).isFalse();
+    }
+
+    private File createDirectoryWithFile(String name, String content) throws IOException {
+        File directory = temporaryFolder.newFolder();
+        write(new File(directory, name), content);
+
+        return directory;
+    }
+
+    private void write(File file, String content) throws IOException {
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+    }
+}
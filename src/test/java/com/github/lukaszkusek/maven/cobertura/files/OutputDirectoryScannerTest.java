@@ -0,0 +1,87 @@
+package com.github.lukaszkusek.maven.cobertura.files;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class OutputDirectoryScannerTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void shouldSeparateClassesToInstrumentExcludedClassesAndResources() throws IOException {
+        // given
+        File outputDirectory = temporaryFolder.newFolder();
+        createFile(outputDirectory, "com/example/A.class");
+        createFile(outputDirectory, "com/example/generated/B.class");
+        createFile(outputDirectory, "com/example/messages.properties");
+
+        RecordingListener listener = new RecordingListener();
+
+        // when
+        new OutputDirectoryScanner(outputDirectory, new ClassFilter("com\\.example\\..*", ".*\\.generated\\..*"))
+                .scan(listener);
+
+        // then
+        assertThat(listener.classesToInstrument).containsOnly(path("com/example/A.class"));
+        assertThat(listener.excludedClasses).containsOnly(path("com/example/generated/B.class"));
+        assertThat(listener.resources).containsOnly(path("com/example/messages.properties"));
+    }
+
+    @Test
+    public void shouldIncludeAllClassesWhenIncludeRegexIsInvalid() throws IOException {
+        // given
+        File outputDirectory = temporaryFolder.newFolder();
+        createFile(outputDirectory, "com/example/A.class");
+
+        ClassFilter classFilter = new ClassFilter("**/*.class", null);
+        RecordingListener listener = new RecordingListener();
+
+        // when
+        new OutputDirectoryScanner(outputDirectory, classFilter).scan(listener);
+
+        // then
+        assertThat(listener.classesToInstrument).containsOnly(path("com/example/A.class"));
+        assertThat(classFilter.getInvalidRegexes()).containsOnly("**/*.class");
+    }
+
+    private void createFile(File directory, String path) throws IOException {
+        File file = new File(directory, path);
+        file.getParentFile().mkdirs();
+        file.createNewFile();
+    }
+
+    private String path(String path) {
+        return path.replace('/', File.separatorChar);
+    }
+
+    private static class RecordingListener implements OutputDirectoryScanner.Listener {
+
+        private final List<String> classesToInstrument = new ArrayList<>();
+        private final List<String> excludedClasses = new ArrayList<>();
+        private final List<String> resources = new ArrayList<>();
+
+        @Override
+        public void classToInstrument(String classFile) {
+            classesToInstrument.add(classFile);
+        }
+
+        @Override
+        public void excludedClass(String classFile) {
+            excludedClasses.add(classFile);
+        }
+
+        @Override
+        public void resource(String file) {
+            resources.add(file);
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.github.lukaszkusek.maven.cobertura.files;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class SourceIndexTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private File coberturaDirectory;
+    private File mainSources;
+    private File generatedSources;
+    private List<String> roots;
+
+    @Before
+    public void setup() throws IOException {
+        coberturaDirectory = temporaryFolder.newFolder("cobertura");
+        mainSources = temporaryFolder.newFolder("main");
+        generatedSources = temporaryFolder.newFolder("generated");
+        roots = Arrays.asList(mainSources.getAbsolutePath(), generatedSources.getAbsolutePath());
+
+        createFile(mainSources, "a/A.java");
+        createFile(mainSources, "a/b/B.java");
+        createFile(mainSources, "a/resource.txt");
+        createFile(generatedSources, "g/G.java");
+    }
+
+    @Test
+    public void shouldFindSourceFilesInAllRoots() throws IOException {
+        // when
+        SourceIndex sourceIndex = SourceIndex.build(roots, coberturaDirectory);
+
+        // then
+        assertThat(sourceIndex.getSourceFile("a/b/B.java")).isEqualTo(new File(mainSources, "a/b/B.java"));
+        assertThat(sourceIndex.getSourceFile("g/G.java")).isEqualTo(new File(generatedSources, "g/G.java"));
+        assertThat(sourceIndex.getSourceFile("a/resource.txt")).isNull();
+        assertThat(sourceIndex.getSourceFiles()).isEqualTo(3);
+    }
+
+    @Test
+    public void shouldReturnOnlyRootsContainingGivenSourceFiles() throws IOException {
+        // when
+        SourceIndex sourceIndex = SourceIndex.build(roots, coberturaDirectory);
+
+        // then
+        assertThat(sourceIndex.getRootsContaining(Collections.singletonList("a/A.java")))
+                .containsExactly(mainSources.getAbsolutePath());
+    }
+
+    @Test
+    public void shouldTakeSourceFileFromFirstRoot() throws IOException {
+        // given
+        createFile(generatedSources, "a/A.java");
+
+        // when
+        SourceIndex sourceIndex = SourceIndex.build(roots, coberturaDirectory);
+
+        // then
+        assertThat(sourceIndex.getSourceFile("a/A.java")).isEqualTo(new File(mainSources, "a/A.java"));
+    }
+
+    @Test
+    public void shouldReuseCachedListingsOfUnchangedDirectories() throws IOException {
+        // given
+        SourceIndex.build(roots, coberturaDirectory);
+
+        // when
+        SourceIndex sourceIndex = SourceIndex.build(roots, coberturaDirectory);
+
+        // then
+        assertThat(sourceIndex.getListedDirectories()).isEqualTo(0);
+        assertThat(sourceIndex.getSourceFile("a/b/B.java")).isEqualTo(new File(mainSources, "a/b/B.java"));
+    }
+
+    @Test
+    public void shouldListDirectoriesWhoseModificationTimeChanged() throws IOException {
+        // given
+        SourceIndex.build(roots, coberturaDirectory);
+        File newSourceFile = createFile(mainSources, "a/b/C.java");
+        File directory = newSourceFile.getParentFile();
+        directory.setLastModified(directory.lastModified() + 2000);
+
+        // when
+        SourceIndex sourceIndex = SourceIndex.build(roots, coberturaDirectory);
+
+        // then
+        assertThat(sourceIndex.getListedDirectories()).isEqualTo(1);
+        assertThat(sourceIndex.getSourceFile("a/b/C.java")).isEqualTo(newSourceFile);
+    }
+
+    private File createFile(File root, String path) throws IOException {
+        File file = new File(root, path);
+        file.getParentFile().mkdirs();
+        file.createNewFile();
+
+        return file;
+    }
+}
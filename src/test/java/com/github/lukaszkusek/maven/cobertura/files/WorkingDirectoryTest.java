@@ -129,4 +129,52 @@ public class WorkingDirectoryTest {
         assertThat(dataFile).isEqualTo(
                 new File(workingDirectory.getCoberturaDirectory(), WorkingDirectory.DATA_FILE_NAME));
     }
+
+    @Test
+    public void shouldReturnCorrectForkDataFilesDirectory() {
+        // given
+
+        // when
+        File forkDataFilesDirectory = workingDirectory.getForkDataFilesDirectory();
+
+        // then
+        assertThat(forkDataFilesDirectory).isEqualTo(
+                new File(workingDirectory.getCoberturaDirectory(), WorkingDirectory.FORK_DATA_FILES_DIRECTORY_NAME));
+    }
+
+    @Test
+    public void shouldReturnCorrectTestCoverageDirectory() {
+        // given
+
+        // when
+        File testCoverageDirectory = workingDirectory.getTestCoverageDirectory();
+
+        // then
+        assertThat(testCoverageDirectory).isEqualTo(
+                new File(workingDirectory.getCoberturaDirectory(), WorkingDirectory.TEST_COVERAGE_DIRECTORY_NAME));
+    }
+
+    @Test
+    public void shouldReturnCorrectAgentCacheDirectory() {
+        // given
+
+        // when
+        File agentCacheDirectory = workingDirectory.getAgentCacheDirectory();
+
+        // then
+        assertThat(agentCacheDirectory).isEqualTo(
+                new File(workingDirectory.getCoberturaDirectory(), WorkingDirectory.AGENT_CACHE_DIRECTORY_NAME));
+    }
+
+    @Test
+    public void shouldReturnCorrectMappedCountersDirectory() {
+        // given
+
+        // when
+        File mappedCountersDirectory = workingDirectory.getMappedCountersDirectory();
+
+        // then
+        assertThat(mappedCountersDirectory).isEqualTo(
+                new File(workingDirectory.getCoberturaDirectory(), WorkingDirectory.MAPPED_COUNTERS_DIRECTORY_NAME));
+    }
 }
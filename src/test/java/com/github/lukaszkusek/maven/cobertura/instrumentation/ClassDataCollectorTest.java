@@ -0,0 +1,80 @@
+package com.github.lukaszkusek.maven.cobertura.instrumentation;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+
+import com.github.lukaszkusek.maven.cobertura.files.ClassFilter;
+import net.sourceforge.cobertura.coveragedata.ProjectData;
+import net.sourceforge.cobertura.dsl.ArgumentsBuilder;
+import net.sourceforge.cobertura.instrument.CoberturaInstrumenter;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ClassDataCollectorTest {
+
+    private static final String CLASS_FILE = ClassFilter.class.getName().replace('.', '/') + ".class";
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private File classesDirectory;
+
+    @Before
+    public void setup() throws IOException {
+        classesDirectory = temporaryFolder.newFolder();
+
+        File classFile = new File(classesDirectory, CLASS_FILE);
+        Files.createDirectories(classFile.getParentFile().toPath());
+        try (InputStream input = ClassFilter.class.getClassLoader().getResourceAsStream(CLASS_FILE)) {
+            Files.copy(input, classFile.toPath());
+        }
+    }
+
+    @Test
+    public void shouldCollectTheSameTotalsAsOfflineInstrumentation() throws Throwable {
+        // given
+        File instrumentedClassesDirectory = temporaryFolder.newFolder();
+
+        // when
+        ProjectData offlineProjectData;
+        ProjectData agentProjectData;
+        try (InstrumentationEngine engine = createEngine(instrumentedClassesDirectory)) {
+            engine.submit(CLASS_FILE);
+            offlineProjectData = engine.finish();
+
+            ClassDataCollector classDataCollector =
+                    new ClassDataCollector(engine, classesDirectory, CoberturaInstrumenter::new);
+            classDataCollector.submit(CLASS_FILE);
+            agentProjectData = classDataCollector.finish();
+        }
+
+        // then
+        assertThat(offlineProjectData.getNumberOfValidLines()).isGreaterThan(0);
+        assertThat(agentProjectData.getNumberOfClasses()).isEqualTo(offlineProjectData.getNumberOfClasses());
+        assertThat(agentProjectData.getNumberOfValidLines()).isEqualTo(offlineProjectData.getNumberOfValidLines());
+        assertThat(agentProjectData.getNumberOfValidBranches())
+                .isEqualTo(offlineProjectData.getNumberOfValidBranches());
+        assertThat(agentProjectData.getNumberOfCoveredLines()).isEqualTo(0);
+    }
+
+    private InstrumentationEngine createEngine(File instrumentedClassesDirectory) throws IOException {
+        return new InstrumentationEngine(1, temporaryFolder.newFolder(), (classFiles, shardDataFile) -> {
+            ArgumentsBuilder builder = new ArgumentsBuilder();
+            builder.setBaseDirectory(classesDirectory.getAbsolutePath());
+            builder.setDataFile(shardDataFile.getAbsolutePath());
+            builder.setDestinationDirectory(instrumentedClassesDirectory.getAbsolutePath());
+
+            for (String classFile : classFiles) {
+                builder.addFileToInstrument(classFile);
+            }
+
+            return builder.build();
+        });
+    }
+}
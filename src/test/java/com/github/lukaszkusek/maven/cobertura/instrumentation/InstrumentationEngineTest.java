@@ -0,0 +1,84 @@
+package com.github.lukaszkusek.maven.cobertura.instrumentation;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import net.sourceforge.cobertura.coveragedata.ProjectData;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class InstrumentationEngineTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void shouldReturnEmptyProjectDataWhenNothingWasSubmitted() throws Throwable {
+        // given
+        ProjectData projectData;
+
+        // when
+        try (InstrumentationEngine engine = createEngine(temporaryFolder.newFolder())) {
+            projectData = engine.finish();
+        }
+
+        // then
+        assertThat(projectData.getNumberOfClasses()).isEqualTo(0);
+    }
+
+    @Test
+    public void shouldStartShardsWhileClassesAreSubmitted() throws IOException {
+        // given
+        int classes = 2 * InstrumentationEngine.SHARD_SIZE + 1;
+
+        // when
+        int submittedShards;
+        try (InstrumentationEngine engine = createEngine(temporaryFolder.newFolder())) {
+            for (int i = 0; i < classes; i++) {
+                engine.submit("C" + i + ".class");
+            }
+            submittedShards = engine.getSubmittedShards();
+        }
+
+        // then
+        assertThat(submittedShards).isEqualTo(2);
+    }
+
+    @Test
+    public void shouldRemoveShardsDirectoryWhenClosed() throws IOException {
+        // given
+        File coberturaDirectory = temporaryFolder.newFolder();
+
+        // when
+        createEngine(coberturaDirectory).close();
+
+        // then
+        assertThat(new File(coberturaDirectory, InstrumentationEngine.SHARDS_DIRECTORY_NAME)).doesNotExist();
+    }
+
+    @Test
+    public void shouldLeaveSharedExecutorRunningWhenClosed() throws IOException {
+        // given
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+
+        // when
+        new InstrumentationEngine(executor, temporaryFolder.newFolder(), (classFiles, shardDataFile) -> {
+            throw new UnsupportedOperationException();
+        }).close();
+
+        // then
+        assertThat(executor.isShutdown()).isFalse();
+        executor.shutdown();
+    }
+
+    private InstrumentationEngine createEngine(File coberturaDirectory) throws IOException {
+        return new InstrumentationEngine(1, coberturaDirectory, (classFiles, shardDataFile) -> {
+            throw new UnsupportedOperationException();
+        });
+    }
+}
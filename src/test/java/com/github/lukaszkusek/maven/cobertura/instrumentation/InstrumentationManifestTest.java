@@ -0,0 +1,133 @@
+package com.github.lukaszkusek.maven.cobertura.instrumentation;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.io.Files;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.codehaus.plexus.util.FileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class InstrumentationManifestTest {
+
+    private static final String CONFIGURATION = "CONFIGURATION";
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void shouldReportAllClassesAsChangedWhenManifestDoesNotExist() throws IOException, MojoExecutionException {
+        // given
+        Map<String, String> classHashes = ImmutableMap.of("a/A.class", "1", "b/B.class", "2");
+
+        // when
+        InstrumentationChanges changes = compare(
+                InstrumentationManifest.locatedIn(temporaryFolder.newFolder()).load(), classHashes, CONFIGURATION);
+
+        // then
+        assertThat(changes.getChangedClasses()).containsOnly("a/A.class", "b/B.class");
+        assertThat(changes.getUnchangedClasses()).isEmpty();
+        assertThat(changes.getDeletedClasses()).isEmpty();
+    }
+
+    @Test
+    public void shouldReportChangedUnchangedAndDeletedClasses() throws IOException, MojoExecutionException {
+        // given
+        File manifestDirectory = temporaryFolder.newFolder();
+        saveManifest(manifestDirectory, ImmutableMap.of("a/A.class", "1", "b/B.class", "2", "c/C.class", "3"));
+
+        Map<String, String> classHashes = ImmutableMap.of("a/A.class", "1", "b/B.class", "20", "d/D.class", "4");
+
+        // when
+        InstrumentationChanges changes = compare(
+                InstrumentationManifest.locatedIn(manifestDirectory).load(), classHashes, CONFIGURATION);
+
+        // then
+        assertThat(changes.getChangedClasses()).containsOnly("b/B.class", "d/D.class");
+        assertThat(changes.getUnchangedClasses()).containsOnly("a/A.class");
+        assertThat(changes.getDeletedClasses()).containsOnly("c/C.class");
+        assertThat(changes.getOutdatedClassNames()).containsOnly("b.B", "c.C", "d.D");
+        assertThat(changes.getClassHashes()).isEqualTo(classHashes);
+    }
+
+    @Test
+    public void shouldReportAllClassesAsChangedWhenConfigurationChanged() throws IOException, MojoExecutionException {
+        // given
+        File manifestDirectory = temporaryFolder.newFolder();
+        Map<String, String> classHashes = ImmutableMap.of("a/A.class", "1");
+        saveManifest(manifestDirectory, classHashes);
+
+        // when
+        InstrumentationChanges changes = compare(
+                InstrumentationManifest.locatedIn(manifestDirectory).load(), classHashes, "OTHER CONFIGURATION");
+
+        // then
+        assertThat(changes.getChangedClasses()).containsOnly("a/A.class");
+        assertThat(changes.getUnchangedClasses()).isEmpty();
+    }
+
+    @Test
+    public void shouldReportClassesAsChangedWhenInstrumentedClassesDirectoryWasDeleted()
+            throws IOException, MojoExecutionException {
+        // given
+        File manifestDirectory = temporaryFolder.newFolder();
+        Map<String, String> classHashes = ImmutableMap.of("a/A.class", "1");
+        saveManifest(manifestDirectory, classHashes);
+
+        File instrumentedClassesDirectory = temporaryFolder.newFolder();
+        File instrumentedClass = new File(instrumentedClassesDirectory, "a/A.class");
+        Files.createParentDirs(instrumentedClass);
+        Files.touch(instrumentedClass);
+        InstrumentationManifest manifest = InstrumentationManifest.locatedIn(manifestDirectory).load();
+        InstrumentationChanges changesWithCopies =
+                compare(manifest.compareWith(CONFIGURATION, instrumentedClassesDirectory), classHashes);
+
+        // when
+        FileUtils.deleteDirectory(instrumentedClassesDirectory);
+        InstrumentationChanges changes =
+                compare(manifest.compareWith(CONFIGURATION, instrumentedClassesDirectory), classHashes);
+
+        // then
+        assertThat(changesWithCopies.getUnchangedClasses()).containsOnly("a/A.class");
+        assertThat(changes.getChangedClasses()).containsOnly("a/A.class");
+        assertThat(changes.getUnchangedClasses()).isEmpty();
+    }
+
+    @Test
+    public void shouldConvertClassFileToClassName() {
+        // given
+        String classFile = "com/example/Outer$Inner.class";
+
+        // when
+        String className = InstrumentationChanges.toClassName(classFile);
+
+        // then
+        assertThat(className).isEqualTo("com.example.Outer$Inner");
+    }
+
+    private InstrumentationChanges compare(
+            InstrumentationManifest manifest, Map<String, String> classHashes, String configuration) {
+
+        return compare(manifest.compareWith(configuration), classHashes);
+    }
+
+    private InstrumentationChanges compare(InstrumentationChanges changes, Map<String, String> classHashes) {
+        for (Map.Entry<String, String> classHash : classHashes.entrySet()) {
+            changes.track(classHash.getKey(), classHash.getValue());
+        }
+
+        return changes.finish();
+    }
+
+    private void saveManifest(File manifestDirectory, Map<String, String> classHashes) throws MojoExecutionException {
+        InstrumentationManifest.locatedIn(manifestDirectory)
+                .update(classHashes, CONFIGURATION)
+                .saveToDisk();
+    }
+}
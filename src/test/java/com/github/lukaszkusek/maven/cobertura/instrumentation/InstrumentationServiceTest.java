@@ -0,0 +1,32 @@
+package com.github.lukaszkusek.maven.cobertura.instrumentation;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.github.lukaszkusek.maven.cobertura.files.ClassFilter;
+import org.junit.Test;
+
+public class InstrumentationServiceTest {
+
+    private final InstrumentationService instrumentationService = new InstrumentationService();
+
+    @Test
+    public void shouldReuseClassFilterCompiledForSameRegexes() {
+        // when
+        ClassFilter first = instrumentationService.getClassFilter("a\\..*", null);
+        ClassFilter second = instrumentationService.getClassFilter("a\\..*", null);
+
+        // then
+        assertThat(second).isSameAs(first);
+    }
+
+    @Test
+    public void shouldCompileClassFilterForOtherRegexes() {
+        // when
+        ClassFilter first = instrumentationService.getClassFilter("a\\..*", null);
+        ClassFilter second = instrumentationService.getClassFilter("a\\..*", "a\\.B");
+
+        // then
+        assertThat(second).isNotSameAs(first);
+        assertThat(second.matches("a/B.class")).isFalse();
+    }
+}
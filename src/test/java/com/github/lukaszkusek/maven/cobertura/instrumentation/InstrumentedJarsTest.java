@@ -0,0 +1,87 @@
+package com.github.lukaszkusek.maven.cobertura.instrumentation;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import com.google.common.io.Files;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class InstrumentedJarsTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void shouldNameInstrumentedJarAfterContentAndConfiguration() throws IOException {
+        // given
+        InstrumentedJars instrumentedJars = InstrumentedJars.locatedIn(temporaryFolder.newFolder());
+        File jar = createJar("dependency-1.0.jar", "content");
+        File sameJar = createJar("copy/dependency-1.0.jar", "content");
+
+        // when
+        File instrumentedJar = instrumentedJars.getInstrumentedJar(jar, "configuration");
+
+        // then
+        assertThat(instrumentedJar.getName()).startsWith("dependency-1.0-").endsWith(".jar");
+        assertThat(instrumentedJars.getInstrumentedJar(sameJar, "configuration")).isEqualTo(instrumentedJar);
+        assertThat(instrumentedJars.getInstrumentedJar(jar, "other configuration")).isNotEqualTo(instrumentedJar);
+        Files.write("changed", jar, StandardCharsets.UTF_8);
+        assertThat(instrumentedJars.getInstrumentedJar(jar, "configuration")).isNotEqualTo(instrumentedJar);
+    }
+
+    @Test
+    public void shouldMapOriginalAndInstrumentedJarsAfterReload() throws IOException, MojoExecutionException {
+        // given
+        File coberturaDirectory = temporaryFolder.newFolder();
+        InstrumentedJars instrumentedJars = InstrumentedJars.locatedIn(coberturaDirectory);
+        File jar = createJar("dependency-1.0.jar", "content");
+        File instrumentedJar = instrumentedJars.getInstrumentedJar(jar, "configuration");
+
+        // when
+        instrumentedJars.put(jar, instrumentedJar);
+        instrumentedJars.saveToDisk();
+        InstrumentedJars loadedJars = InstrumentedJars.locatedIn(coberturaDirectory).load();
+
+        // then
+        assertThat(loadedJars.findInstrumentedJar(jar)).isEqualTo(instrumentedJar);
+        assertThat(loadedJars.findOriginalJar(instrumentedJar)).isEqualTo(jar.getAbsoluteFile());
+        assertThat(loadedJars.findOriginalJar(jar)).isNull();
+    }
+
+    @Test
+    public void shouldDeleteJarsMissingInIndex() throws IOException, MojoExecutionException {
+        // given
+        InstrumentedJars instrumentedJars = InstrumentedJars.locatedIn(temporaryFolder.newFolder());
+        instrumentedJars.prepareDirectory();
+        File jar = createJar("dependency-1.0.jar", "content");
+        File instrumentedJar = instrumentedJars.getInstrumentedJar(jar, "configuration");
+        File outdatedJar = instrumentedJars.getInstrumentedJar(jar, "other configuration");
+        for (File file : new File[] {instrumentedJar, outdatedJar}) {
+            Files.touch(file);
+            Files.touch(instrumentedJars.getDataFile(file));
+        }
+
+        // when
+        instrumentedJars.put(jar, instrumentedJar);
+        instrumentedJars.saveToDisk();
+
+        // then
+        assertThat(instrumentedJars.isInstrumented(instrumentedJar)).isTrue();
+        assertThat(outdatedJar).doesNotExist();
+        assertThat(instrumentedJars.getDataFile(outdatedJar)).doesNotExist();
+    }
+
+    private File createJar(String path, String content) throws IOException {
+        File jar = new File(temporaryFolder.getRoot(), path);
+        Files.createParentDirs(jar);
+        Files.write(content, jar, StandardCharsets.UTF_8);
+
+        return jar;
+    }
+}
@@ -0,0 +1,125 @@
+package com.github.lukaszkusek.maven.cobertura.instrumentation;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.mock;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+import com.github.lukaszkusek.maven.cobertura.files.ClassFilter;
+import com.google.common.io.ByteStreams;
+import net.sourceforge.cobertura.instrument.CoberturaInstrumenter;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class JarInstrumenterTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void shouldInstrumentIncludedClassesAndKeepOtherEntries() throws Throwable {
+        // given
+        File jar = createJar(
+                "META-INF/MANIFEST.MF", "manifest",
+                "META-INF/SIGNER.SF", "signature",
+                "a/A.class", "A",
+                "a/B.class", "B",
+                "a/resource.txt", "resource");
+        File instrumentedJar = new File(temporaryFolder.getRoot(), "instrumented.jar");
+
+        // when
+        try (InstrumentationEngine engine = createEngine()) {
+            new JarInstrumenter(engine, new ClassFilter(null, "a\\.B"), this::createInstrumenter)
+                    .submit(jar)
+                    .writeTo(instrumentedJar);
+        }
+
+        // then
+        assertThat(readJar(instrumentedJar)).containsExactly(
+                entry("META-INF/MANIFEST.MF", "manifest"),
+                entry("a/A.class", "instrumented"),
+                entry("a/B.class", "B"),
+                entry("a/resource.txt", "resource"));
+    }
+
+    @Test
+    public void shouldKeepClassesIgnoredByInstrumenter() throws Throwable {
+        // given
+        File jar = createJar("a/A.class", "A");
+        File instrumentedJar = new File(temporaryFolder.getRoot(), "instrumented.jar");
+
+        // when
+        try (InstrumentationEngine engine = createEngine()) {
+            new JarInstrumenter(engine, new ClassFilter(null, null), () -> mock(CoberturaInstrumenter.class))
+                    .submit(jar)
+                    .writeTo(instrumentedJar);
+        }
+
+        // then
+        assertThat(readJar(instrumentedJar)).containsExactly(entry("a/A.class", "A"));
+    }
+
+    private InstrumentationEngine createEngine() throws IOException {
+        return new InstrumentationEngine(2, temporaryFolder.newFolder(), (classFiles, shardDataFile) -> {
+            throw new UnsupportedOperationException();
+        });
+    }
+
+    private CoberturaInstrumenter createInstrumenter() {
+        CoberturaInstrumenter.InstrumentationResult result = mock(CoberturaInstrumenter.InstrumentationResult.class);
+        given(result.getContent()).willReturn("instrumented".getBytes(StandardCharsets.UTF_8));
+
+        CoberturaInstrumenter instrumenter = mock(CoberturaInstrumenter.class);
+        try {
+            given(instrumenter.instrumentClass(any(InputStream.class))).willReturn(result);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+
+        return instrumenter;
+    }
+
+    private File createJar(String... namesAndContents) throws IOException {
+        File jar = temporaryFolder.newFile("dependency.jar");
+
+        try (ZipOutputStream output = new ZipOutputStream(new FileOutputStream(jar))) {
+            for (int i = 0; i < namesAndContents.length; i += 2) {
+                output.putNextEntry(new ZipEntry(namesAndContents[i]));
+                output.write(namesAndContents[i + 1].getBytes(StandardCharsets.UTF_8));
+                output.closeEntry();
+            }
+        }
+
+        return jar;
+    }
+
+    private Map<String, String> readJar(File jar) throws IOException {
+        Map<String, String> entries = new LinkedHashMap<>();
+
+        try (ZipInputStream input = new ZipInputStream(new FileInputStream(jar))) {
+            for (ZipEntry entry = input.getNextEntry(); entry != null; entry = input.getNextEntry()) {
+                entries.put(entry.getName(), new String(ByteStreams.toByteArray(input), StandardCharsets.UTF_8));
+            }
+        }
+
+        return entries;
+    }
+
+    private static Map.Entry<String, String> entry(String name, String content) {
+        return new AbstractMap.SimpleEntry<>(name, content);
+    }
+}
@@ -0,0 +1,79 @@
+package com.github.lukaszkusek.maven.cobertura.metrics;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.apache.maven.plugin.logging.Log;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ExecutionMetricsTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void shouldSumCountsOfPhase() {
+        // given
+        ExecutionMetrics metrics = new ExecutionMetrics("group:module", "instrument@default");
+
+        // when
+        try (ExecutionMetrics.Phase phase = metrics.start("copy")) {
+            phase.count("copiedFiles", 1).count("copiedBytes", 10);
+            phase.count("copiedFiles", 1).count("copiedBytes", 5);
+        }
+
+        // then
+        assertThat(metrics.getPhases()).hasSize(1);
+        assertThat(metrics.getPhases().get(0).getName()).isEqualTo("copy");
+        assertThat(metrics.getPhases().get(0).getCounts())
+                .containsEntry("copiedFiles", 2L)
+                .containsEntry("copiedBytes", 15L);
+    }
+
+    @Test
+    public void shouldWritePhasesAsJson() throws IOException {
+        // given
+        ExecutionMetrics metrics = new ExecutionMetrics("group:\"module\"", "report@default");
+        try (ExecutionMetrics.Phase phase = metrics.start("data-load")) {
+            phase.count("classes", 3);
+        }
+        try (ExecutionMetrics.Phase ignored = metrics.start("export")) {
+            // nothing to count
+        }
+        File metricsFile = temporaryFolder.newFile();
+
+        // when
+        metrics.writeTo(metricsFile);
+
+        // then
+        String json = new String(Files.readAllBytes(metricsFile.toPath()), StandardCharsets.UTF_8);
+        assertThat(json)
+                .contains("\"module\": \"group:\\\"module\\\"\"")
+                .contains("\"execution\": \"report@default\"")
+                .contains("{\"name\": \"data-load\", \"millis\": ")
+                .contains("\"counts\": {\"classes\": 3}}")
+                .contains("{\"name\": \"export\", \"millis\": ");
+    }
+
+    @Test
+    public void shouldLogSummary() {
+        // given
+        ExecutionMetrics metrics = new ExecutionMetrics("group:module", "instrument@default");
+        Log log = mock(Log.class);
+
+        // when
+        metrics.logSummary(log);
+
+        // then
+        verify(log).info(any(CharSequence.class));
+    }
+}
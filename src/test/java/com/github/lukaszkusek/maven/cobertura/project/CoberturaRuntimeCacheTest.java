@@ -0,0 +1,94 @@
+package com.github.lukaszkusek.maven.cobertura.project;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+
+import com.google.common.collect.ImmutableList;
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.execution.MavenExecutionRequest;
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.repository.RepositorySystem;
+import org.junit.Test;
+
+public class CoberturaRuntimeCacheTest {
+
+    private final CoberturaRuntimeCache cache = new CoberturaRuntimeCache();
+    private final RepositorySystem repositorySystem = mock(RepositorySystem.class);
+
+    @Test
+    public void shouldShareRuntimeWithinBuild() {
+        // given
+        MavenSession session = session(1000);
+
+        // when
+        CoberturaRuntime first = cache.get(session, "1.0", Collections.<Artifact>emptyList(), repositorySystem);
+        CoberturaRuntime second = cache.get(session, "1.0", Collections.<Artifact>emptyList(), repositorySystem);
+
+        // then
+        assertThat(second).isSameAs(first);
+    }
+
+    @Test
+    public void shouldNotShareRuntimeBetweenPluginVersions() {
+        // given
+        MavenSession session = session(1000);
+
+        // when
+        CoberturaRuntime first = cache.get(session, "1.0", Collections.<Artifact>emptyList(), repositorySystem);
+        CoberturaRuntime second = cache.get(session, "1.1", Collections.<Artifact>emptyList(), repositorySystem);
+
+        // then
+        assertThat(second).isNotSameAs(first);
+    }
+
+    @Test
+    public void shouldNotShareRuntimeBetweenBuilds() {
+        // when
+        CoberturaRuntime first = cache.get(session(1000), "1.0", Collections.<Artifact>emptyList(), repositorySystem);
+        CoberturaRuntime second = cache.get(session(2000), "1.0", Collections.<Artifact>emptyList(), repositorySystem);
+
+        // then
+        assertThat(second).isNotSameAs(first);
+    }
+
+    @Test
+    public void shouldListRuntimeDependencies() {
+        // given
+        Artifact runtime = artifact("net.sourceforge.cobertura:cobertura-runtime:pom:2.1.1", "plugin:jar:1.0");
+        Artifact cobertura = artifact(
+                "net.sourceforge.cobertura:cobertura:jar:2.1.1",
+                "plugin:jar:1.0", "net.sourceforge.cobertura:cobertura-runtime:pom:2.1.1");
+        Artifact guava = artifact("com.google.guava:guava:jar:18.0", "plugin:jar:1.0");
+
+        // when
+        CoberturaRuntime coberturaRuntime =
+                new CoberturaRuntime(Arrays.asList(runtime, cobertura, guava), repositorySystem);
+
+        // then
+        assertThat(coberturaRuntime.getDependencies()).containsOnly("net.sourceforge.cobertura:cobertura:jar:2.1.1");
+    }
+
+    private MavenSession session(long startTime) {
+        MavenExecutionRequest request = mock(MavenExecutionRequest.class);
+        given(request.getStartTime()).willReturn(new Date(startTime));
+
+        MavenSession session = mock(MavenSession.class);
+        given(session.getRequest()).willReturn(request);
+
+        return session;
+    }
+
+    private Artifact artifact(String id, String... dependencyTrail) {
+        Artifact artifact = mock(Artifact.class);
+        given(artifact.getId()).willReturn(id);
+        given(artifact.getDependencyTrail()).willReturn(
+                ImmutableList.<String>builder().add(dependencyTrail).add(id).build());
+
+        return artifact;
+    }
+}
@@ -2,16 +2,23 @@ package com.github.lukaszkusek.maven.cobertura.project;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.anySetOf;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 
+import java.io.File;
 import java.util.List;
+import java.util.Properties;
 import java.util.Set;
 
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 import org.apache.maven.artifact.Artifact;
+import org.apache.maven.artifact.DefaultArtifact;
+import org.apache.maven.artifact.handler.DefaultArtifactHandler;
 import org.apache.maven.model.Build;
+import org.apache.maven.model.Dependency;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.project.MavenProject;
 import org.apache.maven.repository.RepositorySystem;
@@ -45,7 +52,8 @@ public class ProjectHandlerTest {
 
     @Before
     public void setup() {
-        projectHandler = new ProjectHandler(project, ImmutableList.of(coberturaArtifact), repositorySystem);
+        projectHandler = new ProjectHandler(
+                project, new CoberturaRuntime(ImmutableList.of(coberturaArtifact), repositorySystem), repositorySystem);
         given(project.getBuild()).willReturn(mock(Build.class));
     }
 
@@ -67,6 +75,64 @@ public class ProjectHandlerTest {
         assertThat(captureDependencyArtifacts()).containsOnly(dependencyArtifact, coberturaArtifactWithScopeProvided);
     }
 
+    @Test
+    public void shouldKeepDeclaredDependenciesWhenDependencyArtifactsWereNotCreated() throws MojoExecutionException {
+        // given
+        Dependency dependency = new Dependency();
+        Artifact dependencyArtifact = mock(Artifact.class);
+        given(project.getDependencies()).willReturn(ImmutableList.of(dependency));
+        given(repositorySystem.createDependencyArtifact(dependency)).willReturn(dependencyArtifact);
+
+        prepareCoberturaArtifact("VERSION", "TYPE");
+        Artifact coberturaArtifactWithScopeProvided = prepareRepositorySystem("VERSION", "TYPE");
+
+        // when
+        projectHandler.addCoberturaArtifactToTestClasspath();
+
+        // then
+        assertThat(captureDependencyArtifacts()).containsOnly(dependencyArtifact, coberturaArtifactWithScopeProvided);
+    }
+
+    @Test
+    public void shouldGiveEveryProjectItsOwnCoberturaArtifact() throws MojoExecutionException {
+        // given
+        prepareCoberturaArtifact("VERSION", "TYPE");
+        File coberturaFile = new File("cobertura-runtime.pom");
+        given(coberturaArtifact.getFile()).willReturn(coberturaFile);
+        given(coberturaArtifact.isResolved()).willReturn(true);
+        prepareRepositorySystem("VERSION", "TYPE");
+
+        CoberturaRuntime coberturaRuntime = new CoberturaRuntime(ImmutableList.of(coberturaArtifact), repositorySystem);
+
+        // when
+        Artifact first = coberturaRuntime.getProvidedArtifact();
+        Artifact second = coberturaRuntime.getProvidedArtifact();
+        first.setFile(new File("changed.pom"));
+
+        // then
+        assertThat(second).isNotSameAs(first);
+        assertThat(second.getFile()).isEqualTo(coberturaFile);
+        assertThat(second.isResolved()).isTrue();
+        assertThat(second.getScope()).isEqualTo(Artifact.SCOPE_PROVIDED);
+    }
+
+    @Test
+    public void shouldNotAddCoberturaToTestClasspathTwice() throws MojoExecutionException {
+        // given
+        prepareCoberturaArtifact("VERSION", "TYPE");
+
+        Artifact addedCoberturaArtifact = mock(Artifact.class);
+        given(addedCoberturaArtifact.getGroupId()).willReturn(COBERTURA_GROUP_ID);
+        given(addedCoberturaArtifact.getArtifactId()).willReturn(COBERTURA_ARTIFACT_ID);
+        given(project.getDependencyArtifacts()).willReturn(ImmutableSet.of(addedCoberturaArtifact));
+
+        // when
+        projectHandler.addCoberturaArtifactToTestClasspath();
+
+        // then
+        verify(project, never()).setDependencyArtifacts(anySetOf(Artifact.class));
+    }
+
     private Set<Artifact> captureDependencyArtifacts() {
         verify(project).setDependencyArtifacts(artifactsCaptor.capture());
 
@@ -81,7 +147,9 @@ public class ProjectHandlerTest {
     }
 
     private Artifact prepareRepositorySystem(String version, String type) {
-        Artifact coberturaArtifactWithScopeProvided = mock(Artifact.class);
+        Artifact coberturaArtifactWithScopeProvided = new DefaultArtifact(
+                COBERTURA_GROUP_ID, COBERTURA_ARTIFACT_ID, version, Artifact.SCOPE_PROVIDED, type, null,
+                new DefaultArtifactHandler(type));
 
         given(repositorySystem.createArtifact(
                 COBERTURA_GROUP_ID, COBERTURA_ARTIFACT_ID, version, Artifact.SCOPE_PROVIDED, type)
@@ -97,6 +165,18 @@ public class ProjectHandlerTest {
         given(coberturaArtifact.getType()).willReturn(type);
     }
 
+    @Test
+    public void shouldReturnCoberturaVersion() throws MojoExecutionException {
+        // given
+        prepareCoberturaArtifact("VERSION", "TYPE");
+
+        // when
+        String coberturaVersion = projectHandler.getCoberturaVersion();
+
+        // then
+        assertThat(coberturaVersion).isEqualTo("VERSION");
+    }
+
     @Test
     public void shouldSetOutputDirectory() {
         // given
@@ -109,6 +189,48 @@ public class ProjectHandlerTest {
         verify(project.getBuild()).setOutputDirectory(outputDirectory);
     }
 
+    @Test
+    public void shouldAppendArgumentToArgLine() {
+        // given
+        Properties properties = new Properties();
+        properties.setProperty(ProjectHandler.ARG_LINE_PROPERTY, "-Xmx1g");
+        given(project.getProperties()).willReturn(properties);
+
+        // when
+        projectHandler.addToArgLine("-Dkey=value");
+        projectHandler.addToArgLine("-Dkey=value");
+
+        // then
+        assertThat(properties.getProperty(ProjectHandler.ARG_LINE_PROPERTY)).isEqualTo("-Xmx1g -Dkey=value");
+    }
+
+    @Test
+    public void shouldReplaceDependencyOnTestClasspathUntilRestored() {
+        // given
+        MavenProject realProject = new MavenProject();
+        realProject.getProperties().setProperty(ProjectHandler.DEPENDENCY_EXCLUDES_PROPERTY, "org.example:excluded");
+        Artifact dependency = new DefaultArtifact(
+                "org.example", "module", "1.0", Artifact.SCOPE_COMPILE, "jar", null, new DefaultArtifactHandler("jar"));
+        File instrumentedJar = new File("module-instrumented.jar");
+
+        ProjectHandler instrumentHandler = new ProjectHandler(realProject, null, repositorySystem);
+        ProjectHandler reportHandler = new ProjectHandler(realProject, null, repositorySystem);
+
+        // when
+        instrumentHandler.replaceOnTestClasspath(dependency, instrumentedJar);
+        Properties replacedProperties = (Properties) realProject.getProperties().clone();
+        reportHandler.restoreTestClasspath();
+
+        // then
+        assertThat(replacedProperties.getProperty(ProjectHandler.DEPENDENCY_EXCLUDES_PROPERTY))
+                .isEqualTo("org.example:excluded,org.example:module");
+        assertThat(replacedProperties.getProperty(ProjectHandler.ADDITIONAL_CLASSPATH_PROPERTY))
+                .isEqualTo(instrumentedJar.getAbsolutePath());
+        assertThat(realProject.getProperties().getProperty(ProjectHandler.DEPENDENCY_EXCLUDES_PROPERTY))
+                .isEqualTo("org.example:excluded");
+        assertThat(realProject.getProperties()).doesNotContainKey(ProjectHandler.ADDITIONAL_CLASSPATH_PROPERTY);
+    }
+
     @Test
     public void shouldReturnSourceDirectories() {
         // given
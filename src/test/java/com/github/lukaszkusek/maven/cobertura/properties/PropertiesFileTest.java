@@ -10,6 +10,7 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.util.Properties;
 
+import com.github.lukaszkusek.maven.cobertura.runtime.CoverageAgent;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.junit.Rule;
 import org.junit.Test;
@@ -56,6 +57,110 @@ public class PropertiesFileTest {
         assertThat(coberturaProperties.getProperty(ORIGINAL_OUTPUT_DIRECTORY_KEY)).isEqualTo(originalOutputDirectoryPath);
     }
 
+    @Test
+    public void shouldSaveAndLoadTestCoverageDirectory() throws MojoExecutionException, IOException {
+        // given
+        File coberturaPropertiesFileDirectory = temporaryFolder.newFolder();
+        String testCoverageDirectoryPath = "TEST COVERAGE DIRECTORY PATH";
+
+        // when
+        PropertiesFile.locatedIn(coberturaPropertiesFileDirectory)
+                .create()
+                .withTestCoverageDirectoryPath(testCoverageDirectoryPath)
+                .saveToDisk();
+
+        // then
+        assertThat(PropertiesFile.locatedIn(coberturaPropertiesFileDirectory).load().getTestCoverageDirectoryPath())
+                .isEqualTo(testCoverageDirectoryPath);
+    }
+
+    @Test
+    public void shouldSaveAndLoadProbeMode() throws MojoExecutionException, IOException {
+        // given
+        File coberturaPropertiesFileDirectory = temporaryFolder.newFolder();
+
+        // when
+        PropertiesFile.locatedIn(coberturaPropertiesFileDirectory)
+                .create()
+                .withProbeMode("hit")
+                .saveToDisk();
+
+        // then
+        assertThat(PropertiesFile.locatedIn(coberturaPropertiesFileDirectory).load().getProbeMode()).isEqualTo("hit");
+    }
+
+    @Test
+    public void shouldSaveAndLoadMappedCountersDirectoryPath() throws MojoExecutionException, IOException {
+        // given
+        File coberturaPropertiesFileDirectory = temporaryFolder.newFolder();
+
+        // when
+        PropertiesFile.locatedIn(coberturaPropertiesFileDirectory)
+                .create()
+                .withMappedCountersDirectoryPath("COUNTERS DIRECTORY PATH")
+                .saveToDisk();
+
+        // then
+        assertThat(PropertiesFile.locatedIn(coberturaPropertiesFileDirectory).load().getMappedCountersDirectoryPath())
+                .isEqualTo("COUNTERS DIRECTORY PATH");
+    }
+
+    @Test
+    public void shouldLoadCountProbeModeIfNotSaved() throws MojoExecutionException, IOException {
+        // given
+        File coberturaPropertiesFileDirectory = temporaryFolder.newFolder();
+
+        // when
+        PropertiesFile.locatedIn(coberturaPropertiesFileDirectory)
+                .create()
+                .withDataFilePath("DATA FILE PATH")
+                .saveToDisk();
+
+        // then
+        assertThat(PropertiesFile.locatedIn(coberturaPropertiesFileDirectory).load().getProbeMode()).isEqualTo("count");
+    }
+
+    @Test
+    public void shouldSaveAndLoadCoverageDump() throws MojoExecutionException, IOException {
+        // given
+        File coberturaPropertiesFileDirectory = temporaryFolder.newFolder();
+
+        // when
+        PropertiesFile.locatedIn(coberturaPropertiesFileDirectory)
+                .create()
+                .withCoverageDump(30, true)
+                .saveToDisk();
+
+        // then
+        LoadedPropertiesFile propertiesFile = PropertiesFile.locatedIn(coberturaPropertiesFileDirectory).load();
+        assertThat(propertiesFile.getDumpInterval()).isEqualTo(30);
+        assertThat(propertiesFile.isDumpOnDemand()).isTrue();
+    }
+
+    @Test
+    public void shouldSaveAndLoadAgentConfiguration() throws MojoExecutionException, IOException {
+        // given
+        File coberturaPropertiesFileDirectory = temporaryFolder.newFolder();
+
+        // when
+        PropertiesFile.locatedIn(coberturaPropertiesFileDirectory)
+                .create()
+                .withAgentClassesDirectoryPath("CLASSES DIRECTORY PATH")
+                .withAgentCacheDirectoryPath("CACHE DIRECTORY PATH")
+                .withAgentInstrumentationOptions("a\\..*", null, null, null, true, false)
+                .saveToDisk();
+
+        // then
+        LoadedPropertiesFile propertiesFile = PropertiesFile.locatedIn(coberturaPropertiesFileDirectory).load();
+        assertThat(propertiesFile.getAgentClassesDirectoryPath()).isEqualTo("CLASSES DIRECTORY PATH");
+        assertThat(propertiesFile.getAgentCacheDirectoryPath()).isEqualTo("CACHE DIRECTORY PATH");
+
+        Properties coberturaProperties = loadProperties(coberturaPropertiesFileDirectory);
+        assertThat(coberturaProperties).hasSize(5);
+        assertThat(coberturaProperties.getProperty(CoverageAgent.INCLUDE_CLASSES_REGEX_KEY)).isEqualTo("a\\..*");
+        assertThat(coberturaProperties.getProperty(CoverageAgent.IGNORE_TRIVIAL_KEY)).isEqualTo("true");
+    }
+
     private Properties loadProperties(File coberturaPropertiesFileDirectory) throws IOException {
         File coberturaPropertiesFile = new File(coberturaPropertiesFileDirectory, PropertiesFile.NAME);
         Properties coberturaProperties = new Properties();
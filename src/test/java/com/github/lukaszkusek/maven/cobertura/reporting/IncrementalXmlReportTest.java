@@ -0,0 +1,131 @@
+package com.github.lukaszkusek.maven.cobertura.reporting;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.List;
+
+import com.github.lukaszkusek.maven.cobertura.files.SourceIndex;
+import net.sourceforge.cobertura.coveragedata.ClassData;
+import net.sourceforge.cobertura.coveragedata.ProjectData;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class IncrementalXmlReportTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private File coberturaDirectory;
+    private File sourceFile;
+    private IncrementalXmlReport report;
+
+    @Before
+    public void setup() throws IOException {
+        coberturaDirectory = temporaryFolder.newFolder();
+        File sourceDirectory = temporaryFolder.newFolder();
+        sourceFile = new File(sourceDirectory, "a/A.java");
+        sourceFile.getParentFile().mkdirs();
+        Files.write(sourceFile.toPath(), "package a; class A { void method() { } }".getBytes(StandardCharsets.UTF_8));
+        List<String> sourceDirectories = Collections.singletonList(sourceDirectory.getAbsolutePath());
+
+        report = new IncrementalXmlReport(
+                coberturaDirectory,
+                sourceDirectories,
+                SourceIndex.build(sourceDirectories, coberturaDirectory),
+                "UTF-8",
+                "2.1.1");
+    }
+
+    @Test
+    public void shouldWriteCoverageOfClasses() throws IOException {
+        // when
+        report.export(projectData(1, 0));
+
+        // then
+        assertThat(readXml())
+                .contains("<coverage line-rate=\"0.5\"")
+                .contains("<class name=\"a.A\" filename=\"a/A.java\" line-rate=\"0.5\"")
+                .contains("<line number=\"1\" hits=\"1\" branch=\"false\"/>");
+    }
+
+    @Test
+    public void shouldWriteComplexityOfMethodsAlsoWhenCached() throws IOException {
+        // given
+        report.export(projectData(1, 0));
+        String xml = readXml();
+
+        // when
+        report.export(projectData(1, 1));
+
+        // then
+        assertThat(xml).contains("signature=\"()V\" line-rate=\"0.5\" branch-rate=\"1.0\" complexity=\"1\"");
+        assertThat(readXml()).contains("signature=\"()V\" line-rate=\"1.0\" branch-rate=\"1.0\" complexity=\"1\"");
+        assertThat(report.getRecalculatedClasses()).isEqualTo(0);
+    }
+
+    @Test
+    public void shouldNotRecalculateClassesWhichDidNotChange() throws IOException {
+        // given
+        report.export(projectData(1, 0));
+
+        // when
+        report.export(projectData(1, 0));
+
+        // then
+        assertThat(report.getRecalculatedClasses()).isEqualTo(0);
+    }
+
+    @Test
+    public void shouldNotRecalculateClassesWhoseOnlyCoverageChanged() throws IOException {
+        // given
+        report.export(projectData(1, 0));
+
+        // when
+        report.export(projectData(1, 1));
+
+        // then
+        assertThat(report.getRecalculatedClasses()).isEqualTo(0);
+    }
+
+    @Test
+    public void shouldRecalculateClassesWhoseSourceChanged() throws IOException {
+        // given
+        report.export(projectData(1, 0));
+        Files.write(sourceFile.toPath(),
+                "package a; class A { void method() { if (true) { } } }".getBytes(StandardCharsets.UTF_8));
+        sourceFile.setLastModified(sourceFile.lastModified() + 2000);
+
+        // when
+        report.export(projectData(1, 0));
+
+        // then
+        assertThat(report.getRecalculatedClasses()).isEqualTo(1);
+    }
+
+    private String readXml() throws IOException {
+        return new String(
+                Files.readAllBytes(new File(coberturaDirectory, CoverageXmlWriter.FILE_NAME).toPath()),
+                StandardCharsets.UTF_8);
+    }
+
+    private ProjectData projectData(int firstLineHits, int secondLineHits) {
+        ClassData classData = new ClassData("a.A");
+        classData.setSourceFileName("a/A.java");
+        classData.addLine(1, "method", "()V");
+        classData.addLine(2, "method", "()V");
+        classData.touch(1, firstLineHits);
+        classData.touch(2, secondLineHits);
+
+        ProjectData projectData = new ProjectData();
+        projectData.addClassData(classData);
+
+        return projectData;
+    }
+}
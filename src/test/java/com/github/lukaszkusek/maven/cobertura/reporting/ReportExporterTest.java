@@ -0,0 +1,71 @@
+package com.github.lukaszkusek.maven.cobertura.reporting;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.willThrow;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import net.sourceforge.cobertura.dsl.Cobertura;
+import net.sourceforge.cobertura.dsl.ReportFormat;
+import net.sourceforge.cobertura.reporting.Report;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ReportExporterTest {
+
+    @Mock
+    private Cobertura cobertura;
+
+    @Mock
+    private Report xmlReport;
+
+    @Mock
+    private Report htmlReport;
+
+    @Test
+    public void shouldExportEveryFormatWithItsOwnReport() throws Throwable {
+        // given
+        given(cobertura.report()).willReturn(xmlReport, htmlReport);
+
+        // when
+        new ReportExporter(cobertura).export(Arrays.asList("xml", "html", "xml"));
+
+        // then
+        verify(cobertura).getProjectDataInstance();
+        verify(cobertura, times(2)).report();
+        verify(xmlReport).export(ReportFormat.XML);
+        verify(htmlReport).export(ReportFormat.HTML);
+    }
+
+    @Test
+    public void shouldRethrowFailureOfAnyFormat() throws Throwable {
+        // given
+        given(cobertura.report()).willReturn(xmlReport, htmlReport);
+        IllegalStateException failure = new IllegalStateException("html failed");
+        willThrow(failure).given(htmlReport).export(ReportFormat.HTML);
+
+        // when
+        Throwable thrown = null;
+        try {
+            new ReportExporter(cobertura).export(Arrays.asList("xml", "html"));
+        } catch (Throwable throwable) {
+            thrown = throwable;
+        }
+
+        // then
+        assertThat(thrown).isSameAs(failure);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectEmptyFormats() throws Throwable {
+        // when
+        new ReportExporter(cobertura).export(Collections.<String>emptyList());
+    }
+}
@@ -0,0 +1,103 @@
+package com.github.lukaszkusek.maven.cobertura.runtime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.CodeSource;
+import java.security.ProtectionDomain;
+import java.security.cert.Certificate;
+import java.util.Properties;
+
+import com.google.common.hash.Hashing;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class CoverageAgentTest {
+
+    private static final byte[] CLASS_FILE = "class file".getBytes(StandardCharsets.UTF_8);
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private File classesDirectory;
+    private File cacheDirectory;
+    private CoverageAgent agent;
+
+    @Before
+    public void setup() throws IOException {
+        classesDirectory = temporaryFolder.newFolder("classes");
+        cacheDirectory = temporaryFolder.newFolder("cache");
+
+        Properties properties = new Properties();
+        properties.setProperty(CoverageAgent.CLASSES_DIRECTORY_KEY, classesDirectory.getAbsolutePath());
+        properties.setProperty(CoverageAgent.CACHE_DIRECTORY_KEY, cacheDirectory.getAbsolutePath());
+        properties.setProperty(CoverageAgent.INCLUDE_CLASSES_REGEX_KEY, "a\\..*");
+        properties.setProperty(CoverageAgent.EXCLUDE_CLASSES_REGEX_KEY, "a\\.Excluded");
+        agent = new CoverageAgent(properties);
+    }
+
+    @Test
+    public void shouldIgnoreInvalidRegexes() {
+        // given
+        Properties properties = new Properties();
+        properties.setProperty(CoverageAgent.CLASSES_DIRECTORY_KEY, classesDirectory.getAbsolutePath());
+        properties.setProperty(CoverageAgent.CACHE_DIRECTORY_KEY, cacheDirectory.getAbsolutePath());
+        properties.setProperty(CoverageAgent.INCLUDE_CLASSES_REGEX_KEY, "**/*.class");
+
+        // when
+        CoverageAgent agentWithInvalidRegex = new CoverageAgent(properties);
+
+        // then
+        assertThat(agentWithInvalidRegex.isIncluded("b.Included")).isTrue();
+    }
+
+    @Test
+    public void shouldApplyIncludeAndExcludeRegexes() {
+        // then
+        assertThat(agent.isIncluded("a.Included")).isTrue();
+        assertThat(agent.isIncluded("a.Excluded")).isFalse();
+        assertThat(agent.isIncluded("b.NotIncluded")).isFalse();
+    }
+
+    @Test
+    public void shouldNotInstrumentClassesLoadedFromOtherLocations() throws Exception {
+        // when
+        byte[] transformed = agent.transform(
+                null, "a/Included", null, loadedFrom(temporaryFolder.newFolder("other")), CLASS_FILE);
+
+        // then
+        assertThat(transformed).isNull();
+    }
+
+    @Test
+    public void shouldNotInstrumentExcludedClasses() throws Exception {
+        // when
+        byte[] transformed = agent.transform(null, "a/Excluded", null, loadedFrom(classesDirectory), CLASS_FILE);
+
+        // then
+        assertThat(transformed).isNull();
+    }
+
+    @Test
+    public void shouldReadInstrumentedClassFromCache() throws Exception {
+        // given
+        byte[] cachedClass = "instrumented class file".getBytes(StandardCharsets.UTF_8);
+        String hash = Hashing.sha1().hashBytes(CLASS_FILE).toString();
+        Files.write(new File(cacheDirectory, "a.Included-" + hash + ".class").toPath(), cachedClass);
+
+        // when
+        byte[] transformed = agent.transform(null, "a/Included", null, loadedFrom(classesDirectory), CLASS_FILE);
+
+        // then
+        assertThat(transformed).isEqualTo(cachedClass);
+    }
+
+    private ProtectionDomain loadedFrom(File directory) throws Exception {
+        return new ProtectionDomain(new CodeSource(directory.toURI().toURL(), (Certificate[]) null), null);
+    }
+}
@@ -0,0 +1,85 @@
+package com.github.lukaszkusek.maven.cobertura.runtime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.lang.management.ManagementFactory;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class CoverageDumperTest {
+
+    private CoverageDumper dumper;
+
+    @After
+    public void tearDown() throws JMException {
+        if (dumper != null) {
+            dumper.stop();
+        }
+    }
+
+    @Test
+    public void shouldDumpPeriodically() throws InterruptedException {
+        // given
+        CountDownLatch saves = new CountDownLatch(3);
+        dumper = new CoverageDumper(saves::countDown);
+
+        // when
+        dumper.start(10, TimeUnit.MILLISECONDS, false);
+
+        // then
+        assertThat(saves.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(dumper.getDumps()).isGreaterThanOrEqualTo(3);
+    }
+
+    @Test
+    public void shouldKeepDumpingPeriodicallyAfterFailedDump() throws InterruptedException {
+        // given
+        CountDownLatch saves = new CountDownLatch(2);
+        dumper = new CoverageDumper(() -> {
+            saves.countDown();
+            throw new IllegalStateException("data file locked");
+        });
+
+        // when
+        dumper.start(10, TimeUnit.MILLISECONDS, false);
+
+        // then
+        assertThat(saves.await(5, TimeUnit.SECONDS)).isTrue();
+    }
+
+    @Test
+    public void shouldDumpOnDemandThroughJmx() throws JMException {
+        // given
+        CountDownLatch saves = new CountDownLatch(1);
+        dumper = new CoverageDumper(saves::countDown);
+        dumper.start(0, TimeUnit.SECONDS, true);
+
+        // when
+        ManagementFactory.getPlatformMBeanServer().invoke(
+                new ObjectName(CoverageDumper.OBJECT_NAME), "dump", new Object[0], new String[0]);
+
+        // then
+        assertThat(saves.getCount()).isEqualTo(0L);
+        assertThat(ManagementFactory.getPlatformMBeanServer()
+                .getAttribute(new ObjectName(CoverageDumper.OBJECT_NAME), "Dumps")).isEqualTo(1);
+    }
+
+    @Test
+    public void shouldNotStartIfNotConfigured() {
+        // given
+        Properties properties = new Properties();
+        properties.setProperty(CoverageDumper.DUMP_INTERVAL_KEY, "0");
+
+        // when
+        boolean started = CoverageDumper.startIfConfigured(properties);
+
+        // then
+        assertThat(started).isFalse();
+    }
+}
@@ -0,0 +1,111 @@
+package com.github.lukaszkusek.maven.cobertura.runtime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class MappedCountersFileTest {
+
+    private static final String CLASS_NAME = "a.A";
+    private static final String TOUCH_POINTS = "Sa/A.java\nL1\t0\tmethod\t()V\n";
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private File directory;
+
+    @Before
+    public void setup() throws IOException {
+        directory = temporaryFolder.newFolder();
+    }
+
+    @Test
+    public void shouldKeepHitsInFile() throws IOException {
+        // given
+        try (MappedCountersFile file = MappedCountersFile.claim(directory)) {
+            MappedCounters counters = file.allocate(CLASS_NAME, 3, TOUCH_POINTS);
+
+            // when
+            counters.increment(0);
+            counters.increment(2);
+            counters.increment(2);
+        }
+
+        // then
+        assertThat(read(new File(directory, "counters-0.map")).keySet()).containsOnly(CLASS_NAME + '\n' + TOUCH_POINTS);
+        assertThat(read(new File(directory, "counters-0.map")).get(CLASS_NAME + '\n' + TOUCH_POINTS))
+                .containsExactly(1, 0, 2);
+    }
+
+    @Test
+    public void shouldAddHitsToCountersOfEarlierTestRun() throws IOException {
+        // given
+        try (MappedCountersFile file = MappedCountersFile.claim(directory)) {
+            file.allocate(CLASS_NAME, 1, TOUCH_POINTS).increment(0);
+        }
+
+        // when
+        try (MappedCountersFile file = MappedCountersFile.claim(directory)) {
+            MappedCounters counters = file.allocate(CLASS_NAME, 1, TOUCH_POINTS);
+            counters.increment(0);
+
+            // then
+            assertThat(counters.get(0)).isEqualTo(2);
+        }
+        assertThat(directory.list()).containsOnly("counters-0.map");
+    }
+
+    @Test
+    public void shouldClaimAnotherFileWhileFileIsLocked() throws IOException {
+        // given
+        try (MappedCountersFile first = MappedCountersFile.claim(directory);
+             MappedCountersFile second = MappedCountersFile.claim(directory)) {
+
+            // when
+            first.allocate(CLASS_NAME, 1, TOUCH_POINTS).increment(0);
+            second.allocate(CLASS_NAME, 1, TOUCH_POINTS).increment(0);
+        }
+
+        // then
+        assertThat(read(new File(directory, "counters-0.map")).get(CLASS_NAME + '\n' + TOUCH_POINTS))
+                .containsExactly(1);
+        assertThat(read(new File(directory, "counters-1.map")).get(CLASS_NAME + '\n' + TOUCH_POINTS))
+                .containsExactly(1);
+    }
+
+    @Test
+    public void shouldGrowFileByChunks() throws IOException {
+        // given
+        int size = MappedCountersFile.CHUNK_SIZE / 4 + 1;
+
+        // when
+        try (MappedCountersFile file = MappedCountersFile.claim(directory)) {
+            file.allocate("a.Small", 1, TOUCH_POINTS).increment(0);
+            file.allocate("a.Large", size, TOUCH_POINTS).increment(size - 1);
+            file.allocate("a.Next", 1, TOUCH_POINTS).increment(0);
+        }
+
+        // then
+        Map<String, int[]> entries = read(new File(directory, "counters-0.map"));
+        assertThat(entries.keySet()).containsOnly(
+                "a.Small\n" + TOUCH_POINTS, "a.Large\n" + TOUCH_POINTS, "a.Next\n" + TOUCH_POINTS);
+        assertThat(entries.get("a.Large\n" + TOUCH_POINTS)[size - 1]).isEqualTo(1);
+        assertThat(entries.get("a.Next\n" + TOUCH_POINTS)).containsExactly(1);
+    }
+
+    private Map<String, int[]> read(File file) throws IOException {
+        Map<String, int[]> entries = new LinkedHashMap<>();
+        MappedCountersFile.read(file,
+                (className, touchPoints, hits) -> entries.put(className + '\n' + touchPoints, hits));
+
+        return entries;
+    }
+}
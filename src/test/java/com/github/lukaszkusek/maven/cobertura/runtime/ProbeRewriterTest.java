@@ -0,0 +1,308 @@
+package com.github.lukaszkusek.maven.cobertura.runtime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+
+public class ProbeRewriterTest {
+
+    private static final String CLASS_NAME = "a/Instrumented";
+    private static final String LISTENER = "net/sourceforge/cobertura/coveragedata/LightClassmapListener";
+    private static final String CLASSMAP_METHOD_DESCRIPTOR = "(L" + LISTENER + ";)V";
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @After
+    public void closeMappedCounters() throws IOException {
+        MappedCounters.use(null);
+    }
+
+    @Test
+    public void shouldCountHitsOfAllThreadsWithStripedCounters() throws Exception {
+        // given
+        byte[] rewrittenClass = new ProbeRewriter(ProbeRewriter.STRIPED_MODE).rewrite(instrumentedClass(false, false));
+        Class<?> instrumented = load(rewrittenClass);
+        Method hit = instrumented.getMethod("hit", int.class);
+
+        // when
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            threads.add(new Thread(() -> {
+                for (int j = 0; j < 1000; j++) {
+                    invoke(hit, 2);
+                }
+            }));
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        // then
+        Method getAndResetCounters = instrumented.getMethod("__cobertura_get_and_reset_counters");
+        assertThat((int[]) getAndResetCounters.invoke(null)).containsExactly(4000, 0, 4000);
+        assertThat((int[]) getAndResetCounters.invoke(null)).containsExactly(0, 0, 0);
+        assertThat(instrumented.getField(ProbeRewriter.STRIPED_COUNTERS_FIELD_NAME).get(null)).isNotNull();
+    }
+
+    @Test
+    public void shouldOnlyRecordHitsInHitMode() throws Exception {
+        // given
+        byte[] rewrittenClass = new ProbeRewriter(ProbeRewriter.HIT_MODE).rewrite(instrumentedClass(false, false));
+        Class<?> instrumented = load(rewrittenClass);
+        Method hit = instrumented.getMethod("hit", int.class);
+
+        // when
+        for (int i = 0; i < 1000; i++) {
+            invoke(hit, 2);
+        }
+
+        // then
+        Method getAndResetCounters = instrumented.getMethod("__cobertura_get_and_reset_counters");
+        assertThat((int[]) getAndResetCounters.invoke(null)).containsExactly(1, 0, 1);
+        assertThat((int[]) getAndResetCounters.invoke(null)).containsExactly(0, 0, 0);
+    }
+
+    @Test
+    public void shouldCountHitsInMappedCountersInMappedMode() throws Exception {
+        // given
+        File directory = temporaryFolder.newFolder();
+        MappedCounters.use(directory);
+        byte[] rewrittenClass = new ProbeRewriter(ProbeRewriter.MAPPED_MODE).rewrite(instrumentedClass(false, true));
+        Class<?> instrumented = load(rewrittenClass);
+        Method hit = instrumented.getMethod("hit", int.class);
+
+        // when
+        for (int i = 0; i < 1000; i++) {
+            invoke(hit, 2);
+        }
+
+        // then
+        MappedCounters counters =
+                (MappedCounters) instrumented.getField(ProbeRewriter.MAPPED_COUNTERS_FIELD_NAME).get(null);
+        assertThat(new int[] {counters.get(0), counters.get(1), counters.get(2)}).containsExactly(1000, 0, 1000);
+
+        Method getAndResetCounters = instrumented.getMethod("__cobertura_get_and_reset_counters");
+        assertThat((int[]) getAndResetCounters.invoke(null)).containsExactly(0, 0, 0);
+
+        List<String> entries = new ArrayList<>();
+        MappedCountersFile.read(new File(directory, "counters-0.map"),
+                (className, touchPoints, hits) -> entries.add(className + '\n' + touchPoints + hits.length));
+        assertThat(entries).containsExactly("a.Instrumented\n"
+                + "SInstrumented.java\n"
+                + "L10\t0\thit\t(I)V\n"
+                + "J11\t1\t2\n"
+                + "W12\t2\t0,2\n"
+                + "3");
+    }
+
+    @Test
+    public void shouldNotRewriteClassesWithoutRegistrationInMappedMode() {
+        // given
+        byte[] instrumentedClass = instrumentedClass(false, false);
+
+        // when
+        byte[] rewrittenClass = new ProbeRewriter(ProbeRewriter.MAPPED_MODE).rewrite(instrumentedClass);
+
+        // then
+        assertThat(rewrittenClass).isSameAs(instrumentedClass);
+    }
+
+    @Test
+    public void shouldNotRewriteClassesInCountMode() {
+        // given
+        byte[] instrumentedClass = instrumentedClass(false, false);
+
+        // when
+        byte[] rewrittenClass = new ProbeRewriter(ProbeRewriter.COUNT_MODE).rewrite(instrumentedClass);
+
+        // then
+        assertThat(rewrittenClass).isSameAs(instrumentedClass);
+    }
+
+    @Test
+    public void shouldNotRewriteClassesWithUnknownCountersAccess() {
+        // given
+        byte[] instrumentedClass = instrumentedClass(true, false);
+
+        // when
+        byte[] rewrittenClass = new ProbeRewriter(ProbeRewriter.STRIPED_MODE).rewrite(instrumentedClass);
+
+        // then
+        assertThat(rewrittenClass).isSameAs(instrumentedClass);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectUnknownProbeMode() {
+        // when
+        new ProbeRewriter("unknown");
+    }
+
+    private static void invoke(Method method, int argument) {
+        try {
+            method.invoke(null, argument);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private Class<?> load(byte[] classFile) {
+        return new ClassLoader(getClass().getClassLoader()) {
+            Class<?> define() {
+                return defineClass(CLASS_NAME.replace('/', '.'), classFile, 0, classFile.length);
+            }
+        }.define();
+    }
+
+    /**
+     * Class with probes the way Cobertura instruments them without {@code threadsafeRigorous}, registered with the
+     * Cobertura runtime only if requested, as loading it would start the runtime then.
+     */
+    private byte[] instrumentedClass(boolean withUnknownCountersAccess, boolean withRegistration) {
+        ClassWriter classWriter = new ClassWriter(ClassWriter.COMPUTE_MAXS | ClassWriter.COMPUTE_FRAMES);
+        classWriter.visit(Opcodes.V1_7, Opcodes.ACC_PUBLIC, CLASS_NAME, null, "java/lang/Object", null);
+        classWriter.visitField(Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC | Opcodes.ACC_TRANSIENT,
+                "__cobertura_counters", "[I", null, null).visitEnd();
+
+        MethodVisitor init = classWriter.visitMethod(
+                Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC, "__cobertura_init", "()V", null, null);
+        init.visitCode();
+        Label initialized = new Label();
+        init.visitFieldInsn(Opcodes.GETSTATIC, CLASS_NAME, "__cobertura_counters", "[I");
+        init.visitJumpInsn(Opcodes.IFNONNULL, initialized);
+        init.visitLdcInsn(3);
+        init.visitIntInsn(Opcodes.NEWARRAY, Opcodes.T_INT);
+        init.visitFieldInsn(Opcodes.PUTSTATIC, CLASS_NAME, "__cobertura_counters", "[I");
+        if (withRegistration) {
+            init.visitLdcInsn(CLASS_NAME.replace('/', '.'));
+            init.visitMethodInsn(Opcodes.INVOKESTATIC, "net/sourceforge/cobertura/coveragedata/TouchCollector",
+                    "registerClass", "(Ljava/lang/String;)V", false);
+        }
+        init.visitLabel(initialized);
+        init.visitInsn(Opcodes.RETURN);
+        init.visitMaxs(0, 0);
+        init.visitEnd();
+
+        MethodVisitor staticInitializer = classWriter.visitMethod(Opcodes.ACC_STATIC, "<clinit>", "()V", null, null);
+        staticInitializer.visitCode();
+        staticInitializer.visitMethodInsn(Opcodes.INVOKESTATIC, CLASS_NAME, "__cobertura_init", "()V", false);
+        staticInitializer.visitInsn(Opcodes.RETURN);
+        staticInitializer.visitMaxs(0, 0);
+        staticInitializer.visitEnd();
+
+        MethodVisitor getAndResetCounters = classWriter.visitMethod(
+                Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC, "__cobertura_get_and_reset_counters", "()[I", null, null);
+        getAndResetCounters.visitCode();
+        getAndResetCounters.visitFieldInsn(Opcodes.GETSTATIC, CLASS_NAME, "__cobertura_counters", "[I");
+        getAndResetCounters.visitVarInsn(Opcodes.ASTORE, 0);
+        getAndResetCounters.visitLdcInsn(3);
+        getAndResetCounters.visitIntInsn(Opcodes.NEWARRAY, Opcodes.T_INT);
+        getAndResetCounters.visitFieldInsn(Opcodes.PUTSTATIC, CLASS_NAME, "__cobertura_counters", "[I");
+        getAndResetCounters.visitVarInsn(Opcodes.ALOAD, 0);
+        getAndResetCounters.visitInsn(Opcodes.ARETURN);
+        getAndResetCounters.visitMaxs(0, 0);
+        getAndResetCounters.visitEnd();
+
+        MethodVisitor hit = classWriter.visitMethod(
+                Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC, "hit", "(I)V", null, null);
+        hit.visitCode();
+        visitProbe(hit, () -> hit.visitLdcInsn(0));
+        visitProbe(hit, () -> hit.visitVarInsn(Opcodes.ILOAD, 0));
+        if (withUnknownCountersAccess) {
+            hit.visitFieldInsn(Opcodes.GETSTATIC, CLASS_NAME, "__cobertura_counters", "[I");
+            hit.visitInsn(Opcodes.ARRAYLENGTH);
+            hit.visitInsn(Opcodes.POP);
+        }
+        hit.visitInsn(Opcodes.RETURN);
+        hit.visitMaxs(0, 0);
+        hit.visitEnd();
+
+        visitClassmapMethods(classWriter);
+        classWriter.visitEnd();
+
+        return classWriter.toByteArray();
+    }
+
+    /**
+     * Touch points of a line, a jump and a switch passed to the listener the way Cobertura does.
+     */
+    private void visitClassmapMethods(ClassWriter classWriter) {
+        MethodVisitor classmap = classWriter.visitMethod(Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC,
+                "__cobertura_classmap", CLASSMAP_METHOD_DESCRIPTOR, null, null);
+        classmap.visitCode();
+        classmap.visitVarInsn(Opcodes.ALOAD, 0);
+        classmap.visitLdcInsn(Type.getObjectType(CLASS_NAME));
+        classmap.visitMethodInsn(Opcodes.INVOKEINTERFACE, LISTENER, "setClazz", "(Ljava/lang/Class;)V", true);
+        classmap.visitVarInsn(Opcodes.ALOAD, 0);
+        classmap.visitLdcInsn("Instrumented.java");
+        classmap.visitMethodInsn(Opcodes.INVOKEINTERFACE, LISTENER, "setSource", "(Ljava/lang/String;)V", true);
+        classmap.visitVarInsn(Opcodes.ALOAD, 0);
+        classmap.visitMethodInsn(
+                Opcodes.INVOKESTATIC, CLASS_NAME, "__cobertura_classmap_0", CLASSMAP_METHOD_DESCRIPTOR, false);
+        classmap.visitInsn(Opcodes.RETURN);
+        classmap.visitMaxs(0, 0);
+        classmap.visitEnd();
+
+        MethodVisitor part = classWriter.visitMethod(Opcodes.ACC_PRIVATE | Opcodes.ACC_STATIC,
+                "__cobertura_classmap_0", CLASSMAP_METHOD_DESCRIPTOR, null, null);
+        part.visitCode();
+        part.visitVarInsn(Opcodes.ALOAD, 0);
+        part.visitInsn(Opcodes.DUP);
+        part.visitLdcInsn(10);
+        part.visitLdcInsn(0);
+        part.visitLdcInsn("hit");
+        part.visitLdcInsn("(I)V");
+        part.visitMethodInsn(Opcodes.INVOKEINTERFACE, LISTENER, "putLineTouchPoint",
+                "(IILjava/lang/String;Ljava/lang/String;)V", true);
+        part.visitInsn(Opcodes.DUP);
+        part.visitLdcInsn(11);
+        part.visitLdcInsn(1);
+        part.visitLdcInsn(2);
+        part.visitMethodInsn(Opcodes.INVOKEINTERFACE, LISTENER, "putJumpTouchPoint", "(III)V", true);
+        part.visitInsn(Opcodes.DUP);
+        part.visitLdcInsn(12);
+        part.visitLdcInsn(2);
+        part.visitInsn(Opcodes.ICONST_2);
+        part.visitIntInsn(Opcodes.NEWARRAY, Opcodes.T_INT);
+        part.visitInsn(Opcodes.DUP);
+        part.visitInsn(Opcodes.ICONST_0);
+        part.visitInsn(Opcodes.ICONST_0);
+        part.visitInsn(Opcodes.IASTORE);
+        part.visitInsn(Opcodes.DUP);
+        part.visitInsn(Opcodes.ICONST_1);
+        part.visitInsn(Opcodes.ICONST_2);
+        part.visitInsn(Opcodes.IASTORE);
+        part.visitMethodInsn(Opcodes.INVOKEINTERFACE, LISTENER, "putSwitchTouchPoint", "(II[I)V", true);
+        part.visitInsn(Opcodes.POP);
+        part.visitInsn(Opcodes.RETURN);
+        part.visitMaxs(0, 0);
+        part.visitEnd();
+    }
+
+    private void visitProbe(MethodVisitor method, Runnable probe) {
+        method.visitFieldInsn(Opcodes.GETSTATIC, CLASS_NAME, "__cobertura_counters", "[I");
+        probe.run();
+        method.visitInsn(Opcodes.DUP2);
+        method.visitInsn(Opcodes.IALOAD);
+        method.visitLdcInsn(1);
+        method.visitInsn(Opcodes.IADD);
+        method.visitInsn(Opcodes.IASTORE);
+    }
+}
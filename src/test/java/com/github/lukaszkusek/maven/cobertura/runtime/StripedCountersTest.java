@@ -0,0 +1,45 @@
+package com.github.lukaszkusek.maven.cobertura.runtime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.Test;
+
+public class StripedCountersTest {
+
+    private final StripedCounters counters = new StripedCounters(2);
+
+    @Test
+    public void shouldReturnHitsCountedSincePreviousCall() {
+        // given
+        counters.increment(0);
+        counters.getAndReset();
+        counters.increment(0);
+        counters.increment(1);
+
+        // when
+        int[] hits = counters.getAndReset();
+
+        // then
+        assertThat(hits).containsExactly(1, 1);
+    }
+
+    @Test
+    public void shouldCollectAndDropCountersOfFinishedThreads() throws InterruptedException {
+        // given
+        Thread thread = new Thread(() -> {
+            counters.increment(1);
+            counters.increment(1);
+        });
+        thread.start();
+        thread.join();
+        counters.increment(0);
+
+        // when
+        int[] hits = counters.getAndReset();
+
+        // then
+        assertThat(hits).containsExactly(1, 2);
+        assertThat(counters.getThreads()).isEqualTo(1);
+        assertThat(counters.getAndReset()).containsExactly(0, 0);
+    }
+}